@@ -0,0 +1,120 @@
+package org.galatea.starter.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceInfo;
+import org.galatea.starter.domain.TradeAgreement;
+
+/**
+ * Generates the data the benchmarks run on. Uses a fixed seed, so every run (and the baseline)
+ * sees the same data.
+ */
+final class BenchmarkData {
+
+  private static final LocalDate NEWEST = LocalDate.of(2020, 6, 12);
+
+  private BenchmarkData() {}
+
+  /**
+   * Return an Alpha Vantage TIME_SERIES_DAILY response for the given number of days, most recent
+   * first.
+   */
+  static byte[] alphaVantageResponse(final String symbol, final int days) throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    ObjectNode root = mapper.createObjectNode();
+    root.putObject("Meta Data")
+        .put("1. Information", "Daily Prices (open, high, low, close) and Volumes")
+        .put("2. Symbol", symbol)
+        .put("3. Last Refreshed", NEWEST.toString())
+        .put("4. Output Size", "Full size")
+        .put("5. Time Zone", "US/Eastern");
+    ObjectNode timeSeries = root.putObject("Time Series (Daily)");
+    for (StockPrice stockPrice : stockPrices(symbol, days)) {
+      StockPriceInfo prices = stockPrice.getPrices();
+      timeSeries.putObject(stockPrice.getDate().toString())
+          .put("1. open", priceText(prices.getOpen()))
+          .put("2. high", priceText(prices.getHigh()))
+          .put("3. low", priceText(prices.getLow()))
+          .put("4. close", priceText(prices.getClose()))
+          .put("5. volume", Long.toString(prices.getVolume()));
+    }
+    return mapper.writeValueAsBytes(root);
+  }
+
+  /**
+   * Return a random walk of stock prices for the given number of weekdays up to 2020-06-12, sorted
+   * by date descending.
+   */
+  static List<StockPrice> stockPrices(final String symbol, final int days) {
+    Random random = new Random(days);
+    List<StockPrice> stockPrices = new ArrayList<>(days);
+    double close = 100;
+    LocalDate date = NEWEST;
+    while (stockPrices.size() < days) {
+      if (date.getDayOfWeek().getValue() < 6) {
+        double open = close;
+        close = Math.max(1, close + random.nextGaussian());
+        stockPrices.add(StockPrice.builder()
+            .symbol(symbol)
+            .date(date)
+            .prices(StockPriceInfo.builder()
+                .open(BigDecimal.valueOf(open))
+                .high(BigDecimal.valueOf(Math.max(open, close) + random.nextDouble()))
+                .low(BigDecimal.valueOf(Math.min(open, close) - random.nextDouble() / 2))
+                .close(BigDecimal.valueOf(close))
+                .volume(1_000_000 + random.nextInt(1_000_000)).build())
+            .build());
+      }
+      date = date.minusDays(1);
+    }
+    return stockPrices;
+  }
+
+  /**
+   * Return the given number of trade agreements for a handful of instruments and parties.
+   */
+  static List<TradeAgreement> tradeAgreements(final int count) {
+    Random random = new Random(count);
+    List<TradeAgreement> agreements = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      agreements.add(TradeAgreement.builder()
+          .instrument("INST-" + random.nextInt(50))
+          .internalParty("INT-" + random.nextInt(10))
+          .externalParty("EXT-" + random.nextInt(100))
+          .buySell(random.nextBoolean() ? "B" : "S")
+          .qty((double) (1 + random.nextInt(10_000))).build());
+    }
+    return agreements;
+  }
+
+  /**
+   * Return the given number of settlement missions with ids.
+   */
+  static List<SettlementMission> settlementMissions(final int count) {
+    Random random = new Random(count);
+    List<SettlementMission> missions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      missions.add(SettlementMission.builder()
+          .id((long) i)
+          .depot("DTC")
+          .instrument("INST-" + random.nextInt(50))
+          .externalParty("EXT-" + random.nextInt(100))
+          .direction(random.nextBoolean() ? "REC" : "DEL")
+          .qty((double) (1 + random.nextInt(10_000)))
+          .version(0L).build());
+    }
+    return missions;
+  }
+
+  private static String priceText(final long price) {
+    return FixedPointPrice.toString(price);
+  }
+}
@@ -0,0 +1,149 @@
+package org.galatea.starter.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and compares their scores with a baseline, failing if any of them has
+ * regressed. Started by the jmh Maven profile; see the Benchmarks section of the README.
+ *
+ * <p>Arguments are JMH command line options (e.g. a benchmark regex, or -p days=100). Settings are
+ * read from system properties:
+ * <ul>
+ * <li>jmh.results: where JMH writes the scores as JSON</li>
+ * <li>jmh.baseline: JMH JSON scores to compare with</li>
+ * <li>jmh.threshold: fraction by which a score may be worse than its baseline, beyond the error
+ * of both scores, before it counts as a regression</li>
+ * <li>jmh.updateBaseline: if true, replace the baseline with the new scores instead of
+ * comparing</li>
+ * </ul>
+ */
+public final class BenchmarkMain {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private BenchmarkMain() {
+  }
+
+  /**
+   * Run the benchmarks and compare them with the baseline. Exits with status 1 if any benchmark
+   * regressed.
+   * @param args JMH command line options
+   */
+  public static void main(final String[] args) throws Exception {
+    Path results = Paths.get(System.getProperty("jmh.results", "target/jmh/results.json"));
+    Path baseline = Paths.get(System.getProperty("jmh.baseline", "src/jmh/baseline.json"));
+    boolean updateBaseline = Boolean.getBoolean("jmh.updateBaseline");
+
+    Files.createDirectories(results.toAbsolutePath().getParent());
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .resultFormat(ResultFormatType.JSON)
+        .result(results.toString())
+        .build();
+    new Runner(options).run();
+
+    if (updateBaseline) {
+      Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+      System.out.println("Updated baseline " + baseline);
+      return;
+    }
+    if (!Files.exists(baseline)) {
+      System.out.println("No baseline at " + baseline + " to compare with. Create one with "
+          + "-Djmh.updateBaseline=true");
+      return;
+    }
+
+    double threshold = Double.parseDouble(System.getProperty("jmh.threshold", "0.10"));
+    int regressions = compare(readScores(baseline), readScores(results), threshold);
+    if (regressions > 0) {
+      System.out.println(regressions + " benchmark(s) regressed by more than "
+          + Math.round(threshold * 100) + "%");
+      System.exit(1);
+    }
+  }
+
+  /*
+   * Print each benchmark's score next to its baseline, and return the number of regressions.
+   * Benchmarks that aren't in both are only printed.
+   */
+  private static int compare(final Map<String, Score> baseline, final Map<String, Score> results,
+      final double threshold) {
+    System.out.printf("%n%-90s %14s %14s %8s%n", "Benchmark", "Baseline", "Score", "Change");
+    int regressions = 0;
+    for (Map.Entry<String, Score> entry : results.entrySet()) {
+      Score score = entry.getValue();
+      Score base = baseline.get(entry.getKey());
+      if (base == null || !base.unit.equals(score.unit)) {
+        System.out.printf("%-90s %14s %14.3f %8s %s%n", entry.getKey(), "-", score.score, "",
+            score.unit);
+        continue;
+      }
+      // positive when the score is worse, whichever direction that is in this mode
+      double change = (score.score - base.score) / base.score * (score.higherIsBetter ? -1 : 1);
+      double margin = Math.abs(base.score) * threshold + base.error + score.error;
+      boolean regressed = score.higherIsBetter ? score.score < base.score - margin
+          : score.score > base.score + margin;
+      if (regressed) {
+        regressions++;
+      }
+      System.out.printf("%-90s %14.3f %14.3f %+7.1f%% %s%s%n", entry.getKey(), base.score,
+          score.score, change * 100, score.unit, regressed ? "  REGRESSED" : "");
+    }
+    return regressions;
+  }
+
+  /*
+   * Read JMH JSON results, keyed by benchmark name, parameters and mode.
+   */
+  private static Map<String, Score> readScores(final Path path) throws IOException {
+    Map<String, Score> scores = new LinkedHashMap<>();
+    for (JsonNode result : objectMapper.readTree(path.toFile())) {
+      StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+          .replace(BenchmarkMain.class.getPackage().getName() + ".", ""));
+      result.path("params").fields().forEachRemaining(
+          param -> key.append(' ').append(param.getKey()).append('=')
+              .append(param.getValue().asText()));
+      String mode = result.path("mode").asText();
+      key.append(" (").append(mode).append(')');
+
+      JsonNode metric = result.path("primaryMetric");
+      double error = metric.path("scoreError").asDouble();
+      scores.put(key.toString(), new Score(metric.path("score").asDouble(),
+          Double.isNaN(error) ? 0 : error, metric.path("scoreUnit").asText(),
+          "thrpt".equals(mode)));
+    }
+    return scores;
+  }
+
+  private static final class Score {
+
+    private final double score;
+
+    private final double error;
+
+    private final String unit;
+
+    private final boolean higherIsBetter;
+
+    Score(final double score, final double error, final String unit,
+        final boolean higherIsBetter) {
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+      this.higherIsBetter = higherIsBetter;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package org.galatea.starter.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The protobuf translators in ProtoMessageTranslationConfig, as used by the protobuf JMS listener
+ * and REST endpoints.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProtoTranslationBenchmark {
+
+  @Param({"1", "1000"})
+  private int messages;
+
+  private ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> messagesTranslator;
+
+  private ITranslator<BytesMessage, List<TradeAgreement>> bytesMessageTranslator;
+
+  private ITranslator<SettlementMission, SettlementMissionProtoMessage> missionTranslator;
+
+  private TradeAgreementProtoMessages agreementMessages;
+
+  private ActiveMQBytesMessage agreementMessagesMessage;
+
+  private List<SettlementMission> missions;
+
+  /**
+   * Build the translators the same way the Spring config does, and the messages to translate.
+   */
+  @Setup
+  public void setUp() throws JMSException {
+    ProtoMessageTranslationConfig config = new ProtoMessageTranslationConfig();
+    ITranslator<TradeAgreementProtoMessage, TradeAgreement> agreementTranslator =
+        config.tradeAgreementProtoTranslator();
+    messagesTranslator = config.tradeAgreementProtoMessagesTranslator(agreementTranslator);
+    bytesMessageTranslator = config.tradeAgreementBytesMessageTranslator();
+    missionTranslator = config.settlementMissionProtoTranslator();
+
+    List<TradeAgreementProtoMessage> agreementProtos = BenchmarkData.tradeAgreements(messages)
+        .stream()
+        .map(agreement -> TradeAgreementProtoMessage.newBuilder()
+            .setInstrument(agreement.getInstrument())
+            .setInternalParty(agreement.getInternalParty())
+            .setExternalParty(agreement.getExternalParty())
+            .setBuySell(agreement.getBuySell())
+            .setQty(agreement.getQty()).build())
+        .collect(Collectors.toList());
+    agreementMessages = TradeAgreementProtoMessages.newBuilder()
+        .addAllMessage(agreementProtos).build();
+    agreementMessagesMessage = new ActiveMQBytesMessage();
+    agreementMessagesMessage.writeBytes(agreementMessages.toByteArray());
+    agreementMessagesMessage.reset();
+    missions = BenchmarkData.settlementMissions(messages);
+  }
+
+  @Benchmark
+  public List<TradeAgreement> translateTradeAgreementMessages() {
+    return messagesTranslator.translate(agreementMessages);
+  }
+
+  @Benchmark
+  public List<TradeAgreement> translateTradeAgreementMessagesFromBytesMessage() {
+    return bytesMessageTranslator.translate(agreementMessagesMessage);
+  }
+
+  @Benchmark
+  public List<SettlementMissionProtoMessage> translateSettlementMissions() {
+    return missions.stream().map(missionTranslator::translate).collect(Collectors.toList());
+  }
+}
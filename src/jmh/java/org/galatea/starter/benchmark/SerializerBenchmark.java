@@ -0,0 +1,59 @@
+package org.galatea.starter.benchmark;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.utils.http.converter.CsvSerializer;
+import org.galatea.starter.utils.http.converter.XlsxSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CsvSerializer and XlsxSerializer on settlement missions, as written by the csv and xlsx
+ * response formats. A 100k row spreadsheet takes seconds, so these use fewer, longer iterations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+
+  @Param({"1000", "100000"})
+  private int rows;
+
+  private List<SettlementMission> missions;
+
+  @Setup
+  public void setUp() {
+    missions = BenchmarkData.settlementMissions(rows);
+  }
+
+  @Benchmark
+  public String serializeToCsv() throws Exception {
+    return CsvSerializer.serializeToCsv(missions, SettlementMission.class);
+  }
+
+  @Benchmark
+  public void serializeToCsvStream() throws Exception {
+    // as the csv response format writes it, straight to the response
+    CsvSerializer.serializeToCsv(missions, SettlementMission.class,
+        OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public byte[] serializeToXlsx() throws Exception {
+    return XlsxSerializer.serializeToXlsx(missions, SettlementMission.class);
+  }
+}
@@ -0,0 +1,71 @@
+package org.galatea.starter.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.galatea.starter.AppConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.service.SettlementService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SettlementService.spawnMissions: transforming trade agreements into settlement missions and
+ * collecting the ids of the saved missions. The repository only assigns ids, so the score is the
+ * transform itself rather than the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SettlementBenchmark {
+
+  @Param({"1", "100", "10000"})
+  private int agreements;
+
+  private SettlementService settlementService;
+
+  private List<TradeAgreement> tradeAgreements;
+
+  /**
+   * Build a SettlementService with the application's agreement transformer and a repository whose
+   * saveAll assigns ids in memory.
+   */
+  @Setup
+  public void setUp() {
+    AtomicLong ids = new AtomicLong();
+    ISettlementMissionRpsy missionRpsy = (ISettlementMissionRpsy) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class<?>[] {ISettlementMissionRpsy.class},
+        (proxy, method, args) -> {
+          if (!"saveAll".equals(method.getName())) {
+            throw new UnsupportedOperationException(method.getName());
+          }
+          @SuppressWarnings("unchecked")
+          Iterable<SettlementMission> missions = (Iterable<SettlementMission>) args[0];
+          missions.forEach(mission -> mission.setId(ids.incrementAndGet()));
+          return missions;
+        });
+    settlementService = new SettlementService(missionRpsy, new AppConfig().agreementTransformer());
+    tradeAgreements = BenchmarkData.tradeAgreements(agreements);
+  }
+
+  @Benchmark
+  public Set<Long> spawnMissions() {
+    return settlementService.spawnMissions(tradeAgreements);
+  }
+}
@@ -0,0 +1,84 @@
+package org.galatea.starter.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.entrypoint.messagecontracts.StockPriceMessages;
+import org.galatea.starter.service.AlphaVantageDailySeriesReader;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Turning an Alpha Vantage TIME_SERIES_DAILY response into StockPrices: binding it to
+ * StockPriceMessages and translating those with the stockPriceMessagesTranslator chain, and
+ * streaming it through AlphaVantageDailySeriesReader.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockPriceParseBenchmark {
+
+  // compact and full Alpha Vantage output sizes
+  @Param({"100", "5000"})
+  private int days;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final AlphaVantageDailySeriesReader reader = new AlphaVantageDailySeriesReader();
+
+  private ITranslator<StockPriceMessages, List<StockPrice>> translator;
+
+  private byte[] response;
+
+  private StockPriceMessages messages;
+
+  /**
+   * Generate the response, and build the translator chain the same way the Spring config does.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    response = BenchmarkData.alphaVantageResponse("IBM", days);
+    messages = objectMapper.readValue(response, StockPriceMessages.class);
+
+    MessageTranslationConfig config = new MessageTranslationConfig();
+    translator = config.stockPriceMessagesTranslator(
+        config.stockPriceMessageTranslator(config.stockPriceInfoMessageTranslator()));
+  }
+
+  @Benchmark
+  public StockPriceMessages parseStockPriceMessages() throws Exception {
+    return objectMapper.readValue(response, StockPriceMessages.class);
+  }
+
+  @Benchmark
+  public List<StockPrice> translateStockPriceMessages() {
+    return translator.translate(messages);
+  }
+
+  @Benchmark
+  public List<StockPrice> parseAndTranslateStockPriceMessages() throws Exception {
+    return translator.translate(objectMapper.readValue(response, StockPriceMessages.class));
+  }
+
+  @Benchmark
+  public int readDailySeries(final Blackhole blackhole) throws Exception {
+    return reader.read(new ByteArrayInputStream(response), days, blackhole::consume);
+  }
+}
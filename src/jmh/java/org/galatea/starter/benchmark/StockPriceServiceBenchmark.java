@@ -0,0 +1,97 @@
+package org.galatea.starter.benchmark;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.domain.rpsy.IStockPriceRpsy;
+import org.galatea.starter.domain.rpsy.StockPriceSeriesStore;
+import org.galatea.starter.service.AlphaVantageClient;
+import org.galatea.starter.service.AlphaVantageDailySeriesReader;
+import org.galatea.starter.service.StockPriceService;
+import org.galatea.starter.utils.TradingCalendar;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter;
+import org.galatea.starter.utils.concurrent.SingleFlight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StockPriceService.removeIncompleteData and findFirstStockPrices, which every /price request
+ * runs over the stored series, on both the columnar StockPriceSeries and a plain list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockPriceServiceBenchmark {
+
+  @Param({"100", "5000"})
+  private int storedDays;
+
+  @Param({"20"})
+  private int days;
+
+  private StockPriceService stockPriceService;
+
+  private StockPriceSeries series;
+
+  private List<StockPrice> list;
+
+  /**
+   * Build a StockPriceService whose clock is during the trading day after the newest stored day,
+   * so removeIncompleteData has to check the most recent trading day. The collaborators that
+   * aren't used by the benchmarked methods are mocks.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    TradingCalendar tradingCalendar;
+    try (InputStream in = getClass().getResourceAsStream("/trading-calendar/nyse.csv")) {
+      tradingCalendar = TradingCalendar.read(in);
+    }
+    Clock clock = Clock.fixed(
+        ZonedDateTime.of(2020, 6, 15, 12, 0, 0, 0, TradingCalendar.ZONE).toInstant(),
+        TradingCalendar.ZONE);
+    IStockPriceRpsy stockPriceRpsy = mock(IStockPriceRpsy.class);
+    stockPriceService = new StockPriceService(stockPriceRpsy,
+        new StockPriceSeriesStore(stockPriceRpsy), mock(AlphaVantageClient.class),
+        new AlphaVantageDailySeriesReader(), clock, tradingCalendar, new SingleFlight<>(),
+        mock(PriorityRateLimiter.class));
+
+    list = new ArrayList<>(BenchmarkData.stockPrices("IBM", storedDays));
+    series = StockPriceSeries.of("IBM", list);
+  }
+
+  @Benchmark
+  public List<StockPrice> seriesRemoveIncompleteData() {
+    return stockPriceService.removeIncompleteData(series);
+  }
+
+  @Benchmark
+  public List<StockPrice> seriesFindFirstStockPrices() {
+    return stockPriceService.findFirstStockPrices(
+        stockPriceService.removeIncompleteData(series), days);
+  }
+
+  @Benchmark
+  public List<StockPrice> listFindFirstStockPrices() {
+    return stockPriceService.findFirstStockPrices(
+        stockPriceService.removeIncompleteData(list), days);
+  }
+}
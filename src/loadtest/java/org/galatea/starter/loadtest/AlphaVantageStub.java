@@ -0,0 +1,108 @@
+package org.galatea.starter.loadtest;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Random;
+import org.galatea.starter.domain.FixedPointPrice;
+
+/**
+ * Stands in for Alpha Vantage's TIME_SERIES_DAILY API with synthetic prices, so that /price
+ * requests run their whole path (fetch, parse, store, serve) without the network or its quota.
+ */
+public final class AlphaVantageStub {
+
+  // number of days Alpha Vantage returns for outputsize=compact
+  private static final int COMPACT_DAYS = 100;
+
+  private AlphaVantageStub() {
+  }
+
+  /**
+   * Stub both output sizes of the daily series of each of the given symbols. The series end on the
+   * given day, so the application sees them as up to date and doesn't fetch them again.
+   * @param wireMock server to add the stubs to
+   * @param symbols stock symbols to stub
+   * @param mostRecentDay most recent complete trading day
+   * @param fullDays number of days in the full output size
+   */
+  public static void register(final WireMockServer wireMock, final Iterable<String> symbols,
+      final LocalDate mostRecentDay, final int fullDays) throws IOException {
+    for (String symbol : symbols) {
+      stub(wireMock, symbol, "compact", dailySeries(symbol, mostRecentDay, COMPACT_DAYS));
+      stub(wireMock, symbol, "full", dailySeries(symbol, mostRecentDay, fullDays));
+    }
+  }
+
+  private static void stub(final WireMockServer wireMock, final String symbol,
+      final String outputSize, final byte[] body) {
+    wireMock.stubFor(get(urlPathEqualTo("/query"))
+        .withQueryParam("function", equalTo("TIME_SERIES_DAILY"))
+        .withQueryParam("symbol", equalTo(symbol))
+        .withQueryParam("outputsize", equalTo(outputSize))
+        .willReturn(aResponse()
+            .withHeader("Content-Type", "application/json")
+            .withBody(body)));
+  }
+
+  /*
+   * Return a TIME_SERIES_DAILY response with a random walk of prices for the given number of
+   * weekdays up to the given day, most recent first. The walk is seeded by the symbol, so the
+   * compact series is the start of the full one, like Alpha Vantage's.
+   */
+  private static byte[] dailySeries(final String symbol, final LocalDate mostRecentDay,
+      final int days) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(days * 160);
+    Random random = new Random(symbol.hashCode());
+    try (JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+      generator.writeStartObject();
+      generator.writeObjectFieldStart("Meta Data");
+      generator.writeStringField("1. Information",
+          "Daily Prices (open, high, low, close) and Volumes");
+      generator.writeStringField("2. Symbol", symbol);
+      generator.writeStringField("3. Last Refreshed", mostRecentDay.toString());
+      generator.writeStringField("4. Output Size", days > COMPACT_DAYS ? "Full size" : "Compact");
+      generator.writeStringField("5. Time Zone", "US/Eastern");
+      generator.writeEndObject();
+
+      generator.writeObjectFieldStart("Time Series (Daily)");
+      double close = 50 + random.nextInt(200);
+      LocalDate date = mostRecentDay;
+      for (int written = 0; written < days; date = date.minusDays(1)) {
+        if (date.getDayOfWeek().getValue() > 5) {
+          continue;
+        }
+        double open = close * (1 + random.nextGaussian() * 0.01);
+        double high = Math.max(open, close) * (1 + random.nextDouble() * 0.01);
+        double low = Math.min(open, close) * (1 - random.nextDouble() * 0.01);
+        generator.writeObjectFieldStart(date.toString());
+        generator.writeStringField("1. open", price(open));
+        generator.writeStringField("2. high", price(high));
+        generator.writeStringField("3. low", price(low));
+        generator.writeStringField("4. close", price(close));
+        generator.writeStringField("5. volume",
+            Integer.toString(1_000_000 + random.nextInt(9_000_000)));
+        generator.writeEndObject();
+        // walking backwards in time: the previous day closed near this day's open
+        close = Math.max(1, open * (1 + random.nextGaussian() * 0.005));
+        written++;
+      }
+      generator.writeEndObject();
+      generator.writeEndObject();
+    }
+    return out.toByteArray();
+  }
+
+  private static String price(final double price) {
+    return FixedPointPrice.toString(FixedPointPrice.of(BigDecimal.valueOf(price)));
+  }
+}
@@ -0,0 +1,142 @@
+package org.galatea.starter.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Runs a scenario with a fixed number of workers, each making its next request as soon as its
+ * last one returns, for a warmup period and then a measured period.
+ *
+ * <p>This is a closed loop: when the application slows down, fewer requests are made, so the
+ * latencies don't include time requests would have spent queued behind a stalled one. Compare runs
+ * at the same concurrency.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class LoadRunner {
+
+  // latencies are recorded in microseconds, up to a minute, to 3 significant digits
+  private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final long warmupNanos;
+
+  private final long durationNanos;
+
+  /**
+   * Run the given scenario with the given number of workers.
+   * @param name name of the scenario, for the results
+   * @param scenario scenario to run
+   * @param concurrency number of workers
+   * @return
+   */
+  public ScenarioResult run(@NonNull final String name, @NonNull final Scenario scenario,
+      final int concurrency) throws InterruptedException {
+    log.info("Running {} with {} workers", name, concurrency);
+    ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+    try {
+      CountDownLatch started = new CountDownLatch(concurrency);
+      long measureFrom = System.nanoTime() + warmupNanos;
+      long measureTo = measureFrom + durationNanos;
+
+      List<Future<Worker>> futures = new ArrayList<>(concurrency);
+      for (int i = 0; i < concurrency; i++) {
+        Worker worker = new Worker(scenario, measureFrom, measureTo);
+        futures.add(workers.submit(() -> {
+          started.countDown();
+          started.await();
+          worker.run();
+          return worker;
+        }));
+      }
+
+      Histogram latencies = new Histogram(MAX_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+      long errors = 0;
+      for (Future<Worker> future : futures) {
+        Worker worker = await(future);
+        latencies.add(worker.latencies);
+        errors += worker.errors;
+      }
+      return ScenarioResult.builder()
+          .scenario(name)
+          .concurrency(concurrency)
+          .latencies(latencies)
+          .errors(errors)
+          .seconds(durationNanos / 1e9)
+          .build();
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  private static Worker await(final Future<Worker> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Load test worker failed", e.getCause());
+    }
+  }
+
+  /*
+   * Makes requests until measureTo, recording the latency of those that start after measureFrom.
+   * Requests that throw count as errors; the first error is logged.
+   */
+  private static final class Worker {
+
+    private final Scenario scenario;
+
+    private final long measureFrom;
+
+    private final long measureTo;
+
+    private final Histogram latencies = new Histogram(MAX_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+
+    private long errors;
+
+    Worker(final Scenario scenario, final long measureFrom, final long measureTo) {
+      this.scenario = scenario;
+      this.measureFrom = measureFrom;
+      this.measureTo = measureTo;
+    }
+
+    void run() {
+      boolean loggedError = false;
+      for (int iteration = 0; ; iteration++) {
+        long requestStart = System.nanoTime();
+        if (requestStart >= measureTo) {
+          return;
+        }
+        boolean measured = requestStart >= measureFrom;
+        try {
+          scenario.execute(iteration);
+          if (measured) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestStart);
+            latencies.recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (Exception e) {
+          if (measured) {
+            errors++;
+          }
+          if (!loggedError) {
+            log.warn("Request failed", e);
+            loggedError = true;
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,297 @@
+package org.galatea.starter.loadtest;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.jms.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.Application;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.utils.TradingCalendar;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jms.core.JmsTemplate;
+
+/**
+ * Boots the application against an in-memory H2 database, an embedded ActiveMQ broker and a
+ * WireMock server standing in for IEX (the existing mappings) and Alpha Vantage (synthetic
+ * prices), then drives its request paths at a range of concurrencies and writes a report of
+ * throughput and latency percentiles. Started by the loadtest Maven profile; see the Load tests
+ * section of the README.
+ *
+ * <p>Settings are read from system properties:
+ * <ul>
+ * <li>loadtest.scenarios: scenarios to run, out of price, settlement-json, settlement-proto,
+ * jms-json and jms-proto</li>
+ * <li>loadtest.concurrency: numbers of concurrent workers to run each scenario with</li>
+ * <li>loadtest.warmup and loadtest.duration: seconds to warm up and measure each run for</li>
+ * <li>loadtest.symbols: number of stock symbols /price requests cycle through</li>
+ * <li>loadtest.days: days asked for by each /price request</li>
+ * <li>loadtest.agreements: trade agreements per /settlementEngine request</li>
+ * <li>loadtest.report: directory to write the report to</li>
+ * </ul>
+ */
+@Slf4j
+public final class LoadTestMain {
+
+  private static final String ALL_SCENARIOS =
+      "price,settlement-json,settlement-proto,jms-json,jms-proto";
+
+  // days in the full Alpha Vantage output size
+  private static final int FULL_DAYS = 1000;
+
+  private static final long PROCESSED_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private LoadTestMain() {
+  }
+
+  /**
+   * Run the load test. Exits with status 1 if any request failed.
+   * @param args ignored
+   */
+  public static void main(final String[] args) throws Exception {
+    List<String> scenarioNames = list(System.getProperty("loadtest.scenarios", ALL_SCENARIOS));
+    List<Integer> concurrencies = list(System.getProperty("loadtest.concurrency", "1,16"))
+        .stream().map(Integer::valueOf).collect(Collectors.toList());
+    int warmup = Integer.getInteger("loadtest.warmup", 10);
+    int duration = Integer.getInteger("loadtest.duration", 30);
+    int symbolCount = Integer.getInteger("loadtest.symbols", 20);
+    int days = Integer.getInteger("loadtest.days", 20);
+    int agreements = Integer.getInteger("loadtest.agreements", 1);
+    String reportDir = System.getProperty("loadtest.report", "target/loadtest");
+
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("scenarios", scenarioNames);
+    settings.put("concurrency", concurrencies);
+    settings.put("warmupSeconds", warmup);
+    settings.put("durationSeconds", duration);
+    settings.put("symbols", symbolCount);
+    settings.put("days", days);
+    settings.put("agreements", agreements);
+
+    List<String> symbols = IntStream.range(0, symbolCount)
+        .mapToObj(i -> String.format("LT%03d", i)).collect(Collectors.toList());
+
+    WireMockServer wireMock = new WireMockServer(
+        options().dynamicPort().usingFilesUnderClasspath("wiremock"));
+    wireMock.start();
+    ConfigurableApplicationContext context = null;
+    int exitStatus;
+    try {
+      context = new SpringApplicationBuilder(Application.class)
+          .profiles("test")
+          .run(applicationArguments(wireMock.port()));
+
+      TradingCalendar tradingCalendar = context.getBean(TradingCalendar.class);
+      AlphaVantageStub.register(wireMock, symbols,
+          tradingCalendar.getMostRecentTradingDay(context.getBean(Clock.class)), FULL_DAYS);
+
+      String baseUrl = "http://localhost:"
+          + ((WebServerApplicationContext) context).getWebServer().getPort();
+      Map<String, Scenario> scenarios = new LinkedHashMap<>();
+      Map<String, AtomicLong> messagesSent = new LinkedHashMap<>();
+      addScenarios(context, baseUrl, symbols, days, agreements, scenarios, messagesSent);
+
+      ISettlementMissionRpsy missionRpsy = context.getBean(ISettlementMissionRpsy.class);
+      LoadRunner runner = new LoadRunner(TimeUnit.SECONDS.toNanos(warmup),
+          TimeUnit.SECONDS.toNanos(duration));
+      List<ScenarioResult> results = new ArrayList<>();
+      for (String name : scenarioNames) {
+        Scenario scenario = scenarios.get(name);
+        if (scenario == null) {
+          throw new IllegalArgumentException("Unknown scenario " + name + ". Scenarios are: "
+              + scenarios.keySet());
+        }
+        for (int concurrency : concurrencies) {
+          AtomicLong sent = messagesSent.get(name);
+          long missionsBefore = missionRpsy.count();
+          if (sent != null) {
+            sent.set(0);
+          }
+
+          ScenarioResult result = runner.run(name, scenario, concurrency);
+          if (sent != null) {
+            result = result.toBuilder().processedSeconds(result.getSeconds()
+                + awaitProcessed(missionRpsy, missionsBefore + sent.get())).build();
+          }
+          results.add(result);
+        }
+      }
+
+      String table = LoadTestReport.write(Paths.get(reportDir), settings, results);
+      System.out.println();
+      System.out.print(table);
+      System.out.println("Report written to " + Paths.get(reportDir).toAbsolutePath());
+      exitStatus = results.stream().anyMatch(result -> result.getErrors() > 0) ? 1 : 0;
+    } finally {
+      if (context != null) {
+        context.close();
+      }
+      wireMock.stop();
+    }
+    System.exit(exitStatus);
+  }
+
+  /*
+   * Return the properties that point the application at the load test's database and WireMock
+   * server, as command line arguments so that they override application.yml.
+   */
+  private static String[] applicationArguments(final int wireMockPort) {
+    return new String[] {
+        "--server.port=0",
+        "--wiremock.server.port=" + wireMockPort,
+        "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+        "--spring.datasource.driver-class-name=org.h2.Driver",
+        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "--spring.jpa.show-sql=false",
+        "--logging.config=classpath:log4j2-loadtest.yml"};
+  }
+
+  /*
+   * Add the scenarios by name. Scenarios that put messages on a queue count the messages they
+   * sent, so the load test can wait for them to be processed.
+   */
+  private static void addScenarios(final ConfigurableApplicationContext context,
+      final String baseUrl, final List<String> symbols, final int days, final int agreements,
+      final Map<String, Scenario> scenarios, final Map<String, AtomicLong> messagesSent)
+      throws Exception {
+    Environment environment = context.getEnvironment();
+    HttpClient httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+
+    String pricePath = baseUrl + environment.getRequiredProperty("mvc.getPricePath");
+    scenarios.put("price", iteration -> send(httpClient, HttpRequest.newBuilder(URI.create(
+        pricePath + "?symbol=" + symbols.get(iteration % symbols.size()) + "&days=" + days))
+        .header("Accept", "application/json").GET()));
+
+    URI settlePath = URI.create(baseUrl + environment.getRequiredProperty("mvc.settleMissionPath"));
+    byte[] json = objectMapper.writeValueAsBytes(TradeAgreementMessages.builder()
+        .agreements(tradeAgreements(agreements)).build());
+    scenarios.put("settlement-json", iteration -> send(httpClient,
+        HttpRequest.newBuilder(settlePath)
+            .header("Content-Type", "application/json")
+            .header("Accept", "application/json")
+            .POST(BodyPublishers.ofByteArray(json))));
+
+    byte[] proto = TradeAgreementProtoMessages.newBuilder()
+        .addAllMessage(tradeAgreements(agreements).stream().map(LoadTestMain::toProto)
+            .collect(Collectors.toList()))
+        .build().toByteArray();
+    scenarios.put("settlement-proto", iteration -> send(httpClient,
+        HttpRequest.newBuilder(settlePath)
+            .header("Content-Type", "application/x-protobuf")
+            .header("Accept", "application/x-protobuf")
+            .POST(BodyPublishers.ofByteArray(proto))));
+
+    JmsTemplate jmsTemplate = new JmsTemplate(context.getBean(ConnectionFactory.class));
+    TradeAgreementMessage agreement = tradeAgreements(1).get(0);
+
+    String jsonQueue = environment.getRequiredProperty("jms.agreement-queue-json");
+    String jsonMessage = objectMapper.writeValueAsString(agreement);
+    AtomicLong jsonSent = new AtomicLong();
+    messagesSent.put("jms-json", jsonSent);
+    scenarios.put("jms-json", iteration -> {
+      jmsTemplate.convertAndSend(jsonQueue, jsonMessage);
+      jsonSent.incrementAndGet();
+    });
+
+    String protoQueue = environment.getRequiredProperty("jms.agreement-queue-proto");
+    byte[] protoMessage = toProto(agreement).toByteArray();
+    AtomicLong protoSent = new AtomicLong();
+    messagesSent.put("jms-proto", protoSent);
+    scenarios.put("jms-proto", iteration -> {
+      jmsTemplate.convertAndSend(protoQueue, protoMessage);
+      protoSent.incrementAndGet();
+    });
+  }
+
+  /*
+   * Send a request and throw if it didn't succeed. The body is read in full, since a response
+   * isn't complete until it has been written.
+   */
+  private static void send(final HttpClient httpClient, final HttpRequest.Builder request)
+      throws Exception {
+    HttpResponse<byte[]> response = httpClient.send(request.timeout(Duration.ofSeconds(60))
+        .build(), BodyHandlers.ofByteArray());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException(response.request().uri() + " returned "
+          + response.statusCode() + ": " + new String(response.body()));
+    }
+  }
+
+  /*
+   * Wait until the settlement missions table has the given number of rows, and return the
+   * seconds waited.
+   */
+  private static double awaitProcessed(final ISettlementMissionRpsy missionRpsy,
+      final long missions) throws InterruptedException {
+    long start = System.nanoTime();
+    long deadline = System.currentTimeMillis() + PROCESSED_TIMEOUT_MILLIS;
+    while (missionRpsy.count() < missions) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new IllegalStateException("Messages weren't processed within "
+            + PROCESSED_TIMEOUT_MILLIS + "ms");
+      }
+      Thread.sleep(20);
+    }
+    return (System.nanoTime() - start) / 1e9;
+  }
+
+  private static List<TradeAgreementMessage> tradeAgreements(final int count) {
+    Random random = new Random(count);
+    List<TradeAgreementMessage> agreements = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      agreements.add(TradeAgreementMessage.builder()
+          .instrument("INST-" + random.nextInt(50))
+          .internalParty("INT-" + random.nextInt(10))
+          .externalParty("EXT-" + random.nextInt(100))
+          .buySell(random.nextBoolean() ? "B" : "S")
+          .qty((double) (1 + random.nextInt(10_000))).build());
+    }
+    return agreements;
+  }
+
+  private static TradeAgreementProtoMessage toProto(final TradeAgreementMessage agreement) {
+    return TradeAgreementProtoMessage.newBuilder()
+        .setInstrument(agreement.getInstrument())
+        .setInternalParty(agreement.getInternalParty())
+        .setExternalParty(agreement.getExternalParty())
+        .setBuySell(agreement.getBuySell())
+        .setQty(agreement.getQty()).build();
+  }
+
+  private static List<String> list(final String value) {
+    return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,115 @@
+package org.galatea.starter.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Writes load test results to a directory.
+ *
+ * <p>The report is made up of:
+ * <ul>
+ * <li>report.txt: a table of throughput and latency percentiles per scenario and concurrency</li>
+ * <li>report.json: the same, for comparing runs with a script</li>
+ * <li>SCENARIO-cCONCURRENCY.hgrm: the full latency distribution of each run, which can be plotted
+ * with HdrHistogram's plotter</li>
+ * </ul>
+ */
+public final class LoadTestReport {
+
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+  private static final String HEADER_FORMAT =
+      "%-18s %5s %9s %7s %10s %10s %9s %9s %9s %9s %9s%n";
+
+  private static final String ROW_FORMAT =
+      "%-18s %5d %9d %7d %10.1f %10s %9.2f %9.2f %9.2f %9.2f %9.2f%n";
+
+  private LoadTestReport() {
+  }
+
+  /**
+   * Write the report for the given results into the given directory, and return the table.
+   * @param directory directory to write to, created if it doesn't exist
+   * @param settings settings the load test ran with, recorded in the report
+   * @param results results to report
+   * @return
+   */
+  public static String write(final Path directory, final Map<String, Object> settings,
+      final List<ScenarioResult> results) throws IOException {
+    Files.createDirectories(directory);
+
+    String table = table(results);
+    Files.write(directory.resolve("report.txt"), table.getBytes(StandardCharsets.UTF_8));
+
+    ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    ObjectNode root = mapper.createObjectNode();
+    root.set("settings", mapper.valueToTree(settings));
+    ArrayNode rows = root.putArray("results");
+    for (ScenarioResult result : results) {
+      ObjectNode row = rows.addObject()
+          .put("scenario", result.getScenario())
+          .put("concurrency", result.getConcurrency())
+          .put("requests", result.getRequests())
+          .put("errors", result.getErrors())
+          .put("throughput", result.getThroughput());
+      if (!Double.isNaN(result.getProcessedSeconds())) {
+        row.put("processedThroughput", result.getProcessedThroughput());
+      }
+      ObjectNode latency = row.putObject("latencyMillis");
+      Histogram histogram = result.getLatencies();
+      latency.put("mean", histogram.getMean() / 1000);
+      for (double percentile : PERCENTILES) {
+        latency.put("p" + formatPercentile(percentile),
+            histogram.getValueAtPercentile(percentile) / 1000.0);
+      }
+      latency.put("max", histogram.getMaxValue() / 1000.0);
+
+      try (PrintStream out = new PrintStream(
+          Files.newOutputStream(directory.resolve(
+              result.getScenario() + "-c" + result.getConcurrency() + ".hgrm")),
+          false, StandardCharsets.UTF_8.name())) {
+        // microseconds recorded, reported in milliseconds
+        histogram.outputPercentileDistribution(out, 1000.0);
+      }
+    }
+    mapper.writeValue(directory.resolve("report.json").toFile(), root);
+    return table;
+  }
+
+  private static String table(final List<ScenarioResult> results) {
+    StringWriter table = new StringWriter();
+    table.write(String.format(Locale.ROOT, HEADER_FORMAT, "scenario", "conc", "requests",
+        "errors", "req/s", "done/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+    for (ScenarioResult result : results) {
+      Histogram histogram = result.getLatencies();
+      table.write(String.format(Locale.ROOT, ROW_FORMAT, result.getScenario(),
+          result.getConcurrency(), result.getRequests(), result.getErrors(),
+          result.getThroughput(),
+          Double.isNaN(result.getProcessedSeconds()) ? "-"
+              : String.format(Locale.ROOT, "%.1f", result.getProcessedThroughput()),
+          histogram.getValueAtPercentile(PERCENTILES[0]) / 1000.0,
+          histogram.getValueAtPercentile(PERCENTILES[1]) / 1000.0,
+          histogram.getValueAtPercentile(PERCENTILES[2]) / 1000.0,
+          histogram.getValueAtPercentile(PERCENTILES[3]) / 1000.0,
+          histogram.getMaxValue() / 1000.0));
+    }
+    return table.toString();
+  }
+
+  private static String formatPercentile(final double percentile) {
+    return percentile == Math.rint(percentile) ? Integer.toString((int) percentile)
+        : Double.toString(percentile);
+  }
+}
@@ -0,0 +1,14 @@
+package org.galatea.starter.loadtest;
+
+/**
+ * One kind of request the load test drives, e.g. a /price call or a message put on a queue.
+ */
+@FunctionalInterface
+public interface Scenario {
+
+  /**
+   * Make one request, and throw if it failed.
+   * @param iteration number of requests this worker has made so far, for varying the requests
+   */
+  void execute(int iteration) throws Exception;
+}
@@ -0,0 +1,54 @@
+package org.galatea.starter.loadtest;
+
+import lombok.Builder;
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Measurements of one scenario at one concurrency.
+ */
+@Builder(toBuilder = true)
+@Value
+public class ScenarioResult {
+
+  private String scenario;
+
+  private int concurrency;
+
+  // latencies of the requests that succeeded, in microseconds
+  private Histogram latencies;
+
+  private long errors;
+
+  // seconds the measured requests were made over
+  private double seconds;
+
+  // for asynchronous scenarios, seconds until every measured request had been processed. NaN for
+  // scenarios that are done when the request returns.
+  @Builder.Default
+  private double processedSeconds = Double.NaN;
+
+  /**
+   * Return the number of requests that succeeded.
+   * @return
+   */
+  public long getRequests() {
+    return latencies.getTotalCount();
+  }
+
+  /**
+   * Return the number of requests that succeeded per second.
+   * @return
+   */
+  public double getThroughput() {
+    return getRequests() / seconds;
+  }
+
+  /**
+   * Return the number of requests processed per second for asynchronous scenarios, or NaN.
+   * @return
+   */
+  public double getProcessedThroughput() {
+    return getRequests() / processedSeconds;
+  }
+}
@@ -7,17 +7,23 @@ import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.aspect.LogAspect;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.utils.metrics.LatencyEndpoint;
+import org.galatea.starter.utils.metrics.LatencyTimers;
+import org.galatea.starter.utils.metrics.LatencyTimingAspect;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Slf4j
 @Configuration
 @EnableAspectJAutoProxy
 @EnableCaching
 @EnableFeignClients
+@EnableScheduling
 public class AppConfig {
 
   /**
@@ -37,6 +43,32 @@ public class AppConfig {
     return new LogAspect();
   }
 
+  /**
+   * Latency timers of the web requests, and of the beans annotated with @LatencyTimed.
+   */
+  @Bean
+  public LatencyTimers latencyTimers(
+      @Value("${metrics.latency.significant-digits}") final int significantDigits,
+      @Value("${metrics.latency.max-timers}") final int maxTimers) {
+    return new LatencyTimers(significantDigits, maxTimers);
+  }
+
+  /**
+   * Create a LatencyTimingAspect for use with the @LatencyTimed annotation.
+   */
+  @Bean
+  public LatencyTimingAspect latencyTimingAspect(final LatencyTimers latencyTimers) {
+    return new LatencyTimingAspect(latencyTimers);
+  }
+
+  /**
+   * Expose the latency timers at /actuator/latency.
+   */
+  @Bean
+  public LatencyEndpoint latencyEndpoint(final LatencyTimers latencyTimers) {
+    return new LatencyEndpoint(latencyTimers);
+  }
+
   /**
    * Returns an anonymous class implementing the IAgreementTransformer interface. Demonstrates the
    * use of a lambda function which can stand in as an anonymous class with a single method:
@@ -1,13 +1,25 @@
 package org.galatea.starter;
 
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.function.BiConsumer;
 import javax.jms.ConnectionFactory;
 import javax.jms.Message;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.entrypoint.SettlementJmsBatchListener;
+import org.galatea.starter.utils.jms.BatchMessageListenerContainer;
+import org.galatea.starter.utils.jms.DeadLetterLog;
+import org.galatea.starter.utils.jms.DeadLetterReplayer;
 import org.galatea.starter.utils.jms.FuseJmsListenerContainerFactory;
+import org.galatea.starter.utils.jms.ListenerContainerSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.jms.annotation.EnableJms;
 import org.springframework.jms.annotation.JmsListenerConfigurer;
 import org.springframework.jms.config.JmsListenerContainerFactory;
@@ -32,6 +44,33 @@ public class JmsConfig implements JmsListenerConfigurer {
         "Message {} failed to process after retries.  Removing message from queue", msg, err);
   }
 
+  /**
+   * Returns the log that the listener containers append failed messages to, so that they can be
+   * replayed by the deadLetterReplayer.
+   */
+  @Bean
+  public DeadLetterLog deadLetterLog(
+      @Value("${jms.dead-letter.directory}") final String directory,
+      @Value("${jms.dead-letter.segment-size}") final int segmentSize) throws IOException {
+    return new DeadLetterLog(Paths.get(directory), segmentSize);
+  }
+
+  /**
+   * Returns a replayer of the failed messages in the deadLetterLog, which replays the messages of
+   * each agreement queue through the batch listener of that queue.
+   */
+  @Bean
+  public DeadLetterReplayer deadLetterReplayer(final DeadLetterLog deadLetterLog,
+      final SettlementJmsBatchListener settlementJmsBatchListener,
+      @Value("${jms.agreement-queue-json}") final String jsonQueue,
+      @Value("${jms.agreement-queue-proto}") final String protoQueue,
+      @Value("${jms.dead-letter.replay-batch-size}") final int batchSize) {
+    return new DeadLetterReplayer(deadLetterLog, ImmutableMap.of(
+        jsonQueue, settlementJmsBatchListener::settleAgreementsJson,
+        protoQueue, settlementJmsBatchListener::settleAgreementsProto),
+        batchSize);
+  }
+
   /**
    * Returns a message converter to handle JSON formatted messages.
    */
@@ -45,18 +84,28 @@ public class JmsConfig implements JmsListenerConfigurer {
    * listener container which adds tracing of how the message is handled. We also manually set the
    * message converter to ensure that it is using the correct message format.
    *
+   * <p>Each container is tuned (concurrency, prefetch, receive timeout, idle consumers, cache
+   * level, messages per task and adaptive scaling) by the jms.listener settings, which can be
+   * overridden per queue under jms.listener.queues. See ListenerContainerSettings.
+   *
    * @param queueConnectionFactory injected by spring
    * @param configurer injected by spring
+   * @param environment injected by spring
    * @return the factory.
    */
   @Bean
   public JmsListenerContainerFactory<DefaultMessageListenerContainer> jmsListenerContainerFactory(
       final ConnectionFactory queueConnectionFactory,
       final DefaultJmsListenerContainerFactoryConfigurer configurer,
-      final BiConsumer<Message, Exception> failedMessageConsumer) {
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final DeadLetterLog deadLetterLog,
+      final Environment environment) {
 
-    FuseJmsListenerContainerFactory listenerFactory =
-        new FuseJmsListenerContainerFactory(failedMessageConsumer);
+    Binder binder = Binder.get(environment);
+    FuseJmsListenerContainerFactory listenerFactory = new FuseJmsListenerContainerFactory(
+        failedMessageConsumer,
+        queue -> ListenerContainerSettings.bind(binder, "jms.listener", queue));
+    listenerFactory.setDeadLetterLog(deadLetterLog);
 
     // This provides all boot's default to this factory, including the message converter
     // Note that we don't use a caching connection factory due to this:
@@ -64,8 +113,6 @@ public class JmsConfig implements JmsListenerConfigurer {
     // http://docs.spring.io/spring-framework/docs/current/javadoc-api/org/springframework/
     // jms/listener/DefaultMessageListenerContainer.html
     configurer.configure(listenerFactory, queueConnectionFactory);
-
-    // TODO: override any defaults in the listener factory before we return the object
     return listenerFactory;
   }
 
@@ -98,6 +145,58 @@ public class JmsConfig implements JmsListenerConfigurer {
   public void configureJmsListeners(final JmsListenerEndpointRegistrar registrar) {
     registrar.setMessageHandlerMethodFactory(jmsHandlerMethodFactory());
   }
-}
 
+  /**
+   * Consumes the JSON agreement queue in batches when jms.batch.enabled is set. See
+   * BatchMessageListenerContainer.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "jms.batch.enabled", havingValue = "true")
+  public BatchMessageListenerContainer agreementJsonBatchContainer(
+      final ConnectionFactory queueConnectionFactory,
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final DeadLetterLog deadLetterLog,
+      final SettlementJmsBatchListener settlementJmsBatchListener,
+      @Value("${jms.agreement-queue-json}") final String queue,
+      @Value("${jms.batch.max-size}") final int maxSize,
+      @Value("${jms.batch.max-wait}") final long maxWait,
+      @Value("${jms.batch.consumers}") final int consumers) {
+    return BatchMessageListenerContainer.builder()
+        .connectionFactory(queueConnectionFactory)
+        .destinationName(queue)
+        .listener(settlementJmsBatchListener::settleAgreementsJson)
+        .failedMessageConsumer(failedMessageConsumer)
+        .deadLetterLog(deadLetterLog)
+        .maxBatchSize(maxSize)
+        .maxWaitMillis(maxWait)
+        .concurrentConsumers(consumers)
+        .build();
+  }
 
+  /**
+   * Consumes the protobuf agreement queue in batches when jms.batch.enabled is set. See
+   * BatchMessageListenerContainer.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "jms.batch.enabled", havingValue = "true")
+  public BatchMessageListenerContainer agreementProtoBatchContainer(
+      final ConnectionFactory queueConnectionFactory,
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final DeadLetterLog deadLetterLog,
+      final SettlementJmsBatchListener settlementJmsBatchListener,
+      @Value("${jms.agreement-queue-proto}") final String queue,
+      @Value("${jms.batch.max-size}") final int maxSize,
+      @Value("${jms.batch.max-wait}") final long maxWait,
+      @Value("${jms.batch.consumers}") final int consumers) {
+    return BatchMessageListenerContainer.builder()
+        .connectionFactory(queueConnectionFactory)
+        .destinationName(queue)
+        .listener(settlementJmsBatchListener::settleAgreementsProto)
+        .failedMessageConsumer(failedMessageConsumer)
+        .deadLetterLog(deadLetterLog)
+        .maxBatchSize(maxSize)
+        .maxWaitMillis(maxWait)
+        .concurrentConsumers(consumers)
+        .build();
+  }
+}
@@ -2,12 +2,20 @@ package org.galatea.starter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Sets;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.utils.FuseHttpTraceRepository;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
+import org.galatea.starter.utils.http.converter.StockPriceResponseJsonConverter;
+import org.galatea.starter.utils.http.converter.StockPriceResponseProtoConverter;
+import org.galatea.starter.utils.metrics.LatencyTimers;
 import org.galatea.starter.utils.rest.FuseHttpTraceFilter;
+import org.galatea.starter.utils.rest.PayloadCapturePolicy;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.Include;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
@@ -18,6 +26,8 @@ import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -33,23 +43,82 @@ public class MvcConfig implements WebMvcConfigurer {
   public static final MediaType APPLICATION_EXCEL = new MediaType("application", "vnd.ms-excel");
   public static final String APPLICATION_EXCEL_VALUE = "application/vnd.ms-excel";
 
+  @Value("${mvc.getPricesPath}")
+  private String pricesPath;
+
+  @Value("${mvc.async.threads}")
+  private int asyncThreads;
+
+  @Value("${mvc.async.request-timeout}")
+  private long asyncRequestTimeout;
+
+  @Value("${mvc.trace.buffer-size}")
+  private int traceBufferSize;
+
+  @Value("${mvc.trace.batch-size}")
+  private int traceBatchSize;
+
+  @Value("${mvc.trace.flush-interval}")
+  private long traceFlushInterval;
+
+  @Value("${mvc.trace.sample-rate}")
+  private double traceSampleRate;
+
+  @Value("${mvc.trace.include}")
+  private Include[] traceIncludes;
+
+  @Value("${mvc.max-size-trace-payload}")
+  private int maxTracePayloadSize;
+
+  @Value("${mvc.trace.payload.skip-paths}")
+  private String[] tracePayloadSkipPaths;
+
+  @Value("${mvc.trace.payload.skip-content-types}")
+  private String tracePayloadSkipContentTypes;
+
+  @Value("${mvc.trace.payload.pool-size}")
+  private int tracePayloadPoolSize;
+
   /**
-   * This is used to trace web requests and store that trace info.
+   * This is used to trace web requests and store that trace info, and to time them.
    *
    * @return the trace filter
    */
   @Bean
-  public HttpTraceFilter httpTraceFilter() {
+  public HttpTraceFilter httpTraceFilter(final LatencyTimers latencyTimers) {
+    // streamed responses are skipped, since tracing buffers the whole response body. They are
+    // still timed
     return new FuseHttpTraceFilter(fuseHttpTraceRepository(), httpExchangeTracer(),
-        path -> path.startsWith("/trace"));
+        path -> path.startsWith("/trace") || path.equals(pricesPath), payloadCapturePolicy(),
+        latencyTimers);
   }
 
   /**
-   * Repository for storing trace info.
+   * Decides which request and response bodies the trace filter captures, and how much of them.
+   */
+  @Bean
+  public PayloadCapturePolicy payloadCapturePolicy() {
+    return PayloadCapturePolicy.builder()
+        .maxPayloadSize(maxTracePayloadSize)
+        .pathsToSkip(path -> Arrays.stream(tracePayloadSkipPaths).anyMatch(path::startsWith))
+        .contentTypesToSkip(MediaType.parseMediaTypes(tracePayloadSkipContentTypes))
+        .poolSize(tracePayloadPoolSize)
+        .build();
+  }
+
+  /**
+   * Repository for storing trace info. Traces are logged and stored by a background thread, see
+   * FuseHttpTraceRepository.
    */
   @Bean
   public FuseHttpTraceRepository fuseHttpTraceRepository() {
-    return new FuseHttpTraceRepository(new ObjectMapper());
+    return FuseHttpTraceRepository.builder()
+        .objectMapper(new ObjectMapper())
+        .bufferSize(traceBufferSize)
+        .batchSize(traceBatchSize)
+        .flushIntervalMillis(traceFlushInterval)
+        .sampleRate(traceSampleRate)
+        .build();
   }
 
   /**
@@ -59,8 +128,40 @@ public class MvcConfig implements WebMvcConfigurer {
    */
   @Bean
   public HttpExchangeTracer httpExchangeTracer() {
-    // Trace everything!
-    return new HttpExchangeTracer(Sets.newHashSet(Include.values()));
+    // everything by default, see mvc.trace.include
+    return new HttpExchangeTracer(Sets.newHashSet(traceIncludes));
+  }
+
+  /**
+   * Threads that write streaming responses. Each one runs with the MDC of the request it writes
+   * the response of, so that its logs and the audit headers carry the request ids.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(asyncThreads);
+    executor.setMaxPoolSize(asyncThreads);
+    executor.setThreadNamePrefix("mvc-async-");
+    executor.setTaskDecorator(task -> {
+      Map<String, String> requestMdc = MDC.getCopyOfContextMap();
+      return () -> {
+        if (requestMdc != null) {
+          MDC.setContextMap(requestMdc);
+        }
+        try {
+          task.run();
+        } finally {
+          MDC.clear();
+        }
+      };
+    });
+    return executor;
+  }
+
+  @Override
+  public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+    configurer.setTaskExecutor(mvcAsyncExecutor());
+    configurer.setDefaultTimeout(asyncRequestTimeout);
   }
 
   @Override
@@ -78,6 +179,7 @@ public class MvcConfig implements WebMvcConfigurer {
     configurer.mediaType("xml", MediaType.APPLICATION_XML);
     configurer.mediaType("csv", TEXT_CSV);
     configurer.mediaType("xlsx", APPLICATION_EXCEL);
+    configurer.mediaType("proto", ProtobufHttpMessageConverter.PROTOBUF);
 
   }
 
@@ -86,6 +188,10 @@ public class MvcConfig implements WebMvcConfigurer {
     // The Protobuf converter MUST be added first, otherwise Jackson will try and handle our
     // protobuf to JSON conversion (and will of course, fail).
     converters.add(new ProtobufHttpMessageConverter()); // Protobuf, XML & JSON supported
+    // /price responses are streamed as JSON or a columnar protobuf message, rather than being
+    // bound by Jackson
+    converters.add(new StockPriceResponseJsonConverter());
+    converters.add(new StockPriceResponseProtoConverter());
     MappingJackson2HttpMessageConverter jacksonConverter =
         new MappingJackson2HttpMessageConverter();
     jacksonConverter.setPrettyPrint(true);
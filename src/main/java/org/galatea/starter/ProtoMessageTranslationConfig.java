@@ -1,13 +1,17 @@
 package org.galatea.starter;
 
-import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementProtoReader;
+import org.galatea.starter.utils.jms.BytesMessageBody;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.galatea.starter.utils.translation.TranslationException;
 import org.springframework.context.annotation.Bean;
@@ -17,27 +21,21 @@ import org.springframework.context.annotation.Configuration;
 public class ProtoMessageTranslationConfig {
 
   /**
-   * Implements a translator to convert binary protobuf messages to TradeAgreements
+   * Implements a translator to convert JMS messages holding either a TradeAgreementProtoMessage or
+   * a TradeAgreementProtoMessages to TradeAgreements.
    *
-   * <p>This translator is used for the protobuf JMS listener. The SimpleMessageConverter we use in
-   * that listener gives back a byte[] containing a serialized TradeAgreementProtoMessage, so we
-   * need to perform two steps to get to the TradeAgreement we want: convert the byte array back to
-   * a TradeAgreementProtoMessage and then translate it to the internal domain type.
+   * <p>This translator is used for the protobuf JMS listeners. It parses the agreements straight
+   * from the message body, without copying the body out of the message (for ActiveMQ messages) or
+   * building TradeAgreementProtoMessages along the way. See TradeAgreementProtoReader.
    */
   @Bean
-  public ITranslator<byte[], TradeAgreement> tradeAgreementBinaryProtobufTranslator(
-      final ITranslator<TradeAgreementProtoMessage, TradeAgreement>
-          tradeAgreementProtoMessageTranslator) {
+  public ITranslator<BytesMessage, List<TradeAgreement>> tradeAgreementBytesMessageTranslator() {
     return msg -> {
-      TradeAgreementProtoMessage message;
-
       try {
-        message = TradeAgreementProtoMessage.parseFrom(msg);
-      } catch (InvalidProtocolBufferException e) {
-        throw new TranslationException("Could not translate the message to a trade agreement.", e);
+        return TradeAgreementProtoReader.read(BytesMessageBody.codedInputStream(msg));
+      } catch (IOException | JMSException e) {
+        throw new TranslationException("Could not translate the message to trade agreements.", e);
       }
-
-      return tradeAgreementProtoMessageTranslator.translate(message);
     };
   }
 
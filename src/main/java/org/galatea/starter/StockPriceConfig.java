@@ -0,0 +1,111 @@
+package org.galatea.starter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.utils.TradingCalendar;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Priority;
+import org.galatea.starter.utils.concurrent.SingleFlight;
+import org.galatea.starter.utils.concurrent.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+@Configuration
+public class StockPriceConfig {
+
+  /**
+   * Coalesces concurrent Alpha Vantage fetches for the same symbol and output size, so that a burst
+   * of requests for a cold symbol costs a single call against our rate-limited quota. The number
+   * of originated and coalesced fetches is published as the alphavantage.fetches metric.
+   */
+  @Bean
+  public SingleFlight<String, StockPriceSeries> alphaVantageFetches(
+      final MeterRegistry meterRegistry) {
+    SingleFlight<String, StockPriceSeries> fetches = new SingleFlight<>();
+
+    FunctionCounter.builder("alphavantage.fetches", fetches, SingleFlight::getOriginatedCount)
+        .description("Alpha Vantage fetches, by whether they called the API or waited for an "
+            + "in-flight call for the same symbol and output size")
+        .tag("type", "originated")
+        .register(meterRegistry);
+    FunctionCounter.builder("alphavantage.fetches", fetches, SingleFlight::getCoalescedCount)
+        .description("Alpha Vantage fetches, by whether they called the API or waited for an "
+            + "in-flight call for the same symbol and output size")
+        .tag("type", "coalesced")
+        .register(meterRegistry);
+    Gauge.builder("alphavantage.fetches.inflight", fetches, SingleFlight::getInFlightCount)
+        .description("Alpha Vantage fetches currently in flight")
+        .register(meterRegistry);
+
+    return fetches;
+  }
+
+  /**
+   * Limits the rate of calls to Alpha Vantage to what our API key allows, letting calls that a
+   * user is waiting on overtake background refreshes. Calls are rejected once max-queued calls
+   * are waiting, or after waiting longer than the max-wait-seconds for their priority. The queue
+   * depth, available tokens, rejected calls and time spent waiting for a token are published as
+   * the alphavantage.ratelimit.* metrics.
+   */
+  @Bean
+  public PriorityRateLimiter alphaVantageRateLimiter(final MeterRegistry meterRegistry,
+      @Value("${alpha-vantage.rate-limit.requests-per-minute}") final long requestsPerMinute,
+      @Value("${alpha-vantage.rate-limit.burst}") final long burst,
+      @Value("${alpha-vantage.rate-limit.max-queued}") final int maxQueued,
+      @Value("${alpha-vantage.rate-limit.max-wait-seconds.interactive}")
+      final long interactiveMaxWait,
+      @Value("${alpha-vantage.rate-limit.max-wait-seconds.background}")
+      final long backgroundMaxWait) {
+    Map<Priority, Duration> maxWait = new EnumMap<>(Priority.class);
+    maxWait.put(Priority.INTERACTIVE, Duration.ofSeconds(interactiveMaxWait));
+    maxWait.put(Priority.BACKGROUND, Duration.ofSeconds(backgroundMaxWait));
+    PriorityRateLimiter rateLimiter = new PriorityRateLimiter(
+        new TokenBucket(burst, requestsPerMinute, Duration.ofMinutes(1)), "alphavantage",
+        maxQueued, maxWait);
+
+    Gauge.builder("alphavantage.ratelimit.queued", rateLimiter, PriorityRateLimiter::getQueueDepth)
+        .description("Alpha Vantage calls waiting for a rate limit token")
+        .register(meterRegistry);
+    Gauge.builder("alphavantage.ratelimit.tokens", rateLimiter,
+        PriorityRateLimiter::getAvailableTokens)
+        .description("Alpha Vantage rate limit tokens available")
+        .register(meterRegistry);
+    FunctionCounter.builder("alphavantage.ratelimit.rejected", rateLimiter,
+        PriorityRateLimiter::getRejectedCount)
+        .description("Alpha Vantage calls rejected because the rate limit was saturated")
+        .register(meterRegistry);
+    for (Priority priority : Priority.values()) {
+      FunctionTimer.builder("alphavantage.ratelimit.wait", rateLimiter,
+          limiter -> limiter.getWaitCount(priority),
+          limiter -> limiter.getWaitTime(priority, TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+          .description("Time Alpha Vantage calls spent waiting for a rate limit token")
+          .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+          .register(meterRegistry);
+    }
+
+    return rateLimiter;
+  }
+
+  /**
+   * The NYSE trading calendar, read from the holidays and early closes in trading-calendar.file.
+   */
+  @Bean
+  public TradingCalendar tradingCalendar(
+      @Value("${trading-calendar.file}") final Resource file) throws IOException {
+    try (InputStream in = file.getInputStream()) {
+      return TradingCalendar.read(in);
+    }
+  }
+}
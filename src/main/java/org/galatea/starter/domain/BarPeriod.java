@@ -0,0 +1,35 @@
+package org.galatea.starter.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Period covered by each bar when daily stock prices are aggregated into bars.
+ */
+public enum BarPeriod {
+
+  // Monday to Friday
+  WEEK {
+    @Override
+    public long periodOf(final int epochDay) {
+      // 1970-01-01 was a Thursday, so weeks counted from the epoch would start on Thursdays
+      return Math.floorDiv(epochDay + 3, 7);
+    }
+  },
+
+  // calendar month
+  MONTH {
+    @Override
+    public long periodOf(final int epochDay) {
+      LocalDate date = LocalDate.ofEpochDay(epochDay);
+      return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+  };
+
+  /**
+   * Return a number that identifies the period the given day belongs to. Days in the same period
+   * get the same number, and later periods get larger numbers.
+   * @param epochDay day as a number of days since the epoch
+   * @return
+   */
+  public abstract long periodOf(int epochDay);
+}
@@ -0,0 +1,256 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Prices represented as longs scaled by 10^SCALE, e.g. 121.91 is 1219100.
+ *
+ * <p>Prices are kept in this form on the hot path (reading Alpha Vantage responses, StockPriceInfo,
+ * StockPriceSeries and the JSON and protobuf responses), so that they cost no allocation and are
+ * compared as primitives. BigDecimal is only used at the edges: the database column, which is still
+ * DECIMAL(12, 4) through JpaConverter, and code that builds prices from BigDecimals.
+ */
+public final class FixedPointPrice {
+
+  /**
+   * Number of decimal places kept. Matches the scale of the StockPriceInfo columns.
+   */
+  public static final int SCALE = 4;
+
+  // 10^SCALE
+  private static final double FACTOR = 10_000;
+
+  /**
+   * Maximum number of characters in a formatted price: a sign, 19 digits and a decimal point.
+   */
+  public static final int MAX_LENGTH = 21;
+
+  private FixedPointPrice() {
+  }
+
+  /**
+   * Convert a BigDecimal to a scaled price, rounding half up to SCALE decimal places. Throws
+   * ArithmeticException if the price is too large for a scaled long.
+   * @param price price to convert
+   * @return
+   */
+  public static long of(final BigDecimal price) {
+    return price.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+  }
+
+  /**
+   * Convert a scaled price to a BigDecimal with SCALE decimal places.
+   * @param price scaled price
+   * @return
+   */
+  public static BigDecimal toBigDecimal(final long price) {
+    return BigDecimal.valueOf(price, SCALE);
+  }
+
+  /**
+   * Convert a scaled price to a double, for calculations that don't need exact prices.
+   * @param price scaled price
+   * @return
+   */
+  public static double toDouble(final long price) {
+    return price / FACTOR;
+  }
+
+  /**
+   * Parse a plain decimal number (optional sign, digits and optional fraction, no exponent) to a
+   * scaled price, without creating a BigDecimal. Digits beyond SCALE decimal places are rounded
+   * half up, like of(BigDecimal). Throws NumberFormatException if the characters aren't a plain
+   * decimal number, or it is too large for a scaled long.
+   * @param text characters to parse
+   * @param offset index of the first character
+   * @param length number of characters
+   * @return
+   */
+  public static long parse(final char[] text, final int offset, final int length) {
+    int end = offset + length;
+    int i = offset;
+    boolean negative = false;
+    if (i < end && (text[i] == '-' || text[i] == '+')) {
+      negative = text[i] == '-';
+      i++;
+    }
+
+    long value = 0;
+    int digits = 0;
+    int fractionDigits = -1; // -1 until the decimal point
+    boolean roundUp = false;
+    try {
+      for (; i < end; i++) {
+        char c = text[i];
+        if (c == '.' && fractionDigits < 0) {
+          fractionDigits = 0;
+        } else if (c < '0' || c > '9') {
+          throw numberFormatException(text, offset, length);
+        } else if (fractionDigits < SCALE) {
+          value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+          digits++;
+          if (fractionDigits >= 0) {
+            fractionDigits++;
+          }
+        } else {
+          // only the first digit past SCALE decides the rounding
+          if (fractionDigits == SCALE) {
+            roundUp = c >= '5';
+          }
+          digits++;
+          fractionDigits++;
+        }
+      }
+      if (digits == 0) {
+        throw numberFormatException(text, offset, length);
+      }
+      for (int scale = Math.max(fractionDigits, 0); scale < SCALE; scale++) {
+        value = Math.multiplyExact(value, 10);
+      }
+      if (roundUp) {
+        value = Math.addExact(value, 1);
+      }
+    } catch (ArithmeticException e) {
+      throw numberFormatException(text, offset, length);
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parse a plain decimal number to a scaled price. See parse(char[], int, int).
+   * @param text text to parse
+   * @return
+   */
+  public static long parse(final String text) {
+    return parse(text.toCharArray(), 0, text.length());
+  }
+
+  /**
+   * Write a scaled price as a decimal number with SCALE decimal places into the given buffer, which
+   * must have room for MAX_LENGTH characters from offset.
+   * @param price scaled price
+   * @param buffer buffer to write to
+   * @param offset index to write the first character at
+   * @return the number of characters written
+   */
+  public static int format(final long price, final char[] buffer, final int offset) {
+    // write the digits backwards from the end of the space available, then move them into place
+    int end = offset + MAX_LENGTH;
+    int i = end;
+    long remaining = Math.abs(price);
+    if (price == Long.MIN_VALUE) {
+      // can't be negated: peel off the last digit first
+      buffer[--i] = (char) ('0' - (price % 10));
+      remaining = -(price / 10);
+    }
+    int written = end - i;
+    // at least one digit before the decimal point
+    while (written < SCALE + 2 || remaining > 0) {
+      if (written == SCALE) {
+        buffer[--i] = '.';
+      } else {
+        buffer[--i] = (char) ('0' + remaining % 10);
+        remaining /= 10;
+      }
+      written++;
+    }
+    if (price < 0) {
+      buffer[--i] = '-';
+    }
+    int length = end - i;
+    System.arraycopy(buffer, i, buffer, offset, length);
+    return length;
+  }
+
+  /**
+   * Return a scaled price as a decimal number with SCALE decimal places, e.g. "121.9100".
+   * @param price scaled price
+   * @return
+   */
+  public static String toString(final long price) {
+    char[] buffer = new char[MAX_LENGTH];
+    return new String(buffer, 0, format(price, buffer, 0));
+  }
+
+  private static NumberFormatException numberFormatException(final char[] text, final int offset,
+      final int length) {
+    return new NumberFormatException("Invalid price: " + new String(text, offset, length));
+  }
+
+  /**
+   * Stores scaled prices in DECIMAL columns, so the schema is the same as for BigDecimal prices.
+   */
+  @Converter
+  public static class JpaConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(final Long price) {
+      return price == null ? null : toBigDecimal(price);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(final BigDecimal price) {
+      return price == null ? null : of(price);
+    }
+  }
+
+  /**
+   * Writes scaled prices as JSON numbers with SCALE decimal places, the same way Jackson writes
+   * the equivalent BigDecimal.
+   */
+  public static class Serializer extends StdSerializer<Long> {
+
+    /**
+     * Create a serializer for scaled prices.
+     */
+    public Serializer() {
+      super(Long.class);
+    }
+
+    @Override
+    public void serialize(final Long price, final JsonGenerator generator,
+        final SerializerProvider provider) throws IOException {
+      char[] buffer = new char[MAX_LENGTH];
+      generator.writeRawValue(buffer, 0, format(price, buffer, 0));
+    }
+  }
+
+  /**
+   * Reads scaled prices from JSON numbers or strings.
+   */
+  public static class Deserializer extends StdDeserializer<Long> {
+
+    /**
+     * Create a deserializer for scaled prices.
+     */
+    public Deserializer() {
+      super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(final JsonParser parser, final DeserializationContext context)
+        throws IOException {
+      if (parser.hasToken(JsonToken.VALUE_NUMBER_INT)
+          || parser.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+        return of(parser.getDecimalValue());
+      }
+      try {
+        return parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+      } catch (NumberFormatException e) {
+        return (Long) context.handleWeirdStringValue(Long.class, parser.getText(),
+            "not a valid price");
+      }
+    }
+  }
+}
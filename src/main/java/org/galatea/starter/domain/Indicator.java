@@ -0,0 +1,52 @@
+package org.galatea.starter.domain;
+
+import org.galatea.starter.utils.indicator.AverageTrueRange;
+import org.galatea.starter.utils.indicator.ExponentialMovingAverage;
+import org.galatea.starter.utils.indicator.IndicatorCalculator;
+import org.galatea.starter.utils.indicator.RollingVolatility;
+import org.galatea.starter.utils.indicator.SimpleMovingAverage;
+
+/**
+ * Technical indicators that can be computed over a stock's daily prices.
+ */
+public enum Indicator {
+
+  // simple moving average of close prices
+  SMA {
+    @Override
+    public IndicatorCalculator newCalculator(final int window) {
+      return new SimpleMovingAverage(window);
+    }
+  },
+
+  // exponential moving average of close prices
+  EMA {
+    @Override
+    public IndicatorCalculator newCalculator(final int window) {
+      return new ExponentialMovingAverage(window);
+    }
+  },
+
+  // standard deviation of daily log returns
+  VOLATILITY {
+    @Override
+    public IndicatorCalculator newCalculator(final int window) {
+      return new RollingVolatility(window);
+    }
+  },
+
+  // average true range
+  ATR {
+    @Override
+    public IndicatorCalculator newCalculator(final int window) {
+      return new AverageTrueRange(window);
+    }
+  };
+
+  /**
+   * Return a new calculator for this indicator over the given window.
+   * @param window number of days the indicator looks back over
+   * @return
+   */
+  public abstract IndicatorCalculator newCalculator(int window);
+}
@@ -0,0 +1,23 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Value of a technical indicator for a stock on a day.
+ */
+@Builder
+@Value
+public class IndicatorValue {
+
+  @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+  @JsonSerialize(using = LocalDateSerializer.class)
+  LocalDate date;
+
+  BigDecimal value;
+}
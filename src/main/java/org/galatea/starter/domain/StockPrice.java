@@ -5,11 +5,16 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
 import java.time.LocalDate;
+import java.util.Locale;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Pattern;
@@ -29,6 +34,8 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j // creates logger object, log
 @JsonIgnoreProperties({"id", "symbol"})
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_stock_price_symbol_date",
+    columnNames = {"symbol", "date"}))
 public class StockPrice {
 
   @Id
@@ -49,6 +56,17 @@ public class StockPrice {
   @Embedded
   private StockPriceInfo prices;
 
+  /**
+   * Store the symbol in upper case, so that the (symbol, date) unique constraint applies to it
+   * whatever the case it was requested in, and so that IStockPriceRpsy can look it up by exact
+   * match.
+   */
+  @PrePersist
+  @PreUpdate
+  void normalizeSymbol() {
+    symbol = symbol.toUpperCase(Locale.ROOT);
+  }
+
   /**
    * Custom equals method that ignores the value of ID. Returns true if the stock symbols, dates,
    * and prices of the two StockPrice objects are the same, false otherwise.
@@ -0,0 +1,50 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Open, high, low, close and volume of a stock over a BarPeriod, aggregated from its daily stock
+ * prices, together with metrics derived from them.
+ */
+@Builder
+@Value
+public class StockPriceBar {
+
+  // first and last day with a stock price in the bar
+  @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+  @JsonSerialize(using = LocalDateSerializer.class)
+  LocalDate start;
+
+  @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+  @JsonSerialize(using = LocalDateSerializer.class)
+  LocalDate end;
+
+  // number of daily stock prices in the bar, which is less than a full period for partial bars
+  int days;
+
+  BigDecimal open;
+
+  BigDecimal high;
+
+  BigDecimal low;
+
+  BigDecimal close;
+
+  long volume;
+
+  // volume weighted average of each day's typical price, (high + low + close) / 3
+  BigDecimal vwap;
+
+  // close over the previous bar's close, minus 1. Not set for the oldest bar.
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  @JsonProperty("return")
+  BigDecimal periodReturn;
+}
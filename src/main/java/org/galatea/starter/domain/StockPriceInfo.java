@@ -1,9 +1,11 @@
 package org.galatea.starter.domain;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.math.BigDecimal;
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Embeddable;
-import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Min;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -12,33 +14,112 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 
+/**
+ * Daily prices and volume of a stock. Prices are FixedPointPrices (longs scaled by
+ * 10^FixedPointPrice.SCALE), stored as DECIMAL(12, 4) columns and written to JSON as decimals.
+ */
 @AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
 @NoArgsConstructor(access = AccessLevel.PRIVATE) // JPA
 @Builder
 @Data
 @Embeddable
 public class StockPriceInfo {
-  @DecimalMin(value = "0.00", message = "Open price must be greater than or equal to 0.00")
-  @NonNull
+  @Min(value = 0, message = "Open price must be greater than or equal to 0.00")
+  @Convert(converter = FixedPointPrice.JpaConverter.class)
   @Column(precision = 12, scale = 4)
-  private BigDecimal open;
+  @JsonSerialize(using = FixedPointPrice.Serializer.class)
+  @JsonDeserialize(using = FixedPointPrice.Deserializer.class)
+  private long open;
 
-  @DecimalMin(value = "0.00", message = "High price must be greater than or equal to 0.00")
-  @NonNull
+  @Min(value = 0, message = "High price must be greater than or equal to 0.00")
+  @Convert(converter = FixedPointPrice.JpaConverter.class)
   @Column(precision = 12, scale = 4)
-  private BigDecimal high;
+  @JsonSerialize(using = FixedPointPrice.Serializer.class)
+  @JsonDeserialize(using = FixedPointPrice.Deserializer.class)
+  private long high;
 
-  @DecimalMin(value = "0.00", message = "Low price must be greater than or equal to 0.00")
-  @NonNull
+  @Min(value = 0, message = "Low price must be greater than or equal to 0.00")
+  @Convert(converter = FixedPointPrice.JpaConverter.class)
   @Column(precision = 12, scale = 4)
-  private BigDecimal low;
+  @JsonSerialize(using = FixedPointPrice.Serializer.class)
+  @JsonDeserialize(using = FixedPointPrice.Deserializer.class)
+  private long low;
 
-  @DecimalMin(value = "0.00", message = "Close price must be greater than or equal to 0.00")
-  @NonNull
+  @Min(value = 0, message = "Close price must be greater than or equal to 0.00")
+  @Convert(converter = FixedPointPrice.JpaConverter.class)
   @Column(precision = 12, scale = 4)
-  private BigDecimal close;
+  @JsonSerialize(using = FixedPointPrice.Serializer.class)
+  @JsonDeserialize(using = FixedPointPrice.Deserializer.class)
+  private long close;
 
   @Min(value = 0, message = "Volume must be greater than or equal to 0")
   @NonNull
   private long volume;
+
+  /**
+   * Builder that takes prices either as FixedPointPrices or as BigDecimals, which are rounded to
+   * FixedPointPrice.SCALE decimal places.
+   */
+  public static class StockPriceInfoBuilder {
+
+    /**
+     * Set the open price as a FixedPointPrice.
+     */
+    public StockPriceInfoBuilder open(final long open) {
+      this.open = open;
+      return this;
+    }
+
+    /**
+     * Set the open price as a BigDecimal.
+     */
+    public StockPriceInfoBuilder open(final BigDecimal open) {
+      return open(FixedPointPrice.of(open));
+    }
+
+    /**
+     * Set the high price as a FixedPointPrice.
+     */
+    public StockPriceInfoBuilder high(final long high) {
+      this.high = high;
+      return this;
+    }
+
+    /**
+     * Set the high price as a BigDecimal.
+     */
+    public StockPriceInfoBuilder high(final BigDecimal high) {
+      return high(FixedPointPrice.of(high));
+    }
+
+    /**
+     * Set the low price as a FixedPointPrice.
+     */
+    public StockPriceInfoBuilder low(final long low) {
+      this.low = low;
+      return this;
+    }
+
+    /**
+     * Set the low price as a BigDecimal.
+     */
+    public StockPriceInfoBuilder low(final BigDecimal low) {
+      return low(FixedPointPrice.of(low));
+    }
+
+    /**
+     * Set the close price as a FixedPointPrice.
+     */
+    public StockPriceInfoBuilder close(final long close) {
+      this.close = close;
+      return this;
+    }
+
+    /**
+     * Set the close price as a BigDecimal.
+     */
+    public StockPriceInfoBuilder close(final BigDecimal close) {
+      return close(FixedPointPrice.of(close));
+    }
+  }
 }
@@ -0,0 +1,310 @@
+package org.galatea.starter.domain;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An immutable, columnar series of daily stock prices for a single symbol.
+ *
+ * <p>Prices are held in primitive arrays (epoch day, and OHLC prices as FixedPointPrices) sorted
+ * by date ascending, instead of one JPA entity per day. The series is exposed as a List of
+ * StockPrice sorted by date descending, which is the order used everywhere else in the stock price
+ * code, so that it can be handed to anything expecting such a list. StockPrice objects are only
+ * materialized when an element is accessed.
+ *
+ * <p>Slices (subList, lastDays) share the underlying arrays with the series they were taken from,
+ * so they cost O(1) regardless of the size of the series.
+ */
+@Slf4j
+public final class StockPriceSeries extends AbstractList<StockPrice> implements RandomAccess {
+
+  private final String symbol;
+
+  // All columns are sorted by date ascending and may be shared with other slices
+  private final int[] epochDays;
+  private final long[] open;
+  private final long[] high;
+  private final long[] low;
+  private final long[] close;
+  private final long[] volume;
+
+  // The slice of the columns that this series covers: [from, to)
+  private final int from;
+  private final int to;
+
+  private StockPriceSeries(final String symbol, final int[] epochDays, final long[] open,
+      final long[] high, final long[] low, final long[] close, final long[] volume,
+      final int from, final int to) {
+    this.symbol = symbol;
+    this.epochDays = epochDays;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Create an empty series for the given symbol.
+   * @param symbol stock symbol of the series
+   * @return
+   */
+  public static StockPriceSeries empty(final String symbol) {
+    return allocate(symbol, 0);
+  }
+
+  /**
+   * Create a series from the given StockPrice objects, which may be in any order. If more than one
+   * StockPrice has the same date, the last one in iteration order is kept.
+   * @param symbol stock symbol of the series
+   * @param stockPrices StockPrice objects to copy into the series
+   * @return
+   */
+  public static StockPriceSeries of(final String symbol,
+      final Collection<StockPrice> stockPrices) {
+    if (stockPrices instanceof StockPriceSeries) {
+      return (StockPriceSeries) stockPrices;
+    }
+
+    List<StockPrice> sorted = new ArrayList<>(stockPrices);
+    // stable sort, so equal dates keep their iteration order
+    sorted.sort(Comparator.comparing(StockPrice::getDate));
+
+    StockPriceSeries series = allocate(symbol, sorted.size());
+    int size = 0;
+    for (StockPrice stockPrice : sorted) {
+      int epochDay = (int) stockPrice.getDate().toEpochDay();
+      if (size > 0 && series.epochDays[size - 1] == epochDay) {
+        size--; // overwrite the previous StockPrice with the same date
+      }
+      series.set(size, epochDay, stockPrice.getPrices());
+      size++;
+    }
+    return series.slice(0, size);
+  }
+
+  /**
+   * Return a new series containing the prices in this series together with the given prices. The
+   * given prices win when both have a price for the same date.
+   *
+   * <p>A series is expected to hold a contiguous run of trading days. If the dates of the given
+   * prices do not overlap the dates in this series, merging them could leave a hole in the middle
+   * of the series that would go unnoticed by "last N days" lookups. In that case only the newer
+   * of the two sets of prices is kept.
+   * @param stockPrices prices to merge into this series, in any order
+   * @return
+   */
+  public StockPriceSeries merge(final Collection<StockPrice> stockPrices) {
+    StockPriceSeries incoming = of(symbol, stockPrices);
+    if (incoming.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return incoming;
+    }
+
+    int incomingOldest = incoming.epochDays[incoming.from];
+    int incomingNewest = incoming.epochDays[incoming.to - 1];
+    int oldest = epochDays[from];
+    int newest = epochDays[to - 1];
+    if (incomingOldest > newest) {
+      log.info("New {} prices start after the cached series ends. Replacing the series.", symbol);
+      return incoming;
+    } else if (incomingNewest < oldest) {
+      log.info("New {} prices end before the cached series starts. Ignoring them.", symbol);
+      return this;
+    }
+
+    // Both inputs are sorted by date, so a single merge pass keeps the result sorted
+    StockPriceSeries merged = allocate(symbol, size() + incoming.size());
+    int mine = from;
+    int theirs = incoming.from;
+    int size = 0;
+    while (mine < to || theirs < incoming.to) {
+      if (theirs == incoming.to
+          || (mine < to && epochDays[mine] < incoming.epochDays[theirs])) {
+        merged.copy(size++, this, mine++);
+      } else {
+        if (mine < to && epochDays[mine] == incoming.epochDays[theirs]) {
+          mine++; // same date in both, take the incoming price
+        }
+        merged.copy(size++, incoming, theirs++);
+      }
+    }
+    return merged.slice(0, size);
+  }
+
+  /**
+   * Return the (at most) given number of most recent days in this series, without copying.
+   * @param days number of days to return
+   * @return
+   */
+  public StockPriceSeries lastDays(final int days) {
+    return subList(0, Math.min(days, size()));
+  }
+
+  /**
+   * Return the days in this series from the given date to the given date (both inclusive), without
+   * copying. Found by binary search, so it costs O(log n) regardless of the size of the range.
+   * @param fromDate first date to return
+   * @param toDate last date to return
+   * @return
+   */
+  public StockPriceSeries between(final LocalDate fromDate, final LocalDate toDate) {
+    if (fromDate.isAfter(toDate)) {
+      return slice(0, 0);
+    }
+    int start = firstColumnIndexAfter(fromDate.toEpochDay() - 1);
+    int end = firstColumnIndexAfter(toDate.toEpochDay());
+    return slice(start - from, end - from);
+  }
+
+  /**
+   * Return a view of the given range of this list, without copying. Indexes are in the same
+   * (date descending) order as get.
+   */
+  @Override
+  public StockPriceSeries subList(final int fromIndex, final int toIndex) {
+    if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException(
+          "fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size());
+    }
+    return slice(to - toIndex - from, to - fromIndex - from);
+  }
+
+  @Override
+  public StockPrice get(final int index) {
+    int i = columnIndex(index);
+    return StockPrice.builder()
+        .symbol(symbol)
+        .date(LocalDate.ofEpochDay(epochDays[i]))
+        .prices(StockPriceInfo.builder()
+            .open(open[i])
+            .high(high[i])
+            .low(low[i])
+            .close(close[i])
+            .volume(volume[i]).build())
+        .build();
+  }
+
+  @Override
+  public int size() {
+    return to - from;
+  }
+
+  /**
+   * Return the stock symbol of the series.
+   */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * Return the date of the element at the given index as a number of days since the epoch.
+   */
+  public int getEpochDay(final int index) {
+    return epochDays[columnIndex(index)];
+  }
+
+  /**
+   * Return the open price of the element at the given index, as a FixedPointPrice.
+   */
+  public long getOpen(final int index) {
+    return open[columnIndex(index)];
+  }
+
+  /**
+   * Return the high price of the element at the given index, as a FixedPointPrice.
+   */
+  public long getHigh(final int index) {
+    return high[columnIndex(index)];
+  }
+
+  /**
+   * Return the low price of the element at the given index, as a FixedPointPrice.
+   */
+  public long getLow(final int index) {
+    return low[columnIndex(index)];
+  }
+
+  /**
+   * Return the close price of the element at the given index, as a FixedPointPrice.
+   */
+  public long getClose(final int index) {
+    return close[columnIndex(index)];
+  }
+
+  /**
+   * Return the volume of the element at the given index.
+   */
+  public long getVolume(final int index) {
+    return volume[columnIndex(index)];
+  }
+
+  /*
+   * Map a (date descending) list index to an index into the (date ascending) columns.
+   */
+  private int columnIndex(final int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+    }
+    return to - 1 - index;
+  }
+
+  /*
+   * Return the index of the first column in [from, to) with an epoch day after the given one, or
+   * to if there is none.
+   */
+  private int firstColumnIndexAfter(final long epochDay) {
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (epochDays[mid] <= epochDay) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static StockPriceSeries allocate(final String symbol, final int capacity) {
+    return new StockPriceSeries(symbol, new int[capacity], new long[capacity],
+        new long[capacity], new long[capacity], new long[capacity], new long[capacity], 0,
+        capacity);
+  }
+
+  /*
+   * Return a series over the columns [from + start, from + end) of this series.
+   */
+  private StockPriceSeries slice(final int start, final int end) {
+    return new StockPriceSeries(symbol, epochDays, open, high, low, close, volume, from + start,
+        from + end);
+  }
+
+  private void set(final int i, final int epochDay, final StockPriceInfo prices) {
+    epochDays[i] = epochDay;
+    open[i] = prices.getOpen();
+    high[i] = prices.getHigh();
+    low[i] = prices.getLow();
+    close[i] = prices.getClose();
+    volume[i] = prices.getVolume();
+  }
+
+  private void copy(final int i, final StockPriceSeries source, final int sourceIndex) {
+    epochDays[i] = source.epochDays[sourceIndex];
+    open[i] = source.open[sourceIndex];
+    high[i] = source.high[sourceIndex];
+    low[i] = source.low[sourceIndex];
+    close[i] = source.close[sourceIndex];
+    volume[i] = source.volume[sourceIndex];
+  }
+}
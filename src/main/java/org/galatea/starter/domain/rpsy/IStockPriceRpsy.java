@@ -1,29 +1,76 @@
 package org.galatea.starter.domain.rpsy;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.galatea.starter.domain.StockPrice;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+/**
+ * Symbols are stored in upper case (see StockPrice), so the symbol passed to the queries below
+ * must be in upper case too. Comparing it as is, rather than with upper(symbol), lets the
+ * (symbol, date) unique index serve the queries.
+ */
 public interface IStockPriceRpsy extends CrudRepository<StockPrice, Long> {
 
   /**
    * Return a list of StockPrice objects from the database with the given symbol and date.
-   * The symbol is case insensitive. Ideally, this should return a list with only one object.
-   * @param symbol stock symbol of all returned StockPrice objects
+   * Ideally, this should return a list with only one object.
+   * @param symbol stock symbol, in upper case, of all returned StockPrice objects
    * @param date date of all returned StockPrice objects
    * @return
    */
-  List<StockPrice> findBySymbolIgnoreCaseAndDate(String symbol, LocalDate date);
+  List<StockPrice> findBySymbolAndDate(String symbol, LocalDate date);
+
+  /**
+   * Return the dates between from and to (inclusive) for which the database has a StockPrice with
+   * the given symbol. Used to find which of a batch of StockPrice objects are already stored with
+   * a single query, instead of one query per StockPrice.
+   * @param symbol stock symbol, in upper case, of the StockPrice objects to look for
+   * @param from first date to look for
+   * @param to last date to look for
+   * @return
+   */
+  @Query("select sp.date from StockPrice sp where sp.symbol = :symbol"
+      + " and sp.date between :from and :to")
+  List<LocalDate> findDatesBySymbolAndDateBetween(@Param("symbol") String symbol,
+      @Param("from") LocalDate from, @Param("to") LocalDate to);
 
   /**
    * Return a list of all StockPrice objects in the database with the given symbol, sorted by
-   * date descending. The symbol is case insensitive.
-   * @param symbol stock symbol of all returned StockPrice objects
+   * date descending.
+   * @param symbol stock symbol, in upper case, of all returned StockPrice objects
+   * @return
+   */
+  List<StockPrice> findBySymbolOrderByDateDesc(String symbol);
+
+  /**
+   * Return the StockPrice objects in the database with the given symbol and a date between from
+   * and to (inclusive), sorted by date descending. Served by the (symbol, date) unique index on
+   * StockPrice, so the cost depends on the size of the range rather than on the size of the
+   * symbol's history.
+   * @param symbol stock symbol, in upper case, of all returned StockPrice objects
+   * @param from first date to return
+   * @param to last date to return
+   * @return
+   */
+  List<StockPrice> findBySymbolAndDateBetweenOrderByDateDesc(String symbol,
+      LocalDate from, LocalDate to);
+
+  /**
+   * Return the StockPrice objects in the database with any of the given symbols and a date between
+   * from and to (inclusive), sorted by date descending. Like
+   * findBySymbolAndDateBetweenOrderByDateDesc, but for many symbols in a single query.
+   * @param symbols stock symbols, in upper case, of the returned StockPrice objects
+   * @param from first date to return
+   * @param to last date to return
    * @return
    */
-  List<StockPrice> findBySymbolIgnoreCaseOrderByDateDesc(String symbol);
+  List<StockPrice> findBySymbolInAndDateBetweenOrderByDateDesc(Collection<String> symbols,
+      LocalDate from, LocalDate to);
 
   /**
    * Return a StockPrice objects (if one exists) with the given ID.
@@ -0,0 +1,183 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory store of StockPriceSeries, one per symbol, that sits in front of IStockPriceRpsy.
+ *
+ * <p>A symbol's series is loaded from the database the first time it is requested and kept in
+ * memory from then on. New prices should be appended to the store as well as saved to the
+ * database so the two stay in step. Symbols are case insensitive.
+ *
+ * <p>Symbols come from requests, so the store is bounded: empty series, eg of unknown symbols,
+ * aren't kept, and once more than MAX_SYMBOLS series are held the least recently used one is
+ * evicted.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class StockPriceSeriesStore {
+
+  @NonNull
+  private IStockPriceRpsy stockPriceRpsy;
+
+  // a series of 5000 days takes about 200 KB
+  static final int MAX_SYMBOLS = 512;
+
+  private final ConcurrentMap<String, CachedSeries> seriesBySymbol = new ConcurrentHashMap<>();
+
+  // ticks on every use of a series, to find the least recently used one
+  private final AtomicLong clock = new AtomicLong();
+
+  private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Return the series for the given symbol, loading it from the database if it isn't in memory
+   * yet. Concurrent requests for a symbol that isn't loaded yet wait for a single load.
+   * @param symbol stock symbol
+   * @return
+   */
+  public StockPriceSeries getSeries(final String symbol) {
+    String key = toKey(symbol);
+    // an empty series isn't kept, so it's returned from here rather than from the map
+    StockPriceSeries[] loaded = new StockPriceSeries[1];
+    CachedSeries cached = seriesBySymbol.computeIfAbsent(key, k -> {
+      loaded[0] = load(k);
+      return loaded[0].isEmpty() ? null : new CachedSeries(loaded[0], clock.incrementAndGet());
+    });
+    if (cached == null) {
+      return loaded[0] != null ? loaded[0] : StockPriceSeries.empty(key);
+    }
+    if (loaded[0] == null) {
+      cached.lastUsed = clock.incrementAndGet();
+    } else {
+      trim();
+    }
+    return cached.series;
+  }
+
+  /**
+   * Return the series for the given symbol if it is in memory, without loading it from the
+   * database if it isn't.
+   * @param symbol stock symbol
+   * @return
+   */
+  public Optional<StockPriceSeries> findLoadedSeries(final String symbol) {
+    CachedSeries cached = seriesBySymbol.get(toKey(symbol));
+    if (cached == null) {
+      return Optional.empty();
+    }
+    cached.lastUsed = clock.incrementAndGet();
+    return Optional.of(cached.series);
+  }
+
+  /**
+   * Merge the given StockPrice objects into the series for the given symbol and return the
+   * resulting series. See StockPriceSeries.merge for how the prices are merged.
+   * @param symbol stock symbol
+   * @param stockPrices StockPrice objects with the given symbol, in any order
+   * @return
+   */
+  public StockPriceSeries append(final String symbol,
+      final Collection<StockPrice> stockPrices) {
+    String key = toKey(symbol);
+    StockPriceSeries[] merged = new StockPriceSeries[1];
+    CachedSeries cached = seriesBySymbol.compute(key, (k, previous) -> {
+      merged[0] = (previous == null ? load(k) : previous.series).merge(stockPrices);
+      return merged[0].isEmpty() ? null : new CachedSeries(merged[0], clock.incrementAndGet());
+    });
+    if (cached != null) {
+      trim();
+    }
+    return merged[0];
+  }
+
+  /**
+   * Drop the series for the given symbol from memory. It will be re-loaded from the database the
+   * next time it is requested. Eviction listeners are told about it, so that they can drop what
+   * they derived from the series.
+   * @param symbol stock symbol
+   */
+  public void evict(final String symbol) {
+    String key = toKey(symbol);
+    seriesBySymbol.remove(key);
+    evictionListeners.forEach(listener -> listener.accept(key));
+  }
+
+  /**
+   * Register a listener that is called with the symbol, in upper case, each time a symbol's series
+   * is evicted.
+   * @param listener eviction listener
+   */
+  public void addEvictionListener(final Consumer<String> listener) {
+    evictionListeners.add(listener);
+  }
+
+  /**
+   * Return the number of series held in memory.
+   */
+  public int size() {
+    return seriesBySymbol.size();
+  }
+
+  /*
+   * Evict the least recently used series until at most MAX_SYMBOLS are held. Holding the lock
+   * keeps concurrent callers from evicting more than that.
+   */
+  private synchronized void trim() {
+    while (seriesBySymbol.size() > MAX_SYMBOLS) {
+      String leastRecentlyUsed = null;
+      long oldest = Long.MAX_VALUE;
+      for (Map.Entry<String, CachedSeries> entry : seriesBySymbol.entrySet()) {
+        if (entry.getValue().lastUsed < oldest) {
+          oldest = entry.getValue().lastUsed;
+          leastRecentlyUsed = entry.getKey();
+        }
+      }
+      log.info("Evicting the least recently used series, of {}", leastRecentlyUsed);
+      evict(leastRecentlyUsed);
+    }
+  }
+
+  private StockPriceSeries load(final String symbol) {
+    log.info("Loading StockPrices with symbol {} into memory", symbol);
+    StockPriceSeries series = StockPriceSeries.of(symbol,
+        stockPriceRpsy.findBySymbolOrderByDateDesc(symbol));
+    log.info("Loaded {} StockPrices", series.size());
+    return series;
+  }
+
+  private static String toKey(final String symbol) {
+    return symbol.toUpperCase(Locale.ROOT);
+  }
+
+  /*
+   * A series held in memory, and when it was last used.
+   */
+  private static final class CachedSeries {
+
+    private final StockPriceSeries series;
+
+    private volatile long lastUsed;
+
+    private CachedSeries(final StockPriceSeries series, final long lastUsed) {
+      this.series = series;
+      this.lastUsed = lastUsed;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package org.galatea.starter.entrypoint;
+
+import java.io.IOException;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.aspect4log.Log;
+import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.utils.jms.DeadLetterReplayer;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller to replay the messages that the JMS listeners failed to process. See
+ * DeadLetterReplayer.
+ */
+@Slf4j
+@Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
+@Validated
+@RestController
+@RequiredArgsConstructor
+public class DeadLetterRestController extends BaseRestController {
+
+  @NonNull
+  private DeadLetterReplayer deadLetterReplayer;
+
+  /**
+   * Replay the failed messages with sequence numbers from 'from' (inclusive) to 'to' (exclusive).
+   *
+   * @param destination queue of the messages to replay. All queues if not given.
+   * @param from first sequence number to replay.
+   * @param to sequence number to stop at. The end of the log if not given.
+   * @return the number of messages replayed, those that failed again, and the sequence number to
+   *     continue from.
+   */
+  @PostMapping(value = "${mvc.replayDeadLettersPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE})
+  public DeadLetterReplayer.Result replayDeadLetters(
+      @RequestParam(value = "destination", required = false) final String destination,
+      @RequestParam(value = "from", defaultValue = "0") final long from,
+      @RequestParam(value = "to", required = false) final Long to,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return deadLetterReplayer.replay(destination, from, to == null ? Long.MAX_VALUE : to);
+  }
+}
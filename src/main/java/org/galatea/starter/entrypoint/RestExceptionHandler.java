@@ -6,6 +6,9 @@ import javax.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.entrypoint.exception.DataNotFoundException;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.exception.InvalidDateRangeException;
+import org.galatea.starter.utils.exception.RateLimitExceededException;
+import org.galatea.starter.utils.exception.ReplayInProgressException;
 import org.springframework.beans.TypeMismatchException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
@@ -46,6 +49,13 @@ public class RestExceptionHandler {
     return buildResponseEntity(error);
   }
 
+  @ExceptionHandler(InvalidDateRangeException.class)
+  protected ResponseEntity<Object> handleInvalidDateRange(
+      final InvalidDateRangeException exception) {
+    ApiError error = new ApiError(HttpStatus.BAD_REQUEST, exception.getMessage());
+    return buildResponseEntity(error);
+  }
+
   @ExceptionHandler(NumberFormatException.class)
   protected ResponseEntity<Object> handleNumberFormat(final NumberFormatException exception) {
     ApiError error = new ApiError(HttpStatus.BAD_REQUEST,
@@ -97,6 +107,24 @@ public class RestExceptionHandler {
     return buildResponseEntity(error);
   }
 
+  @ExceptionHandler(RateLimitExceededException.class)
+  protected ResponseEntity<Object> handleRateLimitExceeded(
+      final RateLimitExceededException exception) {
+    log.warn("Rejected by rate limiter: {}", exception.getMessage());
+
+    ApiError error = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, exception.getMessage());
+    return buildResponseEntity(error);
+  }
+
+  @ExceptionHandler(ReplayInProgressException.class)
+  protected ResponseEntity<Object> handleReplayInProgress(
+      final ReplayInProgressException exception) {
+    log.info("Turned away a replay of dead letters: {}", exception.getMessage());
+
+    ApiError error = new ApiError(HttpStatus.CONFLICT, exception.getMessage());
+    return buildResponseEntity(error);
+  }
+
   private ResponseEntity<Object> buildResponseEntity(final ApiError apiError) {
     return new ResponseEntity<>(apiError, apiError.getStatus());
   }
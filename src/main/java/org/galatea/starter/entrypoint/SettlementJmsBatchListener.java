@@ -0,0 +1,85 @@
+package org.galatea.starter.entrypoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.metrics.LatencyTimed;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spawns missions for batches of TradeAgreements pulled off the jms queues, used instead of
+ * SettlementJmsListener when jms.batch.enabled is set, and to replay failed messages from the dead
+ * letter log. Each batch's agreements are translated together and their missions are saved with a
+ * single spawnMissions call, so a batch costs one database transaction rather than one per message.
+ * See JmsConfig for the containers and the replayer that call it.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+@LatencyTimed
+public class SettlementJmsBatchListener {
+
+  @NonNull
+  protected SettlementService settlementService;
+
+  @NonNull
+  protected ITranslator<BytesMessage, List<TradeAgreement>> tradeAgreementBytesMessageTranslator;
+
+  @NonNull
+  protected ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
+  // the converter SettlementJmsListener's JSON messages go through, so both read them the same way
+  @NonNull
+  protected MessageConverter jacksonJmsMessageConverter;
+
+  /**
+   * Spawns missions for a batch of TradeAgreements in JSON format.
+   * @param messages text messages, each holding one TradeAgreementMessage
+   */
+  public void settleAgreementsJson(final List<Message> messages) throws JMSException {
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      String json = ((TextMessage) message).getText();
+      TradeAgreementMessage agreementMessage = (TradeAgreementMessage) jacksonJmsMessageConverter
+          .fromMessage(MessageBuilder.withPayload(json).build(), TradeAgreementMessage.class);
+      if (agreementMessage == null) {
+        throw new TranslationException("Could not read a trade agreement from " + json);
+      }
+      agreements.add(tradeAgreementMessageTranslator.translate(agreementMessage));
+    }
+    spawnMissions(agreements);
+  }
+
+  /**
+   * Spawns missions for a batch of TradeAgreements in protobuf format.
+   * @param messages bytes messages, each holding a serialized TradeAgreementProtoMessage or
+   *     TradeAgreementProtoMessages
+   */
+  public void settleAgreementsProto(final List<Message> messages) {
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      agreements.addAll(tradeAgreementBytesMessageTranslator.translate((BytesMessage) message));
+    }
+    spawnMissions(agreements);
+  }
+
+  private void spawnMissions(final List<TradeAgreement> agreements) {
+    log.info("Handling a batch of {} agreement(s)", agreements.size());
+    Set<Long> missionIds = settlementService.spawnMissions(agreements);
+    log.info("Created {} mission(s)", missionIds.size());
+  }
+}
@@ -1,27 +1,37 @@
 package org.galatea.starter.entrypoint;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import javax.jms.BytesMessage;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.metrics.LatencyTimed;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
+/**
+ * Spawns missions for TradeAgreements pulled off the jms queues, one message at a time. Replaced by
+ * SettlementJmsBatchListener when jms.batch.enabled is set.
+ */
 @RequiredArgsConstructor
 @Slf4j
 @Component
+@LatencyTimed
+@ConditionalOnProperty(name = "jms.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class SettlementJmsListener {
 
   @NonNull
   protected SettlementService settlementService;
 
   @NonNull
-  protected ITranslator<byte[], TradeAgreement> tradeAgreementProtoTranslator;
+  protected ITranslator<BytesMessage, List<TradeAgreement>> tradeAgreementBytesMessageTranslator;
 
   @NonNull
   protected ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
@@ -29,8 +39,7 @@ public class SettlementJmsListener {
   /**
    * Spawns Missions for any TradeAgreements pulled off the jms queue in JSON format.
    */
-  @JmsListener(destination = "${jms.agreement-queue-json}",
-      concurrency = "${jms.listener-concurrency}")
+  @JmsListener(destination = "${jms.agreement-queue-json}")
   public void settleAgreementJson(final TradeAgreementMessage agreementMessage) {
     log.info("Handling agreements {}", agreementMessage);
 
@@ -40,17 +49,17 @@ public class SettlementJmsListener {
   }
 
   /**
-   * Spawns missions for any TradeAgreements pulled off the jms queue in protobuf format.
+   * Spawns missions for any TradeAgreements pulled off the jms queue in protobuf format. A message
+   * holds either one TradeAgreementProtoMessage or a TradeAgreementProtoMessages.
    */
-  @JmsListener(destination = "${jms.agreement-queue-proto}",
-      concurrency = "${jms.listener-concurrency}")
-  public void settleAgreementProto(final byte[] message) {
+  @JmsListener(destination = "${jms.agreement-queue-proto}")
+  public void settleAgreementProto(final BytesMessage message) {
     log.info("Received message. Translating.");
-    TradeAgreement agreement = tradeAgreementProtoTranslator.translate(message);
+    List<TradeAgreement> agreements = tradeAgreementBytesMessageTranslator.translate(message);
 
-    log.info("Handling agreement {}", agreement);
+    log.info("Handling agreements {}", agreements);
 
-    Set<Long> missionIds = settlementService.spawnMissions(Arrays.asList(agreement));
+    Set<Long> missionIds = settlementService.spawnMissions(agreements);
     log.info("Created missions {}", missionIds);
   }
 }
@@ -1,24 +1,46 @@
 package org.galatea.starter.entrypoint;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.BarPeriod;
+import org.galatea.starter.domain.Indicator;
 import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceBar;
 import org.galatea.starter.domain.rpsy.IStockPriceRpsy;
+import org.galatea.starter.entrypoint.exception.DataNotFoundException;
+import org.galatea.starter.entrypoint.exception.InvalidDateRangeException;
+import org.galatea.starter.entrypoint.messagecontracts.StockPriceBarsResponse;
+import org.galatea.starter.entrypoint.messagecontracts.StockPriceIndicatorResponse;
+import org.galatea.starter.entrypoint.messagecontracts.StockPriceResponse;
+import org.galatea.starter.service.StockPriceAggregationService;
+import org.galatea.starter.service.StockPriceBatchService;
+import org.galatea.starter.service.StockPriceIndicatorService;
 import org.galatea.starter.service.StockPriceService;
+import org.galatea.starter.utils.http.converter.StockPriceResponseJsonConverter;
+import org.galatea.starter.utils.validation.StringEnumeration;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RequiredArgsConstructor // StockPriceService bean is injected into constructor
 @Slf4j // logging
@@ -26,60 +48,259 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController // @Controller + @ResponseBody
 public class StockPriceRestController extends BaseRestController {
 
+  private static final String APPLICATION_X_PROTOBUF = "application/x-protobuf";
+
+  // newline delimited JSON: one JSON document per line
+  private static final MediaType APPLICATION_X_NDJSON = new MediaType("application", "x-ndjson");
+
+  private static final int MAX_BATCH_SYMBOLS = 500;
+
+  private static final int MAX_INDICATOR_WINDOW = 250;
+
   @NonNull
   StockPriceService stockPriceService;
 
-  @Value("${alpha-vantage.api-key}")
-  private String apiKey;
+  @NonNull
+  StockPriceBatchService stockPriceBatchService;
+
+  @NonNull
+  StockPriceAggregationService stockPriceAggregationService;
+
+  @NonNull
+  StockPriceIndicatorService stockPriceIndicatorService;
+
+  @NonNull
+  Clock clock;
 
-  @Value("${alpha-vantage.dailyTimeSeriesPath}")
-  private String basePath;
+  private final StockPriceResponseJsonConverter jsonConverter =
+      new StockPriceResponseJsonConverter();
 
   /**
-   * Handle /price route.
+   * Handle /price route. The response is written as JSON or, with format=proto, as a columnar
+   * protobuf message (see MvcConfig). Returns the most recent days by default, or the days from
+   * the from date to the to date (default: today) if from is given, in which case days is ignored.
    * @param symbol from parameters of /price URL
    * @param days from parameters of /price URL
-   * @return StockPrice object
+   * @param from from parameters of /price URL (yyyy-MM-dd)
+   * @param to from parameters of /price URL (yyyy-MM-dd)
+   * @return metadata and StockPrice objects
    */
-  @SneakyThrows
   @GetMapping(value = "${mvc.getPricePath}", produces = {
-      MediaType.APPLICATION_JSON_VALUE})
-  public ObjectNode price(
+      MediaType.APPLICATION_JSON_VALUE, APPLICATION_X_PROTOBUF})
+  public StockPriceResponse price(
       @RequestParam(value = "symbol") final String symbol,
       @RequestParam(value = "days", defaultValue = "20") @Min(value = 0,
           message = "Days must be greater than or equal to 0") final int days,
-      @RequestParam(value = "requestId", required = false) final String requestId) {
+      @RequestParam(value = "from", required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+      @RequestParam(value = "to", required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws MissingServletRequestParameterException {
 
     // if an external request id was provided, grab it
     processRequestId(requestId);
 
-    // get metadata info
-    ObjectMapper objectMapper = new ObjectMapper();
-    ObjectNode metadata = getMetadata(objectMapper, symbol, days);
+    if (from == null && to != null) {
+      throw new MissingServletRequestParameterException("from", "LocalDate");
+    } else if (from != null) {
+      LocalDate end = getEnd(from, to);
+      List<StockPrice> stockPrices = stockPriceService.getStockPrices(symbol, from, end);
+      return StockPriceResponse.builder()
+          .metadata(getMetadata(symbol, stockPrices.size(), from, end))
+          .data(stockPrices).build();
+    }
 
     // get list of StockPrice objects to return
-    List<StockPrice> stockPrices = stockPriceService.getStockPrices(symbol, days, apiKey, basePath);
+    List<StockPrice> stockPrices = stockPriceService.getStockPrices(symbol, days);
+
+    // metadata + StockPrice list, written straight to the response by a message converter
+    return StockPriceResponse.builder()
+        .metadata(getMetadata(symbol, days, null, null))
+        .data(stockPrices).build();
+  }
+
+  /**
+   * Handle /price/bars route: daily stock prices aggregated into weekly or monthly bars, with the
+   * VWAP of each bar and its return over the previous bar. Like /price, aggregates the most recent
+   * days by default, or the days from the from date to the to date (default: today) if from is
+   * given.
+   * @param symbol from parameters of /price/bars URL
+   * @param period from parameters of /price/bars URL (WEEK or MONTH)
+   * @param days from parameters of /price/bars URL: number of daily prices to aggregate
+   * @param from from parameters of /price/bars URL (yyyy-MM-dd)
+   * @param to from parameters of /price/bars URL (yyyy-MM-dd)
+   * @return metadata and StockPriceBar objects
+   */
+  @GetMapping(value = "${mvc.getPriceBarsPath}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public StockPriceBarsResponse priceBars(
+      @RequestParam(value = "symbol") final String symbol,
+      @RequestParam(value = "period", defaultValue = "WEEK") @StringEnumeration(
+          enumClass = BarPeriod.class, message = "Period must be WEEK or MONTH")
+      final String period,
+      @RequestParam(value = "days", defaultValue = "100") @Min(value = 0,
+          message = "Days must be greater than or equal to 0") final int days,
+      @RequestParam(value = "from", required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate from,
+      @RequestParam(value = "to", required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate to,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws MissingServletRequestParameterException {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    BarPeriod barPeriod = BarPeriod.valueOf(period);
+    StockPriceResponse.Metadata metadata;
+    List<StockPriceBar> bars;
+    if (from == null && to != null) {
+      throw new MissingServletRequestParameterException("from", "LocalDate");
+    } else if (from != null) {
+      LocalDate end = getEnd(from, to);
+      bars = stockPriceAggregationService.getStockPriceBars(symbol, from, end, barPeriod);
+      metadata = getMetadata(symbol, bars.stream().mapToInt(StockPriceBar::getDays).sum(), from,
+          end);
+    } else {
+      bars = stockPriceAggregationService.getStockPriceBars(symbol, days, barPeriod);
+      metadata = getMetadata(symbol, days, null, null);
+    }
+
+    return StockPriceBarsResponse.builder()
+        .metadata(metadata.toBuilder().description("Stock price bars").build())
+        .period(barPeriod)
+        .data(bars).build();
+  }
+
+  /**
+   * Handle /price/indicator route: the values of a technical indicator for the most recent days,
+   * computed over the stored daily stock prices. Days too early in the symbol's history to have a
+   * value are left out.
+   * @param symbol from parameters of /price/indicator URL
+   * @param indicator from parameters of /price/indicator URL (SMA, EMA, VOLATILITY or ATR)
+   * @param window from parameters of /price/indicator URL: number of days the indicator looks
+   *     back over
+   * @param days from parameters of /price/indicator URL
+   * @return metadata and IndicatorValue objects
+   */
+  @GetMapping(value = "${mvc.getPriceIndicatorPath}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public StockPriceIndicatorResponse priceIndicator(
+      @RequestParam(value = "symbol") final String symbol,
+      @RequestParam(value = "indicator") @StringEnumeration(enumClass = Indicator.class,
+          message = "Indicator must be SMA, EMA, VOLATILITY or ATR") final String indicator,
+      @RequestParam(value = "window", defaultValue = "20") @Min(value = 2,
+          message = "Window must be greater than or equal to 2") @Max(value = MAX_INDICATOR_WINDOW,
+          message = "Window must be less than or equal to " + MAX_INDICATOR_WINDOW)
+      final int window,
+      @RequestParam(value = "days", defaultValue = "20") @Min(value = 0,
+          message = "Days must be greater than or equal to 0") final int days,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Indicator parsedIndicator = Indicator.valueOf(indicator);
+    return StockPriceIndicatorResponse.builder()
+        .metadata(getMetadata(symbol, days, null, null).toBuilder()
+            .description("Stock price indicator").build())
+        .indicator(parsedIndicator)
+        .window(window)
+        .data(stockPriceIndicatorService.getIndicator(symbol, parsedIndicator, window, days))
+        .build();
+  }
 
-    // create and return final json with metadata + StockPrice list
-    ObjectNode rootNode = objectMapper.createObjectNode();
-    rootNode.set("metadata", metadata);
-    rootNode.set("data", objectMapper.readTree(objectMapper.writeValueAsString(stockPrices)));
-    return rootNode;
+  /**
+   * Handle /prices route: the most recent days for each of a list of symbols. The response is
+   * newline delimited JSON, with one /price response per symbol, written as soon as that symbol's
+   * prices are available. Symbols with stored prices come first; the others follow as they are
+   * fetched, in whatever order they arrive. A symbol that fails gets a response with an error and
+   * no data, without affecting the other symbols.
+   * @param symbols from parameters of /prices URL (comma separated)
+   * @param days from parameters of /prices URL
+   * @return a body that streams the responses
+   */
+  @GetMapping(value = "${mvc.getPricesPath}")
+  public ResponseEntity<StreamingResponseBody> prices(
+      @RequestParam(value = "symbols") @Size(min = 1, max = MAX_BATCH_SYMBOLS,
+          message = "Between 1 and " + MAX_BATCH_SYMBOLS + " symbols must be given")
+      final List<String> symbols,
+      @RequestParam(value = "days", defaultValue = "20") @Min(value = 0,
+          message = "Days must be greater than or equal to 0") final int days,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Set<String> distinctSymbols = new LinkedHashSet<>(symbols);
+    StreamingResponseBody body = out -> {
+      try {
+        stockPriceBatchService.getStockPrices(distinctSymbols, days,
+            new StockPriceBatchService.Listener() {
+              @Override
+              public void onStockPrices(final String symbol, final List<StockPrice> stockPrices)
+                  throws IOException {
+                writeLine(out, StockPriceResponse.builder()
+                    .metadata(getMetadata(symbol, days, null, null))
+                    .data(stockPrices).build());
+              }
+
+              @Override
+              public void onError(final String symbol, final RuntimeException exception)
+                  throws IOException {
+                log.info("Could not get stock prices for {} in batch", symbol, exception);
+                writeLine(out, StockPriceResponse.builder()
+                    .metadata(getMetadata(symbol, days, null, null))
+                    .data(Collections.emptyList())
+                    .error(exception instanceof DataNotFoundException ? exception.getMessage()
+                        : "Could not get stock prices for symbol '" + symbol + "'").build());
+              }
+            });
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while streaming stock prices", e);
+      }
+    };
+
+    return ResponseEntity.ok().contentType(APPLICATION_X_NDJSON).body(body);
+  }
+
+  /*
+   * Write a response as one line of JSON, and send it to the client straight away.
+   */
+  private void writeLine(final OutputStream out, final StockPriceResponse response)
+      throws IOException {
+    jsonConverter.write(response, out);
+    out.write('\n');
+    out.flush();
+  }
+
+  /*
+   * Return the end of a date range request: the to date, or today if it isn't given. Throws an
+   * InvalidDateRangeException if the range ends before from.
+   */
+  private LocalDate getEnd(final LocalDate from, final LocalDate to) {
+    LocalDate end = to == null ? LocalDate.now(clock) : to;
+    if (from.isAfter(end)) {
+      throw new InvalidDateRangeException(from, end);
+    }
+    return end;
   }
 
   /**
-   * Get an ObjectNode representing the metadata of the request.
+   * Get the metadata of the request.
    * @param symbol from params in API request
    * @param days from params in API request; represents number of days to retrieve stock info
+   * @param from from params in API request, or null if not a date range request
+   * @param to from params in API request, or null if not a date range request
    * @return
    */
-  private ObjectNode getMetadata(final ObjectMapper objectMapper, final String symbol,
-      final int days) {
-    ObjectNode metadata = objectMapper.createObjectNode();
-    metadata.put("description", "Daily stock prices (open)"); // should i use open or?
-    metadata.put("symbol", symbol);
-    metadata.put("days", days);
-    metadata.put("timezone", "America/New_York");
-    return metadata;
+  private StockPriceResponse.Metadata getMetadata(final String symbol, final int days,
+      final LocalDate from, final LocalDate to) {
+    return StockPriceResponse.Metadata.builder()
+        .description("Daily stock prices (open)") // should i use open or?
+        .symbol(symbol)
+        .days(days)
+        .timezone("America/New_York")
+        .from(from)
+        .to(to).build();
   }
 }
@@ -0,0 +1,13 @@
+package org.galatea.starter.entrypoint.exception;
+
+import java.time.LocalDate;
+
+public class InvalidDateRangeException extends RuntimeException {
+
+  /**
+   * Create an InvalidDateRangeException for a range whose from date is after its to date.
+   */
+  public InvalidDateRangeException(final LocalDate from, final LocalDate to) {
+    super("From date " + from + " must not be after to date " + to);
+  }
+}
@@ -0,0 +1,22 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+import org.galatea.starter.domain.BarPeriod;
+import org.galatea.starter.domain.StockPriceBar;
+
+/**
+ * Response to a /price/bars request: the same metadata as a /price response, the period of the
+ * bars, and the bars, sorted by date descending.
+ */
+@Builder
+@Value
+public class StockPriceBarsResponse {
+
+  StockPriceResponse.Metadata metadata;
+
+  BarPeriod period;
+
+  List<StockPriceBar> data;
+}
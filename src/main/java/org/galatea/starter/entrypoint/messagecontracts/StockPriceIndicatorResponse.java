@@ -0,0 +1,24 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+import org.galatea.starter.domain.Indicator;
+import org.galatea.starter.domain.IndicatorValue;
+
+/**
+ * Response to a /price/indicator request: the same metadata as a /price response, the indicator
+ * and its window, and the indicator's values, sorted by date descending.
+ */
+@Builder
+@Value
+public class StockPriceIndicatorResponse {
+
+  StockPriceResponse.Metadata metadata;
+
+  Indicator indicator;
+
+  int window;
+
+  List<IndicatorValue> data;
+}
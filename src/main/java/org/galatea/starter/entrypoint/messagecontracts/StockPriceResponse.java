@@ -0,0 +1,60 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
+import java.time.LocalDate;
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+import org.galatea.starter.domain.StockPrice;
+
+/**
+ * Response to a /price request: metadata describing the request, and the StockPrices found, sorted
+ * by date descending.
+ *
+ * <p>This is written straight to the response body by StockPriceResponseJsonConverter (JSON) or
+ * StockPriceResponseProtoConverter (protobuf), so the controller doesn't need to build a JSON tree.
+ * Its shape matches what Jackson would produce for it, so any other JSON converter gives the same
+ * result.
+ */
+@Builder
+@Value
+public class StockPriceResponse {
+
+  Metadata metadata;
+
+  List<StockPrice> data;
+
+  // only set for a symbol that failed in a batch request, in which case data is empty
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  String error;
+
+  /**
+   * Describes the request that a StockPriceResponse answers.
+   */
+  @Builder(toBuilder = true)
+  @Value
+  public static class Metadata {
+
+    String description;
+
+    String symbol;
+
+    int days;
+
+    String timezone;
+
+    // only set for date range requests
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    @JsonSerialize(using = LocalDateSerializer.class)
+    LocalDate from;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    @JsonSerialize(using = LocalDateSerializer.class)
+    LocalDate to;
+  }
+}
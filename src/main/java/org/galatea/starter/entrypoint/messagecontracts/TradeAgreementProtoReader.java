@@ -0,0 +1,121 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+
+/**
+ * Reads TradeAgreements straight from the protobuf wire format, without building a
+ * TradeAgreementProtoMessage (and the ByteStrings its fields are held in) for each of them first.
+ *
+ * <p>Reads either a TradeAgreementProtoMessage or a TradeAgreementProtoMessages, which can be told
+ * apart by their fields: a TradeAgreementProtoMessages only has the repeated message field (1),
+ * which a TradeAgreementProtoMessage doesn't have. Unknown fields are skipped, like the generated
+ * parsers do. An empty message is read as a TradeAgreementProtoMessages with no agreements.
+ */
+public final class TradeAgreementProtoReader {
+
+  private TradeAgreementProtoReader() {
+  }
+
+  /**
+   * Read the TradeAgreements of a serialized TradeAgreementProtoMessage or
+   * TradeAgreementProtoMessages. Throws InvalidProtocolBufferException if the input isn't either,
+   * or IOException if it can't be read.
+   * @param input input positioned at the start of the message
+   * @return
+   */
+  public static List<TradeAgreement> read(final CodedInputStream input) throws IOException {
+    List<TradeAgreement> agreements = new ArrayList<>();
+    TradeAgreement.TradeAgreementBuilder topLevel = null;
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (WireFormat.getTagFieldNumber(tag) == TradeAgreementProtoMessages.MESSAGE_FIELD_NUMBER
+          && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+        int limit = input.pushLimit(input.readRawVarint32());
+        TradeAgreement.TradeAgreementBuilder agreement = newAgreement();
+        while ((tag = input.readTag()) != 0) {
+          readField(input, tag, agreement);
+        }
+        input.popLimit(limit);
+        agreements.add(agreement.build());
+      } else {
+        if (topLevel == null) {
+          topLevel = newAgreement();
+        }
+        readField(input, tag, topLevel);
+      }
+    }
+
+    if (topLevel == null) {
+      // a TradeAgreementProtoMessages, which may have no agreements at all
+      return agreements;
+    }
+    if (!agreements.isEmpty()) {
+      throw new InvalidProtocolBufferException(
+          "Message has both TradeAgreementProtoMessage and TradeAgreementProtoMessages fields");
+    }
+    return Collections.singletonList(topLevel.build());
+  }
+
+  /*
+   * Builder with the proto3 defaults of a TradeAgreementProtoMessage.
+   */
+  private static TradeAgreement.TradeAgreementBuilder newAgreement() {
+    return TradeAgreement.builder().instrument("").internalParty("").externalParty("")
+        .buySell("").qty(0d);
+  }
+
+  /*
+   * Read a TradeAgreementProtoMessage field into the given builder, or skip it if it isn't one.
+   */
+  private static void readField(final CodedInputStream input, final int tag,
+      final TradeAgreement.TradeAgreementBuilder agreement) throws IOException {
+    int wireType = WireFormat.getTagWireType(tag);
+    boolean lengthDelimited = wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    switch (WireFormat.getTagFieldNumber(tag)) {
+      case TradeAgreementProtoMessage.INSTRUMENT_FIELD_NUMBER:
+        if (lengthDelimited) {
+          agreement.instrument(input.readStringRequireUtf8());
+          return;
+        }
+        break;
+      case TradeAgreementProtoMessage.INTERNAL_PARTY_FIELD_NUMBER:
+        if (lengthDelimited) {
+          agreement.internalParty(input.readStringRequireUtf8());
+          return;
+        }
+        break;
+      case TradeAgreementProtoMessage.EXTERNAL_PARTY_FIELD_NUMBER:
+        if (lengthDelimited) {
+          agreement.externalParty(input.readStringRequireUtf8());
+          return;
+        }
+        break;
+      case TradeAgreementProtoMessage.BUY_SELL_FIELD_NUMBER:
+        if (lengthDelimited) {
+          agreement.buySell(input.readStringRequireUtf8());
+          return;
+        }
+        break;
+      case TradeAgreementProtoMessage.QTY_FIELD_NUMBER:
+        if (wireType == WireFormat.WIRETYPE_FIXED64) {
+          agreement.qty(input.readDouble());
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    if (!input.skipField(tag)) {
+      throw new InvalidProtocolBufferException("Unexpected end group tag " + tag);
+    }
+  }
+}
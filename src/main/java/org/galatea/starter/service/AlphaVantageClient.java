@@ -0,0 +1,46 @@
+package org.galatea.starter.service;
+
+import feign.RequestInterceptor;
+import feign.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * A Feign Declarative REST Client to access the Alpha Vantage API. The API key is added to every
+ * request by AlphaVantageClient.Config. See https://www.alphavantage.co/documentation/
+ */
+@FeignClient(name = "AlphaVantage", url = "${alpha-vantage.basePath}",
+    configuration = AlphaVantageClient.Config.class)
+public interface AlphaVantageClient {
+
+  /**
+   * Get the daily time series for the given symbol. The response is returned as is, so that its
+   * body can be streamed rather than buffered and bound in one go. The caller must close it.
+   *
+   * @param symbol stock symbol to get the time series for.
+   * @param outputSize compact (the latest 100 days) or full (20+ years of history).
+   * @return the raw TIME_SERIES_DAILY response.
+   */
+  @GetMapping("/query?function=TIME_SERIES_DAILY")
+  Response getDailyTimeSeries(@RequestParam("symbol") String symbol,
+      @RequestParam("outputsize") String outputSize);
+
+  /**
+   * Feign configuration for AlphaVantageClient only. Deliberately not a @Configuration, so that
+   * the interceptor isn't picked up by component scanning and applied to other Feign clients.
+   */
+  class Config {
+
+    /**
+     * Add the Alpha Vantage API key to every request.
+     */
+    @Bean
+    public RequestInterceptor alphaVantageApiKeyInterceptor(
+        @Value("${alpha-vantage.api-key}") final String apiKey) {
+      return template -> template.query("apikey", apiKey);
+    }
+  }
+}
@@ -0,0 +1,234 @@
+package org.galatea.starter.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceInfo;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads Alpha Vantage TIME_SERIES_DAILY responses a token at a time, handing each day to a
+ * consumer as a StockPrice as soon as it has been read.
+ *
+ * <p>Unlike binding the response to StockPriceMessages, this never holds the whole time series in
+ * memory, and stops reading once the requested number of days has been read. Alpha Vantage lists
+ * the time series by date descending, so those are the most recent days.
+ */
+@Slf4j
+@Component
+public class AlphaVantageDailySeriesReader {
+
+  private static final String METADATA = "Meta Data";
+  private static final String SYMBOL = "2. Symbol";
+  private static final String TIME_SERIES = "Time Series (Daily)";
+  private static final String OPEN = "1. open";
+  private static final String HIGH = "2. high";
+  private static final String LOW = "3. low";
+  private static final String CLOSE = "4. close";
+  private static final String VOLUME = "5. volume";
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+
+  /**
+   * Read at most limit days from the given Alpha Vantage response and pass them to the consumer,
+   * most recent first. The stream is not closed.
+   * @param in Alpha Vantage TIME_SERIES_DAILY response body
+   * @param limit maximum number of days to read
+   * @param consumer receives a StockPrice for each day read
+   * @return the number of days read
+   * @throws TranslationException if the response isn't a daily time series, e.g. if Alpha Vantage
+   *     returned an error message instead
+   * @throws IOException if the stream can't be read
+   */
+  public int read(final InputStream in, final int limit, final Consumer<StockPrice> consumer)
+      throws IOException {
+    return read(in, limit, LocalDate.MIN, consumer);
+  }
+
+  /**
+   * Read at most limit days from the given Alpha Vantage response and pass them to the consumer,
+   * most recent first, stopping after the first day on or before the given date. That day is
+   * included so that the days read overlap the days the caller already has. The stream is not
+   * closed.
+   * @param in Alpha Vantage TIME_SERIES_DAILY response body
+   * @param limit maximum number of days to read
+   * @param since date of the most recent day the caller already has
+   * @param consumer receives a StockPrice for each day read
+   * @return the number of days read
+   * @throws TranslationException if the response isn't a daily time series, e.g. if Alpha Vantage
+   *     returned an error message instead
+   * @throws IOException if the stream can't be read
+   */
+  public int read(final InputStream in, final int limit, final LocalDate since,
+      final Consumer<StockPrice> consumer) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(in)) {
+      parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+      expect(parser.nextToken(), JsonToken.START_OBJECT);
+      String symbol = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if (METADATA.equals(field)) {
+          symbol = readSymbol(parser);
+        } else if (TIME_SERIES.equals(field)) {
+          if (symbol == null) {
+            throw new TranslationException(
+                "Expected '" + METADATA + "' before '" + TIME_SERIES + "'");
+          }
+          expect(value, JsonToken.START_OBJECT);
+          return readTimeSeries(parser, symbol, limit, since, consumer);
+        } else {
+          // Alpha Vantage reports errors and exceeded quotas as a 200 with a message field
+          if (value == JsonToken.VALUE_STRING) {
+            log.warn("Alpha Vantage responded with '{}': {}", field, parser.getText());
+          }
+          parser.skipChildren();
+        }
+      }
+      throw new TranslationException("No '" + TIME_SERIES + "' in Alpha Vantage response");
+    } catch (JsonProcessingException e) {
+      throw new TranslationException("Could not parse Alpha Vantage response", e);
+    }
+  }
+
+  /*
+   * Read the symbol from the metadata object the parser is positioned at.
+   */
+  private String readSymbol(final JsonParser parser) throws IOException {
+    expect(parser.currentToken(), JsonToken.START_OBJECT);
+    String symbol = null;
+    while (nextField(parser)) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (SYMBOL.equals(field)) {
+        symbol = parser.getText();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (symbol == null) {
+      throw new TranslationException("No '" + SYMBOL + "' in Alpha Vantage metadata");
+    }
+    return symbol;
+  }
+
+  private int readTimeSeries(final JsonParser parser, final String symbol, final int limit,
+      final LocalDate since, final Consumer<StockPrice> consumer) throws IOException {
+    int read = 0;
+    while (read < limit && nextField(parser)) {
+      LocalDate date = parseDate(parser.getCurrentName());
+      expect(parser.nextToken(), JsonToken.START_OBJECT);
+      consumer.accept(StockPrice.builder()
+          .symbol(symbol)
+          .date(date)
+          .prices(readPrices(parser)).build());
+      read++;
+      if (!date.isAfter(since)) {
+        break;
+      }
+    }
+    log.info("Read {} days of {} prices", read, symbol);
+    return read;
+  }
+
+  /*
+   * Read the prices from the object the parser is positioned at.
+   */
+  private StockPriceInfo readPrices(final JsonParser parser) throws IOException {
+    long open = 0;
+    long high = 0;
+    long low = 0;
+    long close = 0;
+    long volume = 0;
+    int found = 0; // bit set of the fields read so far
+    while (nextField(parser)) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      try {
+        switch (field) {
+          case OPEN:
+            open = parsePrice(parser);
+            found |= 1;
+            break;
+          case HIGH:
+            high = parsePrice(parser);
+            found |= 2;
+            break;
+          case LOW:
+            low = parsePrice(parser);
+            found |= 4;
+            break;
+          case CLOSE:
+            close = parsePrice(parser);
+            found |= 8;
+            break;
+          case VOLUME:
+            volume = Long.parseLong(parser.getText());
+            found |= 16;
+            break;
+          default:
+            parser.skipChildren();
+        }
+      } catch (NumberFormatException e) {
+        throw new TranslationException("Invalid value for '" + field + "': " + parser.getText(),
+            e);
+      }
+    }
+    if (found != 31) {
+      throw new TranslationException("Missing prices at " + parser.getCurrentLocation());
+    }
+    return StockPriceInfo.builder()
+        .open(open)
+        .high(high)
+        .low(low)
+        .close(close)
+        .volume(volume).build();
+  }
+
+  /*
+   * Parse the price the parser is positioned at straight from the parser's buffer, without
+   * creating a String or BigDecimal.
+   */
+  private static long parsePrice(final JsonParser parser) throws IOException {
+    return FixedPointPrice.parse(parser.getTextCharacters(), parser.getTextOffset(),
+        parser.getTextLength());
+  }
+
+  /*
+   * Advance to the next field of the current object. Return false at the end of the object, and
+   * throw if the response ends before the object does.
+   */
+  private static boolean nextField(final JsonParser parser) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == JsonToken.END_OBJECT) {
+      return false;
+    }
+    expect(token, JsonToken.FIELD_NAME);
+    return true;
+  }
+
+  private static LocalDate parseDate(final String date) {
+    try {
+      return LocalDate.parse(date);
+    } catch (DateTimeParseException e) {
+      throw new TranslationException("Invalid date: " + date, e);
+    }
+  }
+
+  private static void expect(final JsonToken actual, final JsonToken expected) {
+    if (actual != expected) {
+      throw new TranslationException("Expected " + expected + " but found " + actual);
+    }
+  }
+}
@@ -17,6 +17,7 @@ import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.utils.metrics.LatencyTimed;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
@@ -25,6 +26,7 @@ import org.springframework.validation.annotation.Validated;
 @Log
 @Validated
 @Service
+@LatencyTimed
 public class SettlementService {
 
   @NonNull
@@ -0,0 +1,119 @@
+package org.galatea.starter.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.BarPeriod;
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceBar;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.springframework.stereotype.Service;
+
+@RequiredArgsConstructor
+@Slf4j
+@Service
+public class StockPriceAggregationService {
+
+  // number of decimal places kept for returns
+  private static final int RETURN_SCALE = 6;
+
+  @NonNull
+  StockPriceService stockPriceService;
+
+  /**
+   * Return bars (in date descending order) aggregated from the most recently available stock
+   * prices for the given stock symbol and number of days. The oldest bar may cover only part of
+   * its period.
+   * @param symbol stock symbol to get stock price bars for
+   * @param days number of daily stock prices to aggregate
+   * @param period period covered by each bar
+   * @return
+   */
+  public List<StockPriceBar> getStockPriceBars(final String symbol, final int days,
+      final BarPeriod period) {
+    return aggregate(toSeries(symbol, stockPriceService.getStockPrices(symbol, days)), period);
+  }
+
+  /**
+   * Return bars (in date descending order) aggregated from the stock prices for the given stock
+   * symbol from the given date to the given date (both inclusive). The first and last bars may
+   * cover only part of their period.
+   * @param symbol stock symbol to get stock price bars for
+   * @param from first date to aggregate
+   * @param to last date to aggregate
+   * @param period period covered by each bar
+   * @return
+   */
+  public List<StockPriceBar> getStockPriceBars(final String symbol, final LocalDate from,
+      final LocalDate to, final BarPeriod period) {
+    return aggregate(toSeries(symbol, stockPriceService.getStockPrices(symbol, from, to)),
+        period);
+  }
+
+  /**
+   * Aggregate the given series into bars of the given period, in date descending order. Works in
+   * a single pass over the series' columns, without creating StockPrice objects.
+   * @param series daily stock prices to aggregate
+   * @param period period covered by each bar
+   * @return
+   */
+  public static List<StockPriceBar> aggregate(final StockPriceSeries series,
+      final BarPeriod period) {
+    List<StockPriceBar> bars = new ArrayList<>();
+    long previousClose = 0;
+    // walk the series from oldest (highest index) to newest, closing a bar when the period changes
+    int oldest = series.size() - 1;
+    while (oldest >= 0) {
+      long barPeriod = period.periodOf(series.getEpochDay(oldest));
+      long high = Long.MIN_VALUE;
+      long low = Long.MAX_VALUE;
+      long volume = 0;
+      // sum of typical price (scaled) times volume
+      double priceVolume = 0;
+      int i = oldest;
+      for (; i >= 0 && period.periodOf(series.getEpochDay(i)) == barPeriod; i--) {
+        high = Math.max(high, series.getHigh(i));
+        low = Math.min(low, series.getLow(i));
+        volume += series.getVolume(i);
+        priceVolume += (series.getHigh(i) + series.getLow(i) + series.getClose(i)) / 3.0
+            * series.getVolume(i);
+      }
+      int newest = i + 1;
+      long close = series.getClose(newest);
+
+      bars.add(StockPriceBar.builder()
+          .start(LocalDate.ofEpochDay(series.getEpochDay(oldest)))
+          .end(LocalDate.ofEpochDay(series.getEpochDay(newest)))
+          .days(oldest - newest + 1)
+          .open(FixedPointPrice.toBigDecimal(series.getOpen(oldest)))
+          .high(FixedPointPrice.toBigDecimal(high))
+          .low(FixedPointPrice.toBigDecimal(low))
+          .close(FixedPointPrice.toBigDecimal(close))
+          .volume(volume)
+          .vwap(FixedPointPrice.toBigDecimal(
+              volume == 0 ? close : Math.round(priceVolume / volume)))
+          .periodReturn(previousClose == 0 ? null : BigDecimal.valueOf(close)
+              .divide(BigDecimal.valueOf(previousClose), RETURN_SCALE, RoundingMode.HALF_UP)
+              .subtract(BigDecimal.ONE))
+          .build());
+
+      previousClose = close;
+      oldest = i;
+    }
+    Collections.reverse(bars);
+    return bars;
+  }
+
+  private static StockPriceSeries toSeries(final String symbol,
+      final List<StockPrice> stockPrices) {
+    // the service's results are slices of the stored series, so this doesn't usually copy
+    return StockPriceSeries.of(symbol, stockPrices);
+  }
+}
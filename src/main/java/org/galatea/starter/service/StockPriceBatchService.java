@@ -0,0 +1,162 @@
+package org.galatea.starter.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.StockPrice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Gets the most recent stock prices for many symbols at once, handing each symbol's prices to a
+ * listener as soon as they are available.
+ *
+ * <p>Symbols whose stored prices are up to date are answered first, on the calling thread, from
+ * memory or from a single database query for all of them. The rest need an Alpha Vantage call,
+ * so they are fetched in parallel on a bounded pool of workers. Their calls still go through the
+ * Alpha Vantage rate limiter, so the pool only bounds how many of them wait at once. When the
+ * pool's queue is full, the calling thread fetches the symbol itself.
+ */
+@Slf4j
+@Service
+public class StockPriceBatchService {
+
+  /**
+   * Receives the result for each symbol of a batch. Calls are made one at a time, from the thread
+   * that called getStockPrices.
+   */
+  public interface Listener {
+
+    /**
+     * Called with the stock prices found for a symbol.
+     */
+    void onStockPrices(String symbol, List<StockPrice> stockPrices) throws IOException;
+
+    /**
+     * Called if the stock prices for a symbol couldn't be found.
+     */
+    void onError(String symbol, RuntimeException exception) throws IOException;
+  }
+
+  private final StockPriceService stockPriceService;
+
+  private final ExecutorService workers;
+
+  /**
+   * Create a StockPriceBatchService. Arguments are autowired by Spring.
+   */
+  public StockPriceBatchService(final StockPriceService stockPriceService,
+      @Value("${mvc.batch-price.threads}") final int threads,
+      @Value("${mvc.batch-price.queue-size}") final int queueSize) {
+    this.stockPriceService = stockPriceService;
+    this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("price-batch-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  /**
+   * Get the most recent stock prices for each of the given symbols, and hand them to the given
+   * listener as they become available. Returns once every symbol has been handed to the listener.
+   * If the listener throws, the symbols that haven't been handed to it yet are abandoned.
+   * @param symbols stock symbols to get stock price information about
+   * @param days number of days to get stock price information for
+   * @param listener receives the stock prices (or error) for each symbol
+   */
+  public void getStockPrices(final Collection<String> symbols, final int days,
+      final Listener listener) throws IOException, InterruptedException {
+    CompletionService<Result> fetches = new ExecutorCompletionService<>(workers);
+    List<Future<Result>> submitted = new ArrayList<>();
+    boolean done = false;
+    try {
+      Map<String, List<StockPrice>> stored = findStoredStockPrices(symbols, days);
+      for (String symbol : symbols) {
+        if (stored.containsKey(symbol)) {
+          listener.onStockPrices(symbol, stored.get(symbol));
+        } else {
+          submitted.add(fetches.submit(() -> fetch(symbol, days)));
+        }
+      }
+      log.info("Answered {} of {} symbols from stored prices, fetching the rest",
+          symbols.size() - submitted.size(), symbols.size());
+
+      for (int i = 0; i < submitted.size(); i++) {
+        Result result = fetches.take().get();
+        if (result.exception == null) {
+          listener.onStockPrices(result.symbol, result.stockPrices);
+        } else {
+          listener.onError(result.symbol, result.exception);
+        }
+      }
+      done = true;
+    } catch (ExecutionException e) {
+      // fetch catches everything a fetch can throw
+      throw new IllegalStateException(e);
+    } finally {
+      if (!done) {
+        // stop fetches that nobody will read
+        submitted.forEach(fetch -> fetch.cancel(true));
+      }
+    }
+  }
+
+  /**
+   * Stop the workers when the application shuts down.
+   */
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  private Map<String, List<StockPrice>> findStoredStockPrices(final Collection<String> symbols,
+      final int days) {
+    try {
+      return stockPriceService.findStoredStockPrices(symbols, days);
+    } catch (RuntimeException e) {
+      // fetch them all instead
+      log.warn("Could not look up stored stock prices", e);
+      return Collections.emptyMap();
+    }
+  }
+
+  private Result fetch(final String symbol, final int days) {
+    try {
+      return new Result(symbol, stockPriceService.getStockPrices(symbol, days), null);
+    } catch (RuntimeException e) {
+      return new Result(symbol, null, e);
+    }
+  }
+
+  /*
+   * The stock prices for a symbol, or the exception thrown while getting them.
+   */
+  private static final class Result {
+
+    private final String symbol;
+
+    private final List<StockPrice> stockPrices;
+
+    private final RuntimeException exception;
+
+    private Result(final String symbol, final List<StockPrice> stockPrices,
+        final RuntimeException exception) {
+      this.symbol = symbol;
+      this.stockPrices = stockPrices;
+      this.exception = exception;
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package org.galatea.starter.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.Indicator;
+import org.galatea.starter.domain.IndicatorValue;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.domain.rpsy.StockPriceSeriesStore;
+import org.galatea.starter.utils.indicator.IndicatorCalculator;
+import org.springframework.stereotype.Service;
+
+/**
+ * Computes technical indicators over the stored stock price series.
+ *
+ * <p>An indicator is computed once over a symbol's whole stored series, from its oldest day, and
+ * cached per (symbol, indicator, window). When new days are added to the series, only the new days
+ * are computed, in O(1) each. If the series changes in any other way (older days are loaded, or
+ * the series is replaced) the indicator is computed again from scratch.
+ *
+ * <p>Only the MAX_COMPUTED_INDICATORS most recently used indicators are kept, and a symbol's
+ * indicators are dropped when its series is evicted from the StockPriceSeriesStore. Each
+ * indicator is computed under its own lock, so computing one doesn't hold up the others.
+ */
+@Slf4j
+@Service
+public class StockPriceIndicatorService {
+
+  // number of decimal places kept for indicator values
+  private static final int VALUE_SCALE = 6;
+
+  // each holds a value per stored day of its symbol, so about 40 KB for 5000 days
+  private static final int MAX_COMPUTED_INDICATORS = 256;
+
+  StockPriceService stockPriceService;
+
+  StockPriceSeriesStore stockPriceSeriesStore;
+
+  // in access order, so that the least recently used indicator is dropped first. Guarded by its
+  // own lock, which is only held to look up an indicator's slot
+  private final Map<String, IndicatorSlot> computedIndicators =
+      new LinkedHashMap<String, IndicatorSlot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, IndicatorSlot> eldest) {
+          return size() > MAX_COMPUTED_INDICATORS;
+        }
+      };
+
+  /**
+   * Create a StockPriceIndicatorService that drops a symbol's indicators when its series is
+   * evicted from the given store.
+   */
+  public StockPriceIndicatorService(@NonNull final StockPriceService stockPriceService,
+      @NonNull final StockPriceSeriesStore stockPriceSeriesStore) {
+    this.stockPriceService = stockPriceService;
+    this.stockPriceSeriesStore = stockPriceSeriesStore;
+    stockPriceSeriesStore.addEvictionListener(this::evict);
+  }
+
+  /**
+   * Return the values (in date descending order) of the given indicator for the most recently
+   * available days of the given stock symbol. Days too early in the series to have a value are
+   * left out.
+   * @param symbol stock symbol to compute the indicator for
+   * @param indicator indicator to compute
+   * @param window number of days the indicator looks back over
+   * @param days number of days to return values for
+   * @return
+   */
+  public List<IndicatorValue> getIndicator(final String symbol, final Indicator indicator,
+      final int window, final int days) {
+    // make sure the series is up to date and long enough for the first day to have a value
+    int lookback = (int) Math.min((long) days + window, Integer.MAX_VALUE);
+    List<StockPrice> stockPrices = stockPriceService.getStockPrices(symbol, lookback);
+    if (stockPrices.isEmpty() || days == 0) {
+      return new ArrayList<>();
+    }
+
+    // the stored series up to the most recent complete day
+    StockPriceSeries stored = stockPriceSeriesStore.getSeries(symbol);
+    StockPriceSeries series = stored.between(
+        LocalDate.ofEpochDay(stored.getEpochDay(stored.size() - 1)),
+        stockPrices.get(0).getDate());
+
+    String key = symbol.toUpperCase(Locale.ROOT) + ":" + indicator + ":" + window;
+    IndicatorSlot slot;
+    synchronized (computedIndicators) {
+      slot = computedIndicators.computeIfAbsent(key, k -> new IndicatorSlot());
+    }
+    ComputedIndicator computed = slot.computeFor(series, () -> {
+      log.info("Computing {} over {} days", key, series.size());
+      return new ComputedIndicator(indicator.newCalculator(window), series);
+    });
+
+    List<IndicatorValue> values = new ArrayList<>(Math.min(days, series.size()));
+    for (int i = 0; i < Math.min(days, series.size()); i++) {
+      double value = computed.getValue(series.size() - 1 - i);
+      if (Double.isNaN(value)) {
+        break;
+      }
+      values.add(IndicatorValue.builder()
+          .date(LocalDate.ofEpochDay(series.getEpochDay(i)))
+          .value(BigDecimal.valueOf(value).setScale(VALUE_SCALE, RoundingMode.HALF_UP))
+          .build());
+    }
+    return values;
+  }
+
+  /*
+   * Return the number of indicators held in memory.
+   */
+  int getComputedIndicatorCount() {
+    synchronized (computedIndicators) {
+      return computedIndicators.size();
+    }
+  }
+
+  private void evict(final String symbol) {
+    synchronized (computedIndicators) {
+      computedIndicators.keySet().removeIf(key -> key.startsWith(symbol + ":"));
+    }
+  }
+
+  /*
+   * The values of one (symbol, indicator, window), computed and extended under the slot's lock.
+   * A slot dropped from the map while it is computing just finishes, and is forgotten.
+   */
+  private static final class IndicatorSlot {
+
+    private ComputedIndicator computed;
+
+    /*
+     * Return the values extended to the given series, or computed from scratch over it if they
+     * can't be extended.
+     */
+    synchronized ComputedIndicator computeFor(final StockPriceSeries series,
+        final Supplier<ComputedIndicator> compute) {
+      if (computed != null && computed.canExtendTo(series)) {
+        computed = computed.extendTo(series);
+      } else {
+        computed = compute.get();
+      }
+      return computed;
+    }
+  }
+
+  /*
+   * An indicator's values for the oldest count days of a series, oldest first, and the
+   * calculator's state after the last of them.
+   *
+   * Extending appends to the values array in place when it has room, so an extension shares the
+   * array with the instance it was extended from. That instance only ever reads the first count
+   * values, which don't change, so it stays valid. Extensions of the same instance must not run
+   * concurrently, which the lock on its IndicatorSlot guarantees.
+   */
+  private static final class ComputedIndicator {
+
+    private final IndicatorCalculator calculator;
+
+    private final double[] values;
+
+    private final int count;
+
+    // first and last day the values are for
+    private final int firstEpochDay;
+
+    private final int lastEpochDay;
+
+    ComputedIndicator(final IndicatorCalculator calculator, final StockPriceSeries series) {
+      this(calculator, new double[series.size()], 0, series);
+    }
+
+    private ComputedIndicator(final IndicatorCalculator calculator, final double[] values,
+        final int count, final StockPriceSeries series) {
+      for (int i = count; i < series.size(); i++) {
+        values[i] = calculator.next(series, series.size() - 1 - i);
+      }
+      this.calculator = calculator;
+      this.values = values;
+      this.count = series.size();
+      this.firstEpochDay = series.isEmpty() ? 0 : series.getEpochDay(series.size() - 1);
+      this.lastEpochDay = series.isEmpty() ? 0 : series.getEpochDay(0);
+    }
+
+    /*
+     * Return true if the given series starts with the days these values are for, so the values
+     * can be extended to it.
+     */
+    boolean canExtendTo(final StockPriceSeries series) {
+      return count > 0 && series.size() >= count
+          && series.getEpochDay(series.size() - 1) == firstEpochDay
+          && series.getEpochDay(series.size() - count) == lastEpochDay;
+    }
+
+    ComputedIndicator extendTo(final StockPriceSeries series) {
+      if (series.size() == count) {
+        return this;
+      }
+      double[] extended = series.size() <= values.length ? values
+          : Arrays.copyOf(values, Math.max(series.size(), values.length * 3 / 2));
+      return new ComputedIndicator(calculator, extended, count, series);
+    }
+
+    /*
+     * Return the value for the day at the given index from the oldest day.
+     */
+    double getValue(final int index) {
+      return values[index];
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package org.galatea.starter.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Priority;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refreshes the stock prices of a configured list of symbols after the market closes, so that the
+ * first /price requests of the evening are answered from memory instead of waiting on Alpha
+ * Vantage.
+ *
+ * <p>Symbols are refreshed by a small, fixed pool of workers. Their Alpha Vantage calls have
+ * background priority, so they only use the part of the request quota that /price requests leave
+ * free. Progress is published as the alphavantage.prewarm.* metrics.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "alpha-vantage.prewarm.enabled", havingValue = "true")
+public class StockPricePrewarmer {
+
+  private final StockPriceService stockPriceService;
+
+  private final List<String> symbols;
+
+  private final int days;
+
+  private final ExecutorService workers;
+
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private final Counter succeeded;
+
+  private final Counter failed;
+
+  private final Timer duration;
+
+  /**
+   * Create a StockPricePrewarmer. Arguments are autowired by Spring from the alpha-vantage.prewarm
+   * properties.
+   */
+  public StockPricePrewarmer(final StockPriceService stockPriceService,
+      final MeterRegistry meterRegistry,
+      @Value("${alpha-vantage.prewarm.symbols}") final String[] symbols,
+      @Value("${alpha-vantage.prewarm.days}") final int days,
+      @Value("${alpha-vantage.prewarm.threads}") final int threads) {
+    this.stockPriceService = stockPriceService;
+    this.symbols = Arrays.asList(symbols);
+    this.days = days;
+    this.workers = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("prewarm-%d").setDaemon(true).build());
+
+    meterRegistry.gauge("alphavantage.prewarm.pending", pending);
+    this.succeeded = meterRegistry.counter("alphavantage.prewarm.symbols", "result", "success");
+    this.failed = meterRegistry.counter("alphavantage.prewarm.symbols", "result", "failure");
+    this.duration = meterRegistry.timer("alphavantage.prewarm.duration");
+  }
+
+  /**
+   * Refresh every configured symbol, and return once they have all been refreshed. A symbol that
+   * fails to refresh is logged and skipped. Runs on the alpha-vantage.prewarm.cron schedule, which
+   * should be after TradingCalendar.getMostRecentTradingDay starts expecting the current day's
+   * prices.
+   */
+  @Scheduled(cron = "${alpha-vantage.prewarm.cron}", zone = "America/New_York")
+  public void prewarm() {
+    log.info("Pre-warming {} days of stock prices for {} symbols", days, symbols.size());
+    duration.record(() -> {
+      pending.set(symbols.size());
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (String symbol : symbols) {
+        tasks.add(() -> {
+          prewarm(symbol);
+          return null;
+        });
+      }
+      try {
+        workers.invokeAll(tasks);
+      } catch (InterruptedException e) {
+        log.warn("Interrupted while pre-warming stock prices");
+        Thread.currentThread().interrupt();
+      }
+    });
+    log.info("Finished pre-warming stock prices");
+  }
+
+  private void prewarm(final String symbol) {
+    try {
+      // background priority, so that the job doesn't hold up /price requests
+      stockPriceService.getStockPrices(symbol, days, Priority.BACKGROUND);
+      succeeded.increment();
+    } catch (RuntimeException e) {
+      log.warn("Could not pre-warm stock prices for {}", symbol, e);
+      failed.increment();
+    } finally {
+      pending.decrementAndGet();
+    }
+  }
+
+  /**
+   * Stop the workers when the application shuts down.
+   */
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+}
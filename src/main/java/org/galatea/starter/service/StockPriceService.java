@@ -1,40 +1,79 @@
 package org.galatea.starter.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
-import java.net.URL;
+import feign.FeignException;
+import feign.Response;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Clock;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
 import org.galatea.starter.domain.rpsy.IStockPriceRpsy;
+import org.galatea.starter.domain.rpsy.StockPriceSeriesStore;
 import org.galatea.starter.entrypoint.exception.DataNotFoundException;
-import org.galatea.starter.entrypoint.messagecontracts.StockPriceMessages;
-import org.galatea.starter.utils.Helpers;
-import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.TradingCalendar;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Priority;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Ticket;
+import org.galatea.starter.utils.concurrent.SingleFlight;
+import org.galatea.starter.utils.metrics.LatencyTimed;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 @RequiredArgsConstructor
 @Slf4j
 @Service
+@LatencyTimed
 public class StockPriceService {
 
+  // number of days in an Alpha Vantage "compact" response
+  private static final int COMPACT_SIZE = 100;
+
   @NonNull
   IStockPriceRpsy stockPriceRpsy;
 
   @NonNull
-  ITranslator<StockPriceMessages, List<StockPrice>> stockMessagesTranslator;
+  StockPriceSeriesStore stockPriceSeriesStore;
+
+  @NonNull
+  AlphaVantageClient alphaVantageClient;
+
+  @NonNull
+  AlphaVantageDailySeriesReader alphaVantageReader;
 
   @NonNull
   Clock clock;
 
+  @NonNull
+  TradingCalendar tradingCalendar;
+
+  @NonNull
+  SingleFlight<String, StockPriceSeries> alphaVantageFetches;
+
+  @NonNull
+  PriorityRateLimiter alphaVantageRateLimiter;
+
   /**
    * Return a list (in Date descending order) containing the most recently available stock price
    * information for the given stock symbol and number of days.
@@ -42,28 +81,195 @@ public class StockPriceService {
    * @param days number of days to get stock price information for
    * @return
    */
+  public List<StockPrice> getStockPrices(final String symbol, final int days) {
+    return getStockPrices(symbol, days, Priority.INTERACTIVE);
+  }
+
+  /**
+   * Like getStockPrices(symbol, days), but with the given priority for any call to Alpha Vantage
+   * it has to make.
+   * @param symbol stock symbol to get stock price information about
+   * @param days number of days to get stock price information for
+   * @param priority priority of Alpha Vantage calls: see PriorityRateLimiter
+   * @return
+   */
   public List<StockPrice> getStockPrices(final String symbol, final int days,
-      final String apiKey, final String basePath) {
+      final Priority priority) {
 
-    // retrieve relevant records from db, sorted by date desc
-    List<StockPrice> stockPrices = findStockPricesBySymbol(symbol);
+    // retrieve relevant records from the in-memory series, sorted by date desc. The series is
+    // loaded from the db the first time the symbol is requested.
+    List<StockPrice> stockPrices = stockPriceSeriesStore.getSeries(symbol);
 
-    // make api call to AlphaVantage if necessary
+    // make api call to AlphaVantage if necessary. Concurrent requests for the same fetch share a
+    // single call, whatever their priority: an interactive request that joins a background fetch
+    // promotes it instead.
     if (!hasNecessaryStockPrices(stockPrices, days)) {
-      StockPriceMessages result = makeApiCall(symbol, (days > 100 ? "full" : "compact"),
-          apiKey, basePath);
-      stockPrices = stockMessagesTranslator.translate(result);
-      // store result of api call in db
-      saveStockPricesIfNotExists(stockPrices);
-      // sort stockPrices by date desc
-      Collections.sort(stockPrices, Comparator.comparing(StockPrice::getDate));
-      Collections.reverse(stockPrices);
+      String key = symbol.toUpperCase(Locale.ROOT);
+      long missingDays = stockPrices.isEmpty() ? Long.MAX_VALUE
+          : tradingCalendar.countTradingDaysBetween(stockPrices.get(0).getDate(),
+              tradingCalendar.getMostRecentTradingDay(clock));
+
+      if (missingDays < COMPACT_SIZE && stockPrices.size() + missingDays >= days) {
+        // the series is only missing its newest days: fetch just those and merge them in
+        LocalDate newest = stockPrices.get(0).getDate();
+        log.info("Refreshing {} days of {} after {}", missingDays, symbol, newest);
+        stockPrices = alphaVantageFetches.execute(key + ":since:" + newest,
+            () -> new FetchRequest(COMPACT_SIZE, priority),
+            request -> request.join(COMPACT_SIZE, priority),
+            request -> fetchNewStockPrices(symbol, newest, request));
+      } else {
+        String outputSize = days > COMPACT_SIZE ? "full" : "compact";
+        // requests for any number of days share the fetch of their output size. A compact
+        // response is read whole, and a full one only as far as the most days any of the requests
+        // sharing it asked for.
+        int limit = days > COMPACT_SIZE ? days : COMPACT_SIZE;
+        stockPrices = alphaVantageFetches.execute(key + ":" + outputSize,
+            () -> new FetchRequest(limit, priority), request -> request.join(limit, priority),
+            request -> fetchStockPrices(symbol, outputSize, request));
+      }
     }
 
     // filter to only necessary stock prices
     return findFirstStockPrices(removeIncompleteData(stockPrices), days);
   }
 
+  /**
+   * Return a list (in Date descending order) containing the stock price information for the given
+   * stock symbol from the given date to the given date (both inclusive). Days after the most
+   * recent complete trading day are left out.
+   *
+   * <p>If the symbol's series isn't in memory, the range is first looked up in the database with a
+   * range query, so a historical window doesn't load the symbol's whole history. Otherwise, or if
+   * the database is missing some of the range, the series is brought up to date as for "last N
+   * days" requests and then sliced.
+   * @param symbol stock symbol to get stock price information about
+   * @param from first date to get stock price information for
+   * @param to last date to get stock price information for
+   * @return
+   */
+  public List<StockPrice> getStockPrices(final String symbol, final LocalDate from,
+      final LocalDate to) {
+    LocalDate mostRecentTradingDay = tradingCalendar.getMostRecentTradingDay(clock);
+    LocalDate end = to.isAfter(mostRecentTradingDay) ? mostRecentTradingDay : to;
+    if (from.isAfter(end)) {
+      return StockPriceSeries.empty(symbol);
+    }
+
+    if (!stockPriceSeriesStore.findLoadedSeries(symbol).isPresent()) {
+      List<StockPrice> stored = stockPriceRpsy.findBySymbolAndDateBetweenOrderByDateDesc(
+          symbol.toUpperCase(Locale.ROOT), from, end);
+      if (stored.size() >= tradingCalendar.countTradingDaysBetween(from.minusDays(1), end)) {
+        log.info("Found {} StockPrices for {} from {} to {} in the database", stored.size(),
+            symbol, from, end);
+        return StockPriceSeries.of(symbol, stored);
+      }
+    }
+
+    // make sure the series reaches back to from, then take the range from it
+    long days = tradingCalendar.countTradingDaysBetween(from.minusDays(1), mostRecentTradingDay);
+    getStockPrices(symbol, (int) Math.min(days, Integer.MAX_VALUE));
+    return stockPriceSeriesStore.getSeries(symbol).between(from, end);
+  }
+
+  /**
+   * Return the same lists as getStockPrices(symbol, days) for those of the given symbols that can
+   * be answered from stored prices, without calling Alpha Vantage, keyed by symbol. Symbols whose
+   * series isn't in memory are looked up in the database with a single query for the days they
+   * need, rather than by loading each of their series.
+   * @param symbols stock symbols to get stock price information about
+   * @param days number of days to get stock price information for
+   * @return
+   */
+  public Map<String, List<StockPrice>> findStoredStockPrices(final Collection<String> symbols,
+      final int days) {
+    Map<String, List<StockPrice>> found = new HashMap<>();
+    Map<String, String> coldSymbols = new HashMap<>();
+    for (String symbol : symbols) {
+      Optional<StockPriceSeries> series = stockPriceSeriesStore.findLoadedSeries(symbol);
+      if (!series.isPresent()) {
+        coldSymbols.put(symbol.toUpperCase(Locale.ROOT), symbol);
+      } else if (hasNecessaryStockPrices(series.get(), days)) {
+        found.put(symbol, findFirstStockPrices(removeIncompleteData(series.get()), days));
+      }
+    }
+    if (coldSymbols.isEmpty() || days == 0) {
+      // nothing to look up
+      coldSymbols.values().forEach(symbol -> found.put(symbol, Collections.emptyList()));
+      return found;
+    }
+
+    // the days trading days up to the most recent one
+    LocalDate to = tradingCalendar.getMostRecentTradingDay(clock);
+    LocalDate from = to;
+    for (int i = 1; i < days; i++) {
+      from = tradingCalendar.previousTradingDay(from);
+    }
+    Map<String, List<StockPrice>> stored = stockPriceRpsy
+        .findBySymbolInAndDateBetweenOrderByDateDesc(coldSymbols.keySet(), from, to).stream()
+        .collect(Collectors.groupingBy(sp -> sp.getSymbol().toUpperCase(Locale.ROOT)));
+    log.info("Found stored StockPrices for {} of {} symbols that aren't in memory", stored.size(),
+        coldSymbols.size());
+    stored.forEach((key, stockPrices) -> {
+      if (stockPrices.size() >= days) {
+        String symbol = coldSymbols.get(key);
+        found.put(symbol, StockPriceSeries.of(symbol, stockPrices));
+      }
+    });
+    return found;
+  }
+
+  /**
+   * Fetch stock prices for the given symbol from Alpha Vantage, store them in the db and the
+   * in-memory series, and return the updated series (sorted by date desc).
+   * @param symbol stock symbol
+   * @param outputSize outputsize parameter (full or compact): see Alpha Vantage documentation
+   * @param limit maximum number of (most recent) days to read from the response
+   * @param priority priority of the Alpha Vantage call
+   * @return
+   */
+  public StockPriceSeries fetchStockPrices(final String symbol, final String outputSize,
+      final int limit, final Priority priority) {
+    return fetchStockPrices(symbol, outputSize, new FetchRequest(limit, priority));
+  }
+
+  /*
+   * Like fetchStockPrices(symbol, outputSize, limit, priority), with the limit and priority of
+   * the given request.
+   */
+  private StockPriceSeries fetchStockPrices(final String symbol, final String outputSize,
+      final FetchRequest request) {
+    List<StockPrice> fetched = makeApiCall(symbol, outputSize, request, LocalDate.MIN);
+    // store result of api call in db
+    saveStockPricesIfNotExists(fetched);
+    // and in the in-memory series, which keeps it sorted by date desc
+    return stockPriceSeriesStore.append(symbol, fetched);
+  }
+
+  /**
+   * Fetch the stock prices for the given symbol that are newer than the given date from Alpha
+   * Vantage, store them in the db and the in-memory series, and return the updated series (sorted
+   * by date desc). The given date should be less than COMPACT_SIZE trading days ago.
+   * @param symbol stock symbol
+   * @param since date of the most recent stock price already stored
+   * @param priority priority of the Alpha Vantage call
+   * @return
+   */
+  public StockPriceSeries fetchNewStockPrices(final String symbol, final LocalDate since,
+      final Priority priority) {
+    return fetchNewStockPrices(symbol, since, new FetchRequest(COMPACT_SIZE, priority));
+  }
+
+  /*
+   * Like fetchNewStockPrices(symbol, since, priority), with the priority of the given request.
+   */
+  private StockPriceSeries fetchNewStockPrices(final String symbol, final LocalDate since,
+      final FetchRequest request) {
+    // also includes the day at since, so that the new days overlap the series they're merged into
+    List<StockPrice> fetched = makeApiCall(symbol, "compact", request, since);
+    saveStockPricesIfNotExists(fetched);
+    return stockPriceSeriesStore.append(symbol, fetched);
+  }
+
   /**
    * Return a sublist of the given list of StockPrice objects with the given size, ignoring
    * StockPrice objects representing days that haven't been completed.
@@ -79,7 +285,8 @@ public class StockPriceService {
 
   /**
    * Check if the first (most recent) StockPrice object is from a day that isn't complete, which
-   * means its date is after the most recent complete (after 4PM) weekday. If so, remove it.
+   * means its date is after the most recent complete trading day. If so, return a view of the
+   * list without it. The given list is not modified.
    * @param stockPrices list of StockPrice objects, sorted by date desc
    * @return
    */
@@ -88,9 +295,9 @@ public class StockPriceService {
       return stockPrices;
     }
 
-    LocalDate mostRecentWeekday = Helpers.getMostRecentWeekday(clock);
-    if (stockPrices.get(0).getDate().isAfter(mostRecentWeekday)) {
-      stockPrices.remove(0);
+    LocalDate mostRecentTradingDay = tradingCalendar.getMostRecentTradingDay(clock);
+    if (stockPrices.get(0).getDate().isAfter(mostRecentTradingDay)) {
+      return stockPrices.subList(1, stockPrices.size());
     }
 
     return stockPrices;
@@ -103,18 +310,46 @@ public class StockPriceService {
    * @return
    */
   public List<StockPrice> saveStockPricesIfNotExists(final List<StockPrice> stockPrices) {
-    log.info("Filtering out StockPrices that are already in the database.");
-    // List<StockPrice> stockPricesToSave = new ArrayList<>(List.copyOf(stockPrices));
-    // stockPricesToSave.removeAll(stockPriceRpsy.findBySymbol(symbol));
-    List<StockPrice> stockPricesToSave = stockPrices.stream().filter(sp ->
-        stockPriceRpsy.findBySymbolIgnoreCaseAndDate(sp.getSymbol(), sp.getDate()).isEmpty())
-        .collect(Collectors.toList());
-    log.info("Saving filtered StockPrices.");
-    stockPriceRpsy.saveAll(stockPricesToSave);
+    List<StockPrice> stockPricesToSave = findStockPricesNotStored(stockPrices);
+    log.info("Saving {} filtered StockPrices.", stockPricesToSave.size());
+    try {
+      // inserted in batches of hibernate.jdbc.batch_size
+      stockPriceRpsy.saveAll(stockPricesToSave);
+    } catch (DataIntegrityViolationException e) {
+      // another request saved some of the same days after they were looked up, which rolled back
+      // the whole batch. Look them up again and save the rest.
+      log.info("Some StockPrices were saved concurrently, saving the rest.", e);
+      stockPricesToSave.forEach(sp -> sp.setId(null));
+      stockPricesToSave = findStockPricesNotStored(stockPricesToSave);
+      stockPriceRpsy.saveAll(stockPricesToSave);
+    }
     log.info("Finished.");
     return stockPricesToSave;
   }
 
+  /*
+   * Return the given StockPrice objects that aren't in the database yet.
+   */
+  private List<StockPrice> findStockPricesNotStored(final List<StockPrice> stockPrices) {
+    log.info("Filtering out StockPrices that are already in the database.");
+    // one query per symbol for the dates that are already stored, rather than one per StockPrice
+    Map<String, List<StockPrice>> stockPricesBySymbol = stockPrices.stream()
+        .collect(Collectors.groupingBy(sp -> sp.getSymbol().toUpperCase(Locale.ROOT)));
+    List<StockPrice> stockPricesToSave = new ArrayList<>();
+    stockPricesBySymbol.forEach((symbol, symbolStockPrices) -> {
+      LocalDate from = symbolStockPrices.stream().map(StockPrice::getDate)
+          .min(Comparator.naturalOrder()).get();
+      LocalDate to = symbolStockPrices.stream().map(StockPrice::getDate)
+          .max(Comparator.naturalOrder()).get();
+      Set<LocalDate> existingDates = new HashSet<>(
+          stockPriceRpsy.findDatesBySymbolAndDateBetween(symbol, from, to));
+      symbolStockPrices.stream()
+          .filter(sp -> !existingDates.contains(sp.getDate()))
+          .forEach(stockPricesToSave::add);
+    });
+    return stockPricesToSave;
+  }
+
   /**
    * Return all StockPrice records from the database with the given symbol, sorted by date desc.
    * @param symbol stock symbol
@@ -122,7 +357,8 @@ public class StockPriceService {
    */
   public List<StockPrice> findStockPricesBySymbol(final String symbol) {
     log.info("Retrieving StockPrices with symbol {}", symbol);
-    List<StockPrice> found = stockPriceRpsy.findBySymbolIgnoreCaseOrderByDateDesc(symbol);
+    List<StockPrice> found =
+        stockPriceRpsy.findBySymbolOrderByDateDesc(symbol.toUpperCase(Locale.ROOT));
     log.info("Finished.");
     return found;
   }
@@ -143,34 +379,139 @@ public class StockPriceService {
       return false;
     } else {
       LocalDate mostRecentStockPrice = stockPrices.get(0).getDate();
-      LocalDate mostRecentWeekday = Helpers.getMostRecentWeekday(clock);
+      LocalDate mostRecentTradingDay = tradingCalendar.getMostRecentTradingDay(clock);
       log.info("Most recent stock price: {}", mostRecentStockPrice);
-      log.info("Most recent weekday: {}", mostRecentWeekday);
-      return !mostRecentWeekday.isAfter(mostRecentStockPrice) && stockPrices.size() >= days;
+      log.info("Most recent trading day: {}", mostRecentTradingDay);
+      return !mostRecentTradingDay.isAfter(mostRecentStockPrice) && stockPrices.size() >= days;
     }
   }
 
   /**
    * Make an API call to Alpha Vantage's TIME_SERIES_DAILY API using the given parameters,
-   * and return the resulting de-serialized StockPriceMessages object.
+   * and return the (at most limit) most recent StockPrices in the response, sorted by date desc.
+   * The response is parsed as it is read, and the rest of it is skipped once limit days are read.
    * Alpha Vantage API documentation: https://www.alphavantage.co/documentation/
    * @param symbol stock symbol
    * @param outputSize outputsize parameter (full or compact): see Alpha Vantage documentation
+   * @param limit maximum number of days to return
+   * @return
+   */
+  public List<StockPrice> makeApiCall(final String symbol, final String outputSize,
+      final int limit) {
+    return makeApiCall(symbol, outputSize, limit, LocalDate.MIN, Priority.INTERACTIVE);
+  }
+
+  /**
+   * Make an API call to Alpha Vantage's TIME_SERIES_DAILY API like makeApiCall(symbol, outputSize,
+   * limit), but stop reading after the first StockPrice dated on or before since. The call waits
+   * for a token from the Alpha Vantage rate limiter with the given priority before it is made.
+   * @param symbol stock symbol
+   * @param outputSize outputsize parameter (full or compact): see Alpha Vantage documentation
+   * @param limit maximum number of days to return
+   * @param since date of the oldest StockPrice to return
+   * @param priority priority of the call: see PriorityRateLimiter
    * @return
    */
+  public List<StockPrice> makeApiCall(final String symbol, final String outputSize,
+      final int limit, final LocalDate since, final Priority priority) {
+    return makeApiCall(symbol, outputSize, new FetchRequest(limit, priority), since);
+  }
+
+  /*
+   * Like makeApiCall(symbol, outputSize, limit, since, priority), with the limit and priority of
+   * the given request. The limit is only read once the response starts being read, and the
+   * priority may be raised while the call waits for a token.
+   */
   @SneakyThrows
-  public StockPriceMessages makeApiCall(final String symbol, final String outputSize,
-      final String apiKey, final String basePath) {
-    String urlString = basePath
-        + "&symbol=" + symbol
-        + "&outputsize=" + outputSize
-        + "&apikey=" + apiKey;
-    URL url = new URL(urlString);
-    log.info("Making api call: {}", urlString.substring(0, urlString.lastIndexOf('&')));
-    try {
-      return (new ObjectMapper()).readValue(url, StockPriceMessages.class);
-    } catch (InvalidDefinitionException ide) {
+  private List<StockPrice> makeApiCall(final String symbol, final String outputSize,
+      final FetchRequest request, final LocalDate since) {
+    List<StockPrice> stockPrices = new ArrayList<>(COMPACT_SIZE);
+    try (Response response = alphaVantageRateLimiter.execute(request.priority, request::queued,
+        () -> {
+          log.info("Making api call: symbol={}, outputsize={}", symbol, outputSize);
+          return alphaVantageClient.getDailyTimeSeries(symbol, outputSize);
+        })) {
+      if (response.status() != HttpStatus.OK.value()) {
+        throw FeignException.errorStatus("AlphaVantageClient#getDailyTimeSeries", response);
+      }
+      alphaVantageReader.read(decodedBody(response), request.startReading(), since,
+          stockPrices::add);
+    } catch (TranslationException te) {
+      log.info("Could not read Alpha Vantage response for {}", symbol, te);
       throw new DataNotFoundException(symbol);
     }
+    return stockPrices;
+  }
+
+  /*
+   * Return the body of the given response, decompressed if needed. Feign's Apache HttpClient
+   * doesn't decompress responses itself, and feign.compression.response asks for gzip.
+   */
+  private static InputStream decodedBody(final Response response) throws IOException {
+    Collection<String> encodings = response.headers()
+        .getOrDefault(HttpHeaders.CONTENT_ENCODING, Collections.emptyList());
+    InputStream body = response.body().asInputStream();
+    if (encodings.contains("gzip")) {
+      return new GZIPInputStream(body);
+    } else if (encodings.contains("deflate")) {
+      return new InflaterInputStream(body);
+    }
+    return body;
+  }
+
+  /*
+   * The number of days to read from the response of a shared Alpha Vantage fetch, and the
+   * priority of its call. Requests that share the fetch may raise the limit until the response
+   * starts being read, and the priority until the call is handed a rate limit token.
+   */
+  private static final class FetchRequest {
+
+    private final Priority priority;
+
+    private int limit;
+
+    private boolean reading;
+
+    private Priority promotedTo;
+
+    private Ticket ticket;
+
+    private FetchRequest(final int limit, final Priority priority) {
+      this.limit = limit;
+      this.priority = priority;
+      this.promotedTo = priority;
+    }
+
+    /*
+     * Raise the limit to at least the given one, and the priority to at least the given one.
+     * Returns false if the response is already being read with a lower limit.
+     */
+    private synchronized boolean join(final int limit, final Priority priority) {
+      if (priority.compareTo(promotedTo) < 0) {
+        promotedTo = priority;
+        if (ticket != null) {
+          ticket.promote(priority);
+        }
+      }
+      if (reading) {
+        return limit <= this.limit;
+      }
+      this.limit = Math.max(this.limit, limit);
+      return true;
+    }
+
+    /*
+     * Called with the ticket of the call once it is waiting for a token, which requests that
+     * joined before then promote.
+     */
+    private synchronized void queued(final Ticket ticket) {
+      this.ticket = ticket;
+      ticket.promote(promotedTo);
+    }
+
+    private synchronized int startReading() {
+      reading = true;
+      return limit;
+    }
   }
 }
@@ -2,29 +2,214 @@ package org.galatea.starter.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.EqualsAndHashCode;
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import lombok.Builder;
+import lombok.NonNull;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.concurrent.MpscRingBuffer;
+import org.slf4j.MDC;
 import org.springframework.boot.actuate.trace.http.HttpTrace;
 import org.springframework.boot.actuate.trace.http.InMemoryHttpTraceRepository;
 
-@RequiredArgsConstructor
-@ToString(callSuper = true)
-@EqualsAndHashCode(callSuper = true)
+/**
+ * Logs HTTP traces as JSON and keeps the latest of them in memory, without holding up the request
+ * threads that add them.
+ *
+ * <p>add only decides whether to keep a trace, and hands it to a background writer through a
+ * lock-free ring buffer, along with a copy of the request thread's MDC. The writer takes traces off
+ * the buffer in batches, and logs each trace as its own log event, with the MDC it was added with,
+ * so that the log line carries the request's ids. It then adds the traces to the in-memory store.
+ * A trace added while the buffer is full is dropped rather than waited for, and the number of
+ * dropped traces is logged by the writer.
+ *
+ * <p>sampleRate is the fraction of traces that are kept. Traces of server errors are always kept.
+ */
+@ToString(callSuper = true, onlyExplicitlyIncluded = true)
 @Slf4j
-public class FuseHttpTraceRepository extends InMemoryHttpTraceRepository {
+public class FuseHttpTraceRepository extends InMemoryHttpTraceRepository implements Closeable {
 
-  private final ObjectMapper objectMapper;
+  private final ObjectWriter writer;
+
+  private final MpscRingBuffer<PendingTrace> buffer;
+
+  private final int batchSize;
+
+  private final long flushIntervalNanos;
+
+  @ToString.Include
+  private final double sampleRate;
+
+  private final Thread writerThread;
+
+  private final LongAdder sampledOut = new LongAdder();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final LongAdder written = new LongAdder();
+
+  // dropped count the writer last logged
+  private long droppedLogged;
+
+  private volatile boolean running = true;
+
+  /**
+   * Create a repository and start its writer.
+   * @param objectMapper mapper to write traces as JSON with
+   * @param bufferSize maximum number of traces waiting to be written
+   * @param batchSize maximum number of traces the writer takes off the buffer at a time
+   * @param flushIntervalMillis how long the writer waits for traces when there are none
+   * @param sampleRate fraction of traces that are kept, from 0 to 1
+   */
+  @Builder
+  private FuseHttpTraceRepository(@NonNull final ObjectMapper objectMapper, final int bufferSize,
+      final int batchSize, final long flushIntervalMillis, final double sampleRate) {
+    if (bufferSize < 1 || batchSize < 1 || flushIntervalMillis < 1 || sampleRate < 0
+        || sampleRate > 1) {
+      throw new IllegalArgumentException("Invalid trace settings: bufferSize " + bufferSize
+          + ", batchSize " + batchSize + ", flushIntervalMillis " + flushIntervalMillis
+          + ", sampleRate " + sampleRate);
+    }
+    this.writer = objectMapper.writer();
+    this.buffer = new MpscRingBuffer<>(bufferSize);
+    this.batchSize = batchSize;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    this.sampleRate = sampleRate;
+    this.writerThread = new Thread(this::writeTraces, "http-trace-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
 
   @Override
   public void add(final HttpTrace trace) {
-    // HttpTrace has no toString, nor do its inner classes...
+    if (!isSampled(trace)) {
+      sampledOut.increment();
+      return;
+    }
+    if (!buffer.offer(new PendingTrace(trace, MDC.getCopyOfContextMap()))) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Return the number of traces that weren't kept because of the sample rate.
+   */
+  public long getSampledOut() {
+    return sampledOut.sum();
+  }
+
+  /**
+   * Return the number of traces that were dropped because the buffer was full.
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Return the number of traces that have been logged and stored.
+   */
+  public long getWritten() {
+    return written.sum();
+  }
+
+  /**
+   * Stop the writer once it has written the traces already added.
+   */
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(writerThread);
     try {
-      log.info("Adding trace info: {}", objectMapper.writeValueAsString(trace));
-    } catch (JsonProcessingException e) {
-      log.warn("Error logging trace info: ", e);
+      writerThread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean isSampled(final HttpTrace trace) {
+    if (sampleRate >= 1) {
+      return true;
+    }
+    if (trace.getResponse() != null && trace.getResponse().getStatus() >= 500) {
+      return true;
+    }
+    return ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  /*
+   * The writer thread: write batches of traces until closed, waiting flushIntervalNanos whenever
+   * the buffer is empty. Producers never wake it, so that add doesn't have to do more than offer.
+   */
+  private void writeTraces() {
+    List<PendingTrace> batch = new ArrayList<>(batchSize);
+    while (true) {
+      boolean stopping = !running;
+      buffer.drain(batch::add, batchSize);
+      logDropped();
+      if (batch.isEmpty()) {
+        if (stopping) {
+          return;
+        }
+        LockSupport.parkNanos(this, flushIntervalNanos);
+        continue;
+      }
+      try {
+        writeBatch(batch);
+      } catch (RuntimeException e) {
+        log.warn("Failed to write {} trace(s)", batch.size(), e);
+      }
+      batch.clear();
+    }
+  }
+
+  private void writeBatch(final List<PendingTrace> batch) {
+    for (PendingTrace pending : batch) {
+      if (pending.mdc != null) {
+        MDC.setContextMap(pending.mdc);
+      }
+      try {
+        // HttpTrace has no toString, nor do its inner classes...
+        log.info("Adding trace info: {}", writer.writeValueAsString(pending.trace));
+      } catch (JsonProcessingException e) {
+        log.warn("Error logging trace info: ", e);
+      } finally {
+        MDC.clear();
+      }
+      super.add(pending.trace);
+    }
+    written.add(batch.size());
+  }
+
+  private void logDropped() {
+    long droppedNow = dropped.sum();
+    if (droppedNow > droppedLogged) {
+      log.warn("Dropped {} trace(s) because the trace buffer of {} was full ({} in total)",
+          droppedNow - droppedLogged, buffer.capacity(), droppedNow);
+      droppedLogged = droppedNow;
+    }
+  }
+
+  /*
+   * A trace waiting to be written, with the MDC of the request thread that added it.
+   */
+  private static final class PendingTrace {
+
+    private final HttpTrace trace;
+
+    // null if the MDC was empty
+    private final Map<String, String> mdc;
+
+    private PendingTrace(final HttpTrace trace, final Map<String, String> mdc) {
+      this.trace = trace;
+      this.mdc = mdc;
     }
-    super.add(trace);
   }
 }
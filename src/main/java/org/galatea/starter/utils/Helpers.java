@@ -9,6 +9,7 @@ import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -91,4 +92,27 @@ public class Helpers {
       return getDateNDaysAgo(clock, offset);
     }
   }
+
+  /**
+   * Count the weekdays after the given date, up to and including the given end date.
+   * @param after the day before the first day to count
+   * @param to the last day to count
+   * @return
+   */
+  public static long countWeekdaysBetween(final LocalDate after, final LocalDate to) {
+    if (!to.isAfter(after)) {
+      return 0;
+    }
+
+    // every full week has 5 weekdays, so only the remaining days need to be checked one by one
+    long fullWeeks = ChronoUnit.DAYS.between(after, to) / 7;
+    long weekdays = fullWeeks * 5;
+    for (LocalDate date = after.plusWeeks(fullWeeks).plusDays(1); !date.isAfter(to);
+        date = date.plusDays(1)) {
+      if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+        weekdays++;
+      }
+    }
+    return weekdays;
+  }
 }
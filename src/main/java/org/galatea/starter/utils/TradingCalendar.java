@@ -0,0 +1,208 @@
+package org.galatea.starter.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The days on which the NYSE trades, and the time at which it closes on each of them.
+ *
+ * <p>The calendar is built from a list of holidays and early closes, and covers every day from
+ * January 1st of the first year in the list to December 31st of the last one. Within that range
+ * trading days are held in a bitmap, together with a running count of trading days, so that
+ * isTradingDay and countTradingDaysBetween are O(1). Outside of it every weekday is assumed to be
+ * a regular trading day, like Helpers.getMostRecentWeekday does.
+ */
+@Slf4j
+public class TradingCalendar {
+
+  /**
+   * Time zone of the exchange.
+   */
+  public static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+  private static final LocalTime REGULAR_CLOSE = LocalTime.of(16, 0);
+
+  // Alpha Vantage publishes a day's prices shortly after the close
+  private static final int PUBLICATION_DELAY_MINUTES = 10;
+
+  private static final String HOLIDAY = "closed";
+
+  private final LocalDate first;
+
+  private final LocalDate last;
+
+  // bit i is set if the day first + i is a trading day
+  private final BitSet tradingDays;
+
+  // element i is the number of trading days in [first, first + i]
+  private final int[] tradingDaysThrough;
+
+  private final Map<LocalDate, LocalTime> earlyCloses;
+
+  private TradingCalendar(final LocalDate first, final LocalDate last, final BitSet tradingDays,
+      final int[] tradingDaysThrough, final Map<LocalDate, LocalTime> earlyCloses) {
+    this.first = first;
+    this.last = last;
+    this.tradingDays = tradingDays;
+    this.tradingDaysThrough = tradingDaysThrough;
+    this.earlyCloses = earlyCloses;
+  }
+
+  /**
+   * Build a TradingCalendar from the given holidays and early closes.
+   * @param closes close time of each holiday (null) or early close, by date
+   * @return
+   */
+  public static TradingCalendar of(final Map<LocalDate, LocalTime> closes) {
+    if (closes.isEmpty()) {
+      throw new IllegalArgumentException("A trading calendar needs at least one holiday");
+    }
+    TreeMap<LocalDate, LocalTime> sorted = new TreeMap<>(closes);
+    LocalDate first = sorted.firstKey().withDayOfYear(1);
+    LocalDate last = sorted.lastKey().withMonth(12).withDayOfMonth(31);
+
+    int span = (int) (last.toEpochDay() - first.toEpochDay()) + 1;
+    BitSet tradingDays = new BitSet(span);
+    int[] tradingDaysThrough = new int[span];
+    Map<LocalDate, LocalTime> earlyCloses = new HashMap<>();
+    int count = 0;
+    for (int i = 0; i < span; i++) {
+      LocalDate date = first.plusDays(i);
+      if (isWeekday(date) && !(sorted.containsKey(date) && sorted.get(date) == null)) {
+        tradingDays.set(i);
+        count++;
+        if (sorted.containsKey(date)) {
+          earlyCloses.put(date, sorted.get(date));
+        }
+      }
+      tradingDaysThrough[i] = count;
+    }
+
+    log.info("Loaded trading calendar from {} to {}: {} trading days, {} early closes", first,
+        last, count, earlyCloses.size());
+    return new TradingCalendar(first, last, tradingDays, tradingDaysThrough, earlyCloses);
+  }
+
+  /**
+   * Build a TradingCalendar from a CSV list of holidays and early closes. Each line has a date
+   * (yyyy-MM-dd) and either "closed" or the time of the early close (HH:mm). Blank lines and
+   * lines starting with # are ignored.
+   * @param in the CSV list, which is read to the end but not closed
+   * @return
+   */
+  public static TradingCalendar read(final InputStream in) throws IOException {
+    Map<LocalDate, LocalTime> closes = new HashMap<>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split(",");
+      if (fields.length != 2) {
+        throw new IllegalArgumentException("Malformed trading calendar line: " + line);
+      }
+      String close = fields[1].trim();
+      closes.put(LocalDate.parse(fields[0].trim()),
+          HOLIDAY.equals(close) ? null : LocalTime.parse(close));
+    }
+    return of(closes);
+  }
+
+  /**
+   * Return true if the exchange trades on the given date.
+   */
+  public boolean isTradingDay(final LocalDate date) {
+    return isCovered(date) ? tradingDays.get(index(date)) : isWeekday(date);
+  }
+
+  /**
+   * Return the time at which the exchange closes on the given trading day.
+   * @param date a trading day
+   * @return
+   */
+  public LocalTime getCloseTime(final LocalDate date) {
+    return earlyCloses.getOrDefault(date, REGULAR_CLOSE);
+  }
+
+  /**
+   * Return the trading day before the given date.
+   */
+  public LocalDate previousTradingDay(final LocalDate date) {
+    LocalDate previous = date.minusDays(1);
+    while (!isTradingDay(previous)) {
+      previous = previous.minusDays(1);
+    }
+    return previous;
+  }
+
+  /**
+   * Get the most recent trading day whose prices are complete. A trading day's prices are
+   * complete shortly after the exchange closes, which is 16:00 New York time, or earlier on days
+   * with an early close. Until then the most recent complete trading day is the previous one.
+   * @param clock clock to get the current time from
+   * @return
+   */
+  public LocalDate getMostRecentTradingDay(final Clock clock) {
+    ZonedDateTime now = ZonedDateTime.now(clock).withZoneSameInstant(ZONE);
+    LocalDate today = now.toLocalDate();
+    if (isTradingDay(today) && !now.toLocalTime()
+        .isBefore(getCloseTime(today).plusMinutes(PUBLICATION_DELAY_MINUTES))) {
+      return today;
+    }
+    return previousTradingDay(today);
+  }
+
+  /**
+   * Count the trading days after the given date, up to and including the given end date.
+   * @param after the day before the first day to count
+   * @param to the last day to count
+   * @return
+   */
+  public long countTradingDaysBetween(final LocalDate after, final LocalDate to) {
+    if (!to.isAfter(after)) {
+      return 0;
+    }
+    return tradingDaysThrough(to) - tradingDaysThrough(after);
+  }
+
+  /*
+   * Return the number of trading days in [first, date], or minus the number of trading days in
+   * (date, first) if date is before first.
+   */
+  private long tradingDaysThrough(final LocalDate date) {
+    if (date.isBefore(first)) {
+      return -Helpers.countWeekdaysBetween(date, first.minusDays(1));
+    } else if (date.isAfter(last)) {
+      return tradingDaysThrough[index(last)] + Helpers.countWeekdaysBetween(last, date);
+    }
+    return tradingDaysThrough[index(date)];
+  }
+
+  private boolean isCovered(final LocalDate date) {
+    return !date.isBefore(first) && !date.isAfter(last);
+  }
+
+  private int index(final LocalDate date) {
+    return (int) (date.toEpochDay() - first.toEpochDay());
+  }
+
+  private static boolean isWeekday(final LocalDate date) {
+    return date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY;
+  }
+}
@@ -0,0 +1,105 @@
+package org.galatea.starter.utils.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free queue for many producer threads and a single consumer thread. offer never
+ * blocks: it fails if the buffer is full.
+ *
+ * <p>Producers claim a slot by advancing the producer index with a compare-and-set, then publish
+ * their element into it. The consumer takes elements in slot order, and stops at a claimed slot
+ * whose element hasn't been published yet, so an element may become visible slightly after offer
+ * has returned for a later one.
+ *
+ * @param <T> type of the elements
+ */
+public class MpscRingBuffer<T> {
+
+  private final AtomicReferenceArray<T> slots;
+
+  private final int mask;
+
+  // index of the next slot to be claimed by a producer
+  private final AtomicLong producerIndex = new AtomicLong();
+
+  // index of the next slot to be taken by the consumer
+  private final AtomicLong consumerIndex = new AtomicLong();
+
+  /**
+   * Create an empty buffer.
+   * @param capacity maximum number of elements, rounded up to a power of two
+   */
+  public MpscRingBuffer(final int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Invalid capacity " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Add an element, unless the buffer is full. Safe to call from any thread.
+   * @param element element to add
+   * @return true if the element was added
+   */
+  public boolean offer(final T element) {
+    if (element == null) {
+      throw new NullPointerException("element");
+    }
+    long index;
+    do {
+      index = producerIndex.get();
+      if (index - consumerIndex.get() >= slots.length()) {
+        return false;
+      }
+    } while (!producerIndex.compareAndSet(index, index + 1));
+    slots.lazySet((int) index & mask, element);
+    return true;
+  }
+
+  /**
+   * Take up to maxElements elements, in the order their slots were claimed, and pass them to the
+   * consumer. Must only be called from one thread at a time.
+   * @param consumer consumer of the elements
+   * @param maxElements maximum number of elements to take
+   * @return number of elements taken
+   */
+  public int drain(final Consumer<T> consumer, final int maxElements) {
+    long index = consumerIndex.get();
+    int taken = 0;
+    while (taken < maxElements) {
+      int slot = (int) index & mask;
+      T element = slots.get(slot);
+      if (element == null) {
+        break;
+      }
+      slots.lazySet(slot, null);
+      index++;
+      // frees the slot for producers
+      consumerIndex.lazySet(index);
+      consumer.accept(element);
+      taken++;
+    }
+    return taken;
+  }
+
+  /**
+   * Return the number of slots that have been claimed and not yet taken.
+   */
+  public int size() {
+    return (int) Math.max(0, producerIndex.get() - consumerIndex.get());
+  }
+
+  /**
+   * Return the maximum number of elements.
+   */
+  public int capacity() {
+    return slots.length();
+  }
+}
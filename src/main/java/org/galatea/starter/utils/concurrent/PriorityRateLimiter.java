@@ -0,0 +1,268 @@
+package org.galatea.starter.utils.concurrent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.exception.RateLimitExceededException;
+
+/**
+ * Limits the rate at which calls start using a TokenBucket, and lets waiting calls with a higher
+ * priority start before waiting calls with a lower one.
+ *
+ * <p>Callers queue up for a token and then run their call on their own thread, so the limiter
+ * only controls when calls start, not how many run at once. Calls with the same priority start in
+ * the order they arrived. A single dispatcher thread hands tokens out to queued calls as they
+ * become available.
+ *
+ * <p>A waiting call may be promoted to a higher priority, eg when a user starts waiting on the
+ * result of a background call.
+ *
+ * <p>The queue and the time a call may wait in it are bounded, so that a saturated limiter fails
+ * calls with a RateLimitExceededException rather than piling them up.
+ */
+@Slf4j
+public class PriorityRateLimiter {
+
+  /**
+   * Priority of a call. Calls with an earlier priority start first.
+   */
+  public enum Priority {
+    // a user is waiting on the result
+    INTERACTIVE,
+    // nobody is waiting on the result, eg a scheduled refresh
+    BACKGROUND
+  }
+
+  private final TokenBucket tokenBucket;
+
+  private final int maxQueueDepth;
+
+  private final long[] maxWaitNanos = new long[Priority.values().length];
+
+  private final PriorityBlockingQueue<Ticket> queue = new PriorityBlockingQueue<>();
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final LongAdder[] waitCount = new LongAdder[Priority.values().length];
+
+  private final LongAdder[] waitNanos = new LongAdder[Priority.values().length];
+
+  private final LongAdder rejected = new LongAdder();
+
+  private final Thread dispatcher;
+
+  /**
+   * Create a PriorityRateLimiter and start its dispatcher thread.
+   * @param tokenBucket the token bucket that limits the rate at which calls start
+   * @param name name of the limiter, used to name the dispatcher thread
+   * @param maxQueueDepth maximum number of calls that may wait for a token at once
+   * @param maxWait longest time a call with each priority may wait for a token
+   */
+  public PriorityRateLimiter(final TokenBucket tokenBucket, final String name,
+      final int maxQueueDepth, final Map<Priority, Duration> maxWait) {
+    this.tokenBucket = tokenBucket;
+    this.maxQueueDepth = maxQueueDepth;
+    for (Priority priority : Priority.values()) {
+      if (!maxWait.containsKey(priority)) {
+        throw new IllegalArgumentException("No maximum wait given for " + priority + " calls");
+      }
+      maxWaitNanos[priority.ordinal()] = maxWait.get(priority).toNanos();
+      waitCount[priority.ordinal()] = new LongAdder();
+      waitNanos[priority.ordinal()] = new LongAdder();
+    }
+
+    ThreadFactory threadFactory = new ThreadFactoryBuilder()
+        .setNameFormat(name + "-dispatcher").setDaemon(true).build();
+    dispatcher = threadFactory.newThread(this::dispatch);
+    dispatcher.start();
+  }
+
+  /**
+   * Wait for a token, then run the given call on the calling thread.
+   * @param priority priority of the call
+   * @param call the call to run
+   * @return the result of the call
+   * @throws RateLimitExceededException if the queue is full, or no token was handed to the call
+   *     within the maximum wait for its priority
+   */
+  public <T> T execute(final Priority priority, final Supplier<T> call) {
+    return execute(priority, ticket -> { }, call);
+  }
+
+  /**
+   * Like execute(priority, call), but hands the call's ticket to the given consumer once the call
+   * is queued, so that it can be promoted while it waits for a token. The maximum wait stays that
+   * of the given priority.
+   * @param priority priority of the call
+   * @param queued consumer of the call's ticket
+   * @param call the call to run
+   * @return the result of the call
+   * @throws RateLimitExceededException if the queue is full, or no token was handed to the call
+   *     within the maximum wait for its priority
+   */
+  @SneakyThrows
+  public <T> T execute(final Priority priority, final Consumer<Ticket> queued,
+      final Supplier<T> call) {
+    if (queue.size() >= maxQueueDepth) {
+      rejected.increment();
+      throw new RateLimitExceededException(
+          "Too many calls waiting for a " + priority + " rate limit token");
+    }
+
+    Ticket ticket = new Ticket(priority, sequence.getAndIncrement());
+    long start = System.nanoTime();
+    queue.add(ticket);
+    queued.accept(ticket);
+    try {
+      ticket.permit.get(maxWaitNanos[priority.ordinal()], TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      // the dispatcher may have handed out the token just as the wait ran out, in which case the
+      // call goes ahead
+      if (withdraw(ticket)) {
+        rejected.increment();
+        throw new RateLimitExceededException("Timed out waiting for a " + priority
+            + " rate limit token");
+      }
+    } catch (InterruptedException e) {
+      withdraw(ticket);
+      throw e;
+    } finally {
+      long waited = System.nanoTime() - start;
+      waitCount[priority.ordinal()].increment();
+      waitNanos[priority.ordinal()].add(waited);
+      if (waited > TimeUnit.SECONDS.toNanos(1)) {
+        log.info("Waited {} ms for a {} rate limit token", TimeUnit.NANOSECONDS.toMillis(waited),
+            priority);
+      }
+    }
+    return call.get();
+  }
+
+  /**
+   * Return the number of calls waiting for a token.
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Return the number of calls that were rejected because the queue was full or they waited too
+   * long for a token.
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * Return the number of tokens that are available right now.
+   */
+  public long getAvailableTokens() {
+    return tokenBucket.getAvailableTokens();
+  }
+
+  /**
+   * Return the number of calls with the given priority that have finished waiting for a token.
+   */
+  public long getWaitCount(final Priority priority) {
+    return waitCount[priority.ordinal()].sum();
+  }
+
+  /**
+   * Return the total time that calls with the given priority have spent waiting for a token.
+   */
+  public double getWaitTime(final Priority priority, final TimeUnit unit) {
+    return (double) waitNanos[priority.ordinal()].sum() / unit.toNanos(1);
+  }
+
+  /**
+   * Stop the dispatcher thread. Calls that are still waiting for a token will time out.
+   */
+  public void shutdown() {
+    dispatcher.interrupt();
+  }
+
+  private void dispatch() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        // wait for a call, then for a token for it
+        queue.add(queue.take());
+        long wait;
+        while ((wait = tokenBucket.nanosUntilAvailable()) > 0) {
+          TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        // take the most urgent call, which may have arrived while waiting for the token
+        Ticket ticket = queue.poll();
+        // the queue may have been emptied by calls that gave up waiting
+        if (ticket != null && ticket.permit.complete(null)) {
+          tokenBucket.tryAcquire();
+        }
+      }
+    } catch (InterruptedException e) {
+      log.info("Rate limiter dispatcher stopped");
+    }
+  }
+
+  /*
+   * Take a waiting call out of the queue, and tell the dispatcher not to spend a token on it.
+   * Returns false if the call was handed a token first.
+   */
+  private boolean withdraw(final Ticket ticket) {
+    queue.remove(ticket);
+    return ticket.permit.cancel(false);
+  }
+
+  /**
+   * A call waiting for a token. Ordered by priority, then by order of arrival.
+   */
+  public final class Ticket implements Comparable<Ticket> {
+
+    // only changes while the ticket is out of the queue
+    private volatile Priority priority;
+
+    private final long sequence;
+
+    private final CompletableFuture<Void> permit = new CompletableFuture<>();
+
+    private Ticket(final Priority priority, final long sequence) {
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+    /**
+     * Raise the priority of the call to the given one, if that is higher. The call then starts
+     * before the calls with the new priority that arrived after it. Does nothing once the call
+     * has been handed a token or has stopped waiting.
+     * @param newPriority new priority of the call
+     */
+    public synchronized void promote(final Priority newPriority) {
+      while (newPriority.compareTo(priority) < 0 && !permit.isDone()) {
+        // the ticket has to be taken out of the queue to be re-ordered. The dispatcher takes the
+        // head of the queue out for a moment while it waits for a call, so it may not be there.
+        if (queue.remove(this)) {
+          log.info("Promoting a {} call to {}", priority, newPriority);
+          priority = newPriority;
+          queue.add(this);
+          return;
+        }
+        Thread.yield();
+      }
+    }
+
+    @Override
+    public int compareTo(final Ticket other) {
+      int byPriority = priority.compareTo(other.priority);
+      return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package org.galatea.starter.utils.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coalesces concurrent calls that share a key, so that only one of them is in flight at a time.
+ *
+ * <p>The first caller for a key (the originator) runs the call. Callers that arrive with the same
+ * key while the call is in flight wait for it and receive the same result, or the same exception.
+ * Once the call completes the key is released, and the next caller starts a new call.
+ *
+ * <p>Callers that share a key may still ask for slightly different calls, eg for a different
+ * number of results. execute(key, newRequest, join, call) lets them widen the in-flight call's
+ * request to cover what they need, for as long as the call allows it.
+ *
+ * @param <K> the type of the key that identifies equivalent calls
+ * @param <V> the type of the result of a call
+ */
+@Slf4j
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder originated = new LongAdder();
+
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Run the given call, or wait for the in-flight call with the same key if there is one.
+   *
+   * @param key identifies equivalent calls
+   * @param call the call to run if no equivalent call is in flight
+   * @return the result of the call that ran
+   */
+  public V execute(final K key, final Supplier<V> call) {
+    return execute(key, () -> null, request -> true, request -> call.get());
+  }
+
+  /**
+   * Run a call with a new request, or join the in-flight call with the same key if there is one.
+   * A caller joins by passing the in-flight call's request to join, which may widen it to cover
+   * the caller and returns true, or returns false if the request can't cover the caller any more,
+   * eg because the call has got too far. A caller that couldn't join waits for the in-flight call
+   * to complete, and then tries again.
+   *
+   * @param key identifies equivalent calls
+   * @param newRequest creates the request of a new call
+   * @param join widens the in-flight call's request to cover the caller, if it still can
+   * @param call the call to run with the new request if no equivalent call is in flight
+   * @return the result of the call that ran
+   */
+  @SneakyThrows
+  public <R> V execute(final K key, final Supplier<R> newRequest, final Predicate<R> join,
+      final Function<R, V> call) {
+    R request = newRequest.get();
+    Flight<V> flight = new Flight<>(request);
+    Flight<V> existing;
+    while ((existing = inFlight.putIfAbsent(key, flight)) != null) {
+      @SuppressWarnings("unchecked")
+      boolean joined = join.test((R) existing.request);
+      if (joined) {
+        coalesced.increment();
+        log.info("Waiting for in-flight call for {}", key);
+      } else {
+        log.info("Waiting for in-flight call for {} to complete before making another", key);
+      }
+      try {
+        V result = existing.future.get();
+        if (joined) {
+          return result;
+        }
+      } catch (ExecutionException e) {
+        if (joined) {
+          // rethrow the originator's exception as is, rather than wrapped
+          throw e.getCause();
+        }
+      }
+    }
+
+    originated.increment();
+    try {
+      V result = call.apply(request);
+      flight.future.complete(result);
+      return result;
+    } catch (Throwable t) {
+      flight.future.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Return the number of calls that were actually run.
+   */
+  public long getOriginatedCount() {
+    return originated.sum();
+  }
+
+  /**
+   * Return the number of calls that waited for an equivalent in-flight call instead of running.
+   */
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  /**
+   * Return the number of calls currently in flight.
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  /*
+   * A call in flight, and the request it was made with.
+   */
+  private static final class Flight<V> {
+
+    private final Object request;
+
+    private final CompletableFuture<V> future = new CompletableFuture<>();
+
+    private Flight(final Object request) {
+      this.request = request;
+    }
+  }
+}
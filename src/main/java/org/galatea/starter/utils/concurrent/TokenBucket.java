@@ -0,0 +1,94 @@
+package org.galatea.starter.utils.concurrent;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket: holds at most capacity tokens, and is refilled at a steady rate of
+ * tokensPerPeriod tokens every period. Each call that is subject to the limit takes one token.
+ *
+ * <p>Tokens are refilled one at a time, so after a burst that empties the bucket calls are spread
+ * evenly over the period rather than all allowed again at the start of the next period.
+ */
+public class TokenBucket {
+
+  private final long capacity;
+
+  private final long nanosPerToken;
+
+  private final LongSupplier nanoTime;
+
+  private long tokens;
+
+  // time (per nanoTime) at which the last whole token was added
+  private long lastRefill;
+
+  /**
+   * Create a full TokenBucket that measures time with System.nanoTime.
+   * @param capacity maximum number of tokens the bucket holds, ie the largest allowed burst
+   * @param tokensPerPeriod number of tokens added to the bucket every period
+   * @param period period over which tokensPerPeriod tokens are added
+   */
+  public TokenBucket(final long capacity, final long tokensPerPeriod, final Duration period) {
+    this(capacity, tokensPerPeriod, period, System::nanoTime);
+  }
+
+  /**
+   * Create a full TokenBucket that measures time with the given nano time source.
+   * @param capacity maximum number of tokens the bucket holds, ie the largest allowed burst
+   * @param tokensPerPeriod number of tokens added to the bucket every period
+   * @param period period over which tokensPerPeriod tokens are added
+   * @param nanoTime source of the current time in nanoseconds, like System.nanoTime
+   */
+  public TokenBucket(final long capacity, final long tokensPerPeriod, final Duration period,
+      final LongSupplier nanoTime) {
+    if (capacity < 1 || tokensPerPeriod < 1) {
+      throw new IllegalArgumentException("capacity and tokensPerPeriod must be positive");
+    }
+    this.capacity = capacity;
+    this.nanosPerToken = Math.max(1, period.toNanos() / tokensPerPeriod);
+    this.nanoTime = nanoTime;
+    this.tokens = capacity;
+    this.lastRefill = nanoTime.getAsLong();
+  }
+
+  /**
+   * Take a token if one is available.
+   * @return true if a token was taken
+   */
+  public synchronized boolean tryAcquire() {
+    refill();
+    if (tokens == 0) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+
+  /**
+   * Return the number of nanoseconds until a token is available, or 0 if one is available now.
+   */
+  public synchronized long nanosUntilAvailable() {
+    refill();
+    return tokens > 0 ? 0 : nanosPerToken - (nanoTime.getAsLong() - lastRefill);
+  }
+
+  /**
+   * Return the number of tokens currently in the bucket.
+   */
+  public synchronized long getAvailableTokens() {
+    refill();
+    return tokens;
+  }
+
+  private void refill() {
+    long now = nanoTime.getAsLong();
+    long newTokens = (now - lastRefill) / nanosPerToken;
+    if (newTokens == 0) {
+      return;
+    }
+    tokens = Math.min(capacity, tokens + newTokens);
+    // keep the time towards the next token, unless the bucket is full and it would be wasted
+    lastRefill = tokens == capacity ? now : lastRefill + newTokens * nanosPerToken;
+  }
+}
@@ -0,0 +1,16 @@
+package org.galatea.starter.utils.exception;
+
+/**
+ * Thrown when a call can't be made because its rate limit is saturated.
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+  /**
+   * Exception indicating a call was turned away by a rate limiter.
+   *
+   * @param message exception message
+   */
+  public RateLimitExceededException(final String message) {
+    super(message);
+  }
+}
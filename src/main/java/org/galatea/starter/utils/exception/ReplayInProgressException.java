@@ -0,0 +1,14 @@
+package org.galatea.starter.utils.exception;
+
+/**
+ * Thrown when a replay of dead letters is asked for while another one is running.
+ */
+public class ReplayInProgressException extends RuntimeException {
+
+  /**
+   * Exception indicating a replay was turned away because another one is running.
+   */
+  public ReplayInProgressException() {
+    super("Another replay of dead letters is in progress. Try again once it is done");
+  }
+}
@@ -1,14 +1,33 @@
 package org.galatea.starter.utils.http.converter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class CsvSerializer {
 
+  // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
+  // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
+  private static final CsvMapper MAPPER = new CsvMapper();
+
+  static {
+    MAPPER.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    // the caller owns the stream it gives serializeToCsv, so it's left open
+    MAPPER.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  // building a schema introspects the class, so each class's writer is built once. Writers are
+  // immutable and thread-safe
+  private static final ConcurrentMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
   private CsvSerializer() {}
 
   /**
@@ -27,15 +46,33 @@ public class CsvSerializer {
    */
   public static <T> String serializeToCsv(final Iterable<T> rows, final Class<T> clazz)
       throws IOException {
-    // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
-    // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
-    CsvMapper mapper = new CsvMapper();
-    mapper.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    return writerFor(clazz).writeValueAsString(rows);
+    // See CsvWriterTest for examples of Jackson CSV behavior
+  }
+
+  /**
+   * Serialize the given objects to a CSV document written to the given stream in UTF-8, as in
+   * serializeToCsv(Iterable, Class). Rows are written as they are taken from the Iterable, through
+   * a fixed size buffer, so the document is never held in memory. The stream is flushed but not
+   * closed.
+   *
+   * @param rows the collection of objects that should be serialized into the CSV document
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the CSV document to
+   * @param <T> the type of the row data
+   */
+  public static <T> void serializeToCsv(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
+    writerFor(clazz).writeValue(out, rows);
+  }
+
+  private static ObjectWriter writerFor(final Class<?> clazz) {
     // Jackson CSV uses the property names for the header row by default. To have a custom header
     // for one or more columns, see
     // https://stackoverflow.com/questions/40221223/jackson-dataformat-csv-are-custom-column-names-possible
-    CsvSchema schema = mapper.schemaFor(clazz).withHeader();
-    return mapper.writer(schema).writeValueAsString(rows);
-    // See CsvWriterTest for examples of Jackson CSV behavior
+    return WRITERS.computeIfAbsent(clazz, key -> {
+      CsvSchema schema = MAPPER.schemaFor(key).withHeader();
+      return MAPPER.writer(schema);
+    });
   }
 }
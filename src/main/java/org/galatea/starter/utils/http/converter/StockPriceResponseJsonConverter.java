@@ -0,0 +1,142 @@
+package org.galatea.starter.utils.http.converter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceInfo;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.entrypoint.messagecontracts.StockPriceResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+
+/**
+ * Custom HttpMessageConverter implementation to write a StockPriceResponse as JSON straight to the
+ * response body with a JsonGenerator, without going through an intermediate String or JSON tree.
+ * When the data is a StockPriceSeries, prices are read from its columns, so no StockPrice objects
+ * are created either.
+ */
+@Slf4j
+public class StockPriceResponseJsonConverter
+    extends AbstractHttpMessageConverter<StockPriceResponse> {
+
+  // thread safe, and recycles its buffers between generators
+  private final JsonFactory jsonFactory = new JsonFactory()
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+  /**
+   * Construct a StockPriceResponseJsonConverter that supports a JSON MediaType.
+   */
+  public StockPriceResponseJsonConverter() {
+    super(MediaType.APPLICATION_JSON);
+  }
+
+  @Override
+  protected boolean supports(final Class<?> clazz) {
+    return StockPriceResponse.class.equals(clazz);
+  }
+
+  @Override
+  protected StockPriceResponse readInternal(final Class<? extends StockPriceResponse> clazz,
+      final HttpInputMessage inputMessage) {
+    throw new UnsupportedOperationException("Reading StockPriceResponse is not supported");
+  }
+
+  @Override
+  protected void writeInternal(final StockPriceResponse response,
+      final HttpOutputMessage outputMessage) throws IOException {
+    write(response, outputMessage.getBody());
+  }
+
+  /**
+   * Write the given StockPriceResponse as JSON to the given stream, which is left open.
+   */
+  public void write(final StockPriceResponse response, final OutputStream out)
+      throws IOException {
+    try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+
+      StockPriceResponse.Metadata metadata = response.getMetadata();
+      generator.writeObjectFieldStart("metadata");
+      generator.writeStringField("description", metadata.getDescription());
+      generator.writeStringField("symbol", metadata.getSymbol());
+      generator.writeNumberField("days", metadata.getDays());
+      generator.writeStringField("timezone", metadata.getTimezone());
+      if (metadata.getFrom() != null) {
+        generator.writeStringField("from", metadata.getFrom().toString());
+      }
+      if (metadata.getTo() != null) {
+        generator.writeStringField("to", metadata.getTo().toString());
+      }
+      generator.writeEndObject();
+
+      generator.writeArrayFieldStart("data");
+      List<StockPrice> data = response.getData();
+      char[] buffer = new char[FixedPointPrice.MAX_LENGTH];
+      if (data instanceof StockPriceSeries) {
+        writeSeries(generator, (StockPriceSeries) data, buffer);
+      } else {
+        writeList(generator, data, buffer);
+      }
+      generator.writeEndArray();
+
+      if (response.getError() != null) {
+        generator.writeStringField("error", response.getError());
+      }
+
+      generator.writeEndObject();
+    }
+  }
+
+  private static void writeSeries(final JsonGenerator generator, final StockPriceSeries series,
+      final char[] buffer) throws IOException {
+    for (int i = 0; i < series.size(); i++) {
+      writeStockPrice(generator, buffer, LocalDate.ofEpochDay(series.getEpochDay(i)),
+          series.getOpen(i), series.getHigh(i), series.getLow(i), series.getClose(i),
+          series.getVolume(i));
+    }
+  }
+
+  private static void writeList(final JsonGenerator generator, final List<StockPrice> stockPrices,
+      final char[] buffer) throws IOException {
+    for (StockPrice stockPrice : stockPrices) {
+      StockPriceInfo prices = stockPrice.getPrices();
+      writeStockPrice(generator, buffer, stockPrice.getDate(), prices.getOpen(),
+          prices.getHigh(), prices.getLow(), prices.getClose(), prices.getVolume());
+    }
+  }
+
+  /*
+   * Write a StockPrice in the same shape Jackson gives it (see the annotations on StockPrice and
+   * StockPriceInfo). Prices are formatted into the given buffer, so no BigDecimal or String is
+   * created for them.
+   */
+  private static void writeStockPrice(final JsonGenerator generator, final char[] buffer,
+      final LocalDate date, final long open, final long high, final long low, final long close,
+      final long volume) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("date", date.toString());
+    generator.writeObjectFieldStart("prices");
+    writePriceField(generator, buffer, "open", open);
+    writePriceField(generator, buffer, "high", high);
+    writePriceField(generator, buffer, "low", low);
+    writePriceField(generator, buffer, "close", close);
+    generator.writeNumberField("volume", volume);
+    generator.writeEndObject();
+    generator.writeEndObject();
+  }
+
+  private static void writePriceField(final JsonGenerator generator, final char[] buffer,
+      final String name, final long price) throws IOException {
+    generator.writeFieldName(name);
+    generator.writeRawValue(buffer, 0, FixedPointPrice.format(price, buffer, 0));
+  }
+}
@@ -0,0 +1,90 @@
+package org.galatea.starter.utils.http.converter;
+
+import java.io.IOException;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceInfo;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.StockPriceSeriesProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.StockPriceResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+
+/**
+ * Custom HttpMessageConverter implementation to write a StockPriceResponse as a compact, columnar
+ * StockPriceSeriesProtoMessage: one packed array per field, with prices as fixed point longs.
+ */
+@Slf4j
+public class StockPriceResponseProtoConverter
+    extends AbstractHttpMessageConverter<StockPriceResponse> {
+
+  /**
+   * Construct a StockPriceResponseProtoConverter that supports a protobuf MediaType.
+   */
+  public StockPriceResponseProtoConverter() {
+    super(ProtobufHttpMessageConverter.PROTOBUF);
+  }
+
+  @Override
+  protected boolean supports(final Class<?> clazz) {
+    return StockPriceResponse.class.equals(clazz);
+  }
+
+  @Override
+  protected StockPriceResponse readInternal(final Class<? extends StockPriceResponse> clazz,
+      final HttpInputMessage inputMessage) {
+    throw new UnsupportedOperationException("Reading StockPriceResponse is not supported");
+  }
+
+  @Override
+  protected void writeInternal(final StockPriceResponse response,
+      final HttpOutputMessage outputMessage) throws IOException {
+    toProto(response).writeTo(outputMessage.getBody());
+  }
+
+  /**
+   * Translate a StockPriceResponse to a StockPriceSeriesProtoMessage.
+   */
+  public static StockPriceSeriesProtoMessage toProto(final StockPriceResponse response) {
+    StockPriceResponse.Metadata metadata = response.getMetadata();
+    StockPriceSeriesProtoMessage.Builder builder = StockPriceSeriesProtoMessage.newBuilder()
+        .setSymbol(metadata.getSymbol())
+        .setDays(metadata.getDays())
+        .setTimezone(metadata.getTimezone())
+        .setPriceScale(FixedPointPrice.SCALE);
+    if (metadata.getFrom() != null) {
+      builder.setFrom(metadata.getFrom().toString());
+    }
+    if (metadata.getTo() != null) {
+      builder.setTo(metadata.getTo().toString());
+    }
+
+    List<StockPrice> data = response.getData();
+    if (data instanceof StockPriceSeries) {
+      StockPriceSeries series = (StockPriceSeries) data;
+      for (int i = 0; i < series.size(); i++) {
+        builder.addEpochDay(series.getEpochDay(i))
+            .addOpen(series.getOpen(i))
+            .addHigh(series.getHigh(i))
+            .addLow(series.getLow(i))
+            .addClose(series.getClose(i))
+            .addVolume(series.getVolume(i));
+      }
+    } else {
+      for (StockPrice stockPrice : data) {
+        StockPriceInfo prices = stockPrice.getPrices();
+        builder.addEpochDay((int) stockPrice.getDate().toEpochDay())
+            .addOpen(prices.getOpen())
+            .addHigh(prices.getHigh())
+            .addLow(prices.getLow())
+            .addClose(prices.getClose())
+            .addVolume(prices.getVolume());
+      }
+    }
+    return builder.build();
+  }
+}
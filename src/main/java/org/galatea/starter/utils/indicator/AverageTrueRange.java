@@ -0,0 +1,57 @@
+package org.galatea.starter.utils.indicator;
+
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+
+/**
+ * Wilder's average true range. The true range of a day is the largest of its high - low and the
+ * distances from the previous close to its high and low. The first value is the mean true range of
+ * the first window days after the first day, and each later value is
+ * (previous * (window - 1) + true range) / window.
+ */
+public class AverageTrueRange implements IndicatorCalculator {
+
+  private final int window;
+
+  private int count;
+
+  // sum of the true ranges until the first value, then the average
+  private double atr;
+
+  private double previousClose = Double.NaN;
+
+  /**
+   * Create an average true range over the given window.
+   * @param window number of days in the period of the average
+   */
+  public AverageTrueRange(final int window) {
+    if (window < 1) {
+      throw new IllegalArgumentException("Window must be at least 1: " + window);
+    }
+    this.window = window;
+  }
+
+  @Override
+  public double next(final StockPriceSeries series, final int index) {
+    double high = FixedPointPrice.toDouble(series.getHigh(index));
+    double low = FixedPointPrice.toDouble(series.getLow(index));
+    double previous = previousClose;
+    previousClose = FixedPointPrice.toDouble(series.getClose(index));
+    if (Double.isNaN(previous)) {
+      return Double.NaN;
+    }
+
+    double trueRange = Math.max(high - low,
+        Math.max(Math.abs(high - previous), Math.abs(low - previous)));
+    if (count < window) {
+      atr += trueRange;
+      if (++count < window) {
+        return Double.NaN;
+      }
+      atr /= window;
+    } else {
+      atr = (atr * (window - 1) + trueRange) / window;
+    }
+    return atr;
+  }
+}
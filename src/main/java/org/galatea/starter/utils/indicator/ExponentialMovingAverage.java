@@ -0,0 +1,37 @@
+package org.galatea.starter.utils.indicator;
+
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+
+/**
+ * Exponentially weighted mean of close prices, with a smoothing factor of 2 / (window + 1). It is
+ * seeded with the simple moving average of the first window days.
+ */
+public class ExponentialMovingAverage implements IndicatorCalculator {
+
+  private final double alpha;
+
+  // only used until the first value is available
+  private final SimpleMovingAverage seed;
+
+  private double ema = Double.NaN;
+
+  /**
+   * Create an exponential moving average over the given window.
+   * @param window number of days in the period of the average
+   */
+  public ExponentialMovingAverage(final int window) {
+    this.seed = new SimpleMovingAverage(window);
+    this.alpha = 2.0 / (window + 1);
+  }
+
+  @Override
+  public double next(final StockPriceSeries series, final int index) {
+    if (Double.isNaN(ema)) {
+      ema = seed.next(series, index);
+    } else {
+      ema += alpha * (FixedPointPrice.toDouble(series.getClose(index)) - ema);
+    }
+    return ema;
+  }
+}
@@ -0,0 +1,22 @@
+package org.galatea.starter.utils.indicator;
+
+import org.galatea.starter.domain.StockPriceSeries;
+
+/**
+ * Computes a technical indicator incrementally, one day at a time, from the oldest day of a
+ * StockPriceSeries to the newest. Each day costs O(1) time regardless of the indicator's window,
+ * so the indicator can be extended as new days arrive instead of being recomputed.
+ *
+ * <p>Implementations are stateful and not thread safe.
+ */
+public interface IndicatorCalculator {
+
+  /**
+   * Add the day at the given index of the given series, which must be the day after the last day
+   * added, and return the value of the indicator on that day.
+   * @param series series to read the day's prices from
+   * @param index index of the day in the series (date descending, like StockPriceSeries.get)
+   * @return the value, or NaN if not enough days have been added yet
+   */
+  double next(StockPriceSeries series, int index);
+}
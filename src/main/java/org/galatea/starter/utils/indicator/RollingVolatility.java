@@ -0,0 +1,69 @@
+package org.galatea.starter.utils.indicator;
+
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+
+/**
+ * Sample standard deviation of the daily log returns of the last window days (not annualized).
+ *
+ * <p>The mean and sum of squared deviations are updated as each return enters and the oldest
+ * leaves the window (a sliding window form of Welford's algorithm), which avoids the catastrophic
+ * cancellation of keeping a sum of squares.
+ */
+public class RollingVolatility implements IndicatorCalculator {
+
+  // log returns of the last window days, as a ring buffer
+  private final double[] returns;
+
+  private int position;
+
+  private int count;
+
+  private double mean;
+
+  // sum of squared deviations from the mean
+  private double m2;
+
+  private double previousClose = Double.NaN;
+
+  /**
+   * Create a rolling volatility over the given window.
+   * @param window number of daily returns in the window
+   */
+  public RollingVolatility(final int window) {
+    if (window < 2) {
+      throw new IllegalArgumentException("Window must be at least 2: " + window);
+    }
+    this.returns = new double[window];
+  }
+
+  @Override
+  public double next(final StockPriceSeries series, final int index) {
+    double close = FixedPointPrice.toDouble(series.getClose(index));
+    double previous = previousClose;
+    previousClose = close;
+    if (Double.isNaN(previous)) {
+      return Double.NaN;
+    }
+
+    double logReturn = Math.log(close / previous);
+    double oldMean = mean;
+    if (count < returns.length) {
+      count++;
+      mean += (logReturn - oldMean) / count;
+      m2 += (logReturn - oldMean) * (logReturn - mean);
+    } else {
+      double leaving = returns[position];
+      mean += (logReturn - leaving) / count;
+      m2 += (logReturn - leaving) * (logReturn - mean + leaving - oldMean);
+    }
+    returns[position] = logReturn;
+    position = (position + 1) % returns.length;
+
+    if (count < returns.length) {
+      return Double.NaN;
+    }
+    // rounding can leave m2 slightly negative when all returns are equal
+    return Math.sqrt(Math.max(m2, 0) / (count - 1));
+  }
+}
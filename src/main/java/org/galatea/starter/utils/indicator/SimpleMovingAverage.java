@@ -0,0 +1,44 @@
+package org.galatea.starter.utils.indicator;
+
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+
+/**
+ * Mean of the close prices of the last window days. The sum is kept on the FixedPointPrices, so
+ * it doesn't drift however many days are added.
+ */
+public class SimpleMovingAverage implements IndicatorCalculator {
+
+  // close prices of the last window days, as a ring buffer
+  private final long[] closes;
+
+  private int position;
+
+  private int count;
+
+  private long sum;
+
+  /**
+   * Create a simple moving average over the given window.
+   * @param window number of days averaged
+   */
+  public SimpleMovingAverage(final int window) {
+    if (window < 1) {
+      throw new IllegalArgumentException("Window must be at least 1: " + window);
+    }
+    this.closes = new long[window];
+  }
+
+  @Override
+  public double next(final StockPriceSeries series, final int index) {
+    long close = series.getClose(index);
+    sum += close - closes[position];
+    closes[position] = close;
+    position = (position + 1) % closes.length;
+
+    if (count < closes.length && ++count < closes.length) {
+      return Double.NaN;
+    }
+    return FixedPointPrice.toDouble(sum) / closes.length;
+  }
+}
@@ -0,0 +1,19 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.List;
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Handles the messages received by a BatchMessageListenerContainer, a batch at a time.
+ */
+@FunctionalInterface
+public interface BatchMessageListener {
+
+  /**
+   * Handle a batch of messages. The batch is acknowledged if this returns, and rolled back if it
+   * throws.
+   * @param messages messages in the order they were received
+   */
+  void onMessages(List<Message> messages) throws JMSException;
+}
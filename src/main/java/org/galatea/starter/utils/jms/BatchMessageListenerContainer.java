@@ -0,0 +1,362 @@
+package org.galatea.starter.utils.jms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jms.connection.CachingConnectionFactory;
+
+/**
+ * Consumes a queue in batches rather than a message at a time. Each consumer waits for a message,
+ * then keeps receiving until it has maxBatchSize messages or maxWaitMillis have passed since the
+ * first one, and hands them to the listener together. Once maxWaitMillis have passed it still takes
+ * messages that are already waiting, up to maxBatchSize, so a backlog is drained in full batches.
+ *
+ * <p>Each consumer receives on its own transacted session, so a batch is acknowledged atomically
+ * when the listener returns, and rolled back when it throws. Rolled back messages are redelivered
+ * one at a time, each in its own transaction, so that one bad message doesn't hold up the rest of
+ * its batch. Messages that still fail are handled like in FuseMessageListenerContainer: a
+ * JMSException appends the message to the dead letter log, if there is one, and passes it to the
+ * failed message consumer before it is dropped, and any other exception rolls the message back for
+ * the broker to redeliver, and eventually dead-letter.
+ *
+ * <p>A redelivered message that arrives after the start of a batch ends it, and is handed to the
+ * listener on its own once the rest of the batch has been handled. It was received in the batch's
+ * transaction, so rolling it back would hand the rest of the batch over again. Instead, if it
+ * throws anything but a JMSException, a copy is sent back to the queue and committed with the
+ * batch, to be retried in a transaction of its own. A message sent back MAX_REQUEUES times is
+ * handled like one that fails with a JMSException.
+ */
+@Slf4j
+public class BatchMessageListenerContainer implements SmartLifecycle {
+
+  // how long a consumer blocks waiting for the first message of a batch before checking whether it
+  // has been stopped
+  private static final long RECEIVE_TIMEOUT_MILLIS = 1000;
+
+  // how long to wait before reconnecting after losing the connection
+  private static final long RECOVERY_INTERVAL_MILLIS = 5000;
+
+  // the broker counts the redeliveries of each copy of a message that is sent back to the queue
+  // from scratch, so the number of times it was sent back is kept in a property of its own
+  static final String REQUEUES_PROPERTY = "BatchRequeues";
+
+  static final int MAX_REQUEUES = 3;
+
+  private final ConnectionFactory connectionFactory;
+
+  private final String destinationName;
+
+  private final BatchMessageListener listener;
+
+  private final BiConsumer<Message, Exception> failedMessageConsumer;
+
+  // null if failed messages aren't kept
+  private final DeadLetterLog deadLetterLog;
+
+  private final int maxBatchSize;
+
+  private final long maxWaitMillis;
+
+  private final int concurrentConsumers;
+
+  private volatile boolean running;
+
+  private ExecutorService consumers;
+
+  /**
+   * Create a container that isn't started yet.
+   * @param connectionFactory factory of connections to the broker
+   * @param destinationName name of the queue to consume
+   * @param listener listener to hand batches to
+   * @param failedMessageConsumer consumer of messages that fail with a JMSException
+   * @param deadLetterLog where to keep messages that fail with a JMSException, or null
+   * @param maxBatchSize maximum number of messages in a batch
+   * @param maxWaitMillis how long to wait for more messages after the first of a batch
+   * @param concurrentConsumers number of consumers, each with its own session and thread
+   */
+  @Builder
+  private BatchMessageListenerContainer(@NonNull final ConnectionFactory connectionFactory,
+      @NonNull final String destinationName, @NonNull final BatchMessageListener listener,
+      @NonNull final BiConsumer<Message, Exception> failedMessageConsumer,
+      final DeadLetterLog deadLetterLog, final int maxBatchSize, final long maxWaitMillis,
+      final int concurrentConsumers) {
+    if (maxBatchSize < 1 || maxWaitMillis < 0 || concurrentConsumers < 1) {
+      throw new IllegalArgumentException("Invalid batch settings: maxBatchSize " + maxBatchSize
+          + ", maxWaitMillis " + maxWaitMillis + ", concurrentConsumers " + concurrentConsumers);
+    }
+    this.connectionFactory = connectionFactory;
+    this.destinationName = destinationName;
+    this.listener = listener;
+    this.failedMessageConsumer = failedMessageConsumer;
+    this.deadLetterLog = deadLetterLog;
+    this.maxBatchSize = maxBatchSize;
+    this.maxWaitMillis = maxWaitMillis;
+    this.concurrentConsumers = concurrentConsumers;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    log.info("Starting {} batch consumer(s) of {}, batches of up to {} messages or {}ms",
+        concurrentConsumers, destinationName, maxBatchSize, maxWaitMillis);
+    running = true;
+    consumers = Executors.newFixedThreadPool(concurrentConsumers, new ThreadFactoryBuilder()
+        .setNameFormat(destinationName + "-batch-%d").setDaemon(true).build());
+    for (int i = 0; i < concurrentConsumers; i++) {
+      consumers.execute(this::consume);
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    consumers.shutdown();
+    try {
+      // let the consumers finish the batches they are processing
+      if (!consumers.awaitTermination(RECEIVE_TIMEOUT_MILLIS * 10, TimeUnit.MILLISECONDS)) {
+        log.warn("Batch consumers of {} didn't stop in time", destinationName);
+        consumers.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      consumers.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    // like Spring's listener containers: start after, and stop before, everything else
+    return Integer.MAX_VALUE;
+  }
+
+  /*
+   * Receive and process batches until stopped, reconnecting if the connection fails.
+   */
+  private void consume() {
+    while (running) {
+      Connection connection = null;
+      try {
+        connection = targetConnectionFactory().createConnection();
+        Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+        MessageConsumer consumer = session.createConsumer(session.createQueue(destinationName));
+        connection.start();
+        while (running) {
+          List<Message> batch = receiveBatch(consumer);
+          if (!batch.isEmpty()) {
+            process(session, batch);
+          }
+        }
+      } catch (JMSException | RuntimeException e) {
+        if (running) {
+          log.warn("Batch consumer of {} failed. Reconnecting in {}ms", destinationName,
+              RECOVERY_INTERVAL_MILLIS, e);
+          sleep(RECOVERY_INTERVAL_MILLIS);
+        }
+      } finally {
+        close(connection);
+      }
+    }
+  }
+
+  /*
+   * Receive the next batch, or an empty list if no message arrives within RECEIVE_TIMEOUT_MILLIS.
+   * A redelivered message ends the batch, so it is either the only message or the last one.
+   */
+  private List<Message> receiveBatch(final MessageConsumer consumer) throws JMSException {
+    Message first = consumer.receive(RECEIVE_TIMEOUT_MILLIS);
+    if (first == null) {
+      return new ArrayList<>();
+    }
+    List<Message> batch = new ArrayList<>();
+    batch.add(first);
+    if (first.getJMSRedelivered()) {
+      return batch;
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    while (batch.size() < maxBatchSize) {
+      long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      // receive(0) would block indefinitely
+      Message next = remainingMillis > 0 ? consumer.receive(remainingMillis)
+          : consumer.receiveNoWait();
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+      if (next.getJMSRedelivered()) {
+        break;
+      }
+    }
+    return batch;
+  }
+
+  /*
+   * Hand a batch to the listener, a redelivered message at its end on its own, and commit it if the
+   * listener returns. See the class comment for what happens if it throws.
+   */
+  private void process(final Session session, final List<Message> batch) throws JMSException {
+    Message last = batch.get(batch.size() - 1);
+    if (batch.size() == 1 || !last.getJMSRedelivered()) {
+      if (handOver(session, batch)) {
+        session.commit();
+      }
+      return;
+    }
+
+    if (!handOver(session, batch.subList(0, batch.size() - 1))) {
+      return;
+    }
+    try {
+      listener.onMessages(Collections.singletonList(last));
+    } catch (JMSException e) {
+      fail(last, e);
+    } catch (RuntimeException e) {
+      requeue(session, last, e);
+    }
+    session.commit();
+  }
+
+  /*
+   * Hand messages to the listener. Returns false if the session was rolled back.
+   */
+  private boolean handOver(final Session session, final List<Message> messages)
+      throws JMSException {
+    try {
+      listener.onMessages(messages);
+    } catch (JMSException e) {
+      if (messages.size() == 1) {
+        fail(messages.get(0), e);
+      } else {
+        rollback(session, messages, e);
+        return false;
+      }
+    } catch (RuntimeException e) {
+      rollback(session, messages, e);
+      return false;
+    }
+    return true;
+  }
+
+  /*
+   * Keep a message that failed for good in the dead letter log, and pass it to the failed message
+   * consumer.
+   */
+  private void fail(final Message message, final Exception cause) {
+    // a message that can't be appended is still passed to the failed message consumer
+    if (deadLetterLog != null) {
+      deadLetterLog.tryAppend(destinationName, message, cause);
+    }
+    failedMessageConsumer.accept(message, cause);
+  }
+
+  /*
+   * Send a copy of a redelivered message that failed again back to the queue, in the session's
+   * transaction, or fail it if it has been sent back MAX_REQUEUES times already.
+   */
+  private void requeue(final Session session, final Message message, final Exception cause)
+      throws JMSException {
+    int requeues = message.propertyExists(REQUEUES_PROPERTY)
+        ? message.getIntProperty(REQUEUES_PROPERTY) : 0;
+    if (requeues >= MAX_REQUEUES) {
+      log.warn("Failed to process a message from {} sent back {} times. Giving up on it",
+          destinationName, requeues, cause);
+      fail(message, cause);
+      return;
+    }
+    log.warn("Failed to process a redelivered message from {} at the end of a batch. Sending it"
+        + " back to be retried on its own", destinationName, cause);
+
+    // the properties of a received message are read only until they are cleared
+    Map<String, Object> properties = new HashMap<>();
+    Enumeration<?> names = message.getPropertyNames();
+    while (names.hasMoreElements()) {
+      String name = (String) names.nextElement();
+      // JMSX properties are set by the broker
+      if (!name.startsWith("JMSX")) {
+        properties.put(name, message.getObjectProperty(name));
+      }
+    }
+    message.clearProperties();
+    for (Map.Entry<String, Object> property : properties.entrySet()) {
+      message.setObjectProperty(property.getKey(), property.getValue());
+    }
+    message.setIntProperty(REQUEUES_PROPERTY, requeues + 1);
+
+    MessageProducer producer = session.createProducer(session.createQueue(destinationName));
+    try {
+      producer.send(message);
+    } finally {
+      producer.close();
+    }
+  }
+
+  private void rollback(final Session session, final List<Message> batch, final Exception cause)
+      throws JMSException {
+    log.warn("Failed to process a batch of {} message(s) from {}. Rolling back", batch.size(),
+        destinationName, cause);
+    session.rollback();
+  }
+
+  /*
+   * A CachingConnectionFactory would hand back a shared connection and cached sessions, which
+   * don't suit a consumer that holds its session for its whole life.
+   */
+  private ConnectionFactory targetConnectionFactory() {
+    if (connectionFactory instanceof CachingConnectionFactory) {
+      ConnectionFactory target =
+          ((CachingConnectionFactory) connectionFactory).getTargetConnectionFactory();
+      if (target != null) {
+        return target;
+      }
+    }
+    return connectionFactory;
+  }
+
+  private static void close(final Connection connection) {
+    if (connection == null) {
+      return;
+    }
+    try {
+      connection.close();
+    } catch (JMSException e) {
+      log.debug("Failed to close connection", e);
+    }
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package org.galatea.starter.utils.jms;
+
+import com.google.protobuf.CodedInputStream;
+import java.util.Arrays;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.util.ByteSequence;
+
+/**
+ * Reads the bodies of BytesMessages.
+ */
+public final class BytesMessageBody {
+
+  private BytesMessageBody() {
+  }
+
+  /**
+   * Return a CodedInputStream over the body of the given message, to parse protobuf messages from.
+   *
+   * <p>The body of an uncompressed ActiveMQ message is read where it is, in the buffer the message
+   * was received into. Other messages can only be read through the JMS API, which copies the body
+   * into a new array.
+   * @param message message to read, which hasn't been read from yet
+   * @return
+   */
+  public static CodedInputStream codedInputStream(final BytesMessage message)
+      throws JMSException {
+    if (message instanceof ActiveMQBytesMessage && !((ActiveMQBytesMessage) message).isCompressed()
+        && ((ActiveMQBytesMessage) message).getContent() != null) {
+      ByteSequence content = ((ActiveMQBytesMessage) message).getContent();
+      return CodedInputStream.newInstance(content.getData(), content.getOffset(),
+          content.getLength());
+    }
+    byte[] body = new byte[(int) message.getBodyLength()];
+    message.readBytes(body);
+    return CodedInputStream.newInstance(body);
+  }
+
+  /**
+   * Return a copy of the body of the given message, however much of it has been read already.
+   * @param message message to copy the body of
+   * @return
+   */
+  public static byte[] toByteArray(final BytesMessage message) throws JMSException {
+    if (message instanceof ActiveMQBytesMessage && !((ActiveMQBytesMessage) message).isCompressed()
+        && ((ActiveMQBytesMessage) message).getContent() != null) {
+      ByteSequence content = ((ActiveMQBytesMessage) message).getContent();
+      return Arrays.copyOfRange(content.getData(), content.getOffset(),
+          content.getOffset() + content.getLength());
+    }
+    message.reset();
+    byte[] body = new byte[(int) message.getBodyLength()];
+    message.readBytes(body);
+    return body;
+  }
+}
@@ -0,0 +1,173 @@
+package org.galatea.starter.utils.jms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Enumeration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+
+/**
+ * Scales the minimum number of consumers of a FuseMessageListenerContainer to the depth of its
+ * queue and how long its messages take to process.
+ *
+ * <p>On its own, the container adds a consumer each time a busy consumer receives a message, and
+ * removes consumers after idleTaskExecutionLimit receives in a row without one, so a backlog that
+ * arrives in bursts keeps losing the consumers it needs. Every interval this samples the depth of
+ * the queue (by browsing it, up to maxDepth messages) and the average processing time since the
+ * last sample, and raises the minimum to the number of consumers needed to process the backlog
+ * within targetDrainTime, starting the missing consumers straight away. Once the backlog is gone
+ * the minimum comes back down one consumer per interval, to the configured minimum.
+ */
+@Slf4j
+public class ConsumerScaler {
+
+  private final FuseMessageListenerContainer container;
+
+  private final ListenerContainerSettings.Adaptive settings;
+
+  // the configured concurrency, which the minimum is scaled within
+  private final int minConsumers;
+
+  private final int maxConsumers;
+
+  private final LongAdder processedMessages = new LongAdder();
+
+  private final LongAdder processingNanos = new LongAdder();
+
+  // average processing time of the messages processed in the most recent interval that had any
+  private double averageProcessingNanos = Double.NaN;
+
+  private ScheduledExecutorService sampler;
+
+  /**
+   * Create a scaler of the given container, within its current concurrency.
+   * @param container container to scale
+   * @param settings settings of the scaling
+   */
+  public ConsumerScaler(final FuseMessageListenerContainer container,
+      final ListenerContainerSettings.Adaptive settings) {
+    if (settings.getInterval() < 1 || settings.getTargetDrainTime() < 1
+        || settings.getMaxDepth() < 1) {
+      throw new IllegalArgumentException("Invalid adaptive settings: " + settings);
+    }
+    this.container = container;
+    this.settings = settings;
+    this.minConsumers = container.getConcurrentConsumers();
+    this.maxConsumers = container.getMaxConcurrentConsumers();
+  }
+
+  /**
+   * Record the time taken to process a message.
+   * @param nanos processing time in nanoseconds
+   */
+  public void recordProcessingTime(final long nanos) {
+    processedMessages.increment();
+    processingNanos.add(nanos);
+  }
+
+  /**
+   * Start sampling the queue every interval.
+   */
+  public synchronized void start() {
+    if (sampler != null) {
+      return;
+    }
+    sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat(container.getDestinationName() + "-scaler-%d").setDaemon(true).build());
+    sampler.scheduleWithFixedDelay(this::sample, settings.getInterval(), settings.getInterval(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop sampling the queue.
+   */
+  public synchronized void stop() {
+    if (sampler != null) {
+      sampler.shutdownNow();
+      sampler = null;
+    }
+  }
+
+  /*
+   * Sample the queue depth and scale to it. Failures are only logged, so sampling carries on.
+   */
+  private void sample() {
+    try {
+      scale(countMessages());
+    } catch (JmsException e) {
+      log.warn("Couldn't sample the depth of {}", container.getDestinationName(), e);
+    } catch (RuntimeException e) {
+      log.error("Couldn't scale the consumers of {}", container.getDestinationName(), e);
+    }
+  }
+
+  private int countMessages() {
+    JmsTemplate jmsTemplate = new JmsTemplate(container.getConnectionFactory());
+    return jmsTemplate.browse(container.getDestinationName(), (session, browser) -> {
+      Enumeration<?> messages = browser.getEnumeration();
+      int depth = 0;
+      while (depth < settings.getMaxDepth() && messages.hasMoreElements()) {
+        messages.nextElement();
+        depth++;
+      }
+      return depth;
+    });
+  }
+
+  /**
+   * Scale the minimum number of consumers to the given queue depth and the average processing
+   * time since the last call.
+   * @param depth number of messages waiting in the queue
+   */
+  void scale(final int depth) {
+    long processed = processedMessages.sumThenReset();
+    long nanos = processingNanos.sumThenReset();
+    if (processed > 0) {
+      averageProcessingNanos = (double) nanos / processed;
+    }
+    if (Double.isNaN(averageProcessingNanos)) {
+      // nothing processed yet, so there is nothing to estimate the backlog's processing time from
+      return;
+    }
+
+    int current = container.getConcurrentConsumers();
+    int desired = desiredConsumers(depth, averageProcessingNanos,
+        TimeUnit.MILLISECONDS.toNanos(settings.getTargetDrainTime()), minConsumers, maxConsumers);
+    int target = desired >= current ? desired : current - 1;
+    if (target != current) {
+      log.info("Scaling consumers of {} from {} to {}: {} messages waiting, {}ms per message",
+          container.getDestinationName(), current, target, depth,
+          String.format("%.2f", averageProcessingNanos / 1e6));
+      container.setConcurrentConsumers(target);
+    }
+    // the container only adds consumers as messages are received, so add the missing ones now
+    while (container.isRunning() && container.getScheduledConsumerCount() < target) {
+      int scheduled = container.getScheduledConsumerCount();
+      container.addConsumerIfAppropriate();
+      if (container.getScheduledConsumerCount() == scheduled) {
+        // too many idle consumers already
+        break;
+      }
+    }
+  }
+
+  /**
+   * Return the number of consumers that process the given number of messages within the target
+   * time, between the given minimum and maximum.
+   * @param depth number of messages waiting
+   * @param averageProcessingNanos average time to process a message
+   * @param targetNanos time to process the messages within
+   * @param min minimum number of consumers
+   * @param max maximum number of consumers
+   * @return
+   */
+  static int desiredConsumers(final int depth, final double averageProcessingNanos,
+      final long targetNanos, final int min, final int max) {
+    double needed = Math.ceil(depth * averageProcessingNanos / targetNanos);
+    return (int) Math.max(min, Math.min(max, needed));
+  }
+}
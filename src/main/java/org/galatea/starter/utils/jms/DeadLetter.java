@@ -0,0 +1,41 @@
+package org.galatea.starter.utils.jms;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A message that failed processing, as stored in a DeadLetterLog.
+ */
+@Value
+@Builder
+@AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+public class DeadLetter {
+
+  /**
+   * Kind of message the body was taken from.
+   */
+  public enum BodyType {
+    TEXT, BYTES
+  }
+
+  // position in the log, increasing with each message appended
+  private long sequence;
+
+  // epoch millis the message was appended to the log
+  private long timestamp;
+
+  // queue the message was received from
+  private String destination;
+
+  private String messageId;
+
+  // the exception the message failed with
+  private String error;
+
+  private BodyType bodyType;
+
+  // UTF-8 text for TEXT messages
+  private byte[] body;
+}
@@ -0,0 +1,418 @@
+package org.galatea.starter.utils.jms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.jms.DeadLetter.BodyType;
+
+/**
+ * Append-only log of messages that failed processing, kept so that they can be replayed once
+ * whatever made them fail has been fixed. See DeadLetterReplayer.
+ *
+ * <p>The log is a directory of segment files of segmentSize bytes, each named after the sequence
+ * number of its first record. The segment being appended to is memory-mapped, so an append is a
+ * copy into the page cache rather than a write call. Records are never changed once written, and
+ * each one is laid out as:
+ * <pre>
+ * int    length of the rest of the record
+ * long   sequence number
+ * long   epoch millis it was appended
+ * byte   body type (DeadLetter.BodyType ordinal)
+ * string destination
+ * string JMS message id
+ * string error
+ * int    body length, followed by the body
+ * </pre>
+ * where a string is an int length followed by UTF-8 bytes. The length is written last, so a
+ * record torn by a crash reads as zero, which marks the end of a segment.
+ *
+ * <p>Records that have been replayed are marked in a separate replayed file, since records aren't
+ * changed. It holds a watermark, below which every record has been replayed, followed by the
+ * sequence numbers above the watermark that have been replayed too. The file is small as long as
+ * replays mostly succeed, and is replaced as a whole each time records are marked. Segments whose
+ * records are all below the watermark are deleted, except for the last one, which the sequence
+ * number to continue from is read from when the log is opened.
+ */
+@Slf4j
+public class DeadLetterLog implements Closeable {
+
+  private static final String SEGMENT_SUFFIX = ".dlq";
+
+  private static final String REPLAYED_FILE = "replayed";
+
+  // the error is there to help decide what to replay, not to keep whole stack traces
+  private static final int MAX_ERROR_LENGTH = 1000;
+
+  // length, sequence, timestamp, body type, and the lengths of the strings and body
+  private static final int RECORD_OVERHEAD = 4 + 8 + 8 + 1 + 4 * 4;
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  // the segment being appended to, or null until the first append after the log is opened
+  private MappedByteBuffer segment;
+
+  private long nextSequence;
+
+  // every record below the watermark has been replayed, as have those in replayedAbove
+  private long replayedWatermark;
+
+  private final NavigableSet<Long> replayedAbove = new TreeSet<>();
+
+  /**
+   * Open the log in the given directory, creating the directory if needed, and continue from the
+   * last record already in it.
+   * @param directory directory of the segment files
+   * @param segmentSize size of each segment file, which is also the largest record it can hold
+   */
+  public DeadLetterLog(final Path directory, final int segmentSize) throws IOException {
+    if (segmentSize < RECORD_OVERHEAD) {
+      throw new IllegalArgumentException("Segment size " + segmentSize + " is too small");
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    Files.createDirectories(directory);
+
+    List<Path> segments = segmentFiles();
+    if (!segments.isEmpty()) {
+      Path lastSegment = segments.get(segments.size() - 1);
+      nextSequence = firstSequence(lastSegment);
+      segment = map(lastSegment, MapMode.READ_WRITE);
+      int position = 0;
+      int length;
+      while ((length = recordLength(segment, position)) > 0) {
+        nextSequence = segment.getLong(position + 4) + 1;
+        position += 4 + length;
+      }
+      segment.position(position);
+    }
+    readReplayed();
+    log.info("Opened dead letter log {} at sequence {}, replayed up to {}", directory,
+        nextSequence, replayedWatermark);
+  }
+
+  /**
+   * Append a message that failed processing. Only text and bytes messages can be appended.
+   * @param destination queue the message was received from
+   * @param message message to append
+   * @param error exception the message failed with
+   * @return the sequence number of the message in the log
+   */
+  public synchronized long append(final String destination, final Message message,
+      final Exception error) throws IOException, JMSException {
+    BodyType bodyType;
+    byte[] body;
+    if (message instanceof TextMessage) {
+      bodyType = BodyType.TEXT;
+      String text = ((TextMessage) message).getText();
+      body = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    } else if (message instanceof BytesMessage) {
+      bodyType = BodyType.BYTES;
+      body = BytesMessageBody.toByteArray((BytesMessage) message);
+    } else {
+      throw new IllegalArgumentException("Can't append a " + message.getClass().getSimpleName());
+    }
+    byte[] destinationBytes = utf8(destination);
+    byte[] messageId = utf8(message.getJMSMessageID());
+    String errorText = String.valueOf(error);
+    byte[] errorBytes = utf8(errorText.length() > MAX_ERROR_LENGTH
+        ? errorText.substring(0, MAX_ERROR_LENGTH) : errorText);
+
+    int size = RECORD_OVERHEAD + destinationBytes.length + messageId.length + errorBytes.length
+        + body.length;
+    if (size > segmentSize) {
+      throw new IllegalArgumentException(
+          "Record of " + size + " bytes doesn't fit in a segment of " + segmentSize);
+    }
+    if (segment == null || segment.remaining() < size) {
+      roll();
+    }
+
+    long sequence = nextSequence;
+    int start = segment.position();
+    segment.position(start + 4);
+    segment.putLong(sequence);
+    segment.putLong(System.currentTimeMillis());
+    segment.put((byte) bodyType.ordinal());
+    putBytes(segment, destinationBytes);
+    putBytes(segment, messageId);
+    putBytes(segment, errorBytes);
+    putBytes(segment, body);
+    segment.putInt(start, size - 4);
+    nextSequence++;
+    return sequence;
+  }
+
+  /**
+   * Append a message that failed processing like append, but log rather than throw if it can't be
+   * appended, so that the caller can still pass the message on.
+   * @param destination queue the message was received from
+   * @param message message to append
+   * @param error exception the message failed with
+   * @return true if the message was appended
+   */
+  public boolean tryAppend(final String destination, final Message message,
+      final Exception error) {
+    try {
+      long sequence = append(destination, message, error);
+      log.info("Appended failed message {} to the dead letter log as {}",
+          message.getJMSMessageID(), sequence);
+      return true;
+    } catch (IOException | JMSException | RuntimeException e) {
+      log.error("Could not append failed message {} to the dead letter log", message, e);
+      return false;
+    }
+  }
+
+  /**
+   * Mark the records with the given sequence numbers as replayed, and write the replayed file.
+   * @param sequences sequence numbers of the replayed records
+   */
+  public synchronized void markReplayed(final Collection<Long> sequences) throws IOException {
+    long previousWatermark = replayedWatermark;
+    for (long sequence : sequences) {
+      if (sequence >= replayedWatermark) {
+        replayedAbove.add(sequence);
+      }
+    }
+    while (!replayedAbove.isEmpty() && replayedAbove.first() == replayedWatermark) {
+      replayedAbove.pollFirst();
+      replayedWatermark++;
+    }
+    writeReplayed();
+    if (replayedWatermark > previousWatermark) {
+      deleteReplayedSegments();
+    }
+  }
+
+  /**
+   * Return true if the record with the given sequence number has been marked as replayed.
+   */
+  public synchronized boolean isReplayed(final long sequence) {
+    return sequence < replayedWatermark || replayedAbove.contains(sequence);
+  }
+
+  /**
+   * Return the sequence number below which every record has been replayed.
+   */
+  public synchronized long getReplayedWatermark() {
+    return replayedWatermark;
+  }
+
+  /**
+   * Pass the records with sequence numbers from fromSequence (inclusive) to toSequence
+   * (exclusive), and from the given destination, to the consumer in order. Records appended while
+   * reading aren't read.
+   * @param fromSequence first sequence number to read
+   * @param toSequence sequence number to stop at
+   * @param destination destination of the records to read, or null for all of them
+   * @param consumer consumer of the records
+   */
+  public void read(final long fromSequence, final long toSequence, final String destination,
+      final Consumer<DeadLetter> consumer) throws IOException {
+    long endSequence;
+    synchronized (this) {
+      endSequence = Math.min(toSequence, nextSequence);
+    }
+    byte[] destinationBytes = destination == null ? null : utf8(destination);
+
+    List<Path> segments = segmentFiles();
+    for (int i = 0; i < segments.size(); i++) {
+      // skip segments that end before fromSequence
+      if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+        continue;
+      }
+      if (firstSequence(segments.get(i)) >= endSequence) {
+        return;
+      }
+      MappedByteBuffer buffer = map(segments.get(i), MapMode.READ_ONLY);
+      int position = 0;
+      int length;
+      while ((length = recordLength(buffer, position)) > 0) {
+        long sequence = buffer.getLong(position + 4);
+        if (sequence >= endSequence) {
+          return;
+        }
+        if (sequence >= fromSequence) {
+          readRecord(buffer, position, destinationBytes, consumer);
+        }
+        position += 4 + length;
+      }
+    }
+  }
+
+  /**
+   * Return the sequence number the next record appended will get.
+   */
+  public synchronized long getNextSequence() {
+    return nextSequence;
+  }
+
+  /**
+   * Flush the segment being appended to, so that its records survive a crash of the machine as well
+   * as of the process.
+   */
+  public synchronized void flush() {
+    if (segment != null) {
+      segment.force();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    flush();
+    segment = null;
+  }
+
+  private void readReplayed() throws IOException {
+    Path file = directory.resolve(REPLAYED_FILE);
+    if (!Files.exists(file)) {
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    replayedWatermark = buffer.getLong();
+    while (buffer.remaining() >= 8) {
+      replayedAbove.add(buffer.getLong());
+    }
+  }
+
+  /*
+   * Replace the replayed file with a new one, so that a crash leaves either the old or the new.
+   */
+  private void writeReplayed() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8 * (1 + replayedAbove.size()));
+    buffer.putLong(replayedWatermark);
+    replayedAbove.forEach(buffer::putLong);
+    Path tmp = directory.resolve(REPLAYED_FILE + ".tmp");
+    Files.write(tmp, buffer.array());
+    Files.move(tmp, directory.resolve(REPLAYED_FILE), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /*
+   * Delete the segments that end below the watermark. The last segment is kept even then, see the
+   * class comment. A segment being read is still readable once deleted, as it is memory-mapped.
+   */
+  private void deleteReplayedSegments() throws IOException {
+    List<Path> segments = segmentFiles();
+    for (int i = 0; i + 1 < segments.size()
+        && firstSequence(segments.get(i + 1)) <= replayedWatermark; i++) {
+      Files.delete(segments.get(i));
+      log.info("Deleted replayed dead letter segment {}", segments.get(i));
+    }
+  }
+
+  /*
+   * Start a new segment, named after the sequence number of the record about to be appended.
+   */
+  private void roll() throws IOException {
+    if (segment != null) {
+      segment.force();
+    }
+    Path segmentFile =
+        directory.resolve(String.format("%020d%s", nextSequence, SEGMENT_SUFFIX));
+    segment = map(segmentFile, MapMode.READ_WRITE);
+    log.info("Started dead letter segment {}", segmentFile);
+  }
+
+  private MappedByteBuffer map(final Path file, final MapMode mode) throws IOException {
+    if (mode == MapMode.READ_ONLY) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        return channel.map(mode, 0, channel.size());
+      }
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // mapping past the end of the file extends it
+      return channel.map(mode, 0, Math.max(channel.size(), segmentSize));
+    }
+  }
+
+  /*
+   * Length of the record at the given position, or 0 if there is no complete record there.
+   */
+  private static int recordLength(final ByteBuffer buffer, final int position) {
+    if (position + 4 > buffer.limit()) {
+      return 0;
+    }
+    int length = buffer.getInt(position);
+    return length > 0 && position + 4 + length <= buffer.limit() ? length : 0;
+  }
+
+  /*
+   * Pass the record at the given position to the consumer, if it is from the given destination.
+   * The destination is compared before anything else is decoded.
+   */
+  private static void readRecord(final ByteBuffer segment, final int position,
+      final byte[] destination, final Consumer<DeadLetter> consumer) {
+    ByteBuffer record = segment.duplicate();
+    record.position(position + 4);
+    long sequence = record.getLong();
+    long timestamp = record.getLong();
+    BodyType bodyType = BodyType.values()[record.get()];
+    byte[] recordDestination = getBytes(record);
+    if (destination != null && !Arrays.equals(destination, recordDestination)) {
+      return;
+    }
+    consumer.accept(DeadLetter.builder()
+        .sequence(sequence)
+        .timestamp(timestamp)
+        .destination(new String(recordDestination, StandardCharsets.UTF_8))
+        .messageId(new String(getBytes(record), StandardCharsets.UTF_8))
+        .error(new String(getBytes(record), StandardCharsets.UTF_8))
+        .bodyType(bodyType)
+        .body(getBytes(record))
+        .build());
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      // the names are zero padded, so they sort by sequence number
+      return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static long firstSequence(final Path segmentFile) {
+    String name = segmentFile.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static byte[] utf8(final String value) {
+    return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void putBytes(final ByteBuffer buffer, final byte[] bytes) {
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static byte[] getBytes(final ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
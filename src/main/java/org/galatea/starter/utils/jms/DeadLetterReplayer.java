@@ -0,0 +1,234 @@
+package org.galatea.starter.utils.jms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.apache.activemq.util.ByteSequence;
+import org.galatea.starter.utils.exception.ReplayInProgressException;
+import org.galatea.starter.utils.jms.DeadLetter.BodyType;
+
+/**
+ * Replays messages from a DeadLetterLog through the BatchMessageListener of the destination they
+ * were received from, batchSize messages at a time.
+ *
+ * <p>A batch that fails is retried a message at a time, like a rolled back batch in
+ * BatchMessageListenerContainer, so that one message that still fails doesn't hold up the rest.
+ * Messages that still fail are reported by sequence number, and stay in the log to be replayed
+ * again. Messages that are handled are marked as replayed in the log once their batch is done, and
+ * are skipped by later replays.
+ *
+ * <p>Only one replay runs at a time. A replay asked for while another is running is turned away
+ * with a ReplayInProgressException, since it would hand the same messages over again before the
+ * running replay marks them.
+ */
+@Slf4j
+public class DeadLetterReplayer {
+
+  private final DeadLetterLog deadLetterLog;
+
+  // listeners by the destination whose messages they handle
+  private final Map<String, BatchMessageListener> listeners;
+
+  private final int batchSize;
+
+  private final ReentrantLock replayLock = new ReentrantLock();
+
+  /**
+   * Create a replayer.
+   * @param deadLetterLog log to replay messages from
+   * @param listeners listeners by the destination whose messages they handle
+   * @param batchSize maximum number of messages handed to a listener at a time
+   */
+  public DeadLetterReplayer(@NonNull final DeadLetterLog deadLetterLog,
+      @NonNull final Map<String, BatchMessageListener> listeners, final int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Invalid replay batch size " + batchSize);
+    }
+    this.deadLetterLog = deadLetterLog;
+    this.listeners = listeners;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Replay the messages with sequence numbers from fromSequence (inclusive) to toSequence
+   * (exclusive) that were received from the given destination, or from any destination with a
+   * listener if it is null. Messages from destinations without a listener, and messages that have
+   * already been replayed, are skipped.
+   * @param destination destination of the messages to replay, or null for all of them
+   * @param fromSequence first sequence number to replay
+   * @param toSequence sequence number to stop at
+   * @return the outcome of the replay
+   * @throws ReplayInProgressException if another replay is running
+   */
+  public Result replay(final String destination, final long fromSequence, final long toSequence)
+      throws IOException {
+    if (destination != null && !listeners.containsKey(destination)) {
+      throw new IllegalArgumentException("No listener to replay " + destination + " through");
+    }
+    if (!replayLock.tryLock()) {
+      throw new ReplayInProgressException();
+    }
+    try {
+      return replayLocked(destination, fromSequence, toSequence);
+    } finally {
+      replayLock.unlock();
+    }
+  }
+
+  private Result replayLocked(final String destination, final long fromSequence,
+      final long toSequence) throws IOException {
+    long endSequence = Math.min(toSequence, deadLetterLog.getNextSequence());
+    log.info("Replaying dead letters {} to {} of {}", fromSequence, endSequence,
+        destination == null ? "all destinations" : destination);
+
+    Result.ResultBuilder result = Result.builder().nextSequence(Math.max(fromSequence,
+        endSequence));
+    // batches being filled, by destination
+    Map<String, Batch> batches = new HashMap<>();
+    try {
+      // every record below the watermark has been replayed already
+      long startSequence = Math.max(fromSequence, deadLetterLog.getReplayedWatermark());
+      deadLetterLog.read(startSequence, endSequence, destination, deadLetter -> {
+        BatchMessageListener listener = listeners.get(deadLetter.getDestination());
+        if (listener == null || deadLetterLog.isReplayed(deadLetter.getSequence())) {
+          return;
+        }
+        Batch batch = batches.computeIfAbsent(deadLetter.getDestination(), d -> new Batch());
+        batch.add(deadLetter);
+        if (batch.size() == batchSize) {
+          batches.remove(deadLetter.getDestination());
+          process(listener, batch, result);
+        }
+      });
+      batches.forEach((batchDestination, batch) ->
+          process(listeners.get(batchDestination), batch, result));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    Result replayResult = result.build();
+    log.info("Replayed {} dead letter(s), {} failed", replayResult.getReplayed(),
+        replayResult.getFailedSequences().size());
+    return replayResult;
+  }
+
+  /*
+   * Hand the batch to the listener, or its messages one at a time if the batch fails, and mark the
+   * messages that were handled as replayed.
+   */
+  private void process(final BatchMessageListener listener, final Batch batch,
+      final Result.ResultBuilder result) {
+    List<Long> replayed = new ArrayList<>(batch.size());
+    try {
+      listener.onMessages(batch.messages);
+      replayed.addAll(batch.sequences);
+    } catch (JMSException | RuntimeException e) {
+      log.warn("Failed to replay a batch of {} dead letter(s). Replaying them one at a time",
+          batch.size(), e);
+      for (int i = 0; i < batch.size(); i++) {
+        try {
+          listener.onMessages(batch.messages.subList(i, i + 1));
+          replayed.add(batch.sequences.get(i));
+        } catch (JMSException | RuntimeException messageError) {
+          log.warn("Failed to replay dead letter {}", batch.sequences.get(i), messageError);
+          result.failedSequence(batch.sequences.get(i));
+        }
+      }
+    }
+    if (replayed.isEmpty()) {
+      return;
+    }
+    result.replayed(replayed.size());
+    try {
+      deadLetterLog.markReplayed(replayed);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+   * Rebuild the message a dead letter was taken from. The body of a bytes message is read straight
+   * from the dead letter, see BytesMessageBody.
+   */
+  private static Message toMessage(final DeadLetter deadLetter) {
+    try {
+      if (deadLetter.getBodyType() == BodyType.TEXT) {
+        ActiveMQTextMessage message = new ActiveMQTextMessage();
+        message.setText(new String(deadLetter.getBody(), StandardCharsets.UTF_8));
+        return message;
+      }
+      ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+      message.setContent(new ByteSequence(deadLetter.getBody()));
+      message.setReadOnlyBody(true);
+      return message;
+    } catch (JMSException e) {
+      throw new IllegalStateException("Could not rebuild dead letter " + deadLetter.getSequence(),
+          e);
+    }
+  }
+
+  /**
+   * Outcome of a replay.
+   */
+  @Value
+  @Builder
+  @AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+  public static class Result {
+
+    // number of messages handled by their listener
+    private int replayed;
+
+    // messages that still failed, which can be replayed again
+    @Singular
+    private List<Long> failedSequences;
+
+    // sequence number to continue replaying from
+    private long nextSequence;
+
+    /**
+     * Builder that adds up replayed messages.
+     */
+    public static class ResultBuilder {
+
+      ResultBuilder replayed(final int count) {
+        this.replayed += count;
+        return this;
+      }
+    }
+  }
+
+  /*
+   * Messages being gathered for a listener, with their sequence numbers.
+   */
+  private static final class Batch {
+
+    private final List<Message> messages = new ArrayList<>();
+
+    private final List<Long> sequences = new ArrayList<>();
+
+    void add(final DeadLetter deadLetter) {
+      messages.add(toMessage(deadLetter));
+      sequences.add(deadLetter.getSequence());
+    }
+
+    int size() {
+      return messages.size();
+    }
+  }
+}
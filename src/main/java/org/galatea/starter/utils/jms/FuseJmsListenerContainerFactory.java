@@ -1,16 +1,21 @@
 package org.galatea.starter.utils.jms;
 
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 import javax.jms.Message;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerEndpoint;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
 
-
+/**
+ * Creates FuseMessageListenerContainers, each tuned by the ListenerContainerSettings of its queue.
+ */
 @RequiredArgsConstructor
 @ToString(callSuper = true)
 @EqualsAndHashCode(callSuper = true)
@@ -20,9 +25,33 @@ public class FuseJmsListenerContainerFactory extends DefaultJmsListenerContainer
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  // settings by queue name
+  @NonNull
+  protected Function<String, ListenerContainerSettings> settings;
+
+  // where the containers keep failed messages, or null for them not to
+  @Setter
+  protected DeadLetterLog deadLetterLog;
+
   @Override
   protected DefaultMessageListenerContainer createContainerInstance() {
-    return new FuseMessageListenerContainer(failedMessageConsumer);
+    FuseMessageListenerContainer container =
+        new FuseMessageListenerContainer(failedMessageConsumer);
+    container.setDeadLetterLog(deadLetterLog);
+    return container;
+  }
+
+  /**
+   * Applies the settings of the endpoint's queue once the endpoint has set the queue, overriding
+   * this factory's defaults and the endpoint's concurrency.
+   */
+  @Override
+  public DefaultMessageListenerContainer createListenerContainer(
+      final JmsListenerEndpoint endpoint) {
+    DefaultMessageListenerContainer container = super.createListenerContainer(endpoint);
+    ((FuseMessageListenerContainer) container)
+        .applySettings(settings.apply(container.getDestinationName()));
+    return container;
   }
 
 }
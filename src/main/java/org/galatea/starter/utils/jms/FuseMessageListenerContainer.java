@@ -1,17 +1,24 @@
 package org.galatea.starter.utils.jms;
 
 import java.util.function.BiConsumer;
+import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.Session;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
 
+/**
+ * Listener container that passes messages that fail with a JMSException to a failed message
+ * consumer, after appending them to a DeadLetterLog if it has one, and that is tuned by
+ * ListenerContainerSettings: see applySettings.
+ */
 @RequiredArgsConstructor
 @Slf4j
 @ToString(callSuper = true)
@@ -21,6 +28,79 @@ public class FuseMessageListenerContainer extends DefaultMessageListenerContaine
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  // number of messages the broker pushes to each consumer ahead of time, or 0 for its default
+  private int prefetch;
+
+  // null unless the settings are adaptive
+  private ConsumerScaler consumerScaler;
+
+  // where failed messages are kept to be replayed, or null to only pass them to the consumer
+  @Setter
+  private DeadLetterLog deadLetterLog;
+
+  /**
+   * Apply the given settings. Must be called before the container is started.
+   * @param settings settings of this container's queue
+   */
+  public void applySettings(final ListenerContainerSettings settings) {
+    setConcurrency(settings.getConcurrency());
+    setReceiveTimeout(settings.getReceiveTimeout());
+    setIdleConsumerLimit(settings.getIdleConsumerLimit());
+    setIdleTaskExecutionLimit(settings.getIdleTaskExecutionLimit());
+    setCacheLevelName(settings.getCacheLevelName());
+    setMaxMessagesPerTask(settings.getMaxMessagesPerTask());
+    prefetch = settings.getPrefetch();
+    consumerScaler = settings.getAdaptive().isEnabled()
+        ? new ConsumerScaler(this, settings.getAdaptive()) : null;
+    log.info("Listener container of {} configured with {}", getDestinationName(), settings);
+  }
+
+  /*
+   * Start another consumer, unless the maximum number of consumers or of idle consumers has been
+   * reached. For ConsumerScaler.
+   */
+  void addConsumerIfAppropriate() {
+    scheduleNewInvokerIfAppropriate();
+  }
+
+  /**
+   * Sets the prefetch of the queue's consumers through an ActiveMQ destination option, which is
+   * set per consumer rather than for the whole connection factory.
+   */
+  @Override
+  protected Destination resolveDestinationName(final Session session,
+      final String destinationName) throws JMSException {
+    if (prefetch > 0 && !isPubSubDomain() && destinationName.indexOf('?') < 0) {
+      return super.resolveDestinationName(session,
+          destinationName + "?consumer.prefetchSize=" + prefetch);
+    }
+    return super.resolveDestinationName(session, destinationName);
+  }
+
+  @Override
+  protected void doStart() throws JMSException {
+    super.doStart();
+    if (consumerScaler != null) {
+      consumerScaler.start();
+    }
+  }
+
+  @Override
+  protected void doStop() throws JMSException {
+    if (consumerScaler != null) {
+      consumerScaler.stop();
+    }
+    super.doStop();
+  }
+
+  @Override
+  protected void doShutdown() throws JMSException {
+    if (consumerScaler != null) {
+      consumerScaler.stop();
+    }
+    super.doShutdown();
+  }
+
   @Override
   @SneakyThrows
   protected void invokeListener(final Session session, final Message message) {
@@ -31,10 +111,19 @@ public class FuseMessageListenerContainer extends DefaultMessageListenerContaine
     // retried. That being said, the failed message consumer could decide to throw a
     // RuntimeException, which would result in the message being placed back on the queue. While
     // this is not encouraged, there may be certain circumstances where that is necessary.
+    long start = System.nanoTime();
     try {
       super.invokeListener(session, message);
     } catch (JMSException e) {
+      // a message that can't be appended is still passed to the failed message consumer
+      if (deadLetterLog != null) {
+        deadLetterLog.tryAppend(getDestinationName(), message, e);
+      }
       failedMessageConsumer.accept(message, e);
+    } finally {
+      if (consumerScaler != null) {
+        consumerScaler.recordProcessingTime(System.nanoTime() - start);
+      }
     }
   }
 }
@@ -0,0 +1,122 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.Locale;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertyName;
+
+/**
+ * Tuning of a FuseMessageListenerContainer. Bound from a prefix (e.g. jms.listener) with defaults
+ * for every queue, and overridden per queue under prefix.queues.(queue name), e.g.
+ * jms.listener.queues.sandbox.agreement.prefetch.
+ */
+@Data
+@Slf4j
+public class ListenerContainerSettings {
+
+  /**
+   * Number of consumers, either "max" or "min-max". The container scales between the two: it adds
+   * consumers while all of them are busy, and removes them once they have been idle for
+   * idleTaskExecutionLimit receive timeouts.
+   */
+  private String concurrency = "1-5";
+
+  /**
+   * Number of messages the broker pushes to each consumer ahead of it processing them. 0 leaves
+   * the broker's default (1000 for ActiveMQ queues). A large prefetch keeps a busy consumer fed,
+   * but messages prefetched by one consumer can't go to consumers that are added later, so it
+   * should be small when the container scales.
+   */
+  private int prefetch;
+
+  /**
+   * Milliseconds each receive blocks for before the consumer checks whether it should stop or
+   * scale down.
+   */
+  private long receiveTimeout = 1000;
+
+  /**
+   * Maximum number of consumers that may be idle at the same time.
+   */
+  private int idleConsumerLimit = 1;
+
+  /**
+   * Number of receives in a row without a message after which a consumer above the minimum
+   * concurrency is removed.
+   */
+  private int idleTaskExecutionLimit = 1;
+
+  /**
+   * JMS resources each consumer keeps between receives: none, connection, session, consumer or
+   * auto (consumer, unless there is an external transaction manager).
+   */
+  private String cacheLevel = "auto";
+
+  /**
+   * Number of messages a consumer task processes before handing its thread back to the executor.
+   * Negative for no limit.
+   */
+  private int maxMessagesPerTask = -1;
+
+  private Adaptive adaptive = new Adaptive();
+
+  /**
+   * Scaling of the minimum number of consumers to the depth of the queue. See ConsumerScaler.
+   */
+  @Data
+  public static class Adaptive {
+
+    private boolean enabled;
+
+    /**
+     * Milliseconds between samples of the queue depth.
+     */
+    private long interval = 5000;
+
+    /**
+     * Milliseconds the messages waiting in the queue should take to process. The minimum number of
+     * consumers is raised until the sampled depth times the average processing time, divided by
+     * the number of consumers, is within it.
+     */
+    private long targetDrainTime = 1000;
+
+    /**
+     * Maximum number of messages counted when sampling the queue depth, to bound the cost of
+     * browsing a large backlog.
+     */
+    private int maxDepth = 10000;
+  }
+
+  /**
+   * Return the Spring name of the cache level, e.g. CACHE_CONSUMER.
+   * @return
+   */
+  public String getCacheLevelName() {
+    return "CACHE_" + cacheLevel.toUpperCase(Locale.ROOT);
+  }
+
+  /**
+   * Bind the settings of the given queue: the defaults under the given prefix, overridden by the
+   * ones under prefix.queues.(queue name).
+   * @param binder binder of the application's properties
+   * @param prefix prefix of the settings
+   * @param destinationName name of the queue
+   * @return
+   */
+  public static ListenerContainerSettings bind(final Binder binder, final String prefix,
+      final String destinationName) {
+    ListenerContainerSettings settings = new ListenerContainerSettings();
+    binder.bind(prefix, Bindable.ofInstance(settings));
+
+    String queuePrefix = prefix + ".queues." + destinationName.toLowerCase(Locale.ROOT);
+    if (ConfigurationPropertyName.isValid(queuePrefix)) {
+      binder.bind(queuePrefix, Bindable.ofInstance(settings));
+    } else {
+      log.warn("Queue {} can't have its own settings, using the defaults under {}",
+          destinationName, prefix);
+    }
+    return settings;
+  }
+}
@@ -0,0 +1,31 @@
+package org.galatea.starter.utils.metrics;
+
+import java.util.List;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+/**
+ * Actuator endpoint showing the count, throughput and latency percentiles of every LatencyTimer.
+ * GET /actuator/latency shows everything recorded since startup, and
+ * GET /actuator/latency?interval=true what was recorded since the last interval request.
+ */
+@Endpoint(id = "latency")
+@RequiredArgsConstructor
+public class LatencyEndpoint {
+
+  @NonNull
+  private final LatencyTimers timers;
+
+  /**
+   * Return a snapshot of each timer.
+   * @param interval whether to return only what was recorded since the last interval request,
+   *     and start a new interval
+   */
+  @ReadOperation
+  public List<LatencySnapshot> latency(@Nullable final Boolean interval) {
+    return Boolean.TRUE.equals(interval) ? timers.interval() : timers.total();
+  }
+}
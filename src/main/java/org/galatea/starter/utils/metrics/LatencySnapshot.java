@@ -0,0 +1,76 @@
+package org.galatea.starter.utils.metrics;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Count, throughput and latency percentiles of one timed operation over a window of time.
+ * Latencies are in milliseconds.
+ */
+@Value
+@Builder
+@AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+public class LatencySnapshot {
+
+  private String name;
+
+  private long startTimeMillis;
+
+  private long endTimeMillis;
+
+  private long count;
+
+  private long failures;
+
+  // operations per second over the window
+  private double throughput;
+
+  private double min;
+
+  private double mean;
+
+  private double p50;
+
+  private double p90;
+
+  private double p99;
+
+  private double p999;
+
+  private double max;
+
+  /**
+   * Summarize a histogram of latencies in microseconds.
+   */
+  static LatencySnapshot of(final String name, final Histogram histogram, final long failures,
+      final long startTimeMillis, final long endTimeMillis) {
+    long count = histogram.getTotalCount();
+    double seconds = Math.max(1, endTimeMillis - startTimeMillis) / 1000.0;
+    LatencySnapshotBuilder builder = builder()
+        .name(name)
+        .startTimeMillis(startTimeMillis)
+        .endTimeMillis(endTimeMillis)
+        .count(count)
+        .failures(failures)
+        .throughput(count / seconds);
+    if (count == 0) {
+      return builder.build();
+    }
+    return builder
+        .min(toMillis(histogram.getMinValue()))
+        .mean(histogram.getMean() / 1000)
+        .p50(toMillis(histogram.getValueAtPercentile(50)))
+        .p90(toMillis(histogram.getValueAtPercentile(90)))
+        .p99(toMillis(histogram.getValueAtPercentile(99)))
+        .p999(toMillis(histogram.getValueAtPercentile(99.9)))
+        .max(toMillis(histogram.getMaxValue()))
+        .build();
+  }
+
+  private static double toMillis(final long micros) {
+    return micros / 1000.0;
+  }
+}
@@ -0,0 +1,18 @@
+package org.galatea.starter.utils.metrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Times every public method of the annotated bean with a LatencyTimer named after the class and
+ * method, e.g. "SettlementService.spawnMissions". See LatencyTimingAspect.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface LatencyTimed {
+
+}
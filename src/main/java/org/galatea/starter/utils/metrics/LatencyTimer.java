@@ -0,0 +1,102 @@
+package org.galatea.starter.utils.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latencies of one operation, recorded into an HdrHistogram Recorder. Recording is wait-free, so
+ * any number of threads can time operations without contending with each other or with readers.
+ *
+ * <p>Readers take what has been recorded since the last read out of the recorder, and add it both
+ * to the histogram of everything recorded and to the histogram of the current interval. interval
+ * returns the latter and starts a new interval.
+ */
+public class LatencyTimer {
+
+  // latencies are recorded in microseconds, up to an hour
+  private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+  private final String name;
+
+  private final Recorder recorder;
+
+  private final LongAdder failures = new LongAdder();
+
+  private final Histogram total;
+
+  private final Histogram current;
+
+  private Histogram recycled;
+
+  // failures when the current interval started
+  private long intervalStartFailures;
+
+  private final long startMillis = System.currentTimeMillis();
+
+  private long intervalStartMillis = startMillis;
+
+  /**
+   * Create a timer.
+   * @param name name of the timed operation
+   * @param significantDigits significant digits the latencies are kept to, from 0 to 5
+   */
+  public LatencyTimer(final String name, final int significantDigits) {
+    this.name = name;
+    recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, significantDigits);
+    total = new Histogram(HIGHEST_TRACKABLE_MICROS, significantDigits);
+    current = new Histogram(HIGHEST_TRACKABLE_MICROS, significantDigits);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Record the latency of one operation. Latencies over an hour are recorded as an hour.
+   * @param elapsedNanos how long the operation took
+   * @param failed whether the operation failed
+   */
+  public void record(final long elapsedNanos, final boolean failed) {
+    long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    recorder.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+    if (failed) {
+      failures.increment();
+    }
+  }
+
+  /**
+   * Return a snapshot of everything recorded since the timer was created.
+   */
+  public synchronized LatencySnapshot total() {
+    drain();
+    return LatencySnapshot.of(name, total, failures.sum(), startMillis,
+        System.currentTimeMillis());
+  }
+
+  /**
+   * Return a snapshot of what was recorded since the last call to interval, and start a new
+   * interval.
+   */
+  public synchronized LatencySnapshot interval() {
+    drain();
+    long now = System.currentTimeMillis();
+    long failed = failures.sum();
+    LatencySnapshot snapshot = LatencySnapshot.of(name, current, failed - intervalStartFailures,
+        intervalStartMillis, now);
+    current.reset();
+    intervalStartMillis = now;
+    intervalStartFailures = failed;
+    return snapshot;
+  }
+
+  /*
+   * Move what has been recorded since the last drain into the total and current histograms.
+   */
+  private void drain() {
+    recycled = recorder.getIntervalHistogram(recycled);
+    total.add(recycled);
+    current.add(recycled);
+  }
+}
@@ -0,0 +1,95 @@
+package org.galatea.starter.utils.metrics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The LatencyTimers of the application, by name, created as they are first used. Once maxTimers
+ * timers exist, further names are all recorded under OVERFLOW, so that names made from unexpected
+ * input, like unmapped request paths, can't grow the registry without bound.
+ */
+@Slf4j
+public class LatencyTimers {
+
+  public static final String OVERFLOW = "overflow";
+
+  private final int significantDigits;
+
+  private final int maxTimers;
+
+  private final ConcurrentMap<String, LatencyTimer> timers = new ConcurrentHashMap<>();
+
+  private final LatencyTimer overflow;
+
+  /**
+   * Create an empty registry.
+   * @param significantDigits significant digits the latencies are kept to, from 0 to 5
+   * @param maxTimers maximum number of timers
+   */
+  public LatencyTimers(final int significantDigits, final int maxTimers) {
+    if (significantDigits < 0 || significantDigits > 5 || maxTimers < 1) {
+      throw new IllegalArgumentException("Invalid latency timer settings: significantDigits "
+          + significantDigits + ", maxTimers " + maxTimers);
+    }
+    this.significantDigits = significantDigits;
+    this.maxTimers = maxTimers;
+    overflow = new LatencyTimer(OVERFLOW, significantDigits);
+  }
+
+  /**
+   * Return the timer with the given name, creating it if it doesn't exist yet.
+   */
+  public LatencyTimer timer(final String name) {
+    LatencyTimer timer = timers.get(name);
+    if (timer != null) {
+      return timer;
+    }
+    if (timers.size() >= maxTimers) {
+      return overflow;
+    }
+    return timers.computeIfAbsent(name, key -> {
+      log.debug("Creating latency timer {}", key);
+      return new LatencyTimer(key, significantDigits);
+    });
+  }
+
+  /**
+   * Record the latency of one operation.
+   * @param name name of the timed operation
+   * @param elapsedNanos how long the operation took
+   * @param failed whether the operation failed
+   */
+  public void record(final String name, final long elapsedNanos, final boolean failed) {
+    timer(name).record(elapsedNanos, failed);
+  }
+
+  /**
+   * Return snapshots of everything each timer has recorded, ordered by name.
+   */
+  public List<LatencySnapshot> total() {
+    return snapshots(LatencyTimer::total);
+  }
+
+  /**
+   * Return snapshots of what each timer recorded since the last call to interval, ordered by
+   * name, and start new intervals.
+   */
+  public List<LatencySnapshot> interval() {
+    return snapshots(LatencyTimer::interval);
+  }
+
+  private List<LatencySnapshot> snapshots(final Function<LatencyTimer, LatencySnapshot> snapshot) {
+    List<LatencySnapshot> snapshots = timers.values().stream().map(snapshot)
+        .sorted(Comparator.comparing(LatencySnapshot::getName)).collect(Collectors.toList());
+    LatencySnapshot overflowSnapshot = snapshot.apply(overflow);
+    if (overflowSnapshot.getCount() > 0) {
+      snapshots.add(overflowSnapshot);
+    }
+    return snapshots;
+  }
+}
@@ -0,0 +1,48 @@
+package org.galatea.starter.utils.metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+
+/**
+ * Records the latency of the public methods of beans annotated with LatencyTimed. A call that
+ * throws is recorded as a failure.
+ */
+@Aspect
+@RequiredArgsConstructor
+public class LatencyTimingAspect {
+
+  @NonNull
+  private final LatencyTimers timers;
+
+  // looked up once per method, so timing a call doesn't build its timer's name
+  private final ConcurrentMap<Method, LatencyTimer> methodTimers = new ConcurrentHashMap<>();
+
+  /**
+   * Time a call.
+   */
+  @Around("@within(org.galatea.starter.utils.metrics.LatencyTimed) && execution(public * *(..))")
+  public Object time(final ProceedingJoinPoint joinPoint) throws Throwable {
+    LatencyTimer timer = methodTimers.computeIfAbsent(
+        ((MethodSignature) joinPoint.getSignature()).getMethod(), this::newTimer);
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      Object result = joinPoint.proceed();
+      failed = false;
+      return result;
+    } finally {
+      timer.record(System.nanoTime() - start, failed);
+    }
+  }
+
+  private LatencyTimer newTimer(final Method method) {
+    return timers.timer(method.getDeclaringClass().getSimpleName() + "." + method.getName());
+  }
+}
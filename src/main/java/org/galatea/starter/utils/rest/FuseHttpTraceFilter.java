@@ -3,10 +3,14 @@ package org.galatea.starter.utils.rest;
 import static org.galatea.starter.entrypoint.BaseRestController.EXTERNAL_REQUEST_ID;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -16,18 +20,23 @@ import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.metrics.LatencyTimers;
 import org.slf4j.MDC;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.HttpTraceRepository;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.util.WebUtils;
 
 /**
  * Builds upon spring actuator's web request tracer to capture interesting audit information. We
  * capture some additional timing data as well The filter also adds these audit fields as headers to
- * the response.
+ * the response, and records the latency of every request, traced or not, by route and by status.
+ *
+ * <p>A request whose handling continues asynchronously, like a streamed response, is finished once
+ * it completes: its payloads are logged and its latency is recorded then. Its response may be
+ * committed on another thread, so the audit headers fall back on the MDC the request thread had
+ * when it returned.
  *
  * @author rbasu
  */
@@ -40,20 +49,39 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
 
   private static final Random QUERY_ID_GENERATOR = new Random();
 
+  // route of requests that weren't mapped to a handler, e.g. those answered with a 404
+  private static final String UNMAPPED_ROUTE = "unmapped";
+
+  // request attribute holding the MDC of the request thread, once its handling has gone async
+  private static final String REQUEST_MDC_ATTRIBUTE =
+      FuseHttpTraceFilter.class.getName() + ".requestMdc";
+
   @NonNull
   protected final Predicate<String> pathsToSkip;
 
+  @NonNull
+  protected final PayloadCapturePolicy payloadCapturePolicy;
+
+  @NonNull
+  protected final LatencyTimers latencyTimers;
+
   /**
    * Sadly we have to write our own constructor since lombok can't call super with args.
    *
    * @param repository the repository where we store our trace
    * @param pathsToSkip a predicate that will return try if we want to a skip a certain url
    *     path
+   * @param payloadCapturePolicy decides which request and response bodies are captured, and how
+   *     much of them
+   * @param latencyTimers where the latency of each request is recorded
    */
   public FuseHttpTraceFilter(final HttpTraceRepository repository, final HttpExchangeTracer tracer,
-      final Predicate<String> pathsToSkip) {
+      final Predicate<String> pathsToSkip, final PayloadCapturePolicy payloadCapturePolicy,
+      final LatencyTimers latencyTimers) {
     super(repository, tracer);
     this.pathsToSkip = pathsToSkip;
+    this.payloadCapturePolicy = payloadCapturePolicy;
+    this.latencyTimers = latencyTimers;
   }
 
   @Override
@@ -61,6 +89,8 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
       final HttpServletResponse response, final FilterChain filterChain)
       throws ServletException, IOException {
 
+    long requestStartNanos = System.nanoTime();
+
     // generate the internal request Id
     // we want positive numbers only, so use nextInt(upperBound)
     String internallyGeneratedId =
@@ -75,62 +105,174 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
 
     // Skip paths that are not interesting to trace
     if (pathsToSkip.test(request.getRequestURI())) {
-      filterChain.doFilter(request, response);
+      boolean completed = false;
+      try {
+        filterChain.doFilter(request, response);
+        completed = true;
+      } finally {
+        boolean requestCompleted = completed;
+        whenComplete(request, completed,
+            () -> recordLatency(request, response, requestStartNanos, requestCompleted));
+      }
       return;
     }
 
     boolean isFirstRequest = !isAsyncDispatch(request);
     HttpServletRequest requestToUse = request;
     HttpServletResponse responseToUse = response;
+    Instant requestReceivedTime = Instant.now();
 
-    // We need to do this for the request and response since you can only read the stream that holds
-    // the payload once
-    if (isFirstRequest && !(request instanceof ContentCachingRequestWrapper)) {
-      requestToUse = new ContentCachingRequestWrapper(request);
+    // The bodies are streamed through rather than buffered, capturing only their first bytes, so
+    // the audit headers are added just before the response is committed
+    if (isFirstRequest && !(request instanceof PayloadCapturingRequestWrapper)
+        && payloadCapturePolicy.capturesPath(request.getRequestURI())
+        && payloadCapturePolicy.capturesContentType(request.getContentType())) {
+      requestToUse =
+          new PayloadCapturingRequestWrapper(request, payloadCapturePolicy.newCapture());
     }
-    if (isFirstRequest && !(response instanceof ContentCachingRequestWrapper)) {
-      responseToUse = new ContentCachingResponseWrapper(response);
+    if (isFirstRequest && !(response instanceof PayloadCapturingResponseWrapper)) {
+      responseToUse = new PayloadCapturingResponseWrapper(response,
+          payloadCapturePolicy.capturesPath(request.getRequestURI()) ? payloadCapturePolicy : null,
+          () -> addAuditHeaders(request, requestReceivedTime, requestStartNanos, response));
     }
 
-    doFilterInternalHelper(requestToUse, responseToUse, filterChain, Instant.now());
+    doFilterInternalHelper(requestToUse, responseToUse, filterChain, requestReceivedTime,
+        requestStartNanos);
   }
 
   @SneakyThrows
   // what's this method responsible for?
   protected void doFilterInternalHelper(final HttpServletRequest request,
       final HttpServletResponse response, final FilterChain filterChain,
-      final Instant requestReceivedTime) {
+      final Instant requestReceivedTime, final long requestStartNanos) {
 
+    boolean completed = false;
     try {
       super.doFilterInternal(request, response, filterChain);
+      completed = true;
     } finally {
-      addAuditHeaders(requestReceivedTime.toString(), response);
-      updateResponse(response);
+      boolean requestCompleted = completed;
+      whenComplete(request, completed,
+          () -> finish(request, response, requestReceivedTime, requestStartNanos,
+              requestCompleted));
       MDC.clear();
     }
   }
 
-  private void addAuditHeaders(final String requestReceivedTime,
+  /*
+   * Add the audit headers if they haven't been, log the payloads and record the latency of a
+   * request that has been handled.
+   */
+  @SneakyThrows
+  private void finish(final HttpServletRequest request, final HttpServletResponse response,
+      final Instant requestReceivedTime, final long requestStartNanos, final boolean completed) {
+    PayloadCapturingResponseWrapper responseWrapper =
+        WebUtils.getNativeResponse(response, PayloadCapturingResponseWrapper.class);
+    try {
+      if (responseWrapper == null) {
+        addAuditHeaders(request, requestReceivedTime, requestStartNanos, response);
+      } else {
+        responseWrapper.finish();
+      }
+    } finally {
+      logPayloads(request, responseWrapper);
+      recordLatency(request, response, requestStartNanos, completed);
+    }
+  }
+
+  /*
+   * Run the action now, or once the request completes if its handling has gone async. The action
+   * then runs with the MDC the request thread had when it returned.
+   */
+  private static void whenComplete(final HttpServletRequest request, final boolean completed,
+      final Runnable action) {
+    if (!completed || !request.isAsyncStarted()) {
+      action.run();
+      return;
+    }
+
+    Map<String, String> requestMdc = MDC.getCopyOfContextMap();
+    request.setAttribute(REQUEST_MDC_ATTRIBUTE, requestMdc);
+    request.getAsyncContext().addListener(new AsyncListener() {
+      @Override
+      public void onComplete(final AsyncEvent event) {
+        if (requestMdc != null) {
+          MDC.setContextMap(requestMdc);
+        }
+        try {
+          action.run();
+        } finally {
+          MDC.clear();
+        }
+      }
+
+      @Override
+      public void onTimeout(final AsyncEvent event) {
+        // onComplete follows
+      }
+
+      @Override
+      public void onError(final AsyncEvent event) {
+        // onComplete follows
+      }
+
+      @Override
+      public void onStartAsync(final AsyncEvent event) {
+        // the listener is only registered for the first async cycle
+      }
+    });
+  }
+
+  private void addAuditHeaders(final HttpServletRequest request,
+      final Instant requestReceivedTime, final long requestStartNanos,
       final HttpServletResponse response) {
     log.info("Attempting to add audit headers");
-    String internalQueryId = MDC.get(INTERNAL_REQUEST_ID);
+    String internalQueryId = getRequestMdc(request, INTERNAL_REQUEST_ID);
     if (internalQueryId != null) {
       logAndAddAuditHeader(response, "internalQueryId",
           internalQueryId.replace(" - ", "")); // internalQueryId has a ' - ' in MDC
     }
-    String externalQueryId = MDC.get(EXTERNAL_REQUEST_ID);
+    String externalQueryId = getRequestMdc(request, EXTERNAL_REQUEST_ID);
     if (externalQueryId != null) {
       logAndAddAuditHeader(response, "externalQueryId",
           externalQueryId.replace(" - ", "")); // externalQueryId has a ' - ' in MDC
     }
 
-    logAndAddAuditHeader(response, "requestReceivedTime", requestReceivedTime);
+    logAndAddAuditHeader(response, "requestReceivedTime", requestReceivedTime.toString());
 
     String requestElapsedTimeMillis =
-        String.valueOf(Instant.parse(requestReceivedTime).until(Instant.now(), ChronoUnit.MILLIS));
+        String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStartNanos));
     logAndAddAuditHeader(response, "requestElapsedTimeMillis", requestElapsedTimeMillis);
   }
 
+  /*
+   * Return the MDC value of the thread handling the request, or, on a thread the response is
+   * written from once the request thread has returned, the value the request thread had.
+   */
+  @SuppressWarnings("unchecked")
+  private static String getRequestMdc(final HttpServletRequest request, final String key) {
+    String value = MDC.get(key);
+    Map<String, String> requestMdc =
+        (Map<String, String>) request.getAttribute(REQUEST_MDC_ATTRIBUTE);
+    return value == null && requestMdc != null ? requestMdc.get(key) : value;
+  }
+
+  /**
+   * Records the latency of a request under its route, and under its route and status.
+   */
+  private void recordLatency(final HttpServletRequest request, final HttpServletResponse response,
+      final long requestStartNanos, final boolean completed) {
+    long elapsedNanos = System.nanoTime() - requestStartNanos;
+    // an exception thrown out of the filter chain is answered with a 500 by the container
+    int status = completed ? response.getStatus() : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    boolean failed = status >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    String timerName =
+        "http " + request.getMethod() + " " + (route == null ? UNMAPPED_ROUTE : route);
+    latencyTimers.record(timerName, elapsedNanos, failed);
+    latencyTimers.record(timerName + " " + status, elapsedNanos, failed);
+  }
+
   /**
    * Logs header name/value and adds them to the response.
    */
@@ -145,13 +287,26 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
   }
 
   /**
-   * Updates the response because we add headers *after* the filter has been applied. This way we
-   * ensure that any fields that were created during request handling (e.g. externalQueryId) will
-   * make it onto the response.
+   * Logs the captured payloads at debug level, and gives their buffers back to the pool.
    */
-  private void updateResponse(final HttpServletResponse response) throws IOException {
-    ContentCachingResponseWrapper responseWrapper =
-        WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
-    responseWrapper.copyBodyToResponse();
+  private void logPayloads(final HttpServletRequest request,
+      final PayloadCapturingResponseWrapper responseWrapper) {
+    PayloadCapturingRequestWrapper requestWrapper =
+        WebUtils.getNativeRequest(request, PayloadCapturingRequestWrapper.class);
+    if (requestWrapper != null) {
+      logPayload("Request", requestWrapper.getCapture(), requestWrapper.getCharset());
+    }
+    if (responseWrapper != null && responseWrapper.getCapture() != null) {
+      logPayload("Response", responseWrapper.getCapture(), responseWrapper.getCharset());
+    }
+  }
+
+  private void logPayload(final String name, final PayloadCapture capture,
+      final Charset charset) {
+    if (log.isDebugEnabled() && capture.getSize() > 0) {
+      log.debug("{} payload ({} bytes{}): {}", name, capture.getSize(),
+          capture.isTruncated() ? ", truncated" : "", capture.toString(charset));
+    }
+    capture.release();
   }
 }
@@ -0,0 +1,81 @@
+package org.galatea.starter.utils.rest;
+
+import java.nio.charset.Charset;
+
+/**
+ * The first bytes of a request or response body, up to the maxPayloadSize of its policy, along
+ * with the size of the whole body. The buffer is taken from the policy's pool on the first write,
+ * and must be given back with release.
+ */
+public class PayloadCapture {
+
+  private final PayloadCapturePolicy policy;
+
+  private byte[] buffer;
+
+  // bytes captured
+  private int captured;
+
+  // bytes written, captured or not
+  private long size;
+
+  PayloadCapture(final PayloadCapturePolicy policy) {
+    this.policy = policy;
+  }
+
+  void write(final int b) {
+    size++;
+    if (captured < policy.getMaxPayloadSize()) {
+      buffer()[captured++] = (byte) b;
+    }
+  }
+
+  void write(final byte[] bytes, final int offset, final int length) {
+    size += length;
+    int toCapture = Math.min(length, policy.getMaxPayloadSize() - captured);
+    if (toCapture > 0) {
+      System.arraycopy(bytes, offset, buffer(), captured, toCapture);
+      captured += toCapture;
+    }
+  }
+
+  /**
+   * Return the size of the whole body.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Return whether more of the body was written than was captured.
+   */
+  public boolean isTruncated() {
+    return size > captured;
+  }
+
+  /**
+   * Return the captured bytes as text.
+   */
+  public String toString(final Charset charset) {
+    return buffer == null ? "" : new String(buffer, 0, captured, charset);
+  }
+
+  /**
+   * Give the buffer back to the pool. The capture is empty afterwards.
+   */
+  public void release() {
+    if (buffer != null) {
+      policy.releaseBuffer(buffer);
+      buffer = null;
+    }
+    captured = 0;
+    size = 0;
+  }
+
+  private byte[] buffer() {
+    if (buffer == null) {
+      buffer = policy.acquireBuffer();
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,107 @@
+package org.galatea.starter.utils.rest;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import lombok.Builder;
+import lombok.NonNull;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * Decides which request and response bodies FuseHttpTraceFilter captures, and holds the pool of
+ * buffers they are captured into. At most maxPayloadSize bytes of a body are captured; the rest
+ * is streamed through without being kept.
+ */
+public class PayloadCapturePolicy {
+
+  private final int maxPayloadSize;
+
+  private final Predicate<String> pathsToSkip;
+
+  private final Collection<MediaType> contentTypesToSkip;
+
+  private final int poolSize;
+
+  // buffers of maxPayloadSize bytes, free to be reused
+  private final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger pooled = new AtomicInteger();
+
+  /**
+   * Create a policy.
+   * @param maxPayloadSize maximum number of bytes captured of each body, 0 to capture none
+   * @param pathsToSkip paths whose bodies aren't captured
+   * @param contentTypesToSkip content types whose bodies aren't captured, which may have wildcards
+   * @param poolSize maximum number of free buffers kept for reuse
+   */
+  @Builder
+  private PayloadCapturePolicy(final int maxPayloadSize,
+      @NonNull final Predicate<String> pathsToSkip,
+      final Collection<MediaType> contentTypesToSkip, final int poolSize) {
+    if (maxPayloadSize < 0 || poolSize < 0) {
+      throw new IllegalArgumentException("Invalid payload capture settings: maxPayloadSize "
+          + maxPayloadSize + ", poolSize " + poolSize);
+    }
+    this.maxPayloadSize = maxPayloadSize;
+    this.pathsToSkip = pathsToSkip;
+    this.contentTypesToSkip =
+        contentTypesToSkip == null ? Collections.emptyList() : contentTypesToSkip;
+    this.poolSize = poolSize;
+  }
+
+  /**
+   * Return whether the bodies of requests to the given path may be captured.
+   */
+  public boolean capturesPath(final String path) {
+    return maxPayloadSize > 0 && !pathsToSkip.test(path);
+  }
+
+  /**
+   * Return whether bodies of the given content type are captured. Bodies without a content type
+   * are.
+   */
+  public boolean capturesContentType(final String contentType) {
+    if (contentType == null) {
+      return true;
+    }
+    MediaType mediaType;
+    try {
+      mediaType = MediaType.parseMediaType(contentType);
+    } catch (InvalidMediaTypeException e) {
+      return true;
+    }
+    return contentTypesToSkip.stream().noneMatch(skipped -> skipped.includes(mediaType));
+  }
+
+  /**
+   * Return a new, empty capture of a body.
+   */
+  public PayloadCapture newCapture() {
+    return new PayloadCapture(this);
+  }
+
+  int getMaxPayloadSize() {
+    return maxPayloadSize;
+  }
+
+  byte[] acquireBuffer() {
+    byte[] buffer = pool.poll();
+    if (buffer == null) {
+      return new byte[maxPayloadSize];
+    }
+    pooled.decrementAndGet();
+    return buffer;
+  }
+
+  void releaseBuffer(final byte[] buffer) {
+    if (pooled.incrementAndGet() <= poolSize) {
+      pool.offer(buffer);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.galatea.starter.utils.rest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Request that captures the first bytes of its body into a PayloadCapture as the body is read.
+ * Unlike ContentCachingRequestWrapper, it keeps no more of the body than the capture holds.
+ */
+public class PayloadCapturingRequestWrapper extends HttpServletRequestWrapper {
+
+  private final PayloadCapture capture;
+
+  private ServletInputStream inputStream;
+
+  private BufferedReader reader;
+
+  /**
+   * Wrap a request.
+   * @param request request to wrap
+   * @param capture capture of the body
+   */
+  public PayloadCapturingRequestWrapper(final HttpServletRequest request,
+      final PayloadCapture capture) {
+    super(request);
+    this.capture = capture;
+  }
+
+  /**
+   * Return the capture of the body.
+   */
+  public PayloadCapture getCapture() {
+    return capture;
+  }
+
+  /**
+   * Return the charset the body is read as.
+   */
+  public Charset getCharset() {
+    String encoding = getCharacterEncoding();
+    return encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+  }
+
+  @Override
+  public ServletInputStream getInputStream() throws IOException {
+    if (inputStream == null) {
+      inputStream = new CapturingInputStream(super.getInputStream());
+    }
+    return inputStream;
+  }
+
+  @Override
+  public BufferedReader getReader() throws IOException {
+    if (reader == null) {
+      reader = new BufferedReader(new InputStreamReader(getInputStream(), getCharset()));
+    }
+    return reader;
+  }
+
+  private final class CapturingInputStream extends ServletInputStream {
+
+    private final ServletInputStream delegate;
+
+    private CapturingInputStream(final ServletInputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = delegate.read();
+      if (b != -1) {
+        capture.write(b);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+      int read = delegate.read(bytes, offset, length);
+      if (read > 0) {
+        capture.write(bytes, offset, read);
+      }
+      return read;
+    }
+
+    @Override
+    public boolean isFinished() {
+      return delegate.isFinished();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setReadListener(final ReadListener readListener) {
+      delegate.setReadListener(readListener);
+    }
+  }
+}
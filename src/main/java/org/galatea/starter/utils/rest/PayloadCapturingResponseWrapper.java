@@ -0,0 +1,210 @@
+package org.galatea.starter.utils.rest;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response that streams its body straight through to the wrapped response, capturing the first
+ * bytes of it into a PayloadCapture if the policy captures its content type. Unlike
+ * ContentCachingResponseWrapper, it keeps no more of the body than the capture holds.
+ *
+ * <p>Since the body isn't held back, headers added once the response has been written would be
+ * lost. beforeCommit is run before the first byte of the body is written, or the response is
+ * otherwise committed, so that headers can be added then; finish runs it if that never happened.
+ *
+ * <p>The body of an asynchronously handled request may be written on another thread than the one
+ * that handled it, and finished on a third, so the state they share is guarded by the wrapper.
+ */
+public class PayloadCapturingResponseWrapper extends HttpServletResponseWrapper {
+
+  private final PayloadCapturePolicy policy;
+
+  private final Runnable beforeCommit;
+
+  private boolean committing;
+
+  // null until the first write, or if the content type isn't captured
+  private PayloadCapture capture;
+
+  private boolean captureDecided;
+
+  private CapturingOutputStream bodyStream;
+
+  private boolean usingOutputStream;
+
+  private PrintWriter writer;
+
+  /**
+   * Wrap a response.
+   * @param response response to wrap
+   * @param policy policy deciding whether the body is captured, or null to capture none of it
+   * @param beforeCommit run once, before the response is committed
+   */
+  public PayloadCapturingResponseWrapper(final HttpServletResponse response,
+      final PayloadCapturePolicy policy, final Runnable beforeCommit) {
+    super(response);
+    this.policy = policy;
+    this.beforeCommit = beforeCommit;
+  }
+
+  /**
+   * Return the capture of the body, or null if none of it was captured.
+   */
+  public synchronized PayloadCapture getCapture() {
+    return capture;
+  }
+
+  /**
+   * Return the charset the body is written in.
+   */
+  public Charset getCharset() {
+    String encoding = getCharacterEncoding();
+    return encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+  }
+
+  /**
+   * Flush what has been written through the writer, and run beforeCommit if it hasn't been run.
+   * Called once the request has been handled.
+   */
+  public void finish() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    commit();
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter() has already been called on this response");
+    }
+    usingOutputStream = true;
+    return bodyStream();
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (usingOutputStream) {
+      throw new IllegalStateException(
+          "getOutputStream() has already been called on this response");
+    }
+    if (writer == null) {
+      // the body is written through the capturing stream, in the response's encoding
+      writer = new PrintWriter(new OutputStreamWriter(bodyStream(), getCharset()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    commit();
+    if (writer != null) {
+      writer.flush();
+    }
+    super.flushBuffer();
+  }
+
+  @Override
+  public void sendError(final int sc) throws IOException {
+    commit();
+    super.sendError(sc);
+  }
+
+  @Override
+  public void sendError(final int sc, final String msg) throws IOException {
+    commit();
+    super.sendError(sc, msg);
+  }
+
+  @Override
+  public void sendRedirect(final String location) throws IOException {
+    commit();
+    super.sendRedirect(location);
+  }
+
+  private CapturingOutputStream bodyStream() throws IOException {
+    if (bodyStream == null) {
+      bodyStream = new CapturingOutputStream(super.getOutputStream());
+    }
+    return bodyStream;
+  }
+
+  private synchronized void commit() {
+    if (!committing) {
+      committing = true;
+      beforeCommit.run();
+    }
+  }
+
+  /*
+   * Decide whether to capture the body when its first byte is written, by which time the content
+   * type has been set.
+   */
+  private synchronized PayloadCapture capture() {
+    if (!captureDecided) {
+      captureDecided = true;
+      if (policy != null && policy.capturesContentType(getContentType())) {
+        capture = policy.newCapture();
+      }
+    }
+    return capture;
+  }
+
+  private final class CapturingOutputStream extends ServletOutputStream {
+
+    private final ServletOutputStream delegate;
+
+    private CapturingOutputStream(final ServletOutputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      commit();
+      delegate.write(b);
+      PayloadCapture bodyCapture = capture();
+      if (bodyCapture != null) {
+        bodyCapture.write(b);
+      }
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+      commit();
+      delegate.write(bytes, offset, length);
+      PayloadCapture bodyCapture = capture();
+      if (bodyCapture != null) {
+        bodyCapture.write(bytes, offset, length);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      commit();
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      commit();
+      delegate.close();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+      delegate.setWriteListener(writeListener);
+    }
+  }
+}
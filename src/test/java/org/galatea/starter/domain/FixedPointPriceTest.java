@@ -0,0 +1,62 @@
+package org.galatea.starter.domain;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import lombok.SneakyThrows;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JUnitParamsRunner.class)
+public class FixedPointPriceTest {
+
+  /**
+   * Parsing agrees with BigDecimal rounded half up to SCALE decimal places.
+   */
+  @Test
+  @Parameters({"0", "121.91", "121.9100", "0.0001", "0.00005", "0.00004", "-3.14159", "+7.",
+      ".5", "99999999.99995", "922337203685477.5807"})
+  public void testParse(final String text) {
+    assertEquals(FixedPointPrice.of(new BigDecimal(text)), FixedPointPrice.parse(text));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  @Parameters({"", "-", ".", "1.2.3", "1e5", "abc", "922337203685477.5808"})
+  public void testParseInvalid(final String text) {
+    FixedPointPrice.parse(text);
+  }
+
+  /**
+   * Formatting agrees with BigDecimal.toString at SCALE decimal places.
+   */
+  @Test
+  @Parameters({"0", "1", "-1", "10000", "1219100", "-1219100", "9223372036854775807",
+      "-9223372036854775808"})
+  public void testFormat(final long price) {
+    assertEquals(FixedPointPrice.toBigDecimal(price).toString(), FixedPointPrice.toString(price));
+  }
+
+  /**
+   * StockPriceInfo prices are written to JSON as decimals and read back as FixedPointPrices.
+   */
+  @SneakyThrows
+  @Test
+  public void testJsonRoundTrip() {
+    ObjectMapper mapper = new ObjectMapper();
+    StockPriceInfo prices = StockPriceInfo.builder()
+        .open(new BigDecimal("120.25"))
+        .high(1210000)
+        .low(new BigDecimal("119.5"))
+        .close(new BigDecimal("121.91"))
+        .volume(1000).build();
+
+    String json = mapper.writeValueAsString(prices);
+
+    assertEquals("{\"open\":120.2500,\"high\":121.0000,\"low\":119.5000,\"close\":121.9100,"
+        + "\"volume\":1000}", json);
+    assertEquals(prices, mapper.readValue(json, StockPriceInfo.class));
+  }
+}
@@ -0,0 +1,169 @@
+package org.galatea.starter.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+
+public class StockPriceSeriesTest {
+
+  private static final LocalDate START = LocalDate.of(2020, 6, 1);
+
+  /**
+   * Build a StockPrice for the given number of days after START, with all prices equal to the
+   * given price (which has the same scale as the series).
+   */
+  private static StockPrice stockPrice(final int day, final String price) {
+    BigDecimal decimal = new BigDecimal(price);
+    return StockPrice.builder()
+        .symbol("IBM")
+        .date(START.plusDays(day))
+        .prices(TestDataGenerator.defaultStockPriceInfoData()
+            .open(decimal).high(decimal).low(decimal).close(decimal).volume(day).build())
+        .build();
+  }
+
+  /**
+   * Build StockPrices for each of the given days after START, sorted by date desc.
+   */
+  private static List<StockPrice> stockPrices(final int fromDay, final int toDay) {
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (int day = toDay; day >= fromDay; day--) {
+      stockPrices.add(stockPrice(day, "1" + day + ".2500"));
+    }
+    return stockPrices;
+  }
+
+  /**
+   * Series is sorted by date desc regardless of input order, and round-trips prices.
+   */
+  @Test
+  public void ofSortsByDateDesc() {
+    List<StockPrice> expected = stockPrices(0, 9);
+    List<StockPrice> shuffled = new ArrayList<>(expected);
+    Collections.shuffle(shuffled);
+
+    StockPriceSeries series = StockPriceSeries.of("IBM", shuffled);
+
+    assertEquals(expected, series);
+    assertEquals(START.plusDays(9).toEpochDay(), series.getEpochDay(0));
+    assertEquals(192500L, series.getClose(0));
+    assertEquals(9L, series.getVolume(0));
+  }
+
+  /**
+   * Duplicate dates keep the last StockPrice given.
+   */
+  @Test
+  public void ofKeepsLastDuplicate() {
+    StockPriceSeries series = StockPriceSeries.of("IBM",
+        Arrays.asList(stockPrice(0, "1.0000"), stockPrice(0, "2.0000")));
+
+    assertEquals(Collections.singletonList(stockPrice(0, "2.0000")), series);
+  }
+
+  /**
+   * lastDays returns the most recent days, or the whole series if it is too short.
+   */
+  @Test
+  public void lastDays() {
+    List<StockPrice> expected = stockPrices(0, 9);
+    StockPriceSeries series = StockPriceSeries.of("IBM", expected);
+
+    assertEquals(expected.subList(0, 3), series.lastDays(3));
+    assertEquals(expected, series.lastDays(20));
+    assertTrue(series.lastDays(0).isEmpty());
+  }
+
+  /**
+   * Slices of slices map back to the right elements.
+   */
+  @Test
+  public void nestedSubList() {
+    List<StockPrice> expected = stockPrices(0, 9);
+    StockPriceSeries series = StockPriceSeries.of("IBM", expected);
+
+    assertEquals(expected.subList(2, 8).subList(1, 4), series.subList(2, 8).subList(1, 4));
+  }
+
+  /**
+   * between returns the days in the given range, both ends included, even if the ends aren't in
+   * the series.
+   */
+  @Test
+  public void between() {
+    List<StockPrice> expected = stockPrices(0, 9);
+    StockPriceSeries series = StockPriceSeries.of("IBM", expected);
+
+    assertEquals(expected.subList(3, 7), series.between(START.plusDays(3), START.plusDays(6)));
+    assertEquals(expected, series.between(START.minusDays(5), START.plusDays(20)));
+    assertEquals(expected.subList(5, 7), series.lastDays(7).between(START, START.plusDays(4)));
+    assertTrue(series.between(START.plusDays(20), START.plusDays(30)).isEmpty());
+    assertTrue(series.between(START.plusDays(6), START.plusDays(3)).isEmpty());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getOutsideSlice() {
+    StockPriceSeries.of("IBM", stockPrices(0, 9)).lastDays(3).get(3);
+  }
+
+  /**
+   * Overlapping prices are merged, with new prices replacing old ones for the same date.
+   */
+  @Test
+  public void mergeOverlapping() {
+    StockPriceSeries series = StockPriceSeries.of("IBM", stockPrices(0, 5));
+
+    StockPriceSeries merged = series.merge(Arrays.asList(stockPrice(5, "9.0000"),
+        stockPrice(6, "9.0000")));
+
+    List<StockPrice> expected = new ArrayList<>(stockPrices(0, 4));
+    expected.add(0, stockPrice(5, "9.0000"));
+    expected.add(0, stockPrice(6, "9.0000"));
+    assertEquals(expected, merged);
+    // the original series is unchanged
+    assertEquals(stockPrices(0, 5), series);
+  }
+
+  /**
+   * Prices that start after the series ends replace the series, so no gap is hidden inside it.
+   */
+  @Test
+  public void mergeNewerWithGap() {
+    StockPriceSeries series = StockPriceSeries.of("IBM", stockPrices(0, 5));
+
+    StockPriceSeries merged = series.merge(stockPrices(10, 12));
+
+    assertEquals(stockPrices(10, 12), merged);
+  }
+
+  /**
+   * Prices that end before the series starts are ignored.
+   */
+  @Test
+  public void mergeOlderWithGap() {
+    StockPriceSeries series = StockPriceSeries.of("IBM", stockPrices(10, 12));
+
+    StockPriceSeries merged = series.merge(stockPrices(0, 5));
+
+    assertSame(series, merged);
+  }
+
+  /**
+   * Merging into an empty series returns the new prices.
+   */
+  @Test
+  public void mergeIntoEmpty() {
+    StockPriceSeries merged = StockPriceSeries.empty("IBM").merge(stockPrices(0, 2));
+
+    assertEquals(stockPrices(0, 2), merged);
+  }
+}
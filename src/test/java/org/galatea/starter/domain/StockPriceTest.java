@@ -47,6 +47,21 @@ public class StockPriceTest extends ASpringTest {
     assertEquals(0, constraintViolations.size());
   }
 
+  /**
+   * Symbol is stored in upper case.
+   */
+  @Test
+  public void symbolIsNormalizedToUpperCase() {
+    StockPrice sp = StockPrice.builder()
+        .symbol("ibm")
+        .date(LocalDate.ofEpochDay(0))
+        .prices(TestDataGenerator.defaultStockPriceInfoData().build()).build();
+
+    sp.normalizeSymbol();
+
+    assertEquals("IBM", sp.getSymbol());
+  }
+
   /**
    * Symbol must not be an empty String.
    */
@@ -0,0 +1,96 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StockPriceSeriesStoreTest {
+
+  private IStockPriceRpsy mockStockPriceRpsy;
+
+  private StockPriceSeriesStore store;
+
+  @Before
+  public void setup() {
+    mockStockPriceRpsy = mock(IStockPriceRpsy.class);
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc(anyString()))
+        .thenAnswer(invocation -> Collections.singletonList(
+            stockPrice(invocation.getArgument(0))));
+    store = new StockPriceSeriesStore(mockStockPriceRpsy);
+  }
+
+  private static StockPrice stockPrice(final String symbol) {
+    BigDecimal price = new BigDecimal("100.0000");
+    return StockPrice.builder()
+        .symbol(symbol)
+        .date(LocalDate.of(2020, 6, 1))
+        .prices(TestDataGenerator.defaultStockPriceInfoData()
+            .open(price).high(price).low(price).close(price).build())
+        .build();
+  }
+
+  /**
+   * Test that a series is loaded once, whatever the case of the symbol.
+   */
+  @Test
+  public void testSeriesIsLoadedOnce() {
+    store.getSeries("IBM");
+    store.getSeries("ibm");
+
+    assertEquals(1, store.getSeries("Ibm").size());
+    verify(mockStockPriceRpsy, times(1)).findBySymbolOrderByDateDesc("IBM");
+  }
+
+  /**
+   * Test that an empty series, eg of an unknown symbol, isn't kept in memory.
+   */
+  @Test
+  public void testEmptySeriesIsNotKept() {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc("BOGUS"))
+        .thenReturn(Collections.emptyList());
+
+    assertTrue(store.getSeries("BOGUS").isEmpty());
+    assertTrue(store.getSeries("BOGUS").isEmpty());
+
+    assertFalse(store.findLoadedSeries("BOGUS").isPresent());
+    assertEquals(0, store.size());
+    verify(mockStockPriceRpsy, times(2)).findBySymbolOrderByDateDesc("BOGUS");
+  }
+
+  /**
+   * Test that the least recently used series is evicted, and the eviction listeners told about
+   * it, once the store holds more than MAX_SYMBOLS series.
+   */
+  @Test
+  public void testLeastRecentlyUsedSeriesIsEvicted() {
+    List<String> evicted = new ArrayList<>();
+    store.addEvictionListener(evicted::add);
+
+    for (int i = 0; i < StockPriceSeriesStore.MAX_SYMBOLS; i++) {
+      store.getSeries("S" + i);
+    }
+    // use the first symbol again, so that the second one is the least recently used
+    store.getSeries("S0");
+    store.getSeries("NEW");
+
+    assertEquals(StockPriceSeriesStore.MAX_SYMBOLS, store.size());
+    assertEquals(Collections.singletonList("S1"), evicted);
+    assertTrue(store.findLoadedSeries("S0").isPresent());
+    assertTrue(store.findLoadedSeries("NEW").isPresent());
+  }
+}
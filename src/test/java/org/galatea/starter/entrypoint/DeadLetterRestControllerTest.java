@@ -0,0 +1,99 @@
+package org.galatea.starter.entrypoint;
+
+import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.restassured.module.mockmvc.RestAssuredMockMvc;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.jms.JMSException;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.galatea.starter.utils.jms.DeadLetterLog;
+import org.galatea.starter.utils.jms.DeadLetterReplayer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class DeadLetterRestControllerTest {
+
+  private static final String REPLAY_PATH = "/deadLetters/replay";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private DeadLetterReplayer deadLetterReplayer;
+
+  // the listener signals that it has been handed messages, and then waits to be released
+  private final CountDownLatch handedOver = new CountDownLatch(1);
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @Before
+  public void setup() throws IOException, JMSException {
+    DeadLetterLog deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 4096);
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setText("a");
+    deadLetterLog.append("json", message, new JMSException("failed"));
+
+    deadLetterReplayer = new DeadLetterReplayer(deadLetterLog,
+        Collections.singletonMap("json", messages -> {
+          handedOver.countDown();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }), 10);
+
+    RestAssuredMockMvc.standaloneSetup(
+        MockMvcBuilders.standaloneSetup(new DeadLetterRestController(deadLetterReplayer))
+            .addPlaceholderValue("mvc.replayDeadLettersPath", REPLAY_PATH)
+            .setControllerAdvice(new RestExceptionHandler()));
+  }
+
+  /**
+   * A replay asked for while another is running is turned away, so that the messages the running
+   * replay is handing over aren't handed over twice.
+   */
+  @Test
+  public void testOverlappingReplayIsRejected() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<DeadLetterReplayer.Result> running =
+          executor.submit(() -> deadLetterReplayer.replay(null, 0, Long.MAX_VALUE));
+      assertTrue(handedOver.await(5, TimeUnit.SECONDS));
+
+      given()
+          .when()
+          .post(REPLAY_PATH)
+          .then()
+          .statusCode(HttpStatus.CONFLICT.value())
+          .body("message", containsString("in progress"));
+
+      release.countDown();
+      assertEquals(1, running.get(5, TimeUnit.SECONDS).getReplayed());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+
+    // the messages of the finished replay aren't replayed again
+    given()
+        .when()
+        .post(REPLAY_PATH)
+        .then()
+        .statusCode(HttpStatus.OK.value())
+        .body("replayed", is(0));
+  }
+}
@@ -5,9 +5,12 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.LocalDate;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.exception.InvalidDateRangeException;
+import org.galatea.starter.utils.exception.ReplayInProgressException;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.dao.DataAccessException;
@@ -32,6 +35,14 @@ public class RestExceptionHandlerTest {
     assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
   }
 
+  @Test
+  public void handleInvalidDateRange() {
+    InvalidDateRangeException exception =
+        new InvalidDateRangeException(LocalDate.of(2020, 6, 12), LocalDate.of(2020, 6, 1));
+    ResponseEntity<Object> response = handler.handleInvalidDateRange(exception);
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+  }
+
   @Test
   public void handleHttpMessageNotReadable() {
     HttpMessageNotReadableException exception = new HttpMessageNotReadableException("msg");
@@ -68,4 +79,11 @@ public class RestExceptionHandlerTest {
     ResponseEntity<Object> response = handler.handleOptimisticLockException(exception);
     assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
   }
+
+  @Test
+  public void handleReplayInProgress() {
+    ResponseEntity<Object> response =
+        handler.handleReplayInProgress(new ReplayInProgressException());
+    assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+  }
 }
@@ -0,0 +1,134 @@
+package org.galatea.starter.entrypoint;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+
+public class SettlementJmsBatchListenerTest {
+
+  private SettlementService mockSettlementService;
+
+  private SettlementJmsBatchListener listener;
+
+  @Before
+  public void setup() {
+    mockSettlementService = mock(SettlementService.class);
+    ProtoMessageTranslationConfig protoConfig = new ProtoMessageTranslationConfig();
+    listener = new SettlementJmsBatchListener(mockSettlementService,
+        protoConfig.tradeAgreementBytesMessageTranslator(),
+        new MessageTranslationConfig().tradeAgreementMessageTranslator(),
+        new MappingJackson2MessageConverter());
+  }
+
+  private static Message jsonMessage(final String instrument) throws JMSException {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setText("{\"instrument\":\"" + instrument + "\",\"internalParty\":\"INT-1\","
+        + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":100.0}");
+    return message;
+  }
+
+  private static Message protoMessage(final String instrument) throws JMSException {
+    return bytesMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+        .setInstrument(instrument).build().toByteArray());
+  }
+
+  private static Message bytesMessage(final byte[] bytes) throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(bytes);
+    message.reset();
+    return message;
+  }
+
+  private static TradeAgreement agreement(final String instrument) {
+    return TestDataGenerator.defaultTradeAgreementData().instrument(instrument).build();
+  }
+
+  /**
+   * All the agreements of a batch are settled with one call.
+   */
+  @Test
+  public void testSettleAgreementsJson() throws JMSException {
+    listener.settleAgreementsJson(Arrays.asList(jsonMessage("IBM"), jsonMessage("MSFT")));
+
+    verify(mockSettlementService).spawnMissions(
+        Arrays.asList(agreement("IBM"), agreement("MSFT")));
+    verifyNoMoreInteractions(mockSettlementService);
+  }
+
+  @Test
+  public void testSettleAgreementsProto() throws JMSException {
+    listener.settleAgreementsProto(Arrays.asList(protoMessage("IBM"), protoMessage("MSFT")));
+
+    verify(mockSettlementService).spawnMissions(
+        Arrays.asList(agreement("IBM"), agreement("MSFT")));
+    verifyNoMoreInteractions(mockSettlementService);
+  }
+
+  /**
+   * Messages holding several agreements are settled along with the rest of the batch.
+   */
+  @Test
+  public void testSettleAgreementsProtoMessages() throws JMSException {
+    byte[] agreements = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().setInstrument("MSFT"))
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().setInstrument("AAPL"))
+        .build().toByteArray();
+
+    listener.settleAgreementsProto(Arrays.asList(protoMessage("IBM"), bytesMessage(agreements)));
+
+    verify(mockSettlementService).spawnMissions(
+        Arrays.asList(agreement("IBM"), agreement("MSFT"), agreement("AAPL")));
+    verifyNoMoreInteractions(mockSettlementService);
+  }
+
+  /**
+   * Messages from other JMS providers are read through the JMS API.
+   */
+  @Test
+  public void testSettleAgreementsProtoFromOtherProvider() throws JMSException {
+    byte[] bytes = TestDataGenerator.defaultTradeAgreementProtoMessageData().build().toByteArray();
+    BytesMessage message = mock(BytesMessage.class);
+    when(message.getBodyLength()).thenReturn((long) bytes.length);
+    when(message.readBytes(any(byte[].class))).then(invocation -> {
+      byte[] body = invocation.getArgument(0);
+      System.arraycopy(bytes, 0, body, 0, bytes.length);
+      return bytes.length;
+    });
+
+    listener.settleAgreementsProto(Collections.singletonList(message));
+
+    verify(mockSettlementService).spawnMissions(Collections.singletonList(agreement("IBM")));
+  }
+
+  /**
+   * A message that can't be translated fails the whole batch, so that it can be rolled back.
+   */
+  @Test(expected = TranslationException.class)
+  public void testSettleAgreementsProtoWithBadMessage() throws JMSException {
+    ActiveMQBytesMessage bad = new ActiveMQBytesMessage();
+    bad.writeBytes(new byte[] {(byte) 0xff, (byte) 0xff});
+    bad.reset();
+
+    listener.settleAgreementsProto(Arrays.asList(protoMessage("IBM"), bad));
+  }
+}
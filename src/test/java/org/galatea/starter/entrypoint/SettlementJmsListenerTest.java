@@ -4,6 +4,7 @@ import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import javax.jms.TextMessage;
@@ -14,6 +15,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.junit.Test;
@@ -89,4 +91,20 @@ public class SettlementJmsListenerTest extends ASpringTest {
 
     verify(mockSettlementService, timeout(10000)).spawnMissions(agreements);
   }
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementsProto() {
+    TradeAgreementProtoMessages message = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData())
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().setInstrument("MSFT"))
+        .build();
+    List<TradeAgreement> agreements = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementData().build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("MSFT").build());
+
+    jmsTemplate.convertAndSend(protoQueueName, message.toByteArray());
+
+    verify(mockSettlementService, timeout(10000)).spawnMissions(agreements);
+  }
 }
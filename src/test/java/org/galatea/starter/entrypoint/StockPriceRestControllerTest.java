@@ -8,22 +8,42 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
 import io.restassured.response.ResponseOptions;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.Indicator;
+import org.galatea.starter.domain.IndicatorValue;
 import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
 import org.galatea.starter.domain.rpsy.IStockPriceRpsy;
 import org.galatea.starter.entrypoint.exception.DataNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.StockPriceSeriesProtoMessage;
+import org.galatea.starter.service.StockPriceAggregationService;
+import org.galatea.starter.service.StockPriceBatchService;
+import org.galatea.starter.service.StockPriceIndicatorService;
 import org.galatea.starter.service.StockPriceService;
 import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.http.converter.StockPriceResponseJsonConverter;
+import org.galatea.starter.utils.http.converter.StockPriceResponseProtoConverter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.BDDMockito;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
@@ -34,8 +54,12 @@ import org.springframework.context.annotation.Import;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.validation.beanvalidation.MethodValidationPostProcessor;
 import org.springframework.web.accept.ContentNegotiationManager;
@@ -53,27 +77,34 @@ public class StockPriceRestControllerTest extends ASpringTest {
   @Value("${mvc.getPricePath}")
   String pricePath;
 
+  @Value("${mvc.getPricesPath}")
+  String pricesPath;
+
+  @Value("${mvc.getPriceBarsPath}")
+  String priceBarsPath;
+
+  @Value("${mvc.getPriceIndicatorPath}")
+  String priceIndicatorPath;
+
   @MockBean
   private StockPriceService mockStockPriceService;
 
   @MockBean
   private IStockPriceRpsy mockStockPriceRpsy;
 
+  @MockBean
+  private StockPriceIndicatorService mockStockPriceIndicatorService;
+
   @Autowired
   private StockPriceRestController stockPriceRestController;
 
   private ObjectMapper objectMapper;
 
-  @Value("${alpha-vantage.api-key}")
-  private String apiKey;
-
-  @Value("${alpha-vantage.dailyTimeSeriesPath}")
-  private String basePath;
-
   @Before
   public void setup() {
     Map<String, MediaType> mediaTypes = new HashMap<>();
     mediaTypes.put("json", MediaType.APPLICATION_JSON);
+    mediaTypes.put("proto", ProtobufHttpMessageConverter.PROTOBUF);
 
     ParameterContentNegotiationStrategy parameterContentNegotiationStrategy =
         new ParameterContentNegotiationStrategy(mediaTypes);
@@ -87,8 +118,12 @@ public class StockPriceRestControllerTest extends ASpringTest {
     RestAssuredMockMvc.standaloneSetup(
         MockMvcBuilders.standaloneSetup(stockPriceRestController).
             addPlaceholderValue("mvc.getPricePath", pricePath).
+            addPlaceholderValue("mvc.getPricesPath", pricesPath).
+            addPlaceholderValue("mvc.getPriceBarsPath", priceBarsPath).
+            addPlaceholderValue("mvc.getPriceIndicatorPath", priceIndicatorPath).
             setContentNegotiationManager(manager).
-            setMessageConverters(new MappingJackson2HttpMessageConverter()).
+            setMessageConverters(new StockPriceResponseJsonConverter(),
+                new StockPriceResponseProtoConverter(), new MappingJackson2HttpMessageConverter()).
             setControllerAdvice(new RestExceptionHandler()));
   }
 
@@ -115,7 +150,7 @@ public class StockPriceRestControllerTest extends ASpringTest {
     int days = 5;
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices(symbol, 10);
 
-    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, days, apiKey, basePath))
+    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, days))
         .willReturn(stockPrices);
 
     ResponseOptions response = callGetPrices(symbol, days);
@@ -136,7 +171,7 @@ public class StockPriceRestControllerTest extends ASpringTest {
     int days = 5;
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices(symbol, 5);
 
-    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, days, apiKey, basePath))
+    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, days))
         .willReturn(stockPrices);
 
     ResponseOptions response = callGetPrices(symbol, days);
@@ -156,7 +191,7 @@ public class StockPriceRestControllerTest extends ASpringTest {
     int days = 5;
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices(symbol, 10);
 
-    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, days, apiKey, basePath))
+    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, days))
         .willReturn(stockPrices);
 
     ResponseOptions response = callGetPrices(symbol, days);
@@ -172,6 +207,39 @@ public class StockPriceRestControllerTest extends ASpringTest {
     });
   }
 
+  /**
+   * Test that /price returns a columnar protobuf message when format=proto.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetPrices_PROTO() {
+    String symbol = "IBM";
+    int days = 3;
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (int i = 0; i < days; i++) {
+      stockPrices.add(TestDataGenerator.defaultStockPriceData()
+          .date(LocalDate.of(2020, 6, 12).minusDays(i))
+          .prices(TestDataGenerator.defaultStockPriceInfoData()
+              .close(new BigDecimal("12.5" + i)).build()).build());
+    }
+
+    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, days))
+        .willReturn(StockPriceSeries.of(symbol, stockPrices));
+
+    ResponseOptions response = callGetPrices(
+        pricePath + "?days=" + days + "&symbol=" + symbol + "&format=proto");
+
+    assertEquals(200, response.getStatusCode());
+    StockPriceSeriesProtoMessage message =
+        StockPriceSeriesProtoMessage.parseFrom(response.getBody().asByteArray());
+    assertEquals(symbol, message.getSymbol());
+    assertEquals(days, message.getDays());
+    assertEquals(days, message.getEpochDayCount());
+    assertEquals(LocalDate.of(2020, 6, 12).toEpochDay(), message.getEpochDay(0));
+    assertEquals(125000L, message.getClose(0));
+    assertEquals(125200L, message.getClose(2));
+  }
+
   /**
    * Missing symbol causes Bad Request response and appropriate error message.
    */
@@ -199,7 +267,7 @@ public class StockPriceRestControllerTest extends ASpringTest {
     String symbol = "sljsfjlksf";
     int days = 5;
 
-    BDDMockito.given(mockStockPriceService.getStockPrices(symbol, days, apiKey, basePath))
+    BDDMockito.given(mockStockPriceService.getStockPrices(symbol, days))
         .willThrow(new DataNotFoundException(symbol));
 
     ResponseOptions response = callGetPrices(symbol, days);
@@ -212,6 +280,205 @@ public class StockPriceRestControllerTest extends ASpringTest {
         error.get("message").textValue());
   }
 
+  /**
+   * from and to return the service's prices for that range, with the range in the metadata.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetPricesDateRange() {
+    String symbol = "IBM";
+    LocalDate from = LocalDate.of(2020, 6, 1);
+    LocalDate to = LocalDate.of(2020, 6, 12);
+    List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices(symbol, 10);
+
+    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, from, to))
+        .willReturn(stockPrices);
+
+    ResponseOptions response = callGetPrices(
+        pricePath + "?symbol=" + symbol + "&from=2020-06-01&to=2020-06-12");
+    JsonNode json = objectMapper.readTree(response.getBody().asString());
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals(10, json.get("data").size());
+    assertEquals(10, json.get("metadata").get("days").intValue());
+    assertEquals("2020-06-01", json.get("metadata").get("from").textValue());
+    assertEquals("2020-06-12", json.get("metadata").get("to").textValue());
+  }
+
+  /**
+   * to defaults to today, according to the clock.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetPricesDateRangeToDefaultsToToday() {
+    LocalDate from = LocalDate.of(2020, 6, 1);
+    LocalDate today = LocalDate.of(2020, 6, 15);
+    BDDMockito.given(this.mockStockPriceService.getStockPrices("IBM", from, today))
+        .willReturn(TestDataGenerator.generateStockPrices("IBM", 10));
+
+    ResponseOptions response = callGetPrices(pricePath + "?symbol=IBM&from=2020-06-01");
+    JsonNode json = objectMapper.readTree(response.getBody().asString());
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals("2020-06-15", json.get("metadata").get("to").textValue());
+  }
+
+  /**
+   * from after to causes Bad Request response.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetPricesFromAfterTo() {
+    ResponseOptions response = callGetPrices(
+        pricePath + "?symbol=IBM&from=2020-06-12&to=2020-06-01");
+    assertEquals(400, response.getStatusCode());
+    JsonNode error = objectMapper.readTree(response.getBody().asString());
+
+    assertEquals("From date 2020-06-12 must not be after to date 2020-06-01",
+        error.get("message").textValue());
+    Mockito.verifyZeroInteractions(mockStockPriceService);
+  }
+
+  /**
+   * from after to causes Bad Request response from /price/bars too.
+   */
+  @Test
+  public void testGetPriceBarsFromAfterTo() {
+    ResponseOptions response = callGetPrices(
+        priceBarsPath + "?symbol=IBM&from=2020-06-12&to=2020-06-01");
+    assertEquals(400, response.getStatusCode());
+  }
+
+  /**
+   * to without from causes Bad Request response.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetPricesToWithoutFrom() {
+    ResponseOptions response = callGetPrices(pricePath + "?symbol=IBM&to=2020-06-12");
+    assertEquals(400, response.getStatusCode());
+    JsonNode error = objectMapper.readTree(response.getBody().asString());
+
+    assertEquals("Required LocalDate parameter 'from' is not present",
+        error.get("message").textValue());
+  }
+
+  /**
+   * /prices streams one JSON response per symbol, one per line, including an error response for a
+   * symbol that fails.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetBatchPrices() {
+    List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices("IBM", 5);
+    BDDMockito.given(this.mockStockPriceService.findStoredStockPrices(
+        new LinkedHashSet<>(Arrays.asList("IBM", "BAD")), 5))
+        .willReturn(Collections.singletonMap("IBM", stockPrices));
+    BDDMockito.given(this.mockStockPriceService.getStockPrices("BAD", 5))
+        .willThrow(new DataNotFoundException("BAD"));
+
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(stockPriceRestController)
+        .addPlaceholderValue("mvc.getPricePath", pricePath)
+        .addPlaceholderValue("mvc.getPricesPath", pricesPath)
+        .addPlaceholderValue("mvc.getPriceBarsPath", priceBarsPath)
+        .addPlaceholderValue("mvc.getPriceIndicatorPath", priceIndicatorPath).build();
+    MvcResult started = mockMvc.perform(
+        MockMvcRequestBuilders.get(pricesPath + "?symbols=IBM,BAD,IBM&days=5")).andReturn();
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started)).andReturn();
+
+    assertEquals(200, result.getResponse().getStatus());
+    assertEquals("application/x-ndjson", result.getResponse().getContentType());
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertEquals(2, lines.length);
+    JsonNode ibm = objectMapper.readTree(lines[0]);
+    assertEquals("IBM", ibm.get("metadata").get("symbol").textValue());
+    assertEquals(5, ibm.get("data").size());
+    JsonNode bad = objectMapper.readTree(lines[1]);
+    assertEquals("BAD", bad.get("metadata").get("symbol").textValue());
+    assertEquals(0, bad.get("data").size());
+    assertEquals("No data could be found for symbol 'BAD'", bad.get("error").textValue());
+  }
+
+  /**
+   * /price/bars aggregates the service's prices into bars of the requested period.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetPriceBars() {
+    String symbol = "IBM";
+    // two weeks of weekdays, ending friday 2020-06-12
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (LocalDate date = LocalDate.of(2020, 6, 12); stockPrices.size() < 10;
+        date = date.minusDays(1)) {
+      if (date.getDayOfWeek().getValue() < 6) {
+        stockPrices.add(StockPrice.builder().symbol(symbol).date(date)
+            .prices(TestDataGenerator.defaultStockPriceInfoData()
+                .close(BigDecimal.valueOf(stockPrices.size() + 1)).build()).build());
+      }
+    }
+    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, 10))
+        .willReturn(StockPriceSeries.of(symbol, stockPrices));
+
+    ResponseOptions response = callGetPrices(
+        priceBarsPath + "?symbol=" + symbol + "&period=WEEK&days=10");
+    JsonNode json = objectMapper.readTree(response.getBody().asString());
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals("WEEK", json.get("period").textValue());
+    assertEquals(2, json.get("data").size());
+    assertEquals("2020-06-08", json.get("data").get(0).get("start").textValue());
+    assertEquals(5, json.get("data").get(0).get("days").intValue());
+    assertTrue(json.get("data").get(0).has("return"));
+    assertTrue(!json.get("data").get(1).has("return"));
+  }
+
+  /**
+   * An unknown bar period causes Bad Request response.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetPriceBarsInvalidPeriod() {
+    ResponseOptions response = callGetPrices(priceBarsPath + "?symbol=IBM&period=DAY");
+    assertEquals(400, response.getStatusCode());
+  }
+
+  /**
+   * /price/indicator returns the indicator service's values with the indicator and window.
+   */
+  @SneakyThrows
+  @Test
+  public void testGetPriceIndicator() {
+    BDDMockito.given(this.mockStockPriceIndicatorService.getIndicator("IBM", Indicator.EMA, 10, 2))
+        .willReturn(Arrays.asList(
+            IndicatorValue.builder().date(LocalDate.of(2020, 6, 12))
+                .value(new BigDecimal("101.500000")).build(),
+            IndicatorValue.builder().date(LocalDate.of(2020, 6, 11))
+                .value(new BigDecimal("101.250000")).build()));
+
+    ResponseOptions response = callGetPrices(
+        priceIndicatorPath + "?symbol=IBM&indicator=EMA&window=10&days=2");
+    JsonNode json = objectMapper.readTree(response.getBody().asString());
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals("EMA", json.get("indicator").textValue());
+    assertEquals(10, json.get("window").intValue());
+    assertEquals(2, json.get("metadata").get("days").intValue());
+    assertEquals("2020-06-12", json.get("data").get(0).get("date").textValue());
+    assertEquals(101.5, json.get("data").get(0).get("value").doubleValue(), 0);
+  }
+
+  /**
+   * A window outside [2, 250] causes Bad Request response.
+   */
+  @SneakyThrows
+  @Test
+  @Parameters({"1", "251"})
+  public void testGetPriceIndicatorInvalidWindow(final int window) {
+    ResponseOptions response = callGetPrices(
+        priceIndicatorPath + "?symbol=IBM&indicator=SMA&window=" + window);
+    assertEquals(400, response.getStatusCode());
+  }
+
   /**
    * Missing days uses default value days=20.
    */
@@ -221,7 +488,7 @@ public class StockPriceRestControllerTest extends ASpringTest {
     String symbol = "IBM";
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices(symbol, 20);
 
-    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, 20, apiKey, basePath))
+    BDDMockito.given(this.mockStockPriceService.getStockPrices(symbol, 20))
         .willReturn(stockPrices);
 
     ResponseOptions response = callGetPrices(pricePath + "?symbol=" + symbol);
@@ -266,7 +533,8 @@ public class StockPriceRestControllerTest extends ASpringTest {
     assertEquals("Days must be greater than or equal to 0. ", error.get("message").textValue());
   }
 
-  @Import({StockPriceRestController.class})
+  @Import({StockPriceRestController.class, StockPriceBatchService.class,
+      StockPriceAggregationService.class})
   @Configuration
   static class TestConfig {
 
@@ -279,6 +547,11 @@ public class StockPriceRestControllerTest extends ASpringTest {
     MethodValidationPostProcessor methodValidationPostProcessor() {
       return new MethodValidationPostProcessor();
     }
+
+    @Bean
+    Clock clock() {
+      return Clock.fixed(Instant.parse("2020-06-15T12:00:00Z"), ZoneId.of("America/New_York"));
+    }
   }
 
 }
@@ -2,9 +2,14 @@ package org.galatea.starter.entrypoint;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Collections;
+import java.util.List;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.command.ActiveMQBytesMessage;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
@@ -16,7 +21,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 /**
- * Tests the implementation of ITranslator&lt;byte[], TradeAgreement&gt;
+ * Tests the implementation of ITranslator&lt;BytesMessage, List&lt;TradeAgreement&gt;&gt;
  */
 @Slf4j
 @ToString
@@ -25,22 +30,29 @@ import org.springframework.boot.test.context.SpringBootTest;
 public class TradeAgreementTranslatorTest extends ASpringTest {
 
   @Autowired
-  protected ITranslator<byte[], TradeAgreement> translator;
+  protected ITranslator<BytesMessage, List<TradeAgreement>> translator;
+
+  private static BytesMessage bytesMessage(final byte[] body) throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(body);
+    message.reset();
+    return message;
+  }
 
   @Test
-  public void translateGoodMessage() {
+  public void translateGoodMessage() throws JMSException {
     TradeAgreementProtoMessage message
         = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
     TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
 
-    TradeAgreement result = translator.translate(message.toByteArray());
+    List<TradeAgreement> result = translator.translate(bytesMessage(message.toByteArray()));
     assertEquals("The object produced by the translator did not match what was expected.",
-        agreement, result);
+        Collections.singletonList(agreement), result);
   }
 
   @Test(expected = TranslationException.class)
-  public void translateBadMessage() {
+  public void translateBadMessage() throws JMSException {
     byte[] nullBuffer = new byte[] {1, 2, 3, 4, 5, 6};
-    translator.translate(nullBuffer);
+    translator.translate(bytesMessage(nullBuffer));
   }
 }
@@ -0,0 +1,102 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnknownFieldSet;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+
+public class TradeAgreementProtoReaderTest {
+
+  private static List<TradeAgreement> read(final byte[] bytes) throws IOException {
+    return TradeAgreementProtoReader.read(CodedInputStream.newInstance(bytes));
+  }
+
+  @Test
+  public void readSingleMessage() throws IOException {
+    byte[] bytes = TestDataGenerator.defaultTradeAgreementProtoMessageData().build().toByteArray();
+
+    assertEquals(Collections.singletonList(TestDataGenerator.defaultTradeAgreementData().build()),
+        read(bytes));
+  }
+
+  @Test
+  public void readMessages() throws IOException {
+    byte[] bytes = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData())
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+            .setInstrument("MSFT").setBuySell("S").setQty(2.5))
+        .build().toByteArray();
+
+    assertEquals(Arrays.asList(TestDataGenerator.defaultTradeAgreementData().build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("MSFT").buySell("S").qty(2.5)
+            .build()),
+        read(bytes));
+  }
+
+  /**
+   * Fields that aren't set get the proto3 defaults, like the generated parser.
+   */
+  @Test
+  public void readDefaults() throws IOException {
+    TradeAgreementProtoMessage message = TradeAgreementProtoMessage.newBuilder()
+        .setInstrument("IBM").build();
+
+    assertEquals(Collections.singletonList(TradeAgreement.builder().instrument("IBM")
+        .internalParty("").externalParty("").buySell("").qty(0d).build()),
+        read(message.toByteArray()));
+  }
+
+  /**
+   * An empty message is a TradeAgreementProtoMessages with no agreements, rather than a
+   * TradeAgreementProtoMessage with no fields set.
+   */
+  @Test
+  public void readEmptyMessages() throws IOException {
+    byte[] bytes = TradeAgreementProtoMessages.newBuilder().build().toByteArray();
+
+    assertEquals(Collections.emptyList(), read(bytes));
+  }
+
+  /**
+   * Fields from newer versions of the message are skipped.
+   */
+  @Test
+  public void skipUnknownFields() throws IOException {
+    TradeAgreementProtoMessage message = TestDataGenerator.defaultTradeAgreementProtoMessageData()
+        .setUnknownFields(UnknownFieldSet.newBuilder()
+            .addField(20, UnknownFieldSet.Field.newBuilder().addVarint(7).build())
+            .build())
+        .build();
+
+    assertEquals(Collections.singletonList(TestDataGenerator.defaultTradeAgreementData().build()),
+        read(message.toByteArray()));
+  }
+
+  @Test(expected = InvalidProtocolBufferException.class)
+  public void readBadMessage() throws IOException {
+    read(new byte[] {1, 2, 3, 4, 5, 6});
+  }
+
+  @Test(expected = InvalidProtocolBufferException.class)
+  public void readMixedMessage() throws IOException {
+    byte[] messages = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()).build()
+        .toByteArray();
+    byte[] single = TestDataGenerator.defaultTradeAgreementProtoMessageData().build()
+        .toByteArray();
+    byte[] mixed = Arrays.copyOf(messages, messages.length + single.length);
+    System.arraycopy(single, 0, mixed, messages.length, single.length);
+
+    read(mixed);
+  }
+}
@@ -0,0 +1,112 @@
+package org.galatea.starter.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.domain.rpsy.IStockPriceRpsy;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Priority;
+import org.galatea.starter.utils.concurrent.SingleFlight;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+
+/**
+ * Drives Alpha Vantage calls through the real Feign client and rate limiter, against the
+ * TIME_SERIES_DAILY mapping in wiremock/mappings.
+ */
+@Slf4j
+// a full application start up, so that the Feign client and the rate limiter are the real ones.
+// The limiter allows 2 calls a second, one at a time.
+@SpringBootTest(properties = {
+    "alpha-vantage.rate-limit.requests-per-minute=120",
+    "alpha-vantage.rate-limit.burst=1"})
+@AutoConfigureWireMock(port = 0, files = "classpath:/wiremock")
+public class AlphaVantageClientTest extends ASpringTest {
+
+  @Autowired
+  private StockPriceService stockPriceService;
+
+  @Autowired
+  private SingleFlight<String, StockPriceSeries> alphaVantageFetches;
+
+  @Autowired
+  private WireMockServer wireMockServer;
+
+  @MockBean
+  private IStockPriceRpsy mockStockPriceRpsy;
+
+  @Value("${alpha-vantage.api-key}")
+  private String apiKey;
+
+  @Before
+  public void setup() {
+    wireMockServer.resetRequests();
+  }
+
+  /**
+   * Test that calls beyond the rate limit wait for a token, and then reach Alpha Vantage with the
+   * API key.
+   */
+  @Test
+  public void testCallsAreThrottled() {
+    long start = System.nanoTime();
+    for (int i = 0; i < 3; i++) {
+      List<StockPrice> stockPrices = stockPriceService.makeApiCall("IBM", "compact", 100);
+      assertEquals(5, stockPrices.size());
+    }
+
+    // at least two of the calls waited half a second for a token
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+    wireMockServer.verify(3, getRequestedFor(urlPathEqualTo("/query"))
+        .withQueryParam("symbol", equalTo("IBM"))
+        .withQueryParam("outputsize", equalTo("compact"))
+        .withQueryParam("apikey", equalTo(apiKey)));
+  }
+
+  /**
+   * Test that an interactive request for a symbol joins the background fetch of the symbol that
+   * is waiting for a token, rather than making a call of its own.
+   */
+  @Test
+  public void testInteractiveRequestJoinsBackgroundFetch() throws Exception {
+    // take the token, so that the background fetch has to wait for the next one
+    stockPriceService.makeApiCall("IBM", "compact", 100);
+    wireMockServer.resetRequests();
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<StockPrice>> background = executor.submit(
+          () -> stockPriceService.getStockPrices("IBM", 5, Priority.BACKGROUND));
+      await().atMost(5, TimeUnit.SECONDS).until(() -> alphaVantageFetches.getInFlightCount() == 1);
+      long coalesced = alphaVantageFetches.getCoalescedCount();
+      Future<List<StockPrice>> interactive = executor.submit(
+          () -> stockPriceService.getStockPrices("IBM", 5, Priority.INTERACTIVE));
+
+      assertEquals(5, interactive.get(5, TimeUnit.SECONDS).size());
+      assertEquals(5, background.get(5, TimeUnit.SECONDS).size());
+      assertEquals(coalesced + 1, alphaVantageFetches.getCoalescedCount());
+    } finally {
+      executor.shutdownNow();
+    }
+    wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/query"))
+        .withQueryParam("symbol", equalTo("IBM")));
+  }
+}
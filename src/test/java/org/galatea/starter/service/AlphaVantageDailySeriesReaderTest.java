@@ -0,0 +1,127 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceInfo;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.junit.Test;
+
+public class AlphaVantageDailySeriesReaderTest {
+
+  private static final String METADATA = "\"Meta Data\": {"
+      + "\"1. Information\": \"Daily Prices (open, high, low, close) and Volumes\","
+      + "\"2. Symbol\": \"IBM\","
+      + "\"3. Last Refreshed\": \"2020-06-12\"}";
+
+  private final AlphaVantageDailySeriesReader reader = new AlphaVantageDailySeriesReader();
+
+  private static String day(final String date, final String close) {
+    return "\"" + date + "\": {\"1. open\": \"120.2500\", \"2. high\": \"121.0000\","
+        + " \"3. low\": \"119.5000\", \"4. close\": \"" + close + "\", \"5. volume\": \"4500000\"}";
+  }
+
+  private static InputStream response(final String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String timeSeries(final String... days) {
+    return "\"Time Series (Daily)\": {" + String.join(",", days) + "}";
+  }
+
+  private List<StockPrice> read(final String json, final int limit) throws IOException {
+    List<StockPrice> stockPrices = new ArrayList<>();
+    int read = reader.read(response(json), limit, stockPrices::add);
+    assertEquals(stockPrices.size(), read);
+    return stockPrices;
+  }
+
+  @Test
+  public void testReadsEveryDay() throws IOException {
+    List<StockPrice> stockPrices = read("{" + METADATA + ", " + timeSeries(
+        day("2020-06-12", "121.9100"), day("2020-06-11", "118.3300")) + "}", 10);
+
+    assertEquals(2, stockPrices.size());
+    assertEquals(StockPrice.builder()
+        .symbol("IBM")
+        .date(LocalDate.of(2020, 6, 12))
+        .prices(StockPriceInfo.builder()
+            .open(new BigDecimal("120.2500"))
+            .high(new BigDecimal("121.0000"))
+            .low(new BigDecimal("119.5000"))
+            .close(new BigDecimal("121.9100"))
+            .volume(4500000).build())
+        .build(), stockPrices.get(0));
+    assertEquals(LocalDate.of(2020, 6, 11), stockPrices.get(1).getDate());
+  }
+
+  /**
+   * Reading stops at the limit, even if the rest of the response is malformed.
+   */
+  @Test
+  public void testStopsAtLimit() throws IOException {
+    List<StockPrice> stockPrices = read("{" + METADATA + ", " + timeSeries(
+        day("2020-06-12", "121.9100"), day("2020-06-11", "118.3300"), "\"not a date\": ["), 2);
+
+    assertEquals(2, stockPrices.size());
+  }
+
+  /**
+   * Reading stops after the first day on or before the given date, which is included.
+   */
+  @Test
+  public void testStopsAtSince() throws IOException {
+    List<StockPrice> stockPrices = new ArrayList<>();
+    reader.read(response("{" + METADATA + ", " + timeSeries(day("2020-06-12", "121.9100"),
+        day("2020-06-10", "118.3300"), day("2020-06-09", "117.0000"))
+        + "}"), 10, LocalDate.of(2020, 6, 11), stockPrices::add);
+
+    assertEquals(2, stockPrices.size());
+    assertEquals(LocalDate.of(2020, 6, 10), stockPrices.get(1).getDate());
+  }
+
+  @Test
+  public void testIgnoresUnknownFields() throws IOException {
+    List<StockPrice> stockPrices = read("{\"extra\": {\"a\": [1, 2]}, " + METADATA + ", "
+        + timeSeries(day("2020-06-12", "121.9100")) + "}", 10);
+
+    assertEquals(1, stockPrices.size());
+  }
+
+  @Test(expected = TranslationException.class)
+  public void testErrorMessage() throws IOException {
+    read("{\"Error Message\": \"Invalid API call.\"}", 10);
+  }
+
+  @Test(expected = TranslationException.class)
+  public void testTimeSeriesBeforeMetadata() throws IOException {
+    read("{" + timeSeries(day("2020-06-12", "121.9100")) + ", " + METADATA + "}", 10);
+  }
+
+  @Test(expected = TranslationException.class)
+  public void testInvalidPrice() throws IOException {
+    read("{" + METADATA + ", " + timeSeries(day("2020-06-12", "n/a")) + "}", 10);
+  }
+
+  @Test(expected = TranslationException.class)
+  public void testMissingPrice() throws IOException {
+    read("{" + METADATA + ", \"Time Series (Daily)\": {\"2020-06-12\": {\"1. open\": \"1\"}}}",
+        10);
+  }
+
+  /**
+   * A response that ends in the middle of the time series is rejected.
+   */
+  @Test(expected = TranslationException.class)
+  public void testTruncatedResponse() throws IOException {
+    read("{" + METADATA + ", \"Time Series (Daily)\": {" + day("2020-06-12", "121.9100"), 10);
+  }
+}
@@ -0,0 +1,96 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.galatea.starter.domain.BarPeriod;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceBar;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+
+public class StockPriceAggregationServiceTest {
+
+  /**
+   * Build a series with a StockPrice for every weekday from the given date to the given date. The
+   * prices of the nth day are n + 1 (open), n + 2 (high), n (low), n + 1 (close), with volume
+   * n + 1.
+   */
+  private static StockPriceSeries weekdays(final LocalDate from, final LocalDate to) {
+    List<StockPrice> stockPrices = new ArrayList<>();
+    int n = 0;
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (date.getDayOfWeek().getValue() >= 6) {
+        continue;
+      }
+      stockPrices.add(StockPrice.builder()
+          .symbol("IBM")
+          .date(date)
+          .prices(TestDataGenerator.defaultStockPriceInfoData()
+              .open(BigDecimal.valueOf(n + 1))
+              .high(BigDecimal.valueOf(n + 2))
+              .low(BigDecimal.valueOf(n))
+              .close(BigDecimal.valueOf(n + 1))
+              .volume(n + 1).build())
+          .build());
+      n++;
+    }
+    return StockPriceSeries.of("IBM", stockPrices);
+  }
+
+  /**
+   * Weekly bars run Monday to Friday, and the oldest and newest bars may be partial.
+   */
+  @Test
+  public void testAggregateWeeks() {
+    // wednesday 2020-06-03 to tuesday 2020-06-16: days 0-2, 3-7, 8-9
+    StockPriceSeries series = weekdays(LocalDate.of(2020, 6, 3), LocalDate.of(2020, 6, 16));
+
+    List<StockPriceBar> bars = StockPriceAggregationService.aggregate(series, BarPeriod.WEEK);
+
+    assertEquals(3, bars.size());
+    StockPriceBar middle = bars.get(1);
+    assertEquals(LocalDate.of(2020, 6, 8), middle.getStart());
+    assertEquals(LocalDate.of(2020, 6, 12), middle.getEnd());
+    assertEquals(5, middle.getDays());
+    assertEquals(new BigDecimal("4.0000"), middle.getOpen());
+    assertEquals(new BigDecimal("9.0000"), middle.getHigh());
+    assertEquals(new BigDecimal("3.0000"), middle.getLow());
+    assertEquals(new BigDecimal("8.0000"), middle.getClose());
+    assertEquals(4 + 5 + 6 + 7 + 8, middle.getVolume());
+    // typical price of day n is n + 1, so the VWAP is sum((n + 1)^2) / sum(n + 1)
+    assertEquals(new BigDecimal("6.3333"), middle.getVwap());
+    // close of 8 over the previous week's close of 3
+    assertEquals(new BigDecimal("1.666667"), middle.getPeriodReturn());
+
+    assertEquals(LocalDate.of(2020, 6, 16), bars.get(0).getEnd());
+    assertEquals(2, bars.get(0).getDays());
+    assertEquals(LocalDate.of(2020, 6, 3), bars.get(2).getStart());
+    assertNull(bars.get(2).getPeriodReturn());
+  }
+
+  @Test
+  public void testAggregateMonths() {
+    StockPriceSeries series = weekdays(LocalDate.of(2020, 5, 1), LocalDate.of(2020, 7, 31));
+
+    List<StockPriceBar> bars = StockPriceAggregationService.aggregate(series, BarPeriod.MONTH);
+
+    assertEquals(3, bars.size());
+    assertEquals(LocalDate.of(2020, 7, 1), bars.get(0).getStart());
+    assertEquals(LocalDate.of(2020, 7, 31), bars.get(0).getEnd());
+    assertEquals(LocalDate.of(2020, 6, 1), bars.get(1).getStart());
+    assertEquals(LocalDate.of(2020, 6, 30), bars.get(1).getEnd());
+    assertEquals(series.size(), bars.stream().mapToInt(StockPriceBar::getDays).sum());
+  }
+
+  @Test
+  public void testAggregateEmpty() {
+    assertEquals(0, StockPriceAggregationService.aggregate(StockPriceSeries.empty("IBM"),
+        BarPeriod.WEEK).size());
+  }
+}
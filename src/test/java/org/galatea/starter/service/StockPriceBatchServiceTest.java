@@ -0,0 +1,132 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.entrypoint.exception.DataNotFoundException;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StockPriceBatchServiceTest {
+
+  private StockPriceService mockStockPriceService;
+
+  private StockPriceBatchService batchService;
+
+  // results in the order the listener received them, as "symbol:size" or "symbol:error"
+  private final List<String> received = new ArrayList<>();
+
+  private final StockPriceBatchService.Listener listener = new StockPriceBatchService.Listener() {
+    @Override
+    public void onStockPrices(final String symbol, final List<StockPrice> stockPrices) {
+      received.add(symbol + ":" + stockPrices.size());
+    }
+
+    @Override
+    public void onError(final String symbol, final RuntimeException exception) {
+      received.add(symbol + ":error");
+    }
+  };
+
+  @Before
+  public void setUp() {
+    mockStockPriceService = mock(StockPriceService.class);
+    batchService = new StockPriceBatchService(mockStockPriceService, 4, 10);
+    when(mockStockPriceService.findStoredStockPrices(anyCollection(), anyInt()))
+        .thenReturn(Collections.emptyMap());
+  }
+
+  @After
+  public void tearDown() {
+    batchService.shutdown();
+  }
+
+  /**
+   * Stored symbols are answered without a fetch, and before any fetched symbol. They are all
+   * looked up at once. A failing symbol is reported without affecting the others.
+   */
+  @Test
+  public void testGetStockPrices() throws Exception {
+    List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices("IBM", 5);
+    List<String> symbols = Arrays.asList("AAPL", "BAD", "IBM");
+    when(mockStockPriceService.findStoredStockPrices(symbols, 5))
+        .thenReturn(Collections.singletonMap("IBM", stockPrices));
+    when(mockStockPriceService.getStockPrices("AAPL", 5)).thenReturn(stockPrices.subList(0, 3));
+    when(mockStockPriceService.getStockPrices("BAD", 5))
+        .thenThrow(new DataNotFoundException("BAD"));
+
+    batchService.getStockPrices(symbols, 5, listener);
+
+    assertEquals(3, received.size());
+    assertEquals("IBM:5", received.get(0));
+    // fetched symbols arrive in whatever order their fetches finish
+    assertEquals(Arrays.asList("AAPL:3", "BAD:error"),
+        received.stream().skip(1).sorted().collect(Collectors.toList()));
+    verify(mockStockPriceService, never()).getStockPrices("IBM", 5);
+    verify(mockStockPriceService, times(1)).findStoredStockPrices(anyCollection(), anyInt());
+  }
+
+  /**
+   * If stored prices can't be looked up, every symbol is fetched.
+   */
+  @Test
+  public void testStoredLookupFailureFetchesAll() throws Exception {
+    when(mockStockPriceService.findStoredStockPrices(anyCollection(), anyInt()))
+        .thenThrow(new IllegalStateException("database unavailable"));
+    when(mockStockPriceService.getStockPrices(anyString(), anyInt()))
+        .thenReturn(Collections.emptyList());
+
+    batchService.getStockPrices(Arrays.asList("AAPL", "IBM"), 5, listener);
+
+    assertEquals(Arrays.asList("AAPL:0", "IBM:0"),
+        received.stream().sorted().collect(Collectors.toList()));
+  }
+
+  /**
+   * Fetches run in parallel, and each result is handed over as soon as it is available, so a
+   * slow symbol doesn't hold up the others.
+   */
+  @Test
+  public void testSlowSymbolDoesNotBlockOthers() throws Exception {
+    CountDownLatch fastReceived = new CountDownLatch(1);
+    when(mockStockPriceService.getStockPrices("SLOW", 5)).thenAnswer(invocation -> {
+      // only finishes once the fast symbol has been handed to the listener
+      fastReceived.await(5, TimeUnit.SECONDS);
+      return Collections.emptyList();
+    });
+    when(mockStockPriceService.getStockPrices("FAST", 5)).thenReturn(Collections.emptyList());
+
+    batchService.getStockPrices(Arrays.asList("SLOW", "FAST"), 5,
+        new StockPriceBatchService.Listener() {
+          @Override
+          public void onStockPrices(final String symbol, final List<StockPrice> stockPrices) {
+            received.add(symbol);
+            fastReceived.countDown();
+          }
+
+          @Override
+          public void onError(final String symbol, final RuntimeException exception) {
+            received.add(symbol + ":error");
+          }
+        });
+
+    assertEquals(Arrays.asList("FAST", "SLOW"), received);
+  }
+}
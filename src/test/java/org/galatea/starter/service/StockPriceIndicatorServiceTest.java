@@ -0,0 +1,210 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.domain.Indicator;
+import org.galatea.starter.domain.IndicatorValue;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.rpsy.IStockPriceRpsy;
+import org.galatea.starter.domain.rpsy.StockPriceSeriesStore;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StockPriceIndicatorServiceTest {
+
+  private static final LocalDate START = LocalDate.of(2020, 6, 1);
+
+  private IStockPriceRpsy mockStockPriceRpsy;
+
+  private StockPriceSeriesStore store;
+
+  private StockPriceIndicatorService indicatorService;
+
+  @Before
+  public void setUp() {
+    mockStockPriceRpsy = mock(IStockPriceRpsy.class);
+    store = new StockPriceSeriesStore(mockStockPriceRpsy);
+    indicatorService = newIndicatorService();
+  }
+
+  /*
+   * The stock price service is only used to bring the store up to date, so it just returns the
+   * stored series.
+   */
+  private StockPriceIndicatorService newIndicatorService() {
+    StockPriceService mockStockPriceService = mock(StockPriceService.class);
+    when(mockStockPriceService.getStockPrices(anyString(), anyInt()))
+        .then(invocation -> store.getSeries(invocation.getArgument(0)));
+    return new StockPriceIndicatorService(mockStockPriceService, store);
+  }
+
+  /**
+   * Build StockPrices for the given days after START, with close price 100 + day, plus 1 on
+   * days divisible by 3.
+   */
+  private static List<StockPrice> stockPrices(final int fromDay, final int toDay) {
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (int day = toDay; day >= fromDay; day--) {
+      stockPrices.add(StockPrice.builder()
+          .symbol("IBM")
+          .date(START.plusDays(day))
+          .prices(TestDataGenerator.defaultStockPriceInfoData()
+              .close(BigDecimal.valueOf(100 + day + (day % 3 == 0 ? 1 : 0))).build())
+          .build());
+    }
+    return stockPrices;
+  }
+
+  @Test
+  public void testSimpleMovingAverage() {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc("IBM"))
+        .thenReturn(stockPrices(0, 9));
+
+    List<IndicatorValue> values = indicatorService.getIndicator("IBM", Indicator.SMA, 3, 2);
+
+    assertEquals(2, values.size());
+    assertEquals(START.plusDays(9), values.get(0).getDate());
+    // mean of 107, 108, 110
+    assertEquals(new BigDecimal("108.333333"), values.get(0).getValue());
+    // mean of 107, 107, 108
+    assertEquals(new BigDecimal("107.333333"), values.get(1).getValue());
+  }
+
+  /**
+   * Days too early to have a value are left out.
+   */
+  @Test
+  public void testNotEnoughDays() {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc("IBM"))
+        .thenReturn(stockPrices(0, 4));
+
+    List<IndicatorValue> values = indicatorService.getIndicator("IBM", Indicator.SMA, 3, 10);
+
+    assertEquals(3, values.size());
+    assertEquals(START.plusDays(2), values.get(2).getDate());
+  }
+
+  /**
+   * Values extended with new days match values computed from scratch over the extended series.
+   */
+  @Test
+  public void testExtendWithNewDays() {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc("IBM"))
+        .thenReturn(stockPrices(0, 29));
+    indicatorService.getIndicator("IBM", Indicator.EMA, 5, 10);
+
+    store.append("IBM", stockPrices(29, 35));
+    List<IndicatorValue> extended = indicatorService.getIndicator("IBM", Indicator.EMA, 5, 10);
+
+    assertEquals(START.plusDays(35), extended.get(0).getDate());
+    assertEquals(newIndicatorService().getIndicator("IBM", Indicator.EMA, 5, 10), extended);
+  }
+
+  /**
+   * If older days are loaded into the series, the values are computed again from the new oldest
+   * day rather than extended.
+   */
+  @Test
+  public void testRecomputeWhenSeriesChanges() {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc("IBM"))
+        .thenReturn(stockPrices(10, 29));
+    List<IndicatorValue> before = indicatorService.getIndicator("IBM", Indicator.EMA, 5, 10);
+
+    store.append("IBM", stockPrices(0, 10));
+    List<IndicatorValue> after = indicatorService.getIndicator("IBM", Indicator.EMA, 5, 10);
+
+    assertEquals(newIndicatorService().getIndicator("IBM", Indicator.EMA, 5, 10), after);
+    // the EMA is seeded from an earlier day, so its values differ
+    assertTrue(!before.equals(after));
+  }
+
+  /**
+   * Asking for more days than an int can hold together with the window returns every day that
+   * has a value.
+   */
+  @Test
+  public void testDaysPlusWindowOverflow() {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc("IBM"))
+        .thenReturn(stockPrices(0, 9));
+
+    List<IndicatorValue> values =
+        indicatorService.getIndicator("IBM", Indicator.SMA, 3, Integer.MAX_VALUE);
+
+    assertEquals(8, values.size());
+  }
+
+  /**
+   * A symbol's indicators are dropped when its series is evicted from the store.
+   */
+  @Test
+  public void testEvictDropsIndicators() {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc(anyString()))
+        .thenReturn(stockPrices(0, 9));
+    indicatorService.getIndicator("IBM", Indicator.SMA, 3, 2);
+    indicatorService.getIndicator("IBM", Indicator.EMA, 3, 2);
+    indicatorService.getIndicator("MSFT", Indicator.SMA, 3, 2);
+
+    store.evict("ibm");
+
+    assertEquals(1, indicatorService.getComputedIndicatorCount());
+  }
+
+  /**
+   * Only the most recently used indicators are kept.
+   */
+  @Test
+  public void testComputedIndicatorsAreBounded() {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc("IBM"))
+        .thenReturn(stockPrices(0, 9));
+    for (int window = 2; window < 2 + 300; window++) {
+      indicatorService.getIndicator("IBM", Indicator.SMA, window, 2);
+    }
+
+    assertEquals(256, indicatorService.getComputedIndicatorCount());
+  }
+
+  /**
+   * Indicators computed and extended concurrently, for the same and for different windows, match
+   * values computed one at a time.
+   */
+  @Test
+  public void testConcurrentIndicators() throws Exception {
+    when(mockStockPriceRpsy.findBySymbolOrderByDateDesc("IBM"))
+        .thenReturn(stockPrices(0, 29));
+    indicatorService.getIndicator("IBM", Indicator.EMA, 2, 10);
+    store.append("IBM", stockPrices(29, 35));
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<IndicatorValue>>> computed = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        int window = 2 + i % 4;
+        computed.add(executor.submit(
+            () -> indicatorService.getIndicator("IBM", Indicator.EMA, window, 10)));
+      }
+
+      StockPriceIndicatorService sequential = newIndicatorService();
+      for (int i = 0; i < computed.size(); i++) {
+        assertEquals(sequential.getIndicator("IBM", Indicator.EMA, 2 + i % 4, 10),
+            computed.get(i).get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(4, indicatorService.getComputedIndicatorCount());
+  }
+}
@@ -0,0 +1,57 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.galatea.starter.entrypoint.exception.DataNotFoundException;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Priority;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StockPricePrewarmerTest {
+
+  private StockPriceService mockStockPriceService;
+
+  private MeterRegistry meterRegistry;
+
+  private StockPricePrewarmer prewarmer;
+
+  @Before
+  public void setUp() {
+    mockStockPriceService = mock(StockPriceService.class);
+    meterRegistry = new SimpleMeterRegistry();
+    prewarmer = new StockPricePrewarmer(mockStockPriceService, meterRegistry,
+        new String[] {"IBM", "BAD", "MSFT"}, 100, 2);
+  }
+
+  @After
+  public void tearDown() {
+    prewarmer.shutdown();
+  }
+
+  /**
+   * Every symbol is refreshed, and a failing symbol doesn't stop the others.
+   */
+  @Test
+  public void testPrewarm() {
+    when(mockStockPriceService.getStockPrices("BAD", 100, Priority.BACKGROUND))
+        .thenThrow(new DataNotFoundException("BAD"));
+
+    prewarmer.prewarm();
+
+    verify(mockStockPriceService).getStockPrices("IBM", 100, Priority.BACKGROUND);
+    verify(mockStockPriceService).getStockPrices("BAD", 100, Priority.BACKGROUND);
+    verify(mockStockPriceService).getStockPrices("MSFT", 100, Priority.BACKGROUND);
+    assertEquals(2, meterRegistry.get("alphavantage.prewarm.symbols")
+        .tag("result", "success").counter().count(), 0);
+    assertEquals(1, meterRegistry.get("alphavantage.prewarm.symbols")
+        .tag("result", "failure").counter().count(), 0);
+    assertEquals(0, meterRegistry.get("alphavantage.prewarm.pending").gauge().value(), 0);
+    assertEquals(1, meterRegistry.get("alphavantage.prewarm.duration").timer().count());
+  }
+}
@@ -1,35 +1,66 @@
 package org.galatea.starter.service;
 
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-
+import static org.mockito.ArgumentMatchers.eq;
+
+import com.google.common.collect.ImmutableMap;
+import feign.FeignException;
+import feign.Response;
+import feign.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
 import org.galatea.starter.domain.rpsy.IStockPriceRpsy;
-import org.galatea.starter.entrypoint.messagecontracts.StockPriceMessages;
+import org.galatea.starter.domain.rpsy.StockPriceSeriesStore;
+import org.galatea.starter.entrypoint.exception.DataNotFoundException;
 import org.galatea.starter.testutils.TestDataGenerator;
-import org.galatea.starter.utils.Helpers;
-import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.TradingCalendar;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Priority;
+import org.galatea.starter.utils.concurrent.SingleFlight;
+import org.galatea.starter.utils.concurrent.TokenBucket;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.BDDMockito;
-import org.springframework.beans.factory.annotation.Value;
+import org.mockito.Mockito;
 import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 
@@ -43,26 +74,34 @@ public class StockPriceServiceTest extends ASpringTest {
   @MockBean
   private IStockPriceRpsy mockStockPriceRpsy;
 
-  @MockBean
-  private ITranslator<StockPriceMessages, List<StockPrice>> mockStockMessagesTranslator;
-
   @MockBean
   private Clock mockClock;
 
   private StockPriceService service;
 
-  @Value("${alpha-vantage.api-key}")
-  private String apiKey;
+  private final SingleFlight<String, StockPriceSeries> alphaVantageFetches = new SingleFlight<>();
+
+  @MockBean
+  private AlphaVantageClient mockAlphaVantageClient;
 
-  @Value("${alpha-vantage.dailyTimeSeriesPath}")
-  private String basePath;
+  private final TradingCalendar tradingCalendar = readTradingCalendar();
+
+  private final PriorityRateLimiter rateLimiter = new PriorityRateLimiter(
+      new TokenBucket(100, 60_000, Duration.ofMinutes(1)), "test", 100,
+      ImmutableMap.of(Priority.INTERACTIVE, Duration.ofSeconds(30),
+          Priority.BACKGROUND, Duration.ofSeconds(30)));
 
   @Before
   public void setup() {
     service = new StockPriceService(
         mockStockPriceRpsy,
-        mockStockMessagesTranslator,
-        mockClock
+        new StockPriceSeriesStore(mockStockPriceRpsy),
+        mockAlphaVantageClient,
+        new AlphaVantageDailySeriesReader(),
+        mockClock,
+        tradingCalendar,
+        alphaVantageFetches,
+        rateLimiter
     );
 
     BDDMockito.given(mockClock.instant()).willReturn(Instant.parse("2020-06-15T12:00:00Z"));
@@ -70,6 +109,11 @@ public class StockPriceServiceTest extends ASpringTest {
 
   }
 
+  @After
+  public void tearDown() {
+    rateLimiter.shutdown();
+  }
+
   /**
    * Test that StockPriceService.findStockPricesBySymbol returns list of StockPrices found by
    * repository.
@@ -80,7 +124,7 @@ public class StockPriceServiceTest extends ASpringTest {
 
     StockPrice testStockPrice = TestDataGenerator.defaultStockPriceData().build();
 
-    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolIgnoreCaseOrderByDateDesc(symbol))
+    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolOrderByDateDesc(symbol))
         .willReturn(Collections.singletonList(testStockPrice));
 
     List<StockPrice> retrieved = service.findStockPricesBySymbol("IBM");
@@ -97,7 +141,7 @@ public class StockPriceServiceTest extends ASpringTest {
 
     StockPrice testStockPrice = TestDataGenerator.defaultStockPriceData().build();
 
-    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolIgnoreCaseOrderByDateDesc(symbol))
+    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolOrderByDateDesc(symbol))
         .willReturn(Collections.singletonList(testStockPrice));
 
     List<StockPrice> retrieved = service.findStockPricesBySymbol("DNKN"); // different symbol
@@ -115,7 +159,7 @@ public class StockPriceServiceTest extends ASpringTest {
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices(symbol, 5);
     Collections.shuffle(stockPrices);
 
-    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolIgnoreCaseOrderByDateDesc(symbol))
+    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolOrderByDateDesc(symbol))
         .willReturn(stockPrices);
 
     List<StockPrice> retrieved = service.findStockPricesBySymbol(symbol);
@@ -178,11 +222,10 @@ public class StockPriceServiceTest extends ASpringTest {
   public void testSaveStockPricesIfNotExistsEmptyList() {
     List<StockPrice> stockPrices = new ArrayList<>();
 
-    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolIgnoreCaseAndDate(anyString(), any()))
-        .willReturn(new ArrayList<>());
-
     List<StockPrice> saved = service.saveStockPricesIfNotExists(stockPrices);
     assertTrue(saved.isEmpty());
+    Mockito.verify(mockStockPriceRpsy, Mockito.never())
+        .findDatesBySymbolAndDateBetween(anyString(), any(), any());
   }
 
   /**
@@ -193,12 +236,16 @@ public class StockPriceServiceTest extends ASpringTest {
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices("IBM", 10);
     stockPrices.sort(Comparator.comparing(StockPrice::getId));
 
-    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolIgnoreCaseAndDate(anyString(), any()))
+    BDDMockito.given(this.mockStockPriceRpsy
+        .findDatesBySymbolAndDateBetween(anyString(), any(), any()))
         .willReturn(new ArrayList<>());
 
     List<StockPrice> saved = service.saveStockPricesIfNotExists(stockPrices);
     saved.sort(Comparator.comparing(StockPrice::getId));
     assertTrue(saved.equals(stockPrices));
+    // a single query for the existing dates of the symbol
+    Mockito.verify(mockStockPriceRpsy, Mockito.times(1))
+        .findDatesBySymbolAndDateBetween(anyString(), any(), any());
   }
 
   /**
@@ -208,13 +255,65 @@ public class StockPriceServiceTest extends ASpringTest {
   public void testSaveStockPricesIfNotExistsDoesNotSaveWhenExists() {
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices("IBM", 10);
 
-    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolIgnoreCaseAndDate(any(), any()))
-        .willReturn(Collections.singletonList(stockPrices.get(0)));
+    BDDMockito.given(this.mockStockPriceRpsy
+        .findDatesBySymbolAndDateBetween(any(), any(), any()))
+        .willReturn(stockPrices.stream().map(StockPrice::getDate).collect(Collectors.toList()));
 
     List<StockPrice> saved = service.saveStockPricesIfNotExists(stockPrices);
     assertTrue(saved.isEmpty());
   }
 
+  /**
+   * Test that StockPriceService.saveStockPricesIfNotExists only saves StockPrices whose dates
+   * aren't in the database yet.
+   */
+  @Test
+  public void testSaveStockPricesIfNotExistsSavesOnlyMissingDates() {
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      stockPrices.add(StockPrice.builder()
+          .symbol("IBM")
+          .date(LocalDate.of(2020, 6, 1).plusDays(i))
+          .prices(TestDataGenerator.defaultStockPriceInfoData().build())
+          .build());
+    }
+
+    BDDMockito.given(this.mockStockPriceRpsy.findDatesBySymbolAndDateBetween(
+        "IBM", LocalDate.of(2020, 6, 1), LocalDate.of(2020, 6, 5)))
+        .willReturn(Arrays.asList(LocalDate.of(2020, 6, 2), LocalDate.of(2020, 6, 4)));
+
+    List<StockPrice> saved = service.saveStockPricesIfNotExists(stockPrices);
+    assertEquals(Arrays.asList(stockPrices.get(0), stockPrices.get(2), stockPrices.get(4)), saved);
+  }
+
+  /**
+   * Test that StockPriceService.saveStockPricesIfNotExists saves the rest of the StockPrices when
+   * some of them were saved concurrently, between looking them up and saving them.
+   */
+  @Test
+  public void testSaveStockPricesIfNotExistsSavesRestWhenSavedConcurrently() {
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      stockPrices.add(StockPrice.builder()
+          .symbol("IBM")
+          .date(LocalDate.of(2020, 6, 1).plusDays(i))
+          .prices(TestDataGenerator.defaultStockPriceInfoData().build())
+          .build());
+    }
+
+    BDDMockito.given(this.mockStockPriceRpsy.findDatesBySymbolAndDateBetween(
+        anyString(), any(), any()))
+        .willReturn(new ArrayList<>())
+        .willReturn(Collections.singletonList(LocalDate.of(2020, 6, 2)));
+    BDDMockito.given(this.mockStockPriceRpsy.saveAll(stockPrices))
+        .willThrow(new DataIntegrityViolationException("uk_stock_price_symbol_date"));
+
+    List<StockPrice> saved = service.saveStockPricesIfNotExists(stockPrices);
+    List<StockPrice> rest = Arrays.asList(stockPrices.get(0), stockPrices.get(2));
+    assertEquals(rest, saved);
+    BDDMockito.verify(this.mockStockPriceRpsy).saveAll(rest);
+  }
+
   /**
    * Test that StockPriceService.hasNecessaryStockPrices returns true when days=0.
    */
@@ -264,7 +363,7 @@ public class StockPriceServiceTest extends ASpringTest {
   public void testHasNecessaryStockPricesNotEnoughHistory() {
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices("IBM", 10);
     stockPrices.set(0, StockPrice.builder()
-        .date(Helpers.getMostRecentWeekday(mockClock))
+        .date(tradingCalendar.getMostRecentTradingDay(mockClock))
         .prices(TestDataGenerator.defaultStockPriceInfoData().build())
         .symbol("IBM").build());
     assertFalse(service.hasNecessaryStockPrices(stockPrices, 15));
@@ -278,7 +377,7 @@ public class StockPriceServiceTest extends ASpringTest {
   public void testHasNecessaryStockPricesEqualSize() {
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices("IBM", 10);
     stockPrices.set(0, StockPrice.builder()
-        .date(Helpers.getMostRecentWeekday(mockClock))
+        .date(tradingCalendar.getMostRecentTradingDay(mockClock))
         .prices(TestDataGenerator.defaultStockPriceInfoData().build())
         .symbol("IBM").build());
     assertTrue(service.hasNecessaryStockPrices(stockPrices, 10));
@@ -292,20 +391,346 @@ public class StockPriceServiceTest extends ASpringTest {
   public void testHasNecessaryStockPricesGreaterSize() {
     List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices("IBM", 10);
     stockPrices.set(0, StockPrice.builder()
-        .date(Helpers.getMostRecentWeekday(mockClock))
+        .date(tradingCalendar.getMostRecentTradingDay(mockClock))
         .prices(TestDataGenerator.defaultStockPriceInfoData().build())
         .symbol("IBM").build());
     assertTrue(service.hasNecessaryStockPrices(stockPrices, 5));
   }
 
   /**
-   * Test that StockPriceService.makeApiCall returns non-empty JsonNode.
+   * Test that StockPriceService.getStockPrices answers from the stored series, loaded once from the
+   * repository, without going to Alpha Vantage when the stored prices are up to date.
+   */
+  @Test
+  public void testGetStockPricesFromStoredSeries() {
+    String symbol = "IBM";
+    LocalDate mostRecentTradingDay = tradingCalendar.getMostRecentTradingDay(mockClock);
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      // prices have the same scale as the database columns, so they compare equal after a round
+      // trip through the series
+      BigDecimal price = new BigDecimal("100.0000").add(BigDecimal.valueOf(i));
+      stockPrices.add(StockPrice.builder()
+          .symbol(symbol)
+          .date(mostRecentTradingDay.minusDays(i))
+          .prices(TestDataGenerator.defaultStockPriceInfoData()
+              .open(price).high(price).low(price).close(price).build()).build());
+    }
+
+    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolOrderByDateDesc(symbol))
+        .willReturn(stockPrices);
+
+    List<StockPrice> first = service.getStockPrices(symbol, 5);
+    List<StockPrice> second = service.getStockPrices(symbol, 3);
+
+    assertEquals(stockPrices.subList(0, 5), first);
+    assertEquals(stockPrices.subList(0, 3), second);
+    BDDMockito.verify(this.mockStockPriceRpsy, Mockito.times(1))
+        .findBySymbolOrderByDateDesc(symbol);
+  }
+
+  /**
+   * Test that StockPriceService.getStockPrices only fetches and saves the missing newest days when
+   * the stored series is a few days behind.
+   */
+  @Test
+  public void testGetStockPricesFetchesOnlyMissingDays() {
+    String symbol = "IBM";
+    // the most recent weekday is friday 2020-06-12, the stored series ends on tuesday 2020-06-09
+    LocalDate newestStored = LocalDate.of(2020, 6, 9);
+    List<StockPrice> stored = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      stored.add(StockPrice.builder()
+          .symbol(symbol)
+          .date(newestStored.minusDays(i))
+          .prices(TestDataGenerator.defaultStockPriceInfoData().build()).build());
+    }
+
+    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolOrderByDateDesc(symbol))
+        .willReturn(stored);
+    BDDMockito.given(this.mockStockPriceRpsy
+        .findDatesBySymbolAndDateBetween(anyString(), any(), any()))
+        .willReturn(Collections.singletonList(newestStored));
+    BDDMockito.given(mockAlphaVantageClient.getDailyTimeSeries(symbol, "compact"))
+        .willReturn(dailyTimeSeriesResponse(200, 100));
+
+    List<StockPrice> retrieved = service.getStockPrices(symbol, 10);
+
+    assertEquals(10, retrieved.size());
+    assertEquals(LocalDate.of(2020, 6, 12), retrieved.get(0).getDate());
+    for (int i = 3; i < 10; i++) {
+      assertEquals(stored.get(i - 3).getDate(), retrieved.get(i).getDate());
+    }
+    // only the three new days are saved
+    BDDMockito.verify(this.mockStockPriceRpsy).saveAll(
+        Mockito.argThat((List<StockPrice> saved) -> saved.size() == 3));
+  }
+
+  /**
+   * Test that concurrent StockPriceService.getStockPrices calls for different numbers of days
+   * share a full fetch, which is read as far as the most days any of them asked for.
+   */
+  @Test
+  public void testGetStockPricesSharesFullFetchUpToLargestLimit() throws Exception {
+    String symbol = "IBM";
+    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolOrderByDateDesc(symbol))
+        .willReturn(new ArrayList<>());
+    CountDownLatch release = new CountDownLatch(1);
+    BDDMockito.given(mockAlphaVantageClient.getDailyTimeSeries(symbol, "full"))
+        .willAnswer(invocation -> {
+          release.await(5, TimeUnit.SECONDS);
+          return dailyTimeSeriesResponse(200, 300);
+        });
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<StockPrice>> first = executor.submit(() -> service.getStockPrices(symbol, 150));
+      await().atMost(5, TimeUnit.SECONDS).until(() -> alphaVantageFetches.getInFlightCount() == 1);
+      Future<List<StockPrice>> second = executor.submit(() -> service.getStockPrices(symbol, 200));
+      await().atMost(5, TimeUnit.SECONDS).until(() -> alphaVantageFetches.getCoalescedCount() == 1);
+      release.countDown();
+
+      assertEquals(150, first.get(5, TimeUnit.SECONDS).size());
+      assertEquals(200, second.get(5, TimeUnit.SECONDS).size());
+    } finally {
+      executor.shutdownNow();
+    }
+    BDDMockito.verify(mockAlphaVantageClient, Mockito.times(1))
+        .getDailyTimeSeries(symbol, "full");
+  }
+
+  /**
+   * Test that StockPriceService.removeIncompleteData drops a StockPrice dated after the most recent
+   * complete weekday without modifying the given list.
+   */
+  @Test
+  public void testRemoveIncompleteDataDoesNotModifyList() {
+    LocalDate mostRecentTradingDay = tradingCalendar.getMostRecentTradingDay(mockClock);
+    List<StockPrice> stockPrices = TestDataGenerator.generateStockPrices("IBM", 3);
+    stockPrices.set(0, StockPrice.builder()
+        .date(mostRecentTradingDay.plusDays(1))
+        .prices(TestDataGenerator.defaultStockPriceInfoData().build())
+        .symbol("IBM").build());
+
+    List<StockPrice> retrieved = service.removeIncompleteData(stockPrices);
+
+    assertEquals(stockPrices.subList(1, 3), retrieved);
+    assertEquals(3, stockPrices.size());
+  }
+
+  /**
+   * Test that StockPriceService.getStockPrices answers from the stored series on the trading day
+   * after a holiday, rather than going to Alpha Vantage for the holiday's prices.
    */
   @Test
-  public void testMakeApiCallReturnsNonEmptyJsonNode() {
-    StockPriceMessages stockPriceMessages = service.makeApiCall("IBM", "compact",
-        apiKey, basePath);
-    assertFalse(stockPriceMessages.getData().isEmpty());
+  public void testGetStockPricesAfterHoliday() {
+    String symbol = "IBM";
+    // monday 2020-07-06 before the close: friday 2020-07-03 was a holiday
+    BDDMockito.given(mockClock.instant()).willReturn(Instant.parse("2020-07-06T16:00:00Z"));
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (LocalDate date = LocalDate.of(2020, 7, 2); stockPrices.size() < 10;
+        date = tradingCalendar.previousTradingDay(date)) {
+      stockPrices.add(StockPrice.builder()
+          .symbol(symbol)
+          .date(date)
+          .prices(TestDataGenerator.defaultStockPriceInfoData().build()).build());
+    }
+
+    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolOrderByDateDesc(symbol))
+        .willReturn(stockPrices);
+
+    List<StockPrice> retrieved = service.getStockPrices(symbol, 10);
+
+    assertEquals(10, retrieved.size());
+    assertEquals(LocalDate.of(2020, 7, 2), retrieved.get(0).getDate());
+    Mockito.verifyZeroInteractions(mockAlphaVantageClient);
+  }
+
+  /**
+   * Test that StockPriceService.getStockPrices with a date range answers from a range query when
+   * the database has every trading day in the range, without loading the symbol's history.
+   */
+  @Test
+  public void testGetStockPricesRangeFromDatabase() {
+    String symbol = "IBM";
+    LocalDate from = LocalDate.of(2020, 6, 1);
+    LocalDate to = LocalDate.of(2020, 6, 5);
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (LocalDate date = to; !date.isBefore(from); date = date.minusDays(1)) {
+      stockPrices.add(StockPrice.builder()
+          .symbol(symbol)
+          .date(date)
+          .prices(TestDataGenerator.defaultStockPriceInfoData().build()).build());
+    }
+
+    BDDMockito.given(this.mockStockPriceRpsy
+        .findBySymbolAndDateBetweenOrderByDateDesc(symbol, from, to))
+        .willReturn(stockPrices);
+
+    List<StockPrice> retrieved = service.getStockPrices(symbol, from, to);
+
+    assertEquals(5, retrieved.size());
+    assertEquals(to, retrieved.get(0).getDate());
+    assertEquals(from, retrieved.get(4).getDate());
+    BDDMockito.verify(this.mockStockPriceRpsy, Mockito.never())
+        .findBySymbolOrderByDateDesc(anyString());
+    Mockito.verifyZeroInteractions(mockAlphaVantageClient);
+  }
+
+  /**
+   * Test that StockPriceService.getStockPrices with a date range slices the in-memory series, and
+   * leaves out days after the most recent complete trading day.
+   */
+  @Test
+  public void testGetStockPricesRangeFromStoredSeries() {
+    String symbol = "IBM";
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (LocalDate date = LocalDate.of(2020, 6, 12); stockPrices.size() < 20;
+        date = tradingCalendar.previousTradingDay(date)) {
+      stockPrices.add(StockPrice.builder()
+          .symbol(symbol)
+          .date(date)
+          .prices(TestDataGenerator.defaultStockPriceInfoData().build()).build());
+    }
+
+    BDDMockito.given(this.mockStockPriceRpsy.findBySymbolOrderByDateDesc(symbol))
+        .willReturn(stockPrices);
+    // load the series into memory
+    service.getStockPrices(symbol, 5);
+
+    List<StockPrice> retrieved = service.getStockPrices(symbol, LocalDate.of(2020, 6, 8),
+        LocalDate.of(2020, 6, 30));
+
+    assertEquals(5, retrieved.size());
+    assertEquals(LocalDate.of(2020, 6, 12), retrieved.get(0).getDate());
+    assertEquals(LocalDate.of(2020, 6, 8), retrieved.get(4).getDate());
+    BDDMockito.verify(this.mockStockPriceRpsy, Mockito.never())
+        .findBySymbolAndDateBetweenOrderByDateDesc(anyString(), any(), any());
+    Mockito.verifyZeroInteractions(mockAlphaVantageClient);
+  }
+
+  /**
+   * Test that StockPriceService.findStoredStockPrices looks up every symbol that isn't in memory
+   * with one range query, and leaves out symbols without enough stored days.
+   */
+  @Test
+  public void testFindStoredStockPricesWithOneQuery() {
+    LocalDate to = LocalDate.of(2020, 6, 12);
+    LocalDate from = LocalDate.of(2020, 6, 8);
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (LocalDate date = to; !date.isBefore(from); date = date.minusDays(1)) {
+      stockPrices.add(StockPrice.builder()
+          .symbol("IBM")
+          .date(date)
+          .prices(TestDataGenerator.defaultStockPriceInfoData().build()).build());
+    }
+    stockPrices.add(StockPrice.builder()
+        .symbol("MSFT")
+        .date(to)
+        .prices(TestDataGenerator.defaultStockPriceInfoData().build()).build());
+
+    BDDMockito.given(this.mockStockPriceRpsy
+        .findBySymbolInAndDateBetweenOrderByDateDesc(any(), eq(from), eq(to)))
+        .willReturn(stockPrices);
+
+    Map<String, List<StockPrice>> found = service.findStoredStockPrices(
+        Arrays.asList("ibm", "MSFT"), 5);
+
+    assertEquals(Collections.singleton("ibm"), found.keySet());
+    assertEquals(5, found.get("ibm").size());
+    assertEquals(to, found.get("ibm").get(0).getDate());
+    BDDMockito.verify(this.mockStockPriceRpsy).findBySymbolInAndDateBetweenOrderByDateDesc(
+        new HashSet<>(Arrays.asList("IBM", "MSFT")), from, to);
+    BDDMockito.verify(this.mockStockPriceRpsy, Mockito.never())
+        .findBySymbolOrderByDateDesc(anyString());
+  }
+
+  /**
+   * Read the bundled NYSE trading calendar.
+   */
+  @SneakyThrows
+  private static TradingCalendar readTradingCalendar() {
+    try (InputStream in = new ClassPathResource("trading-calendar/nyse.csv").getInputStream()) {
+      return TradingCalendar.read(in);
+    }
+  }
+
+  /**
+   * Build an Alpha Vantage TIME_SERIES_DAILY response with the given number of days.
+   */
+  private static Response dailyTimeSeriesResponse(final int status, final int days) {
+    StringBuilder json = new StringBuilder("{\"Meta Data\": {\"2. Symbol\": \"IBM\"},"
+        + " \"Time Series (Daily)\": {");
+    for (int i = 0; i < days; i++) {
+      json.append(i == 0 ? "" : ",").append('"').append(LocalDate.of(2020, 6, 12).minusDays(i))
+          .append("\": {\"1. open\": \"1.0\", \"2. high\": \"1.0\", \"3. low\": \"1.0\","
+              + " \"4. close\": \"1.0\", \"5. volume\": \"100\"}");
+    }
+    json.append("}}");
+    return Response.builder()
+        .status(status)
+        .headers(Collections.emptyMap())
+        .body(json.toString(), StandardCharsets.UTF_8).build();
+  }
+
+  /**
+   * Test that StockPriceService.makeApiCall returns the limit most recent StockPrices.
+   */
+  @Test
+  public void testMakeApiCallReturnsAtMostLimitStockPrices() {
+    BDDMockito.given(mockAlphaVantageClient.getDailyTimeSeries("IBM", "compact"))
+        .willReturn(dailyTimeSeriesResponse(200, 20));
+
+    List<StockPrice> stockPrices = service.makeApiCall("IBM", "compact", 10);
+    assertEquals(10, stockPrices.size());
+    assertEquals(LocalDate.of(2020, 6, 12), stockPrices.get(0).getDate());
+  }
+
+  /**
+   * Test that StockPriceService.makeApiCall decompresses gzipped responses.
+   */
+  @SneakyThrows
+  @Test
+  public void testMakeApiCallGzip() {
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+      out.write(Util.toByteArray(dailyTimeSeriesResponse(200, 5).body().asInputStream()));
+    }
+    BDDMockito.given(mockAlphaVantageClient.getDailyTimeSeries("IBM", "compact"))
+        .willReturn(Response.builder()
+            .status(200)
+            .headers(Collections.singletonMap("Content-Encoding",
+                Collections.singletonList("gzip")))
+            .body(gzipped.toByteArray()).build());
+
+    assertEquals(5, service.makeApiCall("IBM", "compact", 10).size());
+  }
+
+  /**
+   * Test that StockPriceService.makeApiCall throws DataNotFoundException when Alpha Vantage
+   * responds with an error message instead of a time series.
+   */
+  @Test(expected = DataNotFoundException.class)
+  public void testMakeApiCallErrorMessage() {
+    BDDMockito.given(mockAlphaVantageClient.getDailyTimeSeries("IBM", "compact"))
+        .willReturn(Response.builder()
+            .status(200)
+            .headers(Collections.emptyMap())
+            .body("{\"Error Message\": \"Invalid API call.\"}", StandardCharsets.UTF_8).build());
+
+    service.makeApiCall("IBM", "compact", 10);
+  }
+
+  /**
+   * Test that StockPriceService.makeApiCall throws FeignException when Alpha Vantage responds
+   * with an error status.
+   */
+  @Test(expected = FeignException.class)
+  public void testMakeApiCallErrorStatus() {
+    BDDMockito.given(mockAlphaVantageClient.getDailyTimeSeries("IBM", "compact"))
+        .willReturn(dailyTimeSeriesResponse(503, 0));
+
+    service.makeApiCall("IBM", "compact", 10);
   }
 
   @Configuration
@@ -0,0 +1,114 @@
+package org.galatea.starter.utils;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+import org.springframework.boot.actuate.trace.http.Include;
+import org.springframework.boot.actuate.trace.http.TraceableRequest;
+import org.springframework.boot.actuate.trace.http.TraceableResponse;
+
+public class FuseHttpTraceRepositoryTest {
+
+  private final HttpExchangeTracer tracer = new HttpExchangeTracer(EnumSet.allOf(Include.class));
+
+  private FuseHttpTraceRepository repository;
+
+  @After
+  public void cleanup() {
+    if (repository != null) {
+      repository.close();
+    }
+  }
+
+  private FuseHttpTraceRepository repository(final int bufferSize, final double sampleRate) {
+    repository = FuseHttpTraceRepository.builder()
+        .objectMapper(new ObjectMapper())
+        .bufferSize(bufferSize)
+        .batchSize(10)
+        .flushIntervalMillis(10)
+        .sampleRate(sampleRate)
+        .build();
+    return repository;
+  }
+
+  private HttpTrace trace(final int status) {
+    TraceableRequest request = mock(TraceableRequest.class);
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getUri()).thenReturn(URI.create("http://localhost/settlementEngine/mission/1"));
+    when(request.getHeaders()).thenReturn(Collections.emptyMap());
+    HttpTrace trace = tracer.receivedRequest(request);
+
+    TraceableResponse response = mock(TraceableResponse.class);
+    when(response.getStatus()).thenReturn(status);
+    when(response.getHeaders()).thenReturn(Collections.emptyMap());
+    tracer.sendingResponse(trace, response, () -> null, () -> null);
+    return trace;
+  }
+
+  /**
+   * Traces are written and stored by the background writer.
+   */
+  @Test
+  public void writesTraces() {
+    FuseHttpTraceRepository repository = repository(16, 1);
+
+    for (int i = 0; i < 25; i++) {
+      repository.add(trace(200));
+    }
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> repository.findAll().size() == 25);
+    assertEquals(25, repository.getWritten());
+    assertEquals(0, repository.getDropped());
+  }
+
+  /**
+   * Traces added while the buffer is full are dropped and counted, rather than waited for.
+   */
+  @Test
+  public void dropsTracesWhenFull() {
+    FuseHttpTraceRepository repository = repository(4, 1);
+    HttpTrace trace = trace(200);
+
+    // added faster than the writer takes them off the buffer
+    for (int i = 0; i < 10000; i++) {
+      repository.add(trace);
+    }
+
+    await().atMost(10, TimeUnit.SECONDS)
+        .until(() -> repository.getWritten() + repository.getDropped() == 10000);
+    assertTrue(repository.getDropped() > 0);
+  }
+
+  /**
+   * With a sample rate of 0, only server errors are traced.
+   */
+  @Test
+  public void samplesTraces() {
+    FuseHttpTraceRepository repository = repository(16, 0);
+
+    repository.add(trace(200));
+    repository.add(trace(404));
+    repository.add(trace(500));
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> repository.getWritten() == 1);
+    assertEquals(2, repository.getSampledOut());
+    assertEquals(500, repository.findAll().get(0).getResponse().getStatus());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidSampleRate() {
+    repository(16, 1.5);
+  }
+}
@@ -176,4 +176,18 @@ public class HelpersTest {
     assertEquals(wednesday.toEpochDay(), mostRecentWeekday.toEpochDay());
   }
 
+  @Test
+  public void testCountWeekdaysBetween() {
+    LocalDate friday = LocalDate.of(2020, 6, 12);
+
+    assertEquals(0, Helpers.countWeekdaysBetween(friday, friday));
+    assertEquals(0, Helpers.countWeekdaysBetween(friday, friday.minusDays(3)));
+    assertEquals(0, Helpers.countWeekdaysBetween(friday, friday.plusDays(2))); // weekend
+    assertEquals(1, Helpers.countWeekdaysBetween(friday, friday.plusDays(3))); // monday
+    assertEquals(5, Helpers.countWeekdaysBetween(friday, friday.plusWeeks(1)));
+    assertEquals(7, Helpers.countWeekdaysBetween(friday.minusDays(2), friday.plusWeeks(1)));
+    assertEquals(262, Helpers.countWeekdaysBetween(LocalDate.of(2019, 12, 31),
+        LocalDate.of(2020, 12, 31)));
+  }
+
 }
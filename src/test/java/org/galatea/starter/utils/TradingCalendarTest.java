@@ -0,0 +1,115 @@
+package org.galatea.starter.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+public class TradingCalendarTest {
+
+  private static TradingCalendar calendar;
+
+  @BeforeClass
+  public static void readCalendar() throws IOException {
+    try (InputStream in = new ClassPathResource("trading-calendar/nyse.csv").getInputStream()) {
+      calendar = TradingCalendar.read(in);
+    }
+  }
+
+  private static Clock createClock(final String localDateTime) {
+    ZoneId zone = ZoneId.of("America/New_York");
+    return Clock.fixed(LocalDateTime.parse(localDateTime).atZone(zone).toInstant(), zone);
+  }
+
+  @Test
+  public void testIsTradingDay() {
+    assertTrue(calendar.isTradingDay(LocalDate.of(2020, 7, 2)));
+    assertFalse(calendar.isTradingDay(LocalDate.of(2020, 7, 3))); // Independence Day, observed
+    assertFalse(calendar.isTradingDay(LocalDate.of(2020, 7, 4))); // saturday
+    assertTrue(calendar.isTradingDay(LocalDate.of(2020, 11, 27))); // early close
+    // outside of the calendar, every weekday is a trading day
+    assertTrue(calendar.isTradingDay(LocalDate.of(2014, 12, 25)));
+    assertFalse(calendar.isTradingDay(LocalDate.of(2014, 12, 27)));
+  }
+
+  @Test
+  public void testGetCloseTime() {
+    assertEquals(LocalTime.of(16, 0), calendar.getCloseTime(LocalDate.of(2020, 11, 25)));
+    assertEquals(LocalTime.of(13, 0), calendar.getCloseTime(LocalDate.of(2020, 11, 27)));
+  }
+
+  /**
+   * The most recent trading day skips holidays, like it skips weekends.
+   */
+  @Test
+  public void testGetMostRecentTradingDayAfterHoliday() {
+    LocalDate thursday = LocalDate.of(2020, 7, 2);
+
+    assertEquals(thursday, calendar.getMostRecentTradingDay(createClock("2020-07-03T18:00:00")));
+    assertEquals(thursday, calendar.getMostRecentTradingDay(createClock("2020-07-05T12:00:00")));
+    assertEquals(thursday, calendar.getMostRecentTradingDay(createClock("2020-07-06T12:00:00")));
+    assertEquals(thursday.plusDays(4),
+        calendar.getMostRecentTradingDay(createClock("2020-07-06T16:10:00")));
+  }
+
+  /**
+   * On an early close, the day's prices are complete shortly after the early close.
+   */
+  @Test
+  public void testGetMostRecentTradingDayEarlyClose() {
+    LocalDate friday = LocalDate.of(2020, 11, 27);
+
+    assertEquals(LocalDate.of(2020, 11, 25),
+        calendar.getMostRecentTradingDay(createClock("2020-11-27T13:05:00")));
+    assertEquals(friday, calendar.getMostRecentTradingDay(createClock("2020-11-27T13:10:00")));
+  }
+
+  /**
+   * The most recent trading day is the same as the most recent weekday on days without holidays.
+   */
+  @Test
+  public void testGetMostRecentTradingDayMatchesWeekday() {
+    for (String time : new String[] {"2020-06-13T12:00:00", "2020-06-15T12:00:00",
+        "2020-06-15T17:00:00", "2020-06-17T12:00:00", "2030-06-17T17:00:00"}) {
+      Clock clock = createClock(time);
+      assertEquals(Helpers.getMostRecentWeekday(clock), calendar.getMostRecentTradingDay(clock));
+    }
+  }
+
+  @Test
+  public void testCountTradingDaysBetween() {
+    LocalDate thursday = LocalDate.of(2020, 7, 2);
+
+    assertEquals(0, calendar.countTradingDaysBetween(thursday, thursday));
+    assertEquals(0, calendar.countTradingDaysBetween(thursday, thursday.minusDays(3)));
+    assertEquals(0, calendar.countTradingDaysBetween(thursday, thursday.plusDays(3)));
+    assertEquals(1, calendar.countTradingDaysBetween(thursday, thursday.plusDays(4)));
+    // 262 weekdays, 9 holidays
+    assertEquals(253, calendar.countTradingDaysBetween(LocalDate.of(2019, 12, 31),
+        LocalDate.of(2020, 12, 31)));
+    // ranges reaching outside the calendar count the weekdays outside of it
+    assertEquals(Helpers.countWeekdaysBetween(LocalDate.of(2010, 1, 1), LocalDate.of(2014, 12, 31))
+            + 252,
+        calendar.countTradingDaysBetween(LocalDate.of(2010, 1, 1), LocalDate.of(2015, 12, 31)));
+    assertEquals(2, calendar.countTradingDaysBetween(LocalDate.of(2027, 12, 30),
+        LocalDate.of(2028, 1, 3)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadMalformed() throws IOException {
+    TradingCalendar.read(new ByteArrayInputStream(
+        "2020-07-03\n".getBytes(StandardCharsets.UTF_8)));
+  }
+}
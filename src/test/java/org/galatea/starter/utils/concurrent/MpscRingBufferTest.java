@@ -0,0 +1,90 @@
+package org.galatea.starter.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class MpscRingBufferTest {
+
+  @Test
+  public void roundsCapacityUpToPowerOfTwo() {
+    assertEquals(8, new MpscRingBuffer<String>(5).capacity());
+    assertEquals(8, new MpscRingBuffer<String>(8).capacity());
+    assertEquals(1, new MpscRingBuffer<String>(1).capacity());
+  }
+
+  /**
+   * Elements are taken in order, and offer fails rather than blocks once the buffer is full.
+   */
+  @Test
+  public void offerAndDrain() {
+    MpscRingBuffer<String> buffer = new MpscRingBuffer<>(4);
+    assertTrue(buffer.offer("a"));
+    assertTrue(buffer.offer("b"));
+    assertTrue(buffer.offer("c"));
+    assertTrue(buffer.offer("d"));
+    assertFalse(buffer.offer("e"));
+    assertEquals(4, buffer.size());
+
+    List<String> taken = new ArrayList<>();
+    assertEquals(3, buffer.drain(taken::add, 3));
+    assertEquals(Arrays.asList("a", "b", "c"), taken);
+
+    // the freed slots wrap around
+    assertTrue(buffer.offer("f"));
+    assertTrue(buffer.offer("g"));
+    assertTrue(buffer.offer("h"));
+    assertFalse(buffer.offer("i"));
+
+    taken.clear();
+    assertEquals(4, buffer.drain(taken::add, 10));
+    assertEquals(Arrays.asList("d", "f", "g", "h"), taken);
+    assertEquals(0, buffer.drain(taken::add, 10));
+    assertEquals(0, buffer.size());
+  }
+
+  /**
+   * Every element offered by concurrent producers is taken exactly once, or counted as rejected.
+   */
+  @Test
+  public void concurrentProducers() throws InterruptedException {
+    int producers = 4;
+    int perProducer = 10000;
+    MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    CountDownLatch done = new CountDownLatch(producers);
+    Set<Integer> rejected = Collections.synchronizedSet(new HashSet<>());
+    for (int p = 0; p < producers; p++) {
+      int first = p * perProducer;
+      executor.execute(() -> {
+        for (int i = first; i < first + perProducer; i++) {
+          if (!buffer.offer(i)) {
+            rejected.add(i);
+          }
+        }
+        done.countDown();
+      });
+    }
+
+    Set<Integer> taken = new HashSet<>();
+    while (done.getCount() > 0 || buffer.size() > 0) {
+      buffer.drain(element -> assertTrue(taken.add(element)), 16);
+    }
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    assertEquals(producers * perProducer, taken.size() + rejected.size());
+  }
+}
@@ -0,0 +1,166 @@
+package org.galatea.starter.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Priority;
+import org.galatea.starter.utils.concurrent.PriorityRateLimiter.Ticket;
+import org.galatea.starter.utils.exception.RateLimitExceededException;
+import org.junit.After;
+import org.junit.Test;
+
+public class PriorityRateLimiterTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  // 1 token, refilled every half second. At most 3 calls wait, for up to 5 seconds
+  private final PriorityRateLimiter rateLimiter = newRateLimiter(2, Duration.ofSeconds(5));
+
+  private static PriorityRateLimiter newRateLimiter(final long tokensPerSecond,
+      final Duration backgroundMaxWait) {
+    return new PriorityRateLimiter(new TokenBucket(1, tokensPerSecond, Duration.ofSeconds(1)),
+        "test", 3, ImmutableMap.of(Priority.INTERACTIVE, Duration.ofSeconds(5),
+            Priority.BACKGROUND, backgroundMaxWait));
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    rateLimiter.shutdown();
+  }
+
+  private void awaitQueueDepth(final int depth) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (rateLimiter.getQueueDepth() < depth && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(depth, rateLimiter.getQueueDepth());
+  }
+
+  /**
+   * Once the bucket is empty, a waiting interactive call starts before background calls that
+   * arrived earlier, and calls with the same priority start in order of arrival.
+   */
+  @Test
+  public void testInteractiveOvertakesBackground() throws Exception {
+    List<String> started = new CopyOnWriteArrayList<>();
+    // take the only token
+    rateLimiter.execute(Priority.BACKGROUND, () -> started.add("first"));
+
+    Future<?> background1 = executor.submit(
+        () -> rateLimiter.execute(Priority.BACKGROUND, () -> started.add("background1")));
+    awaitQueueDepth(1);
+    Future<?> background2 = executor.submit(
+        () -> rateLimiter.execute(Priority.BACKGROUND, () -> started.add("background2")));
+    awaitQueueDepth(2);
+    Future<?> interactive = executor.submit(
+        () -> rateLimiter.execute(Priority.INTERACTIVE, () -> started.add("interactive")));
+    awaitQueueDepth(3);
+
+    interactive.get(5, TimeUnit.SECONDS);
+    background1.get(5, TimeUnit.SECONDS);
+    background2.get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList("first", "interactive", "background1", "background2"), started);
+    assertEquals(3, rateLimiter.getWaitCount(Priority.BACKGROUND));
+    assertEquals(1, rateLimiter.getWaitCount(Priority.INTERACTIVE));
+    assertTrue(rateLimiter.getWaitTime(Priority.INTERACTIVE, TimeUnit.MILLISECONDS) > 0);
+  }
+
+  /**
+   * A waiting call that is promoted starts before the calls with its new priority that arrived
+   * after it.
+   */
+  @Test
+  public void testPromotedCallOvertakesBackground() throws Exception {
+    List<String> started = new CopyOnWriteArrayList<>();
+    // take the only token
+    rateLimiter.execute(Priority.BACKGROUND, () -> started.add("first"));
+
+    Future<?> background1 = executor.submit(
+        () -> rateLimiter.execute(Priority.BACKGROUND, () -> started.add("background1")));
+    awaitQueueDepth(1);
+    AtomicReference<Ticket> ticket = new AtomicReference<>();
+    Future<?> background2 = executor.submit(() -> rateLimiter.execute(Priority.BACKGROUND,
+        ticket::set, () -> started.add("background2")));
+    awaitQueueDepth(2);
+    // the ticket is handed over just after the call is queued
+    while (ticket.get() == null) {
+      Thread.sleep(1);
+    }
+    ticket.get().promote(Priority.INTERACTIVE);
+    Future<?> interactive = executor.submit(
+        () -> rateLimiter.execute(Priority.INTERACTIVE, () -> started.add("interactive")));
+    awaitQueueDepth(3);
+
+    interactive.get(5, TimeUnit.SECONDS);
+    background1.get(5, TimeUnit.SECONDS);
+    background2.get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList("first", "background2", "interactive", "background1"), started);
+  }
+
+  /**
+   * A call is rejected without waiting once the queue is full.
+   */
+  @Test
+  public void testRejectsWhenQueueFull() throws Exception {
+    rateLimiter.execute(Priority.INTERACTIVE, () -> null);
+    for (int i = 0; i < 3; i++) {
+      executor.submit(() -> rateLimiter.execute(Priority.INTERACTIVE, () -> null));
+      awaitQueueDepth(i + 1);
+    }
+
+    try {
+      rateLimiter.execute(Priority.INTERACTIVE, () -> null);
+      fail("Expected a RateLimitExceededException");
+    } catch (RateLimitExceededException e) {
+      assertEquals(1, rateLimiter.getRejectedCount());
+    }
+  }
+
+  /**
+   * A call that waits longer than the maximum wait for its priority is rejected, and gives up its
+   * place in the queue.
+   */
+  @Test
+  public void testRejectsAfterMaxWait() {
+    // 1 token a second, which background calls only wait 100 ms for
+    PriorityRateLimiter slowRateLimiter = newRateLimiter(1, Duration.ofMillis(100));
+    try {
+      slowRateLimiter.execute(Priority.BACKGROUND, () -> null);
+      long start = System.nanoTime();
+      try {
+        slowRateLimiter.execute(Priority.BACKGROUND, () -> null);
+        fail("Expected a RateLimitExceededException");
+      } catch (RateLimitExceededException e) {
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, slowRateLimiter.getRejectedCount());
+        assertEquals(0, slowRateLimiter.getQueueDepth());
+      }
+    } finally {
+      slowRateLimiter.shutdown();
+    }
+  }
+
+  /**
+   * Exceptions thrown by the call are rethrown as is.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testCallThrows() {
+    rateLimiter.execute(Priority.INTERACTIVE, () -> {
+      throw new IllegalStateException();
+    });
+  }
+}
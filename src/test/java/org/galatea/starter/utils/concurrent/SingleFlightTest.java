@@ -0,0 +1,188 @@
+package org.galatea.starter.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  private static final int CALLERS = 8;
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Submit CALLERS calls with the same key, the first of which blocks until all the others are
+   * waiting on it.
+   */
+  private List<Future<String>> submitConcurrentCalls(final SingleFlight<String, String> flight,
+      final AtomicInteger calls, final RuntimeException failure) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    List<Future<String>> results = new ArrayList<>();
+    results.add(executor.submit(() -> flight.execute("IBM", () -> {
+      calls.incrementAndGet();
+      started.countDown();
+      await(release);
+      if (failure != null) {
+        throw failure;
+      }
+      return "result";
+    })));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    for (int i = 1; i < CALLERS; i++) {
+      results.add(executor.submit(() -> flight.execute("IBM", () -> {
+        calls.incrementAndGet();
+        return "other result";
+      })));
+    }
+    // wait until every other caller is waiting on the in-flight call
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (flight.getCoalescedCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+    return results;
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void testConcurrentCallsShareResult() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+
+    for (Future<String> result : submitConcurrentCalls(flight, calls, null)) {
+      assertEquals("result", result.get(5, TimeUnit.SECONDS));
+    }
+
+    assertEquals(1, calls.get());
+    assertEquals(1, flight.getOriginatedCount());
+    assertEquals(CALLERS - 1, flight.getCoalescedCount());
+    assertEquals(0, flight.getInFlightCount());
+  }
+
+  @Test
+  public void testConcurrentCallsShareException() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    RuntimeException failure = new IllegalStateException("API unavailable");
+
+    for (Future<String> result : submitConcurrentCalls(flight, calls, failure)) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        fail("Expected the call to fail");
+      } catch (ExecutionException e) {
+        assertSame(failure, e.getCause());
+      }
+    }
+
+    assertEquals(1, calls.get());
+    assertEquals(0, flight.getInFlightCount());
+  }
+
+  @Test
+  public void testJoinWidensInFlightRequest() throws Exception {
+    SingleFlight<String, Integer> flight = new SingleFlight<>();
+    CountDownLatch release = new CountDownLatch(1);
+
+    Future<Integer> first = executor.submit(() -> flight.execute("IBM",
+        () -> new AtomicInteger(10), request -> request.accumulateAndGet(20, Math::max) > 0,
+        request -> {
+          await(release);
+          return request.get();
+        }));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (flight.getInFlightCount() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    Future<Integer> second = executor.submit(() -> flight.execute("IBM",
+        () -> new AtomicInteger(20), request -> request.accumulateAndGet(20, Math::max) > 0,
+        AtomicInteger::get));
+    while (flight.getCoalescedCount() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+
+    assertEquals(20, (int) first.get(5, TimeUnit.SECONDS));
+    assertEquals(20, (int) second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, flight.getOriginatedCount());
+  }
+
+  @Test
+  public void testCallerThatCannotJoinRunsAfterInFlightCall() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    Future<String> first = executor.submit(() -> flight.execute("IBM", () -> {
+      started.countDown();
+      await(release);
+      return "first";
+    }));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    Future<String> second = executor.submit(() -> flight.execute("IBM", () -> null,
+        request -> false, request -> "second"));
+    release.countDown();
+
+    assertEquals("first", first.get(5, TimeUnit.SECONDS));
+    assertEquals("second", second.get(5, TimeUnit.SECONDS));
+    assertEquals(2, flight.getOriginatedCount());
+    assertEquals(0, flight.getCoalescedCount());
+  }
+
+  @Test
+  public void testSequentialCallsAreNotCoalesced() {
+    SingleFlight<String, String> flight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+
+    flight.execute("IBM", () -> "first " + calls.incrementAndGet());
+    String second = flight.execute("IBM", () -> "second " + calls.incrementAndGet());
+
+    assertEquals("second 2", second);
+    assertEquals(2, flight.getOriginatedCount());
+    assertEquals(0, flight.getCoalescedCount());
+  }
+
+  @Test
+  public void testDifferentKeysAreNotCoalesced() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>();
+    CountDownLatch release = new CountDownLatch(1);
+
+    Future<String> ibm = executor.submit(() -> flight.execute("IBM", () -> {
+      await(release);
+      return "IBM";
+    }));
+    String msft = flight.execute("MSFT", () -> "MSFT");
+    release.countDown();
+
+    assertEquals("MSFT", msft);
+    assertEquals("IBM", ibm.get(5, TimeUnit.SECONDS));
+    assertEquals(0, flight.getCoalescedCount());
+  }
+}
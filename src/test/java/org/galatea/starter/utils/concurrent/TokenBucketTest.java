@@ -0,0 +1,61 @@
+package org.galatea.starter.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  // 3 tokens, refilled at 1 every 20 seconds
+  private final TokenBucket bucket = new TokenBucket(3, 3, Duration.ofMinutes(1), now::get);
+
+  private void advanceSeconds(final long seconds) {
+    now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+  }
+
+  /**
+   * A full bucket allows a burst of capacity calls, then none until a token is refilled.
+   */
+  @Test
+  public void testBurst() {
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+    assertEquals(TimeUnit.SECONDS.toNanos(20), bucket.nanosUntilAvailable());
+  }
+
+  /**
+   * Tokens are refilled one at a time, and partial progress towards the next token is kept.
+   */
+  @Test
+  public void testRefill() {
+    for (int i = 0; i < 3; i++) {
+      bucket.tryAcquire();
+    }
+
+    advanceSeconds(30);
+    assertEquals(1, bucket.getAvailableTokens());
+    assertTrue(bucket.tryAcquire());
+    assertEquals(TimeUnit.SECONDS.toNanos(10), bucket.nanosUntilAvailable());
+
+    advanceSeconds(10);
+    assertEquals(0, bucket.nanosUntilAvailable());
+  }
+
+  /**
+   * The bucket never holds more than capacity tokens, however long it is idle.
+   */
+  @Test
+  public void testCapacity() {
+    advanceSeconds(3600);
+    assertEquals(3, bucket.getAvailableTokens());
+  }
+}
@@ -1,12 +1,16 @@
 package org.galatea.starter.utils.http.converter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -34,6 +38,28 @@ public class CsvSerializerTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void serializeToCsv_stream() throws Exception {
+    BasicClass row1 = new BasicClass("foo", "bar");
+    BasicClass row2 = new BasicClass("baz", null);
+    AtomicBoolean closed = new AtomicBoolean();
+    ByteArrayOutputStream out = new ByteArrayOutputStream() {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+
+    // Note that the stream is left open, so more can be written to it
+    CsvSerializer.serializeToCsv(Arrays.asList(row1, row2), BasicClass.class, out);
+    String expected
+        = "field1,field2\n"
+        + "foo,bar\n"
+        + "baz,\n";
+    assertEquals(expected, out.toString(StandardCharsets.UTF_8.name()));
+    assertFalse(closed.get());
+  }
+
   @Test
   public void serializeToCsv_collections() throws Exception {
     ClassWithCollections row1 = new ClassWithCollections(
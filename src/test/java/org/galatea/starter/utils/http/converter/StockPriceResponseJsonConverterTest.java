@@ -0,0 +1,92 @@
+package org.galatea.starter.utils.http.converter;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.entrypoint.messagecontracts.StockPriceResponse;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+public class StockPriceResponseJsonConverterTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final StockPriceResponseJsonConverter converter = new StockPriceResponseJsonConverter();
+
+  private static List<StockPrice> stockPrices() {
+    List<StockPrice> stockPrices = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      BigDecimal price = new BigDecimal("1" + i + ".0125");
+      stockPrices.add(StockPrice.builder()
+          .symbol("IBM")
+          .date(LocalDate.of(2020, 6, 12).minusDays(i))
+          .prices(TestDataGenerator.defaultStockPriceInfoData()
+              .open(price).high(price).low(price).close(price).volume(1000 + i).build())
+          .build());
+    }
+    return stockPrices;
+  }
+
+  private static StockPriceResponse response(final List<StockPrice> data) {
+    return StockPriceResponse.builder()
+        .metadata(StockPriceResponse.Metadata.builder()
+            .description("Daily stock prices")
+            .symbol("IBM")
+            .days(data.size())
+            .timezone("America/New_York").build())
+        .data(data).build();
+  }
+
+  private String write(final StockPriceResponse response) throws Exception {
+    MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+    converter.write(response, MediaType.APPLICATION_JSON, outputMessage);
+    return outputMessage.getBodyAsString();
+  }
+
+  private JsonNode jackson(final StockPriceResponse response) throws Exception {
+    return objectMapper.readTree(objectMapper.writeValueAsString(response));
+  }
+
+  /**
+   * The converter writes the same JSON that Jackson would.
+   */
+  @Test
+  public void writeListMatchesJackson() throws Exception {
+    StockPriceResponse response = response(stockPrices());
+
+    assertEquals(jackson(response), objectMapper.readTree(write(response)));
+  }
+
+  /**
+   * Writing straight from the columns of a series gives the same JSON as writing its elements.
+   */
+  @Test
+  public void writeSeriesMatchesJackson() throws Exception {
+    StockPriceResponse response = response(StockPriceSeries.of("IBM", stockPrices()));
+
+    assertEquals(jackson(response(stockPrices())), objectMapper.readTree(write(response)));
+  }
+
+  /**
+   * The date range of a range request is written the same way Jackson writes it.
+   */
+  @Test
+  public void writeRangeMetadataMatchesJackson() throws Exception {
+    StockPriceResponse response = StockPriceResponse.builder()
+        .metadata(response(stockPrices()).getMetadata().toBuilder()
+            .from(LocalDate.of(2020, 6, 8))
+            .to(LocalDate.of(2020, 6, 12)).build())
+        .data(stockPrices()).build();
+
+    assertEquals(jackson(response), objectMapper.readTree(write(response)));
+  }
+}
@@ -0,0 +1,154 @@
+package org.galatea.starter.utils.indicator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.galatea.starter.domain.FixedPointPrice;
+import org.galatea.starter.domain.StockPrice;
+import org.galatea.starter.domain.StockPriceSeries;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+
+/**
+ * Compares each incremental calculator with a direct computation over the window.
+ */
+public class IndicatorCalculatorTest {
+
+  private static final int DAYS = 300;
+
+  private static final int WINDOW = 14;
+
+  private static final double DELTA = 1e-9;
+
+  private final StockPriceSeries series = randomWalk(DAYS);
+
+  // close, high and low prices, oldest first
+  private final double[] closes = new double[DAYS];
+  private final double[] highs = new double[DAYS];
+  private final double[] lows = new double[DAYS];
+
+  {
+    for (int i = 0; i < DAYS; i++) {
+      closes[i] = FixedPointPrice.toDouble(series.getClose(DAYS - 1 - i));
+      highs[i] = FixedPointPrice.toDouble(series.getHigh(DAYS - 1 - i));
+      lows[i] = FixedPointPrice.toDouble(series.getLow(DAYS - 1 - i));
+    }
+  }
+
+  private static StockPriceSeries randomWalk(final int days) {
+    Random random = new Random(42);
+    List<StockPrice> stockPrices = new ArrayList<>();
+    double close = 100;
+    for (int i = 0; i < days; i++) {
+      double open = close;
+      close = Math.max(1, close + random.nextGaussian());
+      double high = Math.max(open, close) + random.nextDouble();
+      double low = Math.min(open, close) - random.nextDouble();
+      stockPrices.add(StockPrice.builder()
+          .symbol("IBM")
+          .date(LocalDate.of(2020, 1, 1).plusDays(i))
+          .prices(TestDataGenerator.defaultStockPriceInfoData()
+              .open(BigDecimal.valueOf(open))
+              .high(BigDecimal.valueOf(high))
+              .low(BigDecimal.valueOf(low))
+              .close(BigDecimal.valueOf(close)).build())
+          .build());
+    }
+    return StockPriceSeries.of("IBM", stockPrices);
+  }
+
+  /*
+   * Run the calculator over the whole series and return its values, oldest first.
+   */
+  private double[] run(final IndicatorCalculator calculator) {
+    double[] values = new double[DAYS];
+    for (int i = 0; i < DAYS; i++) {
+      values[i] = calculator.next(series, DAYS - 1 - i);
+    }
+    return values;
+  }
+
+  private double mean(final int from, final int to) {
+    double sum = 0;
+    for (int i = from; i < to; i++) {
+      sum += closes[i];
+    }
+    return sum / (to - from);
+  }
+
+  @Test
+  public void testSimpleMovingAverage() {
+    double[] values = run(new SimpleMovingAverage(WINDOW));
+
+    for (int i = 0; i < WINDOW - 1; i++) {
+      assertTrue(Double.isNaN(values[i]));
+    }
+    for (int i = WINDOW - 1; i < DAYS; i++) {
+      assertEquals(mean(i - WINDOW + 1, i + 1), values[i], DELTA);
+    }
+  }
+
+  @Test
+  public void testExponentialMovingAverage() {
+    double[] values = run(new ExponentialMovingAverage(WINDOW));
+
+    double alpha = 2.0 / (WINDOW + 1);
+    double expected = mean(0, WINDOW);
+    assertTrue(Double.isNaN(values[WINDOW - 2]));
+    assertEquals(expected, values[WINDOW - 1], DELTA);
+    for (int i = WINDOW; i < DAYS; i++) {
+      expected = alpha * closes[i] + (1 - alpha) * expected;
+      assertEquals(expected, values[i], DELTA);
+    }
+  }
+
+  @Test
+  public void testRollingVolatility() {
+    double[] values = run(new RollingVolatility(WINDOW));
+
+    assertTrue(Double.isNaN(values[WINDOW - 1]));
+    for (int i = WINDOW; i < DAYS; i++) {
+      double[] returns = new double[WINDOW];
+      double mean = 0;
+      for (int j = 0; j < WINDOW; j++) {
+        returns[j] = Math.log(closes[i - j] / closes[i - j - 1]);
+        mean += returns[j] / WINDOW;
+      }
+      double squares = 0;
+      for (double r : returns) {
+        squares += (r - mean) * (r - mean);
+      }
+      assertEquals(Math.sqrt(squares / (WINDOW - 1)), values[i], DELTA);
+    }
+  }
+
+  @Test
+  public void testAverageTrueRange() {
+    double[] values = run(new AverageTrueRange(WINDOW));
+
+    assertTrue(Double.isNaN(values[WINDOW - 1]));
+    double expected = 0;
+    for (int i = 1; i < DAYS; i++) {
+      double trueRange = Math.max(highs[i] - lows[i],
+          Math.max(Math.abs(highs[i] - closes[i - 1]), Math.abs(lows[i] - closes[i - 1])));
+      if (i <= WINDOW) {
+        expected += trueRange / WINDOW;
+      } else {
+        expected = (expected * (WINDOW - 1) + trueRange) / WINDOW;
+      }
+      if (i >= WINDOW) {
+        assertEquals(expected, values[i], DELTA);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testVolatilityWindowTooSmall() {
+    new RollingVolatility(1);
+  }
+}
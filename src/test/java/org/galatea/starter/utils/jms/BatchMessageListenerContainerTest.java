@@ -0,0 +1,230 @@
+package org.galatea.starter.utils.jms;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.core.JmsTemplate;
+
+public class BatchMessageListenerContainerTest {
+
+  private static final String QUEUE = "batch.test";
+
+  private ActiveMQConnectionFactory connectionFactory;
+
+  // keeps the embedded broker, and the messages sent to it, alive until the test is done
+  private Connection brokerConnection;
+
+  private JmsTemplate jmsTemplate;
+
+  private BatchMessageListenerContainer container;
+
+  // sizes and texts of the batches that were committed
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+  private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+  private final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+
+  @Before
+  public void setup() throws JMSException {
+    connectionFactory = new ActiveMQConnectionFactory(
+        "vm://batch-test?broker.persistent=false&broker.useJmx=false");
+    connectionFactory.getRedeliveryPolicy().setInitialRedeliveryDelay(0);
+    connectionFactory.getRedeliveryPolicy().setMaximumRedeliveries(2);
+    jmsTemplate = new JmsTemplate(connectionFactory);
+    jmsTemplate.setReceiveTimeout(5000);
+    brokerConnection = connectionFactory.createConnection();
+  }
+
+  @After
+  public void cleanup() throws JMSException {
+    if (container != null) {
+      container.stop();
+    }
+    brokerConnection.close();
+  }
+
+  private void start(final int maxBatchSize, final BatchMessageListener listener) {
+    start(connectionFactory, maxBatchSize, listener);
+  }
+
+  private void start(final ConnectionFactory factory, final int maxBatchSize,
+      final BatchMessageListener listener) {
+    BiConsumer<Message, Exception> failedMessageConsumer =
+        (message, e) -> failed.add(text(message));
+    container = BatchMessageListenerContainer.builder()
+        .connectionFactory(factory)
+        .destinationName(QUEUE)
+        .listener(listener)
+        .failedMessageConsumer(failedMessageConsumer)
+        .maxBatchSize(maxBatchSize)
+        .maxWaitMillis(50)
+        .concurrentConsumers(1)
+        .build();
+    container.start();
+  }
+
+  private void send(final String... texts) {
+    for (String text : texts) {
+      jmsTemplate.convertAndSend(QUEUE, text);
+    }
+  }
+
+  /**
+   * Record a batch as processed, unless it holds a message with the given text.
+   */
+  private BatchMessageListener failingOn(final String badText, final boolean jmsException) {
+    return messages -> {
+      List<String> texts = new ArrayList<>();
+      for (Message message : messages) {
+        texts.add(text(message));
+      }
+      if (texts.contains(badText)) {
+        if (jmsException) {
+          throw new JMSException("bad message");
+        }
+        throw new IllegalStateException("bad message");
+      }
+      batchSizes.add(messages.size());
+      processed.addAll(texts);
+    };
+  }
+
+  private static String text(final Message message) {
+    try {
+      return ((TextMessage) message).getText();
+    } catch (JMSException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * A backlog is drained in batches of up to maxBatchSize, in order.
+   */
+  @Test
+  public void drainsBacklogInBatches() {
+    List<String> texts = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      texts.add("m" + i);
+    }
+    send(texts.toArray(new String[0]));
+
+    start(10, failingOn(null, false));
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> processed, hasSize(25));
+    assertEquals(texts, processed);
+    assertEquals(Arrays.asList(10, 10, 5), batchSizes);
+  }
+
+  /**
+   * A message on its own is handed over once maxWaitMillis have passed.
+   */
+  @Test
+  public void handsOverPartialBatch() {
+    start(10, failingOn(null, false));
+
+    send("only");
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> processed, hasSize(1));
+    assertEquals(Collections.singletonList(1), batchSizes);
+  }
+
+  /**
+   * When a batch fails, its messages are retried one at a time, so only the bad message fails.
+   * It is redelivered until the broker dead-letters it.
+   */
+  @Test
+  public void retriesFailedBatchOneAtATime() {
+    send("a", "bad", "c");
+
+    start(10, failingOn("bad", false));
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> processed, containsInAnyOrder("a", "c"));
+    Message deadLetter = jmsTemplate.receive("ActiveMQ.DLQ");
+    assertNotNull(deadLetter);
+    assertEquals("bad", text(deadLetter));
+    assertTrue(failed.isEmpty());
+  }
+
+  /**
+   * A message that fails on its own with a JMSException goes to the failed message consumer and
+   * isn't redelivered.
+   */
+  @Test
+  public void passesJmsFailureToFailedMessageConsumer() {
+    send("a", "bad", "c");
+
+    start(10, failingOn("bad", true));
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> processed, containsInAnyOrder("a", "c"));
+    await().atMost(10, TimeUnit.SECONDS).until(() -> failed, hasSize(1));
+    assertEquals("bad", failed.get(0));
+  }
+
+  /**
+   * A redelivered message that fails again at the end of a batch is sent back to the queue, and
+   * committed with the rest of the batch, which isn't handed over again.
+   */
+  @Test
+  public void requeuesRedeliveredMessageThatFailsAtEndOfBatch() throws JMSException {
+    TextMessage first = mockTextMessage("a", false);
+    TextMessage redelivered = mockTextMessage("bad", true);
+    ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+    Connection mockConnection = mock(Connection.class);
+    Session mockSession = mock(Session.class);
+    MessageConsumer mockConsumer = mock(MessageConsumer.class);
+    MessageProducer mockProducer = mock(MessageProducer.class);
+    when(mockConnectionFactory.createConnection()).thenReturn(mockConnection);
+    when(mockConnection.createSession(true, Session.SESSION_TRANSACTED)).thenReturn(mockSession);
+    when(mockSession.createConsumer(any())).thenReturn(mockConsumer);
+    when(mockSession.createProducer(any())).thenReturn(mockProducer);
+    when(mockConsumer.receive(anyLong())).thenReturn(first, redelivered, null);
+
+    start(mockConnectionFactory, 10, failingOn("bad", false));
+
+    verify(mockProducer, timeout(5000)).send(redelivered);
+    verify(mockSession, timeout(5000)).commit();
+    verify(mockSession, never()).rollback();
+    verify(redelivered).setIntProperty(BatchMessageListenerContainer.REQUEUES_PROPERTY, 1);
+    assertEquals(Collections.singletonList("a"), processed);
+    assertTrue(failed.isEmpty());
+  }
+
+  private static TextMessage mockTextMessage(final String text, final boolean redelivered)
+      throws JMSException {
+    TextMessage message = mock(TextMessage.class);
+    when(message.getText()).thenReturn(text);
+    when(message.getJMSRedelivered()).thenReturn(redelivered);
+    when(message.getPropertyNames()).thenReturn(Collections.emptyEnumeration());
+    return message;
+  }
+}
@@ -0,0 +1,97 @@
+package org.galatea.starter.utils.jms;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.MessageListener;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.core.JmsTemplate;
+
+public class ConsumerScalerTest {
+
+  private static final String QUEUE = "consumer.scaler.test";
+
+  private ActiveMQConnectionFactory connectionFactory;
+
+  // keeps the embedded broker, and the messages sent to it, alive until the test is done
+  private Connection brokerConnection;
+
+  private FuseMessageListenerContainer container;
+
+  @Before
+  public void setup() throws JMSException {
+    connectionFactory = new ActiveMQConnectionFactory(
+        "vm://consumer-scaler-test?broker.persistent=false&broker.useJmx=false");
+    brokerConnection = connectionFactory.createConnection();
+  }
+
+  @After
+  public void cleanup() throws JMSException {
+    if (container != null) {
+      container.shutdown();
+    }
+    brokerConnection.close();
+  }
+
+  /**
+   * Enough consumers to process the backlog within the target time, within the concurrency.
+   */
+  @Test
+  public void desiredConsumers() {
+    long target = TimeUnit.MILLISECONDS.toNanos(100);
+    double tenMillis = TimeUnit.MILLISECONDS.toNanos(10);
+
+    assertEquals(3, ConsumerScaler.desiredConsumers(25, tenMillis, target, 1, 5));
+    assertEquals(5, ConsumerScaler.desiredConsumers(1000, tenMillis, target, 1, 5));
+    assertEquals(2, ConsumerScaler.desiredConsumers(0, tenMillis, target, 2, 5));
+  }
+
+  /**
+   * A backlog raises the minimum number of consumers, and starts them, and the minimum comes back
+   * down once the backlog is processed.
+   */
+  @Test
+  public void scalesToBacklog() {
+    ListenerContainerSettings settings = new ListenerContainerSettings();
+    settings.setConcurrency("1-4");
+    settings.setPrefetch(1);
+    settings.setReceiveTimeout(100);
+    settings.getAdaptive().setEnabled(true);
+    settings.getAdaptive().setInterval(100);
+    settings.getAdaptive().setTargetDrainTime(100);
+
+    AtomicInteger processed = new AtomicInteger();
+    container = new FuseMessageListenerContainer((message, e) -> { });
+    container.setConnectionFactory(connectionFactory);
+    container.setDestinationName(QUEUE);
+    container.setMessageListener((MessageListener) message -> {
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      processed.incrementAndGet();
+    });
+    container.applySettings(settings);
+    container.afterPropertiesSet();
+
+    JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+    for (int i = 0; i < 200; i++) {
+      jmsTemplate.convertAndSend(QUEUE, "m" + i);
+    }
+    container.start();
+
+    // 200 messages at 20ms each need 40 consumers to be processed in 100ms, so all 4 are used
+    await().atMost(10, TimeUnit.SECONDS).until(() -> container.getConcurrentConsumers() == 4
+        && container.getScheduledConsumerCount() == 4);
+    await().atMost(20, TimeUnit.SECONDS).until(() -> processed.get() == 200);
+    await().atMost(10, TimeUnit.SECONDS).until(() -> container.getConcurrentConsumers() == 1);
+  }
+}
@@ -0,0 +1,233 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.jms.JMSException;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQObjectMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.galatea.starter.utils.jms.DeadLetter.BodyType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeadLetterLogTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static ActiveMQTextMessage textMessage(final String text) throws JMSException {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setText(text);
+    return message;
+  }
+
+  private static ActiveMQBytesMessage bytesMessage(final byte[] bytes) throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(bytes);
+    message.reset();
+    return message;
+  }
+
+  private static List<DeadLetter> readAll(final DeadLetterLog deadLetterLog, final String queue)
+      throws IOException {
+    List<DeadLetter> deadLetters = new ArrayList<>();
+    deadLetterLog.read(0, Long.MAX_VALUE, queue, deadLetters::add);
+    return deadLetters;
+  }
+
+  private static List<Long> sequences(final List<DeadLetter> deadLetters) {
+    return deadLetters.stream().map(DeadLetter::getSequence).collect(Collectors.toList());
+  }
+
+  @Test
+  public void appendAndRead() throws IOException, JMSException {
+    DeadLetterLog deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 4096);
+
+    assertEquals(0, deadLetterLog.append("json", textMessage("{\"a\":1}"),
+        new JMSException("bad json")));
+    assertEquals(1, deadLetterLog.append("proto", bytesMessage(new byte[] {1, 2, 3}),
+        new JMSException("bad proto")));
+
+    List<DeadLetter> deadLetters = readAll(deadLetterLog, null);
+    assertEquals(2, deadLetters.size());
+
+    DeadLetter text = deadLetters.get(0);
+    assertEquals(0, text.getSequence());
+    assertEquals("json", text.getDestination());
+    assertEquals(BodyType.TEXT, text.getBodyType());
+    assertEquals("{\"a\":1}", new String(text.getBody(), StandardCharsets.UTF_8));
+    assertEquals(new JMSException("bad json").toString(), text.getError());
+
+    DeadLetter bytes = deadLetters.get(1);
+    assertEquals(1, bytes.getSequence());
+    assertEquals("proto", bytes.getDestination());
+    assertEquals(BodyType.BYTES, bytes.getBodyType());
+    assertArrayEquals(new byte[] {1, 2, 3}, bytes.getBody());
+  }
+
+  /**
+   * The body of a bytes message is kept whole, even if the listener read some of it.
+   */
+  @Test
+  public void appendPartlyReadBytesMessage() throws IOException, JMSException {
+    DeadLetterLog deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 4096);
+    ActiveMQBytesMessage message = bytesMessage(new byte[] {1, 2, 3});
+    message.readByte();
+
+    deadLetterLog.append("proto", message, new JMSException("bad proto"));
+
+    assertArrayEquals(new byte[] {1, 2, 3}, readAll(deadLetterLog, null).get(0).getBody());
+  }
+
+  @Test
+  public void readByDestinationAndSequence() throws IOException, JMSException {
+    DeadLetterLog deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 4096);
+    for (int i = 0; i < 6; i++) {
+      deadLetterLog.append(i % 2 == 0 ? "json" : "proto", textMessage("m" + i),
+          new JMSException("failed"));
+    }
+
+    assertEquals(Arrays.asList(0L, 2L, 4L), sequences(readAll(deadLetterLog, "json")));
+
+    List<DeadLetter> deadLetters = new ArrayList<>();
+    deadLetterLog.read(1, 5, "proto", deadLetters::add);
+    assertEquals(Arrays.asList(1L, 3L), sequences(deadLetters));
+  }
+
+  /**
+   * A new segment is started when a message doesn't fit in the current one.
+   */
+  @Test
+  public void rollsSegments() throws IOException, JMSException {
+    Path directory = folder.getRoot().toPath();
+    DeadLetterLog deadLetterLog = new DeadLetterLog(directory, 256);
+    for (int i = 0; i < 10; i++) {
+      deadLetterLog.append("json", textMessage("message " + i), new JMSException("failed"));
+    }
+
+    try (Stream<Path> files = Files.list(directory)) {
+      assertTrue(files.count() > 1);
+    }
+    assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L),
+        sequences(readAll(deadLetterLog, null)));
+
+    List<DeadLetter> deadLetters = new ArrayList<>();
+    deadLetterLog.read(5, 8, null, deadLetters::add);
+    assertEquals(Arrays.asList(5L, 6L, 7L), sequences(deadLetters));
+  }
+
+  /**
+   * A reopened log continues after the messages already in it.
+   */
+  @Test
+  public void reopen() throws IOException, JMSException {
+    Path directory = folder.getRoot().toPath();
+    DeadLetterLog deadLetterLog = new DeadLetterLog(directory, 4096);
+    deadLetterLog.append("json", textMessage("a"), new JMSException("failed"));
+    deadLetterLog.append("json", textMessage("b"), new JMSException("failed"));
+    deadLetterLog.close();
+
+    DeadLetterLog reopened = new DeadLetterLog(directory, 4096);
+    assertEquals(2, reopened.getNextSequence());
+    assertEquals(2, reopened.append("json", textMessage("c"), new JMSException("failed")));
+    assertEquals(Arrays.asList(0L, 1L, 2L), sequences(readAll(reopened, null)));
+  }
+
+  /**
+   * Replayed records below the first one that hasn't been replayed move the watermark, and the
+   * replayed records survive reopening the log.
+   */
+  @Test
+  public void markReplayed() throws IOException, JMSException {
+    Path directory = folder.getRoot().toPath();
+    DeadLetterLog deadLetterLog = new DeadLetterLog(directory, 4096);
+    for (String text : Arrays.asList("a", "b", "c", "d")) {
+      deadLetterLog.append("json", textMessage(text), new JMSException("failed"));
+    }
+
+    deadLetterLog.markReplayed(Arrays.asList(0L, 2L));
+    assertEquals(1, deadLetterLog.getReplayedWatermark());
+    deadLetterLog.markReplayed(Arrays.asList(1L));
+    assertEquals(3, deadLetterLog.getReplayedWatermark());
+    deadLetterLog.close();
+
+    DeadLetterLog reopened = new DeadLetterLog(directory, 4096);
+    assertEquals(3, reopened.getReplayedWatermark());
+    assertTrue(reopened.isReplayed(2));
+    assertFalse(reopened.isReplayed(3));
+    // the replayed file isn't taken for a segment
+    assertEquals(4, reopened.getNextSequence());
+  }
+
+  /**
+   * Segments whose records have all been replayed are deleted, apart from the last one.
+   */
+  @Test
+  public void deletesReplayedSegments() throws IOException, JMSException {
+    Path directory = folder.getRoot().toPath();
+    DeadLetterLog deadLetterLog = new DeadLetterLog(directory, 256);
+    for (int i = 0; i < 10; i++) {
+      deadLetterLog.append("json", textMessage("message " + i), new JMSException("failed"));
+    }
+    long segmentCount = segmentCount(directory);
+
+    deadLetterLog.markReplayed(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L));
+    List<Long> remaining = sequences(readAll(deadLetterLog, null));
+    assertTrue(segmentCount(directory) < segmentCount);
+    assertTrue(remaining.get(0) > 0 && remaining.get(0) <= 6);
+    assertEquals(9L, (long) remaining.get(remaining.size() - 1));
+
+    deadLetterLog.markReplayed(Arrays.asList(6L, 7L, 8L, 9L));
+    assertEquals(1, segmentCount(directory));
+    deadLetterLog.close();
+
+    DeadLetterLog reopened = new DeadLetterLog(directory, 256);
+    assertEquals(10, reopened.getNextSequence());
+    assertEquals(10, reopened.getReplayedWatermark());
+  }
+
+  private static long segmentCount(final Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.toString().endsWith(".dlq")).count();
+    }
+  }
+
+  /**
+   * A message that can't be appended is logged rather than thrown.
+   */
+  @Test
+  public void tryAppendUnsupportedMessage() throws IOException {
+    DeadLetterLog deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 4096);
+
+    assertFalse(deadLetterLog.tryAppend("json", new ActiveMQObjectMessage(),
+        new JMSException("failed")));
+    assertEquals(0, deadLetterLog.getNextSequence());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void appendTooLarge() throws IOException, JMSException {
+    DeadLetterLog deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 256);
+
+    deadLetterLog.append("proto", bytesMessage(new byte[256]), new JMSException("failed"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void appendUnsupportedMessage() throws IOException, JMSException {
+    DeadLetterLog deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 4096);
+
+    deadLetterLog.append("json", new ActiveMQObjectMessage(), new JMSException("failed"));
+  }
+}
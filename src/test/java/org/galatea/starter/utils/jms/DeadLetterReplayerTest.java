@@ -0,0 +1,179 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeadLetterReplayerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private DeadLetterLog deadLetterLog;
+
+  // texts of the batches handed to the json listener
+  private final List<List<String>> jsonBatches = new ArrayList<>();
+
+  // bodies of the batches handed to the proto listener
+  private final List<List<String>> protoBatches = new ArrayList<>();
+
+  @Before
+  public void setup() throws IOException {
+    deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 4096);
+  }
+
+  private DeadLetterReplayer replayer(final int batchSize) {
+    return new DeadLetterReplayer(deadLetterLog, ImmutableMap.of(
+        "json", messages -> jsonBatches.add(texts(messages)),
+        "proto", messages -> protoBatches.add(bodies(messages))),
+        batchSize);
+  }
+
+  private void append(final String queue, final String text) throws IOException, JMSException {
+    if ("json".equals(queue)) {
+      ActiveMQTextMessage message = new ActiveMQTextMessage();
+      message.setText(text);
+      deadLetterLog.append(queue, message, new JMSException("failed"));
+    } else {
+      ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+      message.writeBytes(text.getBytes());
+      message.reset();
+      deadLetterLog.append(queue, message, new JMSException("failed"));
+    }
+  }
+
+  private static List<String> texts(final List<Message> messages) throws JMSException {
+    List<String> texts = new ArrayList<>();
+    for (Message message : messages) {
+      texts.add(((TextMessage) message).getText());
+    }
+    return texts;
+  }
+
+  private static List<String> bodies(final List<Message> messages) throws JMSException {
+    List<String> bodies = new ArrayList<>();
+    for (Message message : messages) {
+      bodies.add(new String(BytesMessageBody.toByteArray((BytesMessage) message)));
+    }
+    return bodies;
+  }
+
+  @Test
+  public void replaysInBatches() throws IOException, JMSException {
+    for (int i = 0; i < 5; i++) {
+      append("json", "j" + i);
+    }
+
+    DeadLetterReplayer.Result result = replayer(2).replay("json", 0, Long.MAX_VALUE);
+
+    assertEquals(Arrays.asList(Arrays.asList("j0", "j1"), Arrays.asList("j2", "j3"),
+        Collections.singletonList("j4")), jsonBatches);
+    assertEquals(5, result.getReplayed());
+    assertEquals(Collections.emptyList(), result.getFailedSequences());
+    assertEquals(5, result.getNextSequence());
+  }
+
+  /**
+   * Without a destination, the messages of each destination go to that destination's listener.
+   */
+  @Test
+  public void replaysAllDestinations() throws IOException, JMSException {
+    append("json", "j0");
+    append("proto", "p0");
+    append("json", "j1");
+    append("other", "o0");
+
+    DeadLetterReplayer.Result result = replayer(10).replay(null, 0, Long.MAX_VALUE);
+
+    assertEquals(Collections.singletonList(Arrays.asList("j0", "j1")), jsonBatches);
+    assertEquals(Collections.singletonList(Collections.singletonList("p0")), protoBatches);
+    assertEquals(3, result.getReplayed());
+  }
+
+  @Test
+  public void replaysSequenceRange() throws IOException, JMSException {
+    for (int i = 0; i < 5; i++) {
+      append("json", "j" + i);
+    }
+
+    DeadLetterReplayer.Result result = replayer(10).replay("json", 1, 3);
+
+    assertEquals(Collections.singletonList(Arrays.asList("j1", "j2")), jsonBatches);
+    assertEquals(3, result.getNextSequence());
+  }
+
+  /**
+   * A failed batch is replayed a message at a time, and the messages that still fail are reported.
+   */
+  @Test
+  public void reportsFailedMessages() throws IOException, JMSException {
+    for (int i = 0; i < 4; i++) {
+      append("json", i == 2 ? "bad" : "j" + i);
+    }
+    DeadLetterReplayer replayer = new DeadLetterReplayer(deadLetterLog,
+        ImmutableMap.of("json", messages -> {
+          List<String> texts = texts(messages);
+          if (texts.contains("bad")) {
+            throw new IllegalStateException("bad message");
+          }
+          jsonBatches.add(texts);
+        }), 10);
+
+    DeadLetterReplayer.Result result = replayer.replay("json", 0, Long.MAX_VALUE);
+
+    assertEquals(Arrays.asList("j0", "j1", "j3"), jsonBatches.stream()
+        .flatMap(List::stream).collect(Collectors.toList()));
+    assertEquals(3, result.getReplayed());
+    assertEquals(Collections.singletonList(2L), result.getFailedSequences());
+  }
+
+  /**
+   * Messages that were replayed are skipped by the next replay, and those that failed aren't.
+   */
+  @Test
+  public void skipsReplayedMessages() throws IOException, JMSException {
+    for (int i = 0; i < 4; i++) {
+      append("json", i == 2 ? "bad" : "j" + i);
+    }
+    List<String> failing = new ArrayList<>(Collections.singletonList("bad"));
+    DeadLetterReplayer replayer = new DeadLetterReplayer(deadLetterLog,
+        ImmutableMap.of("json", messages -> {
+          List<String> texts = texts(messages);
+          if (texts.stream().anyMatch(failing::contains)) {
+            throw new IllegalStateException("bad message");
+          }
+          jsonBatches.add(texts);
+        }), 10);
+    replayer.replay("json", 0, Long.MAX_VALUE);
+    append("json", "j4");
+    jsonBatches.clear();
+    failing.clear();
+
+    DeadLetterReplayer.Result result = replayer.replay("json", 0, Long.MAX_VALUE);
+
+    assertEquals(Collections.singletonList(Arrays.asList("bad", "j4")), jsonBatches);
+    assertEquals(2, result.getReplayed());
+    assertEquals(5, deadLetterLog.getReplayedWatermark());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void replayUnknownDestination() throws IOException {
+    replayer(10).replay("other", 0, Long.MAX_VALUE);
+  }
+}
@@ -0,0 +1,158 @@
+package org.galatea.starter.utils.jms;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.SessionAwareMessageListener;
+
+public class FuseMessageListenerContainerTest {
+
+  private static final String QUEUE = "fuse.container.test";
+
+  private ActiveMQConnectionFactory connectionFactory;
+
+  // keeps the embedded broker, and the messages sent to it, alive until the test is done
+  private Connection brokerConnection;
+
+  private FuseMessageListenerContainer container;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Before
+  public void setup() throws JMSException {
+    connectionFactory = new ActiveMQConnectionFactory(
+        "vm://fuse-container-test?broker.persistent=false&broker.useJmx=false");
+    brokerConnection = connectionFactory.createConnection();
+  }
+
+  @After
+  public void cleanup() throws JMSException {
+    if (container != null) {
+      container.shutdown();
+    }
+    brokerConnection.close();
+  }
+
+  private void createContainer(final ListenerContainerSettings settings,
+      final MessageListener listener) {
+    container = new FuseMessageListenerContainer((message, e) -> { });
+    container.setConnectionFactory(connectionFactory);
+    container.setDestinationName(QUEUE);
+    container.setMessageListener(listener);
+    container.applySettings(settings);
+    container.afterPropertiesSet();
+  }
+
+  /**
+   * The settings are applied to the container.
+   */
+  @Test
+  public void appliesSettings() {
+    ListenerContainerSettings settings = new ListenerContainerSettings();
+    settings.setConcurrency("2-4");
+    settings.setReceiveTimeout(200);
+    settings.setIdleConsumerLimit(3);
+    settings.setIdleTaskExecutionLimit(5);
+    settings.setCacheLevel("session");
+
+    createContainer(settings, message -> { });
+
+    assertEquals(2, container.getConcurrentConsumers());
+    assertEquals(4, container.getMaxConcurrentConsumers());
+    assertEquals(3, container.getIdleConsumerLimit());
+    assertEquals(5, container.getIdleTaskExecutionLimit());
+    assertEquals(DefaultMessageListenerContainer.CACHE_SESSION, container.getCacheLevel());
+  }
+
+  /**
+   * The prefetch is set on the queue's consumers through the destination.
+   */
+  @Test
+  public void setsPrefetchOnDestination() throws JMSException {
+    ListenerContainerSettings settings = new ListenerContainerSettings();
+    settings.setPrefetch(7);
+    createContainer(settings, message -> { });
+
+    Session session = brokerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    Destination destination = container.resolveDestinationName(session, QUEUE);
+
+    assertEquals(QUEUE, ((ActiveMQDestination) destination).getPhysicalName());
+    assertEquals("7", ((ActiveMQDestination) destination).getOptions()
+        .get("consumer.prefetchSize"));
+  }
+
+  /**
+   * Messages are received from the queue with the prefetch set.
+   */
+  @Test
+  public void receivesWithPrefetch() {
+    ListenerContainerSettings settings = new ListenerContainerSettings();
+    settings.setPrefetch(1);
+    List<String> received = Collections.synchronizedList(new ArrayList<>());
+    createContainer(settings, message -> {
+      try {
+        received.add(((TextMessage) message).getText());
+      } catch (JMSException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    container.start();
+
+    JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+    jmsTemplate.convertAndSend(QUEUE, "a");
+    jmsTemplate.convertAndSend(QUEUE, "b");
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> received, contains("a", "b"));
+  }
+
+  /**
+   * Messages that fail with a JMSException are appended to the dead letter log, and passed to the
+   * failed message consumer.
+   */
+  @Test
+  public void appendsFailedMessagesToDeadLetterLog() throws IOException {
+    DeadLetterLog deadLetterLog = new DeadLetterLog(folder.getRoot().toPath(), 4096);
+    List<String> failed = Collections.synchronizedList(new ArrayList<>());
+    container = new FuseMessageListenerContainer((message, e) -> failed.add(e.getMessage()));
+    container.setConnectionFactory(connectionFactory);
+    container.setDestinationName(QUEUE);
+    container.setMessageListener((SessionAwareMessageListener<TextMessage>) (message, session) -> {
+      throw new JMSException("can't handle " + message.getText());
+    });
+    container.setDeadLetterLog(deadLetterLog);
+    container.applySettings(new ListenerContainerSettings());
+    container.afterPropertiesSet();
+    container.start();
+
+    new JmsTemplate(connectionFactory).convertAndSend(QUEUE, "a");
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> failed, contains("can't handle a"));
+    List<DeadLetter> deadLetters = new ArrayList<>();
+    deadLetterLog.read(0, Long.MAX_VALUE, QUEUE, deadLetters::add);
+    assertEquals(1, deadLetters.size());
+    assertEquals("a", new String(deadLetters.get(0).getBody(), StandardCharsets.UTF_8));
+  }
+}
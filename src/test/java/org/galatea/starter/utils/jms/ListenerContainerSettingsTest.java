@@ -0,0 +1,67 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+public class ListenerContainerSettingsTest {
+
+  private static Binder binder() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("jms.listener.concurrency", "2-8");
+    properties.put("jms.listener.prefetch", "100");
+    properties.put("jms.listener.cache-level", "consumer");
+    properties.put("jms.listener.adaptive.enabled", "true");
+    properties.put("jms.listener.queues.sandbox.agreement.proto.prefetch", "10");
+    properties.put("jms.listener.queues.sandbox.agreement.proto.adaptive.target-drain-time",
+        "250");
+    return new Binder(new MapConfigurationPropertySource(properties));
+  }
+
+  /**
+   * Queues without their own settings get the defaults.
+   */
+  @Test
+  public void bindDefaults() {
+    ListenerContainerSettings settings =
+        ListenerContainerSettings.bind(binder(), "jms.listener", "sandbox.agreement");
+
+    assertEquals("2-8", settings.getConcurrency());
+    assertEquals(100, settings.getPrefetch());
+    assertEquals("CACHE_CONSUMER", settings.getCacheLevelName());
+    assertTrue(settings.getAdaptive().isEnabled());
+    assertEquals(1000, settings.getAdaptive().getTargetDrainTime());
+    // not set at all
+    assertEquals(1000, settings.getReceiveTimeout());
+  }
+
+  /**
+   * A queue's own settings override the defaults, and the rest of the defaults still apply.
+   */
+  @Test
+  public void bindQueueOverrides() {
+    ListenerContainerSettings settings =
+        ListenerContainerSettings.bind(binder(), "jms.listener", "sandbox.agreement.proto");
+
+    assertEquals(10, settings.getPrefetch());
+    assertEquals(250, settings.getAdaptive().getTargetDrainTime());
+    assertEquals("2-8", settings.getConcurrency());
+    assertTrue(settings.getAdaptive().isEnabled());
+  }
+
+  /**
+   * Queue names that aren't valid property names just get the defaults.
+   */
+  @Test
+  public void bindInvalidQueueName() {
+    ListenerContainerSettings settings =
+        ListenerContainerSettings.bind(binder(), "jms.listener", "queue_with$symbols");
+
+    assertEquals(100, settings.getPrefetch());
+  }
+}
@@ -0,0 +1,78 @@
+package org.galatea.starter.utils.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LatencyTimersTest {
+
+  private final LatencyTimers timers = new LatencyTimers(3, 2);
+
+  @Test
+  public void recordsPercentiles() {
+    for (int millis = 1; millis <= 100; millis++) {
+      timers.record("op", TimeUnit.MILLISECONDS.toNanos(millis), millis > 98);
+    }
+
+    List<LatencySnapshot> snapshots = timers.total();
+
+    assertEquals(1, snapshots.size());
+    LatencySnapshot snapshot = snapshots.get(0);
+    assertEquals("op", snapshot.getName());
+    assertEquals(100, snapshot.getCount());
+    assertEquals(2, snapshot.getFailures());
+    assertEquals(1, snapshot.getMin(), 0.01);
+    assertEquals(50, snapshot.getP50(), 0.1);
+    assertEquals(90, snapshot.getP90(), 0.1);
+    assertEquals(99, snapshot.getP99(), 0.1);
+    assertEquals(100, snapshot.getMax(), 0.1);
+    assertTrue(snapshot.getThroughput() > 0);
+  }
+
+  /**
+   * An interval holds only what was recorded since the last interval, while the total keeps
+   * everything.
+   */
+  @Test
+  public void startsNewInterval() {
+    timers.record("op", TimeUnit.MILLISECONDS.toNanos(10), false);
+    assertEquals(1, timers.interval().get(0).getCount());
+
+    timers.record("op", TimeUnit.MILLISECONDS.toNanos(20), true);
+    timers.record("op", TimeUnit.MILLISECONDS.toNanos(30), false);
+    LatencySnapshot interval = timers.interval().get(0);
+
+    assertEquals(2, interval.getCount());
+    assertEquals(1, interval.getFailures());
+    assertEquals(20, interval.getMin(), 0.1);
+    assertEquals(3, timers.total().get(0).getCount());
+    assertEquals(0, timers.interval().get(0).getCount());
+  }
+
+  @Test
+  public void recordsOverflow() {
+    timers.record("b", 1000, false);
+    timers.record("a", 1000, false);
+    timers.record("c", 1000, false);
+    timers.record("d", 1000, false);
+
+    List<LatencySnapshot> snapshots = timers.total();
+
+    assertEquals(3, snapshots.size());
+    assertEquals("a", snapshots.get(0).getName());
+    assertEquals("b", snapshots.get(1).getName());
+    assertEquals(LatencyTimers.OVERFLOW, snapshots.get(2).getName());
+    assertEquals(2, snapshots.get(2).getCount());
+  }
+
+  @Test
+  public void clampsLongLatencies() {
+    timers.record("op", TimeUnit.HOURS.toNanos(2), false);
+
+    assertEquals(TimeUnit.HOURS.toMillis(1), timers.total().get(0).getMax(),
+        TimeUnit.HOURS.toMillis(1) / 100.0);
+  }
+}
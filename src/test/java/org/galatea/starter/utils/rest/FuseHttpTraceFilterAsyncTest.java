@@ -0,0 +1,81 @@
+package org.galatea.starter.utils.rest;
+
+import static org.galatea.starter.entrypoint.BaseRestController.EXTERNAL_REQUEST_ID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.http.HttpServletResponse;
+import org.galatea.starter.utils.metrics.LatencySnapshot;
+import org.galatea.starter.utils.metrics.LatencyTimers;
+import org.junit.Test;
+import org.slf4j.MDC;
+import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
+import org.springframework.boot.actuate.trace.http.InMemoryHttpTraceRepository;
+import org.springframework.boot.actuate.trace.http.Include;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class FuseHttpTraceFilterAsyncTest {
+
+  private final PayloadCapturePolicy policy = PayloadCapturePolicy.builder()
+      .maxPayloadSize(16)
+      .pathsToSkip(path -> false)
+      .poolSize(1)
+      .build();
+
+  private final LatencyTimers latencyTimers = new LatencyTimers(2, 100);
+
+  private final FuseHttpTraceFilter filter = new FuseHttpTraceFilter(
+      new InMemoryHttpTraceRepository(), new HttpExchangeTracer(Include.defaultIncludes()),
+      path -> false, policy, latencyTimers);
+
+  /**
+   * A response written on another thread once the request thread has returned gets the audit
+   * headers of the request. Its payload is logged, releasing its buffer, and its latency is
+   * recorded once the request completes.
+   */
+  @Test
+  public void finishesAsyncRequestOnCompletion() throws Exception {
+    // the buffer the response body is captured into
+    byte[] buffer = policy.acquireBuffer();
+    policy.releaseBuffer(buffer);
+
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/prices");
+    request.setAsyncSupported(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicReference<HttpServletResponse> asyncResponse = new AtomicReference<>();
+    filter.doFilter(request, response, (chainRequest, chainResponse) -> {
+      MDC.put(EXTERNAL_REQUEST_ID, "external - ");
+      chainRequest.startAsync(chainRequest, chainResponse);
+      asyncResponse.set((HttpServletResponse) chainResponse);
+    });
+
+    Thread writer = new Thread(() -> {
+      try {
+        asyncResponse.get().setContentType(MediaType.APPLICATION_JSON_VALUE);
+        asyncResponse.get().getOutputStream().write("[1]".getBytes(StandardCharsets.UTF_8));
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    writer.start();
+    writer.join();
+
+    assertNotNull(response.getHeader("internalQueryId"));
+    assertEquals("external", response.getHeader("externalQueryId"));
+    assertTrue(latencyTimers.total().isEmpty());
+    assertFalse(buffer == policy.acquireBuffer());
+
+    request.getAsyncContext().complete();
+
+    LatencySnapshot latency = latencyTimers.total().get(0);
+    assertEquals("http GET unmapped", latency.getName());
+    assertEquals(1, latency.getCount());
+    assertTrue(buffer == policy.acquireBuffer());
+  }
+}
@@ -0,0 +1,131 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class PayloadCapturingWrapperTest {
+
+  private final PayloadCapturePolicy policy = PayloadCapturePolicy.builder()
+      .maxPayloadSize(5)
+      .pathsToSkip(path -> path.startsWith("/skipped"))
+      .contentTypesToSkip(Collections.singletonList(MediaType.parseMediaType("text/csv")))
+      .poolSize(2)
+      .build();
+
+  /**
+   * The whole request body is read, but only the first maxPayloadSize bytes are captured.
+   */
+  @Test
+  public void capturesRequestHead() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent("0123456789".getBytes(StandardCharsets.UTF_8));
+    PayloadCapturingRequestWrapper wrapper =
+        new PayloadCapturingRequestWrapper(request, policy.newCapture());
+
+    assertEquals("0123456789", IOUtils.toString(wrapper.getReader()));
+    assertEquals("01234", wrapper.getCapture().toString(StandardCharsets.UTF_8));
+    assertEquals(10, wrapper.getCapture().getSize());
+    assertTrue(wrapper.getCapture().isTruncated());
+  }
+
+  /**
+   * The response body goes straight through to the response, with its head captured.
+   */
+  @Test
+  public void capturesResponseHead() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    PayloadCapturingResponseWrapper wrapper =
+        new PayloadCapturingResponseWrapper(response, policy, () -> { });
+    wrapper.setContentType("application/json");
+
+    wrapper.getOutputStream().write("{\"a\":12345}".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("{\"a\":12345}", response.getContentAsString());
+    assertEquals("{\"a\":", wrapper.getCapture().toString(StandardCharsets.UTF_8));
+    assertEquals(11, wrapper.getCapture().getSize());
+  }
+
+  /**
+   * What is written through the writer reaches the response once the wrapper is finished.
+   */
+  @Test
+  public void capturesResponseWriter() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    PayloadCapturingResponseWrapper wrapper =
+        new PayloadCapturingResponseWrapper(response, policy, () -> { });
+    wrapper.setContentType("text/plain");
+    wrapper.setCharacterEncoding("UTF-8");
+
+    PrintWriter writer = wrapper.getWriter();
+    writer.print("abc");
+    wrapper.finish();
+
+    assertEquals("abc", response.getContentAsString());
+    assertEquals("abc", wrapper.getCapture().toString(StandardCharsets.UTF_8));
+    assertFalse(wrapper.getCapture().isTruncated());
+  }
+
+  @Test
+  public void skipsContentType() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    PayloadCapturingResponseWrapper wrapper =
+        new PayloadCapturingResponseWrapper(response, policy, () -> { });
+    wrapper.setContentType("text/csv;charset=UTF-8");
+
+    wrapper.getOutputStream().write("a,b\n".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("a,b\n", response.getContentAsString());
+    assertNull(wrapper.getCapture());
+  }
+
+  @Test
+  public void skipsPath() {
+    assertTrue(policy.capturesPath("/settlementEngine"));
+    assertFalse(policy.capturesPath("/skipped/path"));
+  }
+
+  /**
+   * beforeCommit runs once, before the first byte of the body is written to the response.
+   */
+  @Test
+  public void runsBeforeCommitOnce() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicInteger runs = new AtomicInteger();
+    PayloadCapturingResponseWrapper wrapper = new PayloadCapturingResponseWrapper(response,
+        policy, () -> {
+          assertEquals(0, response.getContentAsByteArray().length);
+          response.addHeader("audit", String.valueOf(runs.incrementAndGet()));
+        });
+
+    wrapper.getOutputStream().write('a');
+    wrapper.getOutputStream().write('b');
+    wrapper.finish();
+
+    assertEquals(1, runs.get());
+    assertEquals("1", response.getHeader("audit"));
+  }
+
+  /**
+   * Released buffers are reused, up to the pool size.
+   */
+  @Test
+  public void reusesBuffers() {
+    byte[] first = policy.acquireBuffer();
+    policy.releaseBuffer(first);
+
+    assertTrue(first == policy.acquireBuffer());
+  }
+}